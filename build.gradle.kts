@@ -34,6 +34,7 @@ dependencies {
     // Use JUnit Jupiter for testing.
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 // Configure Flyway for database migrations
@@ -88,6 +89,13 @@ tasks.named("generateJooq") {
     dependsOn(tasks.named("flywayMigrate"))
 }
 
+// Tests that need PostgreSQL truncate tables, so they get their own database (see TestDatabase) and are
+// skipped when it cannot be reached
+tasks.test {
+    useJUnitPlatform()
+    systemProperty("bara.db.url", System.getProperty("bara.test.db.url", "jdbc:postgresql://localhost:5432/bara_test"))
+}
+
 application {
     // Define the main class for the application.
     mainClass.set("com.bara.app.App")
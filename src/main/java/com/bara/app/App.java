@@ -1,9 +1,11 @@
 package com.bara.app;
 
+import com.bara.app.metrics.StartupTimer;
 import javafx.application.Application;
 
 public class App {
     public static void main(String[] args) {
+        StartupTimer.begin();
         Application.launch(BaraAppFX.class, args);
     }
 }
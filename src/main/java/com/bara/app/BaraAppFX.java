@@ -1,27 +1,139 @@
 package com.bara.app;
 
+import com.bara.app.controller.FxAsync;
 import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.NotificationListener;
+import com.bara.app.journal.JournalReplayer;
+import com.bara.app.journal.OrderJournal;
+import com.bara.app.journal.TicketLog;
+import com.bara.app.metrics.ContentionMetrics;
+import com.bara.app.metrics.ContentionStats;
+import com.bara.app.metrics.StartupTimer;
+import com.bara.app.service.CustomerProfileAggregator;
+import com.bara.app.service.CustomerSearchPipeline;
+import com.bara.app.service.CustomerSearchService;
+import com.bara.app.service.MenuItemService;
+import com.bara.app.service.OrderCheckoutService;
+import com.bara.app.service.OrderTotalsChecker;
+import com.bara.app.sync.SyncConfig;
+import com.bara.app.sync.SyncEngine;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.sql.SQLException;
 
 public class BaraAppFX extends Application {
 
+    private JournalReplayer journalReplayer;
+    private SyncEngine syncEngine;
+
     @Override
-    public void start(Stage stage) throws IOException {
-        DatabaseManager.initializeDatabase(); // Initialize the database with Flyway
-        FXMLLoader fxmlLoader = new FXMLLoader(BaraAppFX.class.getResource("RestaurantPOSView.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 1280, 800); // New default size for the shell UI
+    public void start(Stage stage) {
+        StartupTimer.mark("fx-toolkit");
+
+        // Show a splash right away; the database is prepared in the background
+        Label statusLabel = new Label("Conectando a la base de datos...");
+        Label titleLabel = new Label("BARA");
+        titleLabel.getStyleClass().add("splash-title");
+        VBox splash = new VBox(20.0, titleLabel, new ProgressIndicator(), statusLabel);
+        splash.setAlignment(Pos.CENTER);
+        splash.getStyleClass().add("splash-pane");
+
+        Scene scene = new Scene(splash, 1280, 800); // New default size for the shell UI
         stage.setTitle("BARA - Punto de Venta");
         scene.getStylesheets().add(getClass().getResource("bara-theme.css").toExternalForm());
         stage.setScene(scene);
         stage.show();
+        StartupTimer.mark("stage-shown");
+
+        FxAsync.whenDone(DbExecutor.supply(() -> {
+                    DatabaseManager.initializeDatabase(); // Initialize the database with Flyway
+                    StartupTimer.mark("migrate");
+                    // Replay orders journaled but not yet stored (e.g. before a crash or outage)
+                    journalReplayer = new JournalReplayer(OrderJournal.getInstance(), new OrderCheckoutService());
+                    journalReplayer.start();
+                    SyncConfig syncConfig = SyncConfig.fromSystemProperties();
+                    if (syncConfig.isEnabled()) {
+                        syncEngine = new SyncEngine(syncConfig, syncConfig.createSink());
+                        syncEngine.start();
+                    }
+                    Platform.runLater(() -> statusLabel.setText("Preparando menú..."));
+                    new MenuItemService().findAll(); // Load the menu catalog and warm the pool before the first tap
+                    StartupTimer.mark("warmup");
+                    CustomerSearchService customerSearch = new CustomerSearchService();
+                    customerSearch.loadNameIndexAsync(); // Name and phone search fall back to SQL until loaded
+                    customerSearch.loadPhoneIndexAsync();
+                    // Off the startup path: one bulk pass over order totals. Rewriting them is the operator's call
+                    DbExecutor.run(() -> {
+                        try {
+                            OrderTotalsChecker totals = new OrderTotalsChecker();
+                            if (Boolean.getBoolean("bara.orders.repairTotals")) {
+                                totals.repair();
+                            } else {
+                                totals.report();
+                            }
+                        } catch (SQLException e) {
+                            System.err.println("Order totals check failed: " + e.getMessage());
+                        }
+                    });
+                    return null;
+                }),
+                ignored -> showMainView(scene),
+                error -> {
+                    Alert alert = new Alert(Alert.AlertType.ERROR);
+                    alert.setTitle("Error Crítico");
+                    alert.setHeaderText(null);
+                    alert.setContentText("No se pudo inicializar la base de datos: " + error.getMessage());
+                    alert.showAndWait();
+                    Platform.exit();
+                });
+    }
+
+    private void showMainView(Scene scene) {
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(BaraAppFX.class.getResource("RestaurantPOSView.fxml"));
+            Parent root = fxmlLoader.load();
+            scene.setRoot(root);
+            StartupTimer.mark("pos-view");
+            StartupTimer.report();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Platform.exit();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (syncEngine != null) {
+            syncEngine.stop();
+        }
+        if (journalReplayer != null) {
+            journalReplayer.stop();
+        }
+        CustomerProfileAggregator.getInstance().stop(); // After the replayer, which may still record orders
+        for (ContentionMetrics contention : ContentionStats.snapshotAll().values()) {
+            System.out.println("Contention " + contention);
+        }
+        System.out.println("Customer search " + CustomerSearchPipeline.metricsSummary());
+        OrderJournal.shutdown();
+        TicketLog.shutdown();
+        NotificationListener.shutdown();
+        DatabaseManager.shutdown();
     }
 
     public static void main(String[] args) {
+        StartupTimer.begin();
         launch();
     }
 }
@@ -0,0 +1,41 @@
+package com.bara.app.controller;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Marshals the outcome of background work back onto the JavaFX Application Thread.
+ */
+public class FxAsync {
+
+    private FxAsync() {
+    }
+
+    /**
+     * Deliver the result (or failure) of a future on the FX thread. Cancellations are dropped silently.
+     */
+    public static <T> void whenDone(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((value, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                onSuccess.accept(value);
+            } else {
+                Throwable cause = unwrap(error);
+                if (!(cause instanceof CancellationException)) {
+                    onError.accept(cause);
+                }
+            }
+        }));
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
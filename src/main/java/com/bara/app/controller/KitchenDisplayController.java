@@ -0,0 +1,243 @@
+package com.bara.app.controller;
+
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.service.KitchenBoard;
+import com.bara.app.service.PlacedOrder;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.Node;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Kitchen Display: one card per active order, oldest first, each with its own running timer.
+ * Fed by {@link KitchenBoard}; nothing is polled. Cards are kept per order id and only rebuilt when
+ * their order changes; a single one-second clock updates every timer.
+ */
+public class KitchenDisplayController {
+
+    private static final long WARNING_AFTER_SECONDS = 10 * 60;
+    private static final long LATE_AFTER_SECONDS = 20 * 60;
+
+    @FXML
+    private FlowPane ticketPane;
+    @FXML
+    private Label activeCountLabel;
+    @FXML
+    private ProgressIndicator loadingIndicator;
+
+    private final KitchenBoard board = KitchenBoard.getInstance();
+    private final Map<Integer, TicketCard> cards = new HashMap<>();
+    private final AtomicReference<List<PlacedOrder>> pendingBoard = new AtomicReference<>();
+    private final Consumer<List<PlacedOrder>> boardListener = this::onBoardChanged;
+    private final LatestRequest<List<PlacedOrder>> boardLoad = new LatestRequest<>();
+    private Timeline clock;
+
+    @FXML
+    public void initialize() {
+        loadingIndicator.visibleProperty().bind(boardLoad.loadingProperty());
+        loadingIndicator.managedProperty().bind(boardLoad.loadingProperty());
+
+        board.addListener(boardListener);
+        clock = new Timeline(new KeyFrame(Duration.seconds(1), event -> updateTimers()));
+        clock.setCycleCount(Animation.INDEFINITE);
+        clock.play();
+
+        // Stop listening once the view is swapped out of the shell
+        ticketPane.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null && newScene == null) {
+                dispose();
+            }
+        });
+
+        render(board.getTickets());
+        boardLoad.submit(board.loadAsync(), this::render,
+                error -> showAlert("Error", "No se pudo cargar la cocina: " + error.getMessage()));
+    }
+
+    private void dispose() {
+        board.removeListener(boardListener);
+        boardLoad.cancel();
+        clock.stop();
+    }
+
+    /**
+     * Called off the FX thread whenever the board changes.
+     */
+    private void onBoardChanged(List<PlacedOrder> tickets) {
+        // Coalesce bursts (e.g. a rush of orders) into a single redraw
+        if (pendingBoard.getAndSet(tickets) == null) {
+            Platform.runLater(() -> render(pendingBoard.getAndSet(null)));
+        }
+    }
+
+    private void render(List<PlacedOrder> tickets) {
+        List<Node> target = new ArrayList<>(tickets.size());
+        Set<Integer> live = new HashSet<>(tickets.size() * 2);
+        for (PlacedOrder ticket : tickets) {
+            int id = ticket.getOrder().getId();
+            live.add(id);
+            TicketCard card = cards.get(id);
+            if (card == null) {
+                card = new TicketCard();
+                cards.put(id, card);
+            }
+            card.update(ticket);
+            target.add(card.root);
+        }
+        cards.keySet().retainAll(live);
+
+        if (!ticketPane.getChildren().equals(target)) {
+            ticketPane.getChildren().setAll(target);
+        }
+        activeCountLabel.setText(tickets.size() == 1 ? "1 orden activa" : tickets.size() + " órdenes activas");
+        updateTimers();
+    }
+
+    private void updateTimers() {
+        OffsetDateTime now = OffsetDateTime.now();
+        for (TicketCard card : cards.values()) {
+            card.tick(now);
+        }
+    }
+
+    private void bump(TicketCard card) {
+        Orders order = card.ticket.getOrder();
+        card.bumpButton.setDisable(true);
+        FxAsync.whenDone(board.bumpAsync(order),
+                updated -> {
+                    card.bumpButton.setDisable(false);
+                    if (!updated) {
+                        showAlert("Advertencia", "La orden " + titleOf(order) + " ya fue actualizada en otra pantalla.");
+                    }
+                },
+                error -> {
+                    card.bumpButton.setDisable(false);
+                    showAlert("Error", "No se pudo actualizar la orden: " + error.getMessage());
+                });
+    }
+
+    private static String titleOf(Orders order) {
+        if (order.getOrderName() != null && !order.getOrderName().isBlank()) {
+            return order.getOrderName();
+        }
+        if (order.getTableNumber() != null && !order.getTableNumber().isBlank()) {
+            return "Mesa " + order.getTableNumber();
+        }
+        return "#" + order.getId();
+    }
+
+    private static String typeLabel(String orderType) {
+        switch (orderType) {
+            case "dine_in":
+                return "Comedor";
+            case "pickup":
+                return "Para llevar";
+            case "delivery":
+                return "A domicilio";
+            default:
+                return orderType;
+        }
+    }
+
+    private static String statusLabel(String status) {
+        switch (status) {
+            case "pending":
+                return "Pendiente";
+            case "confirmed":
+                return "Nueva";
+            case "preparing":
+                return "En preparación";
+            default:
+                return status;
+        }
+    }
+
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    /**
+     * The card for one order.
+     */
+    private class TicketCard {
+        private final VBox root = new VBox(6);
+        private final Label title = new Label();
+        private final Label timer = new Label();
+        private final Label status = new Label();
+        private final VBox lines = new VBox(2);
+        private final Button bumpButton = new Button();
+        private PlacedOrder ticket;
+
+        TicketCard() {
+            root.getStyleClass().add("kitchen-ticket");
+            title.getStyleClass().add("kitchen-ticket-title");
+            timer.getStyleClass().add("kitchen-ticket-timer");
+            status.getStyleClass().add("kitchen-ticket-status");
+            bumpButton.getStyleClass().add("button");
+            bumpButton.setMaxWidth(Double.MAX_VALUE);
+            bumpButton.setOnAction(event -> bump(this));
+            root.getChildren().addAll(title, timer, status, lines, bumpButton);
+        }
+
+        void update(PlacedOrder next) {
+            PlacedOrder previous = ticket;
+            ticket = next;
+            if (previous == next) {
+                return;
+            }
+            Orders order = next.getOrder();
+            title.setText(titleOf(order) + " · " + typeLabel(order.getOrderType()));
+            status.setText(statusLabel(order.getStatus()));
+            bumpButton.setText("preparing".equals(order.getStatus()) ? "Listo" : "Preparar");
+            if (previous == null || previous.getItems() != next.getItems()) {
+                List<Node> rows = new ArrayList<>(next.getItems().size());
+                for (OrderItems item : next.getItems()) {
+                    Label row = new Label(item.getQuantity() + "× " + item.getItemName()
+                            + (item.getNotes() != null && !item.getNotes().isBlank() ? " — " + item.getNotes() : ""));
+                    row.setWrapText(true);
+                    rows.add(row);
+                }
+                lines.getChildren().setAll(rows);
+            }
+        }
+
+        void tick(OffsetDateTime now) {
+            long seconds = Math.max(0, java.time.Duration.between(ticket.getOrder().getOrderedAt(), now).getSeconds());
+            timer.setText(String.format("%d:%02d", seconds / 60, seconds % 60));
+            setStyle("kitchen-ticket-warning", seconds >= WARNING_AFTER_SECONDS && seconds < LATE_AFTER_SECONDS);
+            setStyle("kitchen-ticket-late", seconds >= LATE_AFTER_SECONDS);
+        }
+
+        private void setStyle(String styleClass, boolean on) {
+            if (!on) {
+                root.getStyleClass().remove(styleClass);
+            } else if (!root.getStyleClass().contains(styleClass)) {
+                root.getStyleClass().add(styleClass);
+            }
+        }
+    }
+}
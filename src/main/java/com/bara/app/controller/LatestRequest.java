@@ -0,0 +1,65 @@
+package com.bara.app.controller;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the most recent background request for a view.
+ * Submitting a new request cancels the previous one, and a superseded result is never applied.
+ * Must be used from the JavaFX Application Thread.
+ */
+public class LatestRequest<T> {
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+    private CompletableFuture<T> current;
+
+    /**
+     * Start tracking a new request, cancelling whichever one is still in flight.
+     */
+    public void submit(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        if (current != null) {
+            current.cancel(true);
+        }
+        current = future;
+        loading.set(true);
+
+        future.whenComplete((value, error) -> Platform.runLater(() -> {
+            if (current != future) {
+                return; // Superseded by a newer request
+            }
+            current = null;
+            loading.set(false);
+            if (error == null) {
+                onSuccess.accept(value);
+            } else {
+                Throwable cause = FxAsync.unwrap(error);
+                if (!(cause instanceof CancellationException)) {
+                    onError.accept(cause);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Cancel the in-flight request, if any.
+     */
+    public void cancel() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+            loading.set(false);
+        }
+    }
+
+    /**
+     * True while a request is in flight; bind loading indicators to this.
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+}
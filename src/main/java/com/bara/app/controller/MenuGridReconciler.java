@@ -0,0 +1,135 @@
+package com.bara.app.controller;
+
+import com.bara.app.model.MenuItem;
+import com.bara.app.model.Money;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.layout.Pane;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a pane of menu buttons in step with a list of items, keyed by item id.
+ *
+ * <p>Buttons are created once per item and reused across redraws (and across reloads of the view);
+ * a redraw only touches the buttons whose name, price or availability changed, and changes the pane's
+ * children with at most one bulk removal plus the insertions, or a single {@code setAll} when the order
+ * changed. Must be used on the FX thread.
+ */
+class MenuGridReconciler {
+
+    private static final String UNAVAILABLE_STYLE = "unavailable";
+
+    private final Consumer<MenuItem> onSelect;
+    private final Map<Integer, Button> buttons = new HashMap<>();
+    private final Map<Integer, MenuItem> rendered = new HashMap<>();
+
+    /**
+     * @param onSelect Called with the button's current item when it is pressed
+     */
+    MenuGridReconciler(Consumer<MenuItem> onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    /**
+     * Make {@code pane} show exactly {@code items}, in order.
+     */
+    void reconcile(Pane pane, List<MenuItem> items) {
+        List<Node> target = new ArrayList<>(items.size());
+        Set<Integer> live = new HashSet<>(items.size() * 2);
+        for (MenuItem item : items) {
+            live.add(item.getId());
+            target.add(buttonFor(item));
+        }
+
+        // Forget items that are gone for good
+        buttons.keySet().retainAll(live);
+        rendered.keySet().retainAll(live);
+
+        ObservableList<Node> children = pane.getChildren();
+        if (children.equals(target)) {
+            return;
+        }
+
+        Set<Node> targetSet = new HashSet<>(target);
+        List<Node> removed = new ArrayList<>();
+        List<Node> kept = new ArrayList<>(children.size());
+        for (Node child : children) {
+            if (targetSet.contains(child)) {
+                kept.add(child);
+            } else {
+                removed.add(child);
+            }
+        }
+
+        if (!isSubsequence(kept, target)) {
+            // Reordered (e.g. a rename): one bulk replacement
+            children.setAll(target);
+            return;
+        }
+
+        if (!removed.isEmpty()) {
+            children.removeAll(removed);
+        }
+        if (children.size() != target.size()) {
+            for (int i = 0; i < target.size(); i++) {
+                Node node = target.get(i);
+                if (i >= children.size() || children.get(i) != node) {
+                    children.add(i, node);
+                }
+            }
+        }
+    }
+
+    private Button buttonFor(MenuItem item) {
+        Button button = buttons.get(item.getId());
+        if (button == null) {
+            button = createButton();
+            buttons.put(item.getId(), button);
+        }
+
+        MenuItem previous = rendered.get(item.getId());
+        if (previous == null || !previous.getName().equals(item.getName()) || previous.getPriceCents() != item.getPriceCents()) {
+            button.setText(item.getName() + "\n" + Money.format(item.getPriceCents()));
+        }
+        if (previous == null || previous.isAvailable() != item.isAvailable()) {
+            if (item.isAvailable()) {
+                button.getStyleClass().remove(UNAVAILABLE_STYLE);
+            } else if (!button.getStyleClass().contains(UNAVAILABLE_STYLE)) {
+                button.getStyleClass().add(UNAVAILABLE_STYLE);
+            }
+            button.setDisable(!item.isAvailable());
+        }
+        button.setUserData(item);
+        rendered.put(item.getId(), item);
+        return button;
+    }
+
+    private Button createButton() {
+        Button button = new Button();
+        button.getStyleClass().add("menu-item-button");
+        button.setPrefSize(120, 80);
+        button.setTextAlignment(TextAlignment.CENTER);
+        // Read the item at press time so the handler never captures a stale snapshot
+        button.setOnAction(event -> onSelect.accept((MenuItem) ((Button) event.getSource()).getUserData()));
+        return button;
+    }
+
+    private static boolean isSubsequence(List<Node> candidate, List<Node> sequence) {
+        int matched = 0;
+        for (Node node : sequence) {
+            if (matched < candidate.size() && candidate.get(matched) == node) {
+                matched++;
+            }
+        }
+        return matched == candidate.size();
+    }
+}
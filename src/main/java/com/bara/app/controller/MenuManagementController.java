@@ -1,13 +1,18 @@
 package com.bara.app.controller;
 
 import com.bara.app.model.MenuItem;
+import com.bara.app.model.Money;
 import com.bara.app.service.MenuItemService;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public class MenuManagementController {
 
     @FXML
@@ -24,12 +29,17 @@ public class MenuManagementController {
     @FXML
     private TableColumn<MenuItem, String> nameColumn;
     @FXML
-    private TableColumn<MenuItem, Double> priceColumn;
+    private TableColumn<MenuItem, String> priceColumn;
     @FXML
     private TableColumn<MenuItem, String> descriptionColumn;
+    @FXML
+    private TableColumn<MenuItem, String> availableColumn;
+    @FXML
+    private ProgressIndicator loadingIndicator;
 
     private MenuItemService menuItemService;
     private ObservableList<MenuItem> menuItemList;
+    private final LatestRequest<List<MenuItem>> menuLoad = new LatestRequest<>();
 
     @FXML
     public void initialize() {
@@ -38,10 +48,15 @@ public class MenuManagementController {
 
         idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        priceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
+        priceColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                Money.format(cell.getValue().getPriceCents())));
         descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
+        availableColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                cell.getValue().isAvailable() ? "Sí" : "Agotado"));
 
         menuItemTable.setItems(menuItemList);
+        loadingIndicator.visibleProperty().bind(menuLoad.loadingProperty());
+        loadingIndicator.managedProperty().bind(menuLoad.loadingProperty());
         loadMenuItems();
 
         menuItemTable.getSelectionModel().selectedItemProperty().addListener(
@@ -49,13 +64,28 @@ public class MenuManagementController {
     }
 
     private void loadMenuItems() {
-        menuItemList.setAll(menuItemService.findAll());
+        menuItemTable.setPlaceholder(new Label("Cargando menú..."));
+        menuLoad.submit(menuItemService.findAllAsync(),
+                items -> {
+                    menuItemList.setAll(items);
+                    menuItemTable.setPlaceholder(new Label("No hay items en el menú."));
+                },
+                error -> showAlert("Error", "No se pudo cargar el menú: " + error.getMessage()));
+    }
+
+    /**
+     * Run a write in the background, then refresh the table.
+     */
+    private void runAndReload(CompletableFuture<?> write) {
+        FxAsync.whenDone(write,
+                result -> loadMenuItems(),
+                error -> showAlert("Error", "No se pudo guardar el cambio: " + error.getMessage()));
     }
 
     private void showMenuItemDetails(MenuItem menuItem) {
         if (menuItem != null) {
             nameField.setText(menuItem.getName());
-            priceField.setText(String.valueOf(menuItem.getPrice()));
+            priceField.setText(Money.toPlainString(menuItem.getPriceCents()));
             descriptionArea.setText(menuItem.getDescription());
         } else {
             clearFields();
@@ -66,7 +96,7 @@ public class MenuManagementController {
     private void addMenuItem() {
         try {
             String name = nameField.getText();
-            double price = Double.parseDouble(priceField.getText());
+            long price = Money.parse(priceField.getText());
             String description = descriptionArea.getText();
 
             if (name.isEmpty()) {
@@ -75,8 +105,7 @@ public class MenuManagementController {
             }
 
             MenuItem menuItem = new MenuItem(name, price, description);
-            menuItemService.save(menuItem);
-            loadMenuItems();
+            runAndReload(menuItemService.saveAsync(menuItem));
             clearFields();
         } catch (NumberFormatException e) {
             showAlert("Error", "Por favor, ingrese un precio válido.");
@@ -89,7 +118,7 @@ public class MenuManagementController {
             MenuItem selectedMenuItem = menuItemTable.getSelectionModel().getSelectedItem();
             if (selectedMenuItem != null) {
                 String name = nameField.getText();
-                double price = Double.parseDouble(priceField.getText());
+                long price = Money.parse(priceField.getText());
                 String description = descriptionArea.getText();
 
                 if (name.isEmpty()) {
@@ -97,12 +126,10 @@ public class MenuManagementController {
                     return;
                 }
 
-                selectedMenuItem.setName(name);
-                selectedMenuItem.setPrice(price);
-                selectedMenuItem.setDescription(description);
-
-                menuItemService.update(selectedMenuItem);
-                loadMenuItems();
+                // Items belong to the shared menu snapshot; send a changed copy instead of editing in place
+                MenuItem changed = new MenuItem(selectedMenuItem.getId(), name, price, description,
+                        selectedMenuItem.isAvailable());
+                runAndReload(menuItemService.updateAsync(changed));
                 clearFields();
             } else {
                 showAlert("Advertencia", "Seleccione un item para actualizar.");
@@ -112,12 +139,24 @@ public class MenuManagementController {
         }
     }
 
+    /**
+     * Mark the selected item as 86'd, or back in stock. Every terminal picks it up within a second.
+     */
+    @FXML
+    private void toggleAvailability() {
+        MenuItem selectedMenuItem = menuItemTable.getSelectionModel().getSelectedItem();
+        if (selectedMenuItem != null) {
+            runAndReload(menuItemService.setAvailabilityAsync(selectedMenuItem.getId(), !selectedMenuItem.isAvailable()));
+        } else {
+            showAlert("Advertencia", "Seleccione un item para cambiar su disponibilidad.");
+        }
+    }
+
     @FXML
     private void deleteMenuItem() {
         MenuItem selectedMenuItem = menuItemTable.getSelectionModel().getSelectedItem();
         if (selectedMenuItem != null) {
-            menuItemService.delete(selectedMenuItem.getId());
-            loadMenuItems();
+            runAndReload(menuItemService.deleteAsync(selectedMenuItem.getId()));
             clearFields();
         } else {
             showAlert("Advertencia", "Seleccione un item para eliminar.");
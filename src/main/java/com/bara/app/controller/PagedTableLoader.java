@@ -0,0 +1,109 @@
+package com.bara.app.controller;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.model.Page;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.util.Callback;
+
+import java.sql.Connection;
+
+/**
+ * Items of a {@link TableView} read a page at a time, as the user scrolls: when a row within
+ * {@code prefetch} rows of the end is shown, the next page is read in the background and appended.
+ * Only what was scrolled past is ever read, and every page costs the same (see {@link Page}).
+ * Must be used from the JavaFX Application Thread.
+ */
+public class PagedTableLoader<T> {
+
+    /**
+     * Reads one page, e.g. {@code (conn, after, limit) -> orderRepository.findByCustomerId(conn, id, after, limit)}.
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+        Page<T> load(Connection conn, Page.Cursor after, int limit) throws Exception;
+    }
+
+    private final ObservableList<T> items = FXCollections.observableArrayList();
+    private final LatestRequest<Page<T>> request = new LatestRequest<>();
+    private final int pageSize;
+    private final int prefetch;
+
+    private PageSource<T> source;
+    private Page.Cursor next;
+    private boolean exhausted = true;
+
+    /**
+     * @param pageSize Rows per page; a little over a screenful
+     * @param prefetch How close to the end a shown row triggers the next page
+     */
+    public PagedTableLoader(int pageSize, int prefetch) {
+        this.pageSize = pageSize;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Show the items in {@code table} and load more as its rows come into view. Keeps the table's row
+     * factory, if it has one.
+     */
+    public void attach(TableView<T> table) {
+        table.setItems(items);
+        Callback<TableView<T>, TableRow<T>> rowFactory = table.getRowFactory();
+        table.setRowFactory(view -> {
+            TableRow<T> row = rowFactory != null ? rowFactory.call(view) : new TableRow<>();
+            row.indexProperty().addListener((observable, previous, index) -> {
+                if (index.intValue() >= items.size() - prefetch) {
+                    loadMore();
+                }
+            });
+            return row;
+        });
+    }
+
+    /**
+     * Replace the list with the first page of {@code source}, dropping whatever was loaded or loading.
+     */
+    public void show(PageSource<T> source) {
+        request.cancel();
+        this.source = source;
+        this.next = null;
+        this.exhausted = false;
+        items.clear();
+        loadMore();
+    }
+
+    /**
+     * Read the next page unless one is already loading or the list is complete.
+     */
+    public void loadMore() {
+        if (exhausted || request.loadingProperty().get()) {
+            return;
+        }
+        PageSource<T> pageSource = source;
+        Page.Cursor after = next;
+        request.submit(DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return pageSource.load(conn, after, pageSize);
+            }
+        }), page -> {
+            items.addAll(page.getItems());
+            next = page.getNext();
+            exhausted = !page.hasNext();
+        }, error -> System.err.println("Error loading page: " + error.getMessage()));
+    }
+
+    public ObservableList<T> getItems() {
+        return items;
+    }
+
+    /**
+     * True while a page is loading; bind a loading indicator to this.
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return request.loadingProperty();
+    }
+}
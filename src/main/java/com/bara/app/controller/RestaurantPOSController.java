@@ -1,9 +1,18 @@
 package com.bara.app.controller;
 
 import com.bara.app.BaraAppFX;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.journal.TicketLog;
+import com.bara.app.metrics.StartupTimer;
 import com.bara.app.model.MenuItem;
+import com.bara.app.model.Money;
 import com.bara.app.model.OrderItem;
+import com.bara.app.model.OrderTicket;
+import com.bara.app.service.MenuCatalog;
 import com.bara.app.service.MenuItemService;
+import com.bara.app.service.OrderCheckoutService;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -13,10 +22,12 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.StackPane;
-import javafx.scene.text.TextAlignment;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RestaurantPOSController {
 
@@ -35,17 +46,32 @@ public class RestaurantPOSController {
     @FXML
     public TableColumn<OrderItem, Integer> orderItemQuantityColumn;
     @FXML
-    public TableColumn<OrderItem, Double> orderItemPriceColumn;
+    public TableColumn<OrderItem, String> orderItemPriceColumn;
     @FXML
-    public TableColumn<OrderItem, Double> orderItemTotalPriceColumn;
+    public TableColumn<OrderItem, String> orderItemTotalPriceColumn;
     @FXML
     public TextArea itemNotesArea;
     @FXML
     public Label totalLabel;
+    @FXML
+    public ProgressIndicator menuLoadingIndicator;
+    @FXML
+    public Button undoButton;
+    @FXML
+    public Button redoButton;
 
+    private final LatestRequest<List<MenuItem>> menuLoad = new LatestRequest<>();
+    private final AtomicReference<MenuCatalog> pendingCatalog = new AtomicReference<>();
+    // Buttons are reused across redraws and across reloads of the Take Order view
+    private final MenuGridReconciler menuGrid = new MenuGridReconciler(this::addOrderItem);
     private MenuItemService menuItemService;
+    private OrderCheckoutService checkoutService;
+    private OrderTicket ticket;
+    // Mirrors the ticket's lines for the table; only touched by the ticket's row events
     private ObservableList<OrderItem> currentOrder;
     private boolean shellInitialized = false;
+    private boolean checkoutInFlight = false;
+    private boolean menuViewShowing = false;
 
     @FXML
     public void initialize() {
@@ -56,7 +82,12 @@ public class RestaurantPOSController {
         shellInitialized = true;
 
         menuItemService = new MenuItemService();
+        checkoutService = new OrderCheckoutService();
         currentOrder = FXCollections.observableArrayList();
+        ticket = new OrderTicket(Integer.getInteger("bara.ticket.taxBasisPoints", 0));
+        ticket.addListener(new TicketTableBinding());
+        recoverTicket();
+        MenuItemService.addCatalogListener(this::onCatalogChanged);
 
         // Load the default view
         showTakeOrderView();
@@ -75,6 +106,8 @@ public class RestaurantPOSController {
             // The FXML is loaded, now we can use the injected fields from it.
             // This setup logic is specific to the TakeOrderView.
             setupTable();
+            menuLoadingIndicator.visibleProperty().bind(menuLoad.loadingProperty());
+            menuLoadingIndicator.managedProperty().bind(menuLoad.loadingProperty());
             orderTable.setItems(currentOrder);
             orderTable.getSelectionModel().selectedItemProperty().addListener(
                     (obs, oldSelection, newSelection) -> showItemNotes(newSelection));
@@ -82,6 +115,7 @@ public class RestaurantPOSController {
             updateTotal(); // Ensure total is updated on first load
 
             mainContentArea.getChildren().setAll(takeOrderView);
+            menuViewShowing = true;
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -91,9 +125,18 @@ public class RestaurantPOSController {
 
     @FXML
     public void showMenuManagementView() {
+        menuLoad.cancel();
+        menuViewShowing = false;
         loadView("MenuManagementView.fxml");
     }
 
+    @FXML
+    public void showKitchenDisplayView() {
+        menuLoad.cancel();
+        menuViewShowing = false;
+        loadView("KitchenDisplayView.fxml");
+    }
+
     private void loadView(String fxmlFileName) {
         try {
             FXMLLoader loader = new FXMLLoader(BaraAppFX.class.getResource(fxmlFileName));
@@ -111,42 +154,66 @@ public class RestaurantPOSController {
     private void setupTable() {
         orderItemNameColumn.setCellValueFactory(new PropertyValueFactory<>("menuItemName"));
         orderItemQuantityColumn.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        orderItemPriceColumn.setCellValueFactory(new PropertyValueFactory<>("menuItemPrice"));
-        orderItemTotalPriceColumn.setCellValueFactory(new PropertyValueFactory<>("totalPrice"));
+        orderItemPriceColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                Money.format(cell.getValue().getMenuItemPriceCents())));
+        orderItemTotalPriceColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                Money.format(cell.getValue().getTotalPriceCents())));
         orderTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
     }
 
     private void loadMenuItems() {
         // Ensure menuFlowPane is not null, which can happen if the FXML isn't loaded yet.
         if (menuFlowPane == null) return;
-        menuFlowPane.getChildren().clear();
-        for (MenuItem item : menuItemService.findAll()) {
-            Button itemButton = createMenuItemButton(item);
-            menuFlowPane.getChildren().add(itemButton);
-        }
+        FlowPane targetPane = menuFlowPane;
+        menuLoad.submit(menuItemService.findAllAsync(),
+                items -> renderMenu(targetPane, items),
+                error -> showAlert("Error", "No se pudo cargar el menú: " + error.getMessage()));
+    }
+
+    private void renderMenu(FlowPane targetPane, List<MenuItem> items) {
+        menuGrid.reconcile(targetPane, items);
     }
 
-    private Button createMenuItemButton(MenuItem item) {
-        Button button = new Button(item.getName() + "\n" + String.format("$%.2f", item.getPrice()));
-        button.getStyleClass().add("menu-item-button");
-        button.setPrefSize(120, 80);
-        button.setTextAlignment(TextAlignment.CENTER);
-        button.setOnAction(event -> addOrderItem(item));
-        return button;
+    /**
+     * Called off the FX thread whenever a new menu snapshot is swapped in.
+     */
+    private void onCatalogChanged(MenuCatalog catalog) {
+        // Coalesce bursts of changes into a single redraw
+        if (pendingCatalog.getAndSet(catalog) == null) {
+            Platform.runLater(() -> {
+                MenuCatalog latest = pendingCatalog.getAndSet(null);
+                if (menuViewShowing && menuFlowPane != null) {
+                    renderMenu(menuFlowPane, latest.getItemsByName());
+                }
+            });
+        }
     }
 
     private void addOrderItem(MenuItem menuItem) {
-        Optional<OrderItem> existingItem = currentOrder.stream()
-                .filter(orderItem -> orderItem.getMenuItem().getId() == menuItem.getId())
-                .findFirst();
+        if (checkoutInFlight) {
+            return; // The submitted ticket is reset when the order is confirmed; edits now would be lost
+        }
+        if (!menuItem.isAvailable()) {
+            showAlert("Advertencia", menuItem.getName() + " está agotado.");
+            return;
+        }
+        ticket.add(menuItem);
+    }
 
-        if (existingItem.isPresent()) {
-            existingItem.get().setQuantity(existingItem.get().getQuantity() + 1);
-            orderTable.refresh();
-        } else {
-            currentOrder.add(new OrderItem(menuItem, 1));
+    /**
+     * Restore the ticket that was open when the application last stopped, then keep logging it.
+     */
+    private void recoverTicket() {
+        try {
+            TicketLog log = TicketLog.getInstance();
+            int operations = log.replayInto(ticket);
+            if (operations > 0) {
+                System.out.println("Recovered open ticket: " + ticket.size() + " line(s) from " + operations + " operation(s).");
+            }
+            ticket.setLog(log);
+        } catch (IOException e) {
+            System.err.println("Could not recover the open ticket: " + e.getMessage());
         }
-        updateTotal();
     }
 
     private void showItemNotes(OrderItem item) {
@@ -159,6 +226,9 @@ public class RestaurantPOSController {
 
     @FXML
     private void adjustQuantity() {
+        if (checkoutInFlight) {
+            return;
+        }
         OrderItem selectedItem = orderTable.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
             TextInputDialog dialog = new TextInputDialog(String.valueOf(selectedItem.getQuantity()));
@@ -171,9 +241,7 @@ public class RestaurantPOSController {
                 try {
                     int newQuantity = Integer.parseInt(quantityStr);
                     if (newQuantity > 0) {
-                        selectedItem.setQuantity(newQuantity);
-                        orderTable.refresh();
-                        updateTotal();
+                        ticket.setQuantity(selectedItem, newQuantity);
                     } else {
                         showAlert("Error", "La cantidad debe ser mayor a cero.");
                     }
@@ -188,30 +256,94 @@ public class RestaurantPOSController {
 
     @FXML
     private void removeOrderItem() {
+        if (checkoutInFlight) {
+            return;
+        }
         OrderItem selectedItem = orderTable.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
-            currentOrder.remove(selectedItem);
-            updateTotal();
+            ticket.remove(selectedItem);
         } else {
             showAlert("Advertencia", "Seleccione un item de la orden para eliminar.");
         }
     }
 
+    @FXML
+    private void applyItemNotes() {
+        if (checkoutInFlight) {
+            return;
+        }
+        OrderItem selectedItem = orderTable.getSelectionModel().getSelectedItem();
+        if (selectedItem != null) {
+            String notes = itemNotesArea.getText();
+            ticket.setNotes(selectedItem, notes);
+            // The line was re-keyed (or merged); keep it selected
+            orderTable.getSelectionModel().select(ticket.find(selectedItem.getMenuItem().getId(), notes));
+        } else {
+            showAlert("Advertencia", "Seleccione un item de la orden para agregar notas.");
+        }
+    }
+
+    @FXML
+    private void undoLastEdit() {
+        if (!checkoutInFlight) {
+            ticket.undo();
+        }
+    }
+
+    @FXML
+    private void redoLastEdit() {
+        if (!checkoutInFlight) {
+            ticket.redo();
+        }
+    }
+
     @FXML
     private void confirmOrder() {
-        if (currentOrder.isEmpty()) {
+        if (ticket.isEmpty()) {
             showAlert("Advertencia", "La orden está vacía.");
             return;
         }
-        // In a real app, this would save the order to the database.
-        showAlert("Éxito", "Orden confirmada exitosamente.");
-        currentOrder.clear();
-        updateTotal();
+        if (checkoutInFlight) {
+            return;
+        }
+        // Items may have been 86'd on another terminal after they were added to the ticket
+        List<String> unavailable = new ArrayList<>();
+        for (OrderItem line : ticket.getLines()) {
+            MenuItem current = menuItemService.getCatalog().get(line.getMenuItem().getId());
+            if (current == null || !current.isAvailable()) {
+                unavailable.add(line.getMenuItemName());
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            showAlert("Advertencia", "Productos agotados: " + String.join(", ", unavailable)
+                    + ". Retírelos de la orden para continuar.");
+            return;
+        }
+        checkoutInFlight = true;
+        Orders header = new Orders()
+                .setOrderType("dine_in")
+                .setStatus("confirmed")
+                .setTaxCents(ticket.getTaxCents());
+        // Acknowledged once journaled locally; the database write happens in the background
+        FxAsync.whenDone(checkoutService.submit(header, ticket.getLines()),
+                placed -> {
+                    checkoutInFlight = false;
+                    StartupTimer.markFirstOrder();
+                    showAlert("Éxito", "Orden confirmada exitosamente.");
+                    ticket.reset();
+                },
+                error -> {
+                    checkoutInFlight = false;
+                    showAlert("Error", "No se pudo guardar la orden: " + error.getMessage());
+                });
     }
 
     @FXML
     private void cancelOrder() {
-        if (!currentOrder.isEmpty()) {
+        if (checkoutInFlight) {
+            return;
+        }
+        if (!ticket.isEmpty()) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Cancelar Orden");
             alert.setHeaderText("¿Está seguro que desea cancelar la orden actual?");
@@ -219,15 +351,44 @@ public class RestaurantPOSController {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                currentOrder.clear();
-                updateTotal();
+                // Undoable, in case the wrong ticket was cancelled
+                ticket.clear();
             }
         }
     }
 
     private void updateTotal() {
-        double total = currentOrder.stream().mapToDouble(OrderItem::getTotalPrice).sum();
-        totalLabel.setText(String.format("$%.2f", total));
+        if (totalLabel == null) {
+            return; // Take Order view not loaded yet
+        }
+        totalLabel.setText(Money.format(ticket.getTotalCents()));
+        undoButton.setDisable(!ticket.canUndo());
+        redoButton.setDisable(!ticket.canRedo());
+    }
+
+    /**
+     * Applies the ticket's row events to the table's list: a quantity change replaces just that row.
+     */
+    private class TicketTableBinding implements OrderTicket.Listener {
+        @Override
+        public void lineAdded(int index, OrderItem line) {
+            currentOrder.add(index, line);
+        }
+
+        @Override
+        public void lineChanged(int index, OrderItem line) {
+            currentOrder.set(index, line);
+        }
+
+        @Override
+        public void lineRemoved(int index, OrderItem line) {
+            currentOrder.remove(index);
+        }
+
+        @Override
+        public void totalsChanged(OrderTicket ticket) {
+            updateTotal();
+        }
     }
 
     private void showAlert(String title, String message) {
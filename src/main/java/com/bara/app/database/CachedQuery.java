@@ -0,0 +1,46 @@
+package com.bara.app.database;
+
+import org.jooq.DSLContext;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.ResultQuery;
+
+import java.util.function.Function;
+
+/**
+ * A fixed-shape query whose SQL is rendered once and reused on every call.
+ * Combined with the driver's per-connection statement cache, hot lookups skip both
+ * jOOQ rendering and server-side parsing.
+ *
+ * <p>Every {@code ?} in the rendered SQL is a runtime bind value, in order. Constants that are
+ * part of the shape must be written with {@code DSL.inline(...)} so they are not rendered as binds.
+ */
+public class CachedQuery {
+
+    private final Function<DSLContext, ? extends Query> shape;
+    private volatile String sql;
+
+    public CachedQuery(Function<DSLContext, ? extends Query> shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * The rendered SQL, rendered on first use.
+     */
+    public String getSql() {
+        String rendered = sql;
+        if (rendered == null) {
+            DSLContext renderer = DatabaseManager.renderer();
+            rendered = renderer.render(shape.apply(renderer));
+            sql = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * Bind the cached SQL to a connection-bound context, ready to be coerced and fetched.
+     */
+    public ResultQuery<Record> bind(DSLContext dsl, Object... bindValues) {
+        return dsl.resultQuery(getSql(), bindValues);
+    }
+}
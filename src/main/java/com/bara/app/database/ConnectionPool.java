@@ -0,0 +1,348 @@
+package com.bara.app.database;
+
+import com.bara.app.metrics.LatencyRecorder;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool.
+ * Connections handed out are proxies whose {@code close()} returns the physical connection to the pool,
+ * so callers keep using try-with-resources exactly as with {@code DriverManager}.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final PoolConfig config;
+
+    // Most recently returned connection first, so hot connections are reused and cold ones age out
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final LatencyRecorder acquireLatency = new LatencyRecorder(2048);
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed = false;
+    private PrintWriter logWriter;
+
+    public ConnectionPool(String url, Properties connectionProperties, PoolConfig config) {
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bara-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evictAndRefill,
+                0, config.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the configured acquire timeout.
+     * Closing the returned connection gives it back to the pool.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waitingThreads.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                    + "ms waiting for a database connection (active=" + activeConnections.get()
+                    + ", max=" + config.getMaxSize() + ")");
+        }
+        totalWaitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            activeConnections.incrementAndGet();
+            acquiredCount.incrementAndGet();
+            acquireLatency.recordSince(start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return createConnection();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooled.lastUsedNanos);
+            return idleMillis < config.getValidationIntervalMillis()
+                    || pooled.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        totalConnections.incrementAndGet();
+        try {
+            return new PooledConnection(DriverManager.getConnection(url, connectionProperties));
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        activeConnections.decrementAndGet();
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            // Hand the next borrower a connection in its default state
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.physical.clearWarnings();
+            pooled.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            System.err.println("Discarding broken pooled connection: " + e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close connections idle past the idle timeout (never going below minSize), then top up to minSize.
+     */
+    private void evictAndRefill() {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        for (PooledConnection pooled : idle) {
+            if (totalConnections.get() <= config.getMinSize()) {
+                break;
+            }
+            if (now - pooled.lastUsedNanos > idleTimeoutNanos && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+
+        try {
+            while (!closed && totalConnections.get() < config.getMinSize()) {
+                idle.offerLast(createConnection());
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not pre-open pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Point-in-time pool statistics.
+     */
+    public PoolMetrics getMetrics() {
+        long acquired = acquiredCount.get();
+        return new PoolMetrics(
+                activeConnections.get(),
+                idle.size(),
+                totalConnections.get(),
+                waitingThreads.get(),
+                acquired,
+                timeoutCount.get(),
+                acquired == 0 ? 0.0 : totalWaitNanos.get() / (double) acquired / 1_000_000.0,
+                acquireLatency.percentile(50) / 1_000_000.0,
+                acquireLatency.percentile(95) / 1_000_000.0,
+                acquireLatency.percentile(99) / 1_000_000.0
+        );
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Close all idle connections. Connections still borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // --- DataSource plumbing ---
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Routes calls to the physical connection until the borrower closes it.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!returned) {
+                            returned = true;
+                            release(pooled);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
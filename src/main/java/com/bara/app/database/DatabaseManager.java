@@ -2,47 +2,148 @@ package com.bara.app.database;
 
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.FlywayException;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultConnectionProvider;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 /**
  * Database manager using Flyway for schema migrations.
  * Flyway handles all schema creation and versioning automatically.
+ * Connections come from a shared, bounded {@link ConnectionPool} and all jOOQ access goes
+ * through one shared {@link Configuration}.
  */
 public class DatabaseManager {
 
-    private static final String DB_URL = "jdbc:postgresql://localhost:5432/bara";
+    private static final String DB_URL = System.getProperty("bara.db.url", "jdbc:postgresql://localhost:5432/bara");
     private static final String DB_USER = "devuser";
     private static final String DB_PASS = "devpass";
     private static boolean initialized = false;
+    private static ConnectionPool pool;
 
     /**
-     * Get a connection to the PostgreSQL database.
+     * Shared, thread-safe jOOQ configuration. Per-call contexts only swap in the connection.
+     */
+    private static final Configuration JOOQ_CONFIGURATION = new DefaultConfiguration()
+            .set(SQLDialect.POSTGRES)
+            .set(new Settings()
+                    .withRenderSchema(false)           // Everything lives in "public"; shorter SQL to send and parse
+                    .withRenderFormatted(false)
+                    .withExecuteLogging(false)         // Skip the per-query debug logging listener
+                    .withFetchWarnings(false)          // Avoids a getWarnings() call after every statement
+                    .withInListPadding(true));         // Stable SQL text for IN lists, so statement caches hit
+
+    private static final DSLContext RENDERER = DSL.using(JOOQ_CONFIGURATION);
+
+    /**
+     * Borrow a pooled connection to the PostgreSQL database.
+     * Closing the connection returns it to the pool.
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+        return getPool().getConnection();
+    }
+
+    /**
+     * Get the shared connection pool, creating it on first use.
+     */
+    public static synchronized ConnectionPool getPool() {
+        if (pool == null || pool.isClosed()) {
+            pool = new ConnectionPool(DB_URL, connectionProperties(), PoolConfig.fromSystemProperties());
+        }
+        return pool;
+    }
+
+    /**
+     * Open a physical connection outside the pool, for long-lived sessions such as LISTEN.
+     * The caller owns it and must close it.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(DB_URL, connectionProperties());
+    }
+
+    private static Properties connectionProperties() {
+        Properties props = new Properties();
+        props.setProperty("user", DB_USER);
+        props.setProperty("password", DB_PASS);
+        props.setProperty("ApplicationName", "bara-pos");
+        props.setProperty("tcpKeepAlive", "true");
+        // Server-side prepared statements, cached per physical connection and keyed by SQL text
+        props.setProperty("prepareThreshold", "2");
+        props.setProperty("preparedStatementCacheQueries", "512");
+        props.setProperty("preparedStatementCacheSizeMiB", "8");
+        return props;
+    }
+
+    /**
+     * jOOQ context bound to the given connection, sharing the application-wide configuration.
+     */
+    public static DSLContext dsl(Connection conn) {
+        return DSL.using(JOOQ_CONFIGURATION.derive(new DefaultConnectionProvider(conn)));
+    }
+
+    /**
+     * Connection-less jOOQ context used only to render SQL.
+     */
+    static DSLContext renderer() {
+        return RENDERER;
+    }
+
+    /**
+     * Current pool statistics (active, idle, wait time, acquire latency percentiles).
+     */
+    public static PoolMetrics getPoolMetrics() {
+        return getPool().getMetrics();
+    }
+
+    /**
+     * Close the connection pool. Called once when the application exits.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            System.out.println("Closing connection pool: " + pool.getMetrics());
+            pool.close();
+            pool = null;
+        }
     }
 
     /**
      * Initialize the database using Flyway migrations.
      * This method is idempotent - safe to call multiple times.
+     * If neither the bundled migrations nor the database's schema history changed since the last
+     * full run, Flyway's scan and checksum validation are skipped.
      */
-    public static void initializeDatabase() {
+    public static synchronized void initializeDatabase() {
         if (initialized) {
             return;
         }
 
+        String localFingerprint = SchemaFingerprint.local();
+        if (localFingerprint != null && isSchemaUnchanged(localFingerprint)) {
+            System.out.println("Database schema unchanged since last validation. Skipping Flyway.");
+            initialized = true;
+            return;
+        }
+
         try {
             System.out.println("Initializing database with Flyway...");
 
             // Configure Flyway
             Flyway flyway = Flyway.configure()
-                    .dataSource(DB_URL, DB_USER, DB_PASS)
+                    .dataSource(getPool())
                     .locations("classpath:db/migration")
                     .baselineOnMigrate(true) // Allow migrating an existing database
                     .validateOnMigrate(true)
+                    // Java migrations (package db.migration) are not seen by the Gradle codegen run, which
+                    // migrates the dev database from the SQL files only; apply them after later SQL ones
+                    .outOfOrder(true)
                     .load();
 
             // Run migrations
@@ -54,6 +155,17 @@ public class DatabaseManager {
                 System.out.println("Database is up to date. No migrations applied.");
             }
 
+            if (localFingerprint != null) {
+                try (Connection conn = getConnection()) {
+                    String dbFingerprint = SchemaFingerprint.database(conn);
+                    if (dbFingerprint != null) {
+                        SchemaFingerprint.writeCache(SchemaFingerprint.combine(localFingerprint, dbFingerprint));
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Could not record schema fingerprint: " + e.getMessage());
+                }
+            }
+
             initialized = true;
 
         } catch (FlywayException e) {
@@ -62,8 +174,22 @@ public class DatabaseManager {
         }
     }
 
+    private static boolean isSchemaUnchanged(String localFingerprint) {
+        String cached = SchemaFingerprint.readCache();
+        if (cached == null) {
+            return false;
+        }
+        try (Connection conn = getConnection()) {
+            String dbFingerprint = SchemaFingerprint.database(conn);
+            return dbFingerprint != null && cached.equals(SchemaFingerprint.combine(localFingerprint, dbFingerprint));
+        } catch (SQLException e) {
+            // Let Flyway surface the real connection problem
+            return false;
+        }
+    }
+
     /**
-     * Close a database connection.
+     * Close a database connection (returns pooled connections to the pool).
      */
     public static void closeConnection(Connection conn) {
         try {
@@ -0,0 +1,50 @@
+package com.bara.app.database;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs blocking database work on virtual threads, off the JavaFX Application Thread.
+ * Concurrency is still bounded by the connection pool; waiting virtual threads are cheap.
+ */
+public class DbExecutor {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private DbExecutor() {
+    }
+
+    /**
+     * Run a task asynchronously.
+     * Cancelling the returned future interrupts the virtual thread running the task.
+     */
+    public static <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = EXECUTOR.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run a task that has no result asynchronously.
+     */
+    public static CompletableFuture<Void> run(Runnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+}
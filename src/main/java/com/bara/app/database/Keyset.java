@@ -0,0 +1,68 @@
+package com.bara.app.database;
+
+import com.bara.app.model.Page;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.impl.DSL;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) pagination: instead of {@code OFFSET}, a page starts right after the sort key of the
+ * previous page's last row, e.g. {@code (first_name, id) > ('JUAN', 42)}. With an index on the same
+ * columns in the same direction, Postgres starts the index scan at that key and stops after one page.
+ *
+ * <p>The sort must end in a unique column (the id) so the key identifies one row, and all its columns
+ * must sort in the same direction and be NOT NULL, so a single row comparison matches the order.
+ */
+public final class Keyset {
+
+    private Keyset() {
+    }
+
+    /**
+     * Rows past the cursor, for a query ordered by {@code columns}. No condition for the first page.
+     *
+     * @param after Cursor from the previous page, or null for the first page
+     * @param descending True if every column is ordered descending
+     */
+    public static Condition after(Page.Cursor after, boolean descending, Field<?>... columns) {
+        if (after == null) {
+            return DSL.noCondition();
+        }
+        Object[] key = after.getKey();
+        if (key.length != columns.length) {
+            throw new IllegalArgumentException("Cursor " + after + " does not match " + columns.length + " sort columns");
+        }
+        Field<?>[] values = new Field<?>[key.length];
+        for (int i = 0; i < key.length; i++) {
+            values[i] = DSL.val(key[i], columns[i]);
+        }
+        return descending ? DSL.row(columns).lt(DSL.row(values)) : DSL.row(columns).gt(DSL.row(values));
+    }
+
+    /**
+     * Page of a query that fetched up to {@code limit + 1} rows: the extra row, if there, only tells that
+     * another page follows.
+     *
+     * @param keyOf Sort key of a row, in the order of the columns given to {@link #after}
+     */
+    public static <T> Page<T> page(List<T> fetched, int limit, Function<T, Object[]> keyOf) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new Page<>(items, new Page.Cursor(keyOf.apply(items.get(limit - 1))));
+    }
+
+    /**
+     * Rows to fetch for a page of {@code limit}.
+     */
+    public static int fetchSize(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + limit);
+        }
+        return limit + 1;
+    }
+}
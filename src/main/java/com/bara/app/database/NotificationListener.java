@@ -0,0 +1,146 @@
+package com.bara.app.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Receives PostgreSQL {@code NOTIFY} messages on one dedicated connection and dispatches them by channel.
+ *
+ * <p>Handlers run on the listener thread, in the order notifications arrive, so they must be quick.
+ * Notifications sent while the connection is down are lost; after every (re)connect each subscriber's
+ * resync callback runs so it can reload whatever it caches.
+ */
+public class NotificationListener {
+
+    private static final long POLL_MILLIS = 500;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private static NotificationListener instance;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Subscription> toListen = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * The application's listener, started on first use.
+     */
+    public static synchronized NotificationListener getInstance() {
+        if (instance == null) {
+            instance = new NotificationListener();
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.running = false;
+            instance.thread.interrupt();
+            instance = null;
+        }
+    }
+
+    private NotificationListener() {
+        // A platform thread: the driver blocks in socket reads while holding its own monitors
+        thread = new Thread(this::run, "bara-notify");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Listen on a channel.
+     *
+     * @param channel Channel name, as used in {@code pg_notify}
+     * @param onNotify Called with each notification's payload
+     * @param onResync Called after (re)connecting, when notifications may have been missed
+     */
+    public void subscribe(String channel, Consumer<String> onNotify, Runnable onResync) {
+        Subscription subscription = new Subscription(channel, onNotify, onResync);
+        subscriptions.add(subscription);
+        toListen.add(subscription);
+    }
+
+    private void run() {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        while (running) {
+            try (Connection conn = DatabaseManager.openDedicatedConnection()) {
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                toListen.clear();
+                for (Subscription subscription : subscriptions) {
+                    listen(conn, subscription);
+                }
+                backoff = INITIAL_BACKOFF_MILLIS;
+
+                while (running) {
+                    Subscription added;
+                    while ((added = toListen.poll()) != null) {
+                        listen(conn, added);
+                    }
+
+                    PGNotification[] notifications = pgConn.getNotifications((int) POLL_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("Notification listener disconnected, retrying in " + backoff + "ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void listen(Connection conn, Subscription subscription) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("LISTEN " + subscription.channel);
+        }
+        try {
+            subscription.onResync.run();
+        } catch (RuntimeException e) {
+            System.err.println("Resync failed for channel " + subscription.channel + ": " + e.getMessage());
+        }
+    }
+
+    private void dispatch(PGNotification notification) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.channel.equals(notification.getName())) {
+                try {
+                    subscription.onNotify.accept(notification.getParameter());
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling notification on " + subscription.channel + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class Subscription {
+        private final String channel;
+        private final Consumer<String> onNotify;
+        private final Runnable onResync;
+
+        private Subscription(String channel, Consumer<String> onNotify, Runnable onResync) {
+            this.channel = channel;
+            this.onNotify = onNotify;
+            this.onResync = onResync;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.bara.app.database;
+
+/**
+ * Settings for {@link ConnectionPool}.
+ * Every value can be overridden with a {@code bara.db.pool.*} system property.
+ */
+public class PoolConfig {
+
+    private int minSize = 2;
+    private int maxSize = 8;
+    private long acquireTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 10 * 60_000;
+    private long evictionIntervalMillis = 30_000;
+    private long validationIntervalMillis = 5_000;
+    private int validationTimeoutSeconds = 2;
+
+    /**
+     * Build a config from defaults plus any {@code bara.db.pool.*} system properties.
+     */
+    public static PoolConfig fromSystemProperties() {
+        PoolConfig config = new PoolConfig();
+        config.minSize = Integer.getInteger("bara.db.pool.minSize", config.minSize);
+        config.maxSize = Integer.getInteger("bara.db.pool.maxSize", config.maxSize);
+        config.acquireTimeoutMillis = Long.getLong("bara.db.pool.acquireTimeoutMillis", config.acquireTimeoutMillis);
+        config.idleTimeoutMillis = Long.getLong("bara.db.pool.idleTimeoutMillis", config.idleTimeoutMillis);
+        config.evictionIntervalMillis = Long.getLong("bara.db.pool.evictionIntervalMillis", config.evictionIntervalMillis);
+        config.validationIntervalMillis = Long.getLong("bara.db.pool.validationIntervalMillis", config.validationIntervalMillis);
+        config.validationTimeoutSeconds = Integer.getInteger("bara.db.pool.validationTimeoutSeconds", config.validationTimeoutSeconds);
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public PoolConfig setMinSize(int minSize) {
+        this.minSize = minSize;
+        validate();
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public PoolConfig setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        validate();
+        return this;
+    }
+
+    /**
+     * How long {@code getConnection()} waits for a free connection before failing.
+     */
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public PoolConfig setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Idle connections above {@code minSize} are closed after this long.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public PoolConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public PoolConfig setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Connections idle for longer than this are validated before being handed out.
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public PoolConfig setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+        return this;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public PoolConfig setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+}
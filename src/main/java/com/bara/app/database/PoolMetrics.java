@@ -0,0 +1,85 @@
+package com.bara.app.database;
+
+/**
+ * Snapshot of {@link ConnectionPool} statistics.
+ */
+public class PoolMetrics {
+
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiting;
+    private final long acquired;
+    private final long timeouts;
+    private final double meanWaitMillis;
+    private final double acquireP50Millis;
+    private final double acquireP95Millis;
+    private final double acquireP99Millis;
+
+    public PoolMetrics(int active, int idle, int total, int waiting, long acquired, long timeouts,
+                       double meanWaitMillis, double acquireP50Millis, double acquireP95Millis, double acquireP99Millis) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiting = waiting;
+        this.acquired = acquired;
+        this.timeouts = timeouts;
+        this.meanWaitMillis = meanWaitMillis;
+        this.acquireP50Millis = acquireP50Millis;
+        this.acquireP95Millis = acquireP95Millis;
+        this.acquireP99Millis = acquireP99Millis;
+    }
+
+    /** Connections currently borrowed. */
+    public int getActive() {
+        return active;
+    }
+
+    /** Open connections waiting in the pool. */
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /** Threads currently blocked waiting for a connection. */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /** Average time spent waiting for a free slot. */
+    public double getMeanWaitMillis() {
+        return meanWaitMillis;
+    }
+
+    /** Acquire latency percentiles, including validation and connection creation. */
+    public double getAcquireP50Millis() {
+        return acquireP50Millis;
+    }
+
+    public double getAcquireP95Millis() {
+        return acquireP95Millis;
+    }
+
+    public double getAcquireP99Millis() {
+        return acquireP99Millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d total=%d waiting=%d acquired=%d timeouts=%d "
+                        + "wait=%.2fms acquire p50=%.2fms p95=%.2fms p99=%.2fms",
+                active, idle, total, waiting, acquired, timeouts,
+                meanWaitMillis, acquireP50Millis, acquireP95Millis, acquireP99Millis);
+    }
+}
@@ -0,0 +1,134 @@
+package com.bara.app.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprints of the bundled migration set and of the database's {@code flyway_schema_history}.
+ * When both match the pair cached after the last full Flyway run, startup can skip the
+ * classpath scan and checksum validation entirely.
+ */
+public class SchemaFingerprint {
+
+    private static final String MIGRATION_DIR = "db/migration";
+    private static final Path CACHE_FILE = Paths.get(System.getProperty("user.home"), ".bara", "schema-fingerprint");
+
+    private SchemaFingerprint() {
+    }
+
+    /**
+     * Hash of the names and contents of every bundled migration script.
+     *
+     * @return Hex digest, or null if the migration directory cannot be read
+     */
+    public static String local() {
+        try {
+            URL url = SchemaFingerprint.class.getClassLoader().getResource(MIGRATION_DIR);
+            if (url == null) {
+                return null;
+            }
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                FileSystem fs;
+                try {
+                    fs = FileSystems.newFileSystem(uri, Collections.emptyMap());
+                } catch (FileSystemAlreadyExistsException e) {
+                    fs = FileSystems.getFileSystem(uri);
+                }
+                return hashDirectory(fs.getPath(MIGRATION_DIR));
+            }
+            return hashDirectory(Paths.get(uri));
+        } catch (IOException | URISyntaxException e) {
+            System.err.println("Could not fingerprint migrations: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String hashDirectory(Path dir) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(".sql")).forEach(scripts::add);
+        }
+        scripts.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+
+        MessageDigest digest = newDigest();
+        for (Path script : scripts) {
+            digest.update(script.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = Files.newInputStream(script)) {
+                digest.update(in.readAllBytes());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the successfully applied rows in {@code flyway_schema_history}.
+     *
+     * @return Hex digest, or null if the history table does not exist yet
+     */
+    public static String database(Connection conn) {
+        String sql = "SELECT version, checksum FROM flyway_schema_history WHERE success ORDER BY installed_rank";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            MessageDigest digest = newDigest();
+            while (rs.next()) {
+                digest.update((rs.getString(1) + ":" + rs.getString(2) + ";").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The fingerprint pair recorded after the last successful full migration, or null.
+     */
+    public static String readCache() {
+        try {
+            return Files.exists(CACHE_FILE) ? Files.readString(CACHE_FILE).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void writeCache(String fingerprint) {
+        try {
+            Files.createDirectories(CACHE_FILE.getParent());
+            Files.writeString(CACHE_FILE, fingerprint);
+        } catch (IOException e) {
+            System.err.println("Could not cache schema fingerprint: " + e.getMessage());
+        }
+    }
+
+    public static String combine(String local, String database) {
+        return local + ":" + database;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.bara.app.database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text normalization that matches the database, so keys computed here compare equal to the ones computed
+ * in SQL: {@link #unaccent(String)} is Postgres's {@code unaccent()}, {@link #forSearch(String)} is
+ * {@code upper(immutable_unaccent(...))} as in {@code customers.full_name_search}.
+ *
+ * <p>Replacements come from a copy of the {@code unaccent.rules} file Postgres uses, loaded once into a
+ * table of 256-code-point pages. Normalizing is one pass with a page lookup per non-ASCII code point; text
+ * that needs no change is returned as is. Upper-casing is ASCII only, like {@code upper()} in a
+ * {@code SQL_ASCII} database or under the C collation, so letters unaccent does not know (Greek, Cyrillic)
+ * are kept unchanged. The database must be one of those for {@link #forSearch(String)} to match it: under
+ * a UTF-8 collation {@code upper()} changes those letters too. {@code TextNormalizerParityTest} compares
+ * this class against a live database.
+ */
+public final class TextNormalizer {
+
+    private static final String RULES = "unaccent.rules";
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    // Replacement per code point, null where unaccent keeps the character
+    private static final String[][] PAGES = new String[(Character.MAX_CODE_POINT >>> PAGE_BITS) + 1][];
+    // The same with ASCII letters upper-cased, for forSearch
+    private static final String[][] UPPER_PAGES = new String[PAGES.length][];
+
+    static {
+        loadRules();
+    }
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * {@code unaccent(text)}: accents and ligatures replaced by plain letters, e.g. "Núñez" → "Nunez",
+     * "Æ" → "AE". Null stays null.
+     */
+    public static String unaccent(String text) {
+        return normalize(text, PAGES, false);
+    }
+
+    /**
+     * {@code upper(immutable_unaccent(text))}: the form of {@code customers.full_name_search}, e.g.
+     * "José Núñez" → "JOSE NUNEZ". Only ASCII letters are upper-cased (see the class comment). Null stays
+     * null.
+     */
+    public static String forSearch(String text) {
+        return normalize(text, UPPER_PAGES, true);
+    }
+
+    /**
+     * Key under which two spellings of the same address compare equal: each part normalized
+     * {@link #forSearch(String) for search}, runs of anything but letters and digits collapsed to one
+     * space, and the parts joined with {@code |}. Null parts count as empty.
+     */
+    public static String addressKey(String... parts) {
+        StringBuilder key = new StringBuilder();
+        for (int p = 0; p < parts.length; p++) {
+            if (p > 0) {
+                key.append('|');
+            }
+            String part = forSearch(parts[p]);
+            if (part == null) {
+                continue;
+            }
+            boolean gap = false;
+            int start = key.length();
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || (c >= 0x80 && Character.isLetterOrDigit(c))) {
+                    if (gap && key.length() > start) {
+                        key.append(' ');
+                    }
+                    key.append(c);
+                    gap = false;
+                } else {
+                    gap = true;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    private static String normalize(String text, String[][] pages, boolean upper) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || (upper && c >= 'a' && c <= 'z')) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(length + 8);
+        out.append(text, 0, i);
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.append(upper && c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c);
+                i++;
+                continue;
+            }
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            String[] page = pages[codePoint >>> PAGE_BITS];
+            String replacement = page != null ? page[codePoint & PAGE_MASK] : null;
+            if (replacement != null) {
+                out.append(replacement);
+            } else {
+                out.appendCodePoint(codePoint);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Parse the rules as Postgres does: a source character, whitespace, then an optional target (empty if
+     * missing, which deletes the source; double quotes allow quoting, with "" for a quote).
+     */
+    private static void loadRules() {
+        try (InputStream in = TextNormalizer.class.getResourceAsStream(RULES)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + RULES);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+", 2);
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                int source = fields[0].codePointAt(0);
+                String target = fields.length > 1 ? unquote(fields[1].split("\\s+")[0]) : "";
+                put(PAGES, source, target);
+                put(UPPER_PAGES, source, asciiUpper(target));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load " + RULES, e);
+        }
+    }
+
+    private static void put(String[][] pages, int codePoint, String replacement) {
+        int page = codePoint >>> PAGE_BITS;
+        if (pages[page] == null) {
+            pages[page] = new String[PAGE_MASK + 1];
+        }
+        pages[page][codePoint & PAGE_MASK] = replacement;
+    }
+
+    private static String unquote(String target) {
+        if (target.length() >= 2 && target.startsWith("\"") && target.endsWith("\"")) {
+            return target.substring(1, target.length() - 1).replace("\"\"", "\"");
+        }
+        return target;
+    }
+
+    private static String asciiUpper(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            out.append(c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c);
+        }
+        return out.toString();
+    }
+}
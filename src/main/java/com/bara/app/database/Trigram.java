@@ -0,0 +1,44 @@
+package com.bara.app.database;
+
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.impl.DSL;
+
+/**
+ * Typo-tolerant matching with pg_trgm (see V16). Both the condition and the score are case-insensitive,
+ * and the condition can be answered from a GIN {@code gin_trgm_ops} index on the same column expression.
+ */
+public final class Trigram {
+
+    private Trigram() {
+    }
+
+    /**
+     * The column contains the term, or some run of its words is close to it by trigram similarity
+     * (at least {@code pg_trgm.word_similarity_threshold}, 0.6 by default).
+     */
+    public static Condition matches(Field<String> column, String term) {
+        return matches(column, DSL.val(term));
+    }
+
+    /**
+     * {@link #matches(Field, String)} for a term computed in SQL, e.g. unaccented like the indexed column.
+     */
+    public static Condition matches(Field<String> column, Field<String> term) {
+        return column.containsIgnoreCase(term)
+                .or(DSL.condition("{0} <% {1}", term, column));
+    }
+
+    /**
+     * How well the column matches the term, from 0 to 1: 1 when it contains the term, otherwise the
+     * word similarity. Meant for ordering the rows selected by {@link #matches(Field, String)}.
+     */
+    public static Field<Float> score(Field<String> column, String term) {
+        return score(column, DSL.val(term));
+    }
+
+    public static Field<Float> score(Field<String> column, Field<String> term) {
+        return DSL.when(column.containsIgnoreCase(term), DSL.inline(1f))
+                .otherwise(DSL.field("word_similarity({0}, {1})", Float.class, term, column));
+    }
+}
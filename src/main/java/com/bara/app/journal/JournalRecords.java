@@ -0,0 +1,151 @@
+package com.bara.app.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Record framing shared by the journals: {@code [int length][int crc32][byte type][payload]}, where the CRC
+ * covers the type and payload. A reader stops at the first record that is cut short or fails its CRC, so
+ * a crash mid-write only loses the torn tail.
+ */
+final class JournalRecords {
+
+    static final int HEADER_BYTES = 9; // length + crc32 + type
+    /**
+     * Largest payload written; a longer length read back is taken as corruption.
+     */
+    static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private JournalRecords() {
+    }
+
+    /**
+     * The framed record, header included.
+     */
+    static byte[] encode(byte type, byte[] payload) {
+        if (payload.length > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes is too large");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(type);
+        record.put(payload);
+        return record.array();
+    }
+
+    /**
+     * Reads records from the start of a file through a buffer holding a few records at a time, so a log
+     * of any size is read in bounded memory.
+     */
+    static final class Reader {
+        private static final int BUFFER_BYTES = 64 * 1024;
+
+        private final FileChannel channel;
+        private final long limit;
+        private final boolean zeroLengthEnds;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long bufferStart = 0; // File offset of buffer[0]; the buffer holds [bufferStart, + limit)
+        private long position = 0;
+        private boolean torn = false;
+        private byte type;
+        private byte[] payload;
+
+        /**
+         * @param limit Bytes of the file that may hold records
+         * @param zeroLengthEnds Whether a zero length marks the end of the log (as in a preallocated file),
+         *                       rather than a record with an empty payload
+         */
+        Reader(FileChannel channel, long limit, boolean zeroLengthEnds) {
+            this.channel = channel;
+            this.limit = limit;
+            this.zeroLengthEnds = zeroLengthEnds;
+            buffer.limit(0);
+        }
+
+        /**
+         * Advance to the next record.
+         *
+         * @return false at the end of the log, or at a torn or corrupt record
+         */
+        boolean next() throws IOException {
+            if (torn || !fill(HEADER_BYTES)) {
+                torn = torn || position < limit;
+                return false;
+            }
+            int at = (int) (position - bufferStart);
+            int length = buffer.getInt(at);
+            if (length == 0 && zeroLengthEnds) {
+                return false;
+            }
+            if (length < 0 || length > MAX_PAYLOAD_BYTES || !fill(HEADER_BYTES + length)) {
+                torn = true;
+                return false;
+            }
+            at = (int) (position - bufferStart);
+            crc.reset();
+            crc.update(buffer.array(), at + 8, length + 1);
+            if ((int) crc.getValue() != buffer.getInt(at + 4)) {
+                torn = true;
+                return false;
+            }
+            type = buffer.get(at + 8);
+            payload = new byte[length];
+            buffer.get(at + HEADER_BYTES, payload);
+            position += HEADER_BYTES + length;
+            return true;
+        }
+
+        byte type() {
+            return type;
+        }
+
+        byte[] payload() {
+            return payload;
+        }
+
+        /**
+         * Offset just past the last good record: where the next record is to be written.
+         */
+        long position() {
+            return position;
+        }
+
+        /**
+         * Whether reading stopped at a record cut short or failing its CRC, rather than at the end.
+         */
+        boolean isTorn() {
+            return torn;
+        }
+
+        // Make [position, position + bytes) available in the buffer; false if the file ends first
+        private boolean fill(int bytes) throws IOException {
+            if (position + bytes > limit) {
+                return false;
+            }
+            if (position + bytes <= bufferStart + buffer.limit()) {
+                return true;
+            }
+            if (bytes > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+            }
+            bufferStart = position;
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return bytes <= buffer.limit();
+        }
+    }
+}
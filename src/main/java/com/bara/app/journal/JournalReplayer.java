@@ -0,0 +1,126 @@
+package com.bara.app.journal;
+
+import com.bara.app.service.OrderCheckoutService;
+import com.bara.app.service.PlacedOrder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drains the {@link OrderJournal} into the database on a background virtual thread.
+ * Each order is persisted idempotently by client UUID, then marked replicated; failures are
+ * retried per order with exponential backoff so one bad order never blocks the rest.
+ */
+public class JournalReplayer {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long IDLE_POLL_MILLIS = 1_000;
+
+    private final OrderJournal journal;
+    private final OrderCheckoutService checkoutService;
+    private final Map<UUID, Retry> retries = new HashMap<>();
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public JournalReplayer(OrderJournal journal, OrderCheckoutService checkoutService) {
+        this.journal = journal;
+        this.checkoutService = checkoutService;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofVirtual().name("bara-journal-replayer").start(this::run);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (!journal.awaitPending(IDLE_POLL_MILLIS)) {
+                    journal.compactIfNeeded();
+                    continue;
+                }
+
+                long nextRetryAt = Long.MAX_VALUE;
+                for (PlacedOrder draft : journal.pendingOrders()) {
+                    if (!running) {
+                        return;
+                    }
+                    UUID clientUuid = draft.getOrder().getClientUuid();
+                    Retry retry = retries.get(clientUuid);
+                    long now = System.currentTimeMillis();
+                    if (retry != null && retry.notBefore > now) {
+                        nextRetryAt = Math.min(nextRetryAt, retry.notBefore);
+                        continue;
+                    }
+                    if (replay(draft, retry)) {
+                        retries.remove(clientUuid);
+                    } else {
+                        nextRetryAt = Math.min(nextRetryAt, retries.get(clientUuid).notBefore);
+                    }
+                }
+
+                if (nextRetryAt != Long.MAX_VALUE) {
+                    Thread.sleep(Math.max(0, nextRetryAt - System.currentTimeMillis()));
+                } else {
+                    journal.compactIfNeeded();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Order journal error: " + e.getMessage());
+                sleepQuietly(INITIAL_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * @return true if the order is now in the database
+     */
+    private boolean replay(PlacedOrder draft, Retry previous) throws IOException {
+        UUID clientUuid = draft.getOrder().getClientUuid();
+        try {
+            checkoutService.persist(draft);
+        } catch (Exception e) {
+            long backoff = previous == null ? INITIAL_BACKOFF_MILLIS : Math.min(previous.backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            retries.put(clientUuid, new Retry(backoff, System.currentTimeMillis() + backoff));
+            System.err.println("Could not replicate order " + clientUuid + ", retrying in " + backoff + "ms: " + e.getMessage());
+            return false;
+        }
+        journal.markReplicated(clientUuid);
+        return true;
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static final class Retry {
+        private final long backoffMillis;
+        private final long notBefore;
+
+        private Retry(long backoffMillis, long notBefore) {
+            this.backoffMillis = backoffMillis;
+            this.notBefore = notBefore;
+        }
+    }
+}
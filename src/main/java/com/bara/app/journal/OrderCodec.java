@@ -0,0 +1,130 @@
+package com.bara.app.journal;
+
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.service.PlacedOrder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of a not-yet-persisted order for the journal.
+ * Only the fields the POS sets at checkout are journaled.
+ */
+class OrderCodec {
+
+    /** Version 1 stored money as REAL dollars; version 2 stores long cents. */
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte FORMAT_VERSION_FLOAT_MONEY = 1;
+
+    private OrderCodec() {
+    }
+
+    static byte[] encode(PlacedOrder draft) throws IOException {
+        Orders order = draft.getOrder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(order.getClientUuid().getMostSignificantBits());
+        out.writeLong(order.getClientUuid().getLeastSignificantBits());
+        out.writeLong(order.getOrderedAt().toInstant().toEpochMilli());
+        writeNullableInt(out, order.getCustomerId());
+        writeNullableInt(out, order.getClusterId());
+        writeNullableString(out, order.getOrderType());
+        writeNullableString(out, order.getOrderName());
+        writeNullableString(out, order.getTableNumber());
+        writeNullableString(out, order.getStatus());
+        writeNullableString(out, order.getCustomerNotes());
+        out.writeLong(order.getSubtotalCents());
+        out.writeLong(order.getTaxCents() != null ? order.getTaxCents() : 0L);
+        out.writeLong(order.getDeliveryFeeCents() != null ? order.getDeliveryFeeCents() : 0L);
+        out.writeLong(order.getTotalCents());
+
+        out.writeInt(draft.getItems().size());
+        for (OrderItems item : draft.getItems()) {
+            out.writeInt(item.getMenuItemId());
+            out.writeUTF(item.getItemName());
+            out.writeLong(item.getItemPriceCents());
+            out.writeInt(item.getQuantity());
+            writeNullableString(out, item.getNotes());
+            out.writeLong(item.getLineTotalCents());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static PlacedOrder decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_FLOAT_MONEY) {
+            throw new IOException("Unsupported journal record version " + version);
+        }
+        Orders order = new Orders()
+                .setClientUuid(new UUID(in.readLong(), in.readLong()))
+                .setOrderedAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneId.systemDefault()))
+                .setCustomerId(readNullableInt(in))
+                .setClusterId(readNullableInt(in))
+                .setOrderType(readNullableString(in))
+                .setOrderName(readNullableString(in))
+                .setTableNumber(readNullableString(in))
+                .setStatus(readNullableString(in))
+                .setCustomerNotes(readNullableString(in))
+                .setSubtotalCents(readMoney(in, version))
+                .setTaxCents(readMoney(in, version))
+                .setDeliveryFeeCents(readMoney(in, version))
+                .setTotalCents(readMoney(in, version));
+
+        int count = in.readInt();
+        List<OrderItems> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new OrderItems()
+                    .setMenuItemId(in.readInt())
+                    .setItemName(in.readUTF())
+                    .setItemPriceCents(readMoney(in, version))
+                    .setQuantity(in.readInt())
+                    .setNotes(readNullableString(in))
+                    .setLineTotalCents(readMoney(in, version)));
+        }
+        return new PlacedOrder(order, items);
+    }
+
+    /**
+     * Orders journaled before the switch to cents are converted the same way the V11 migration converts rows.
+     */
+    private static long readMoney(DataInputStream in, byte version) throws IOException {
+        return version == FORMAT_VERSION_FLOAT_MONEY ? Math.round(in.readFloat() * 100.0d) : in.readLong();
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
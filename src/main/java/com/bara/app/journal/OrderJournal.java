@@ -0,0 +1,391 @@
+package com.bara.app.journal;
+
+import com.bara.app.service.PlacedOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable, memory-mapped, append-only journal of confirmed orders.
+ *
+ * <p>Records use the {@link JournalRecords} framing ({@code [int length][int crc32][byte type][payload]},
+ * the CRC covering the type and payload), and a zero length marks the end of the log. ORDER records carry a journaled order;
+ * REPLICATED records mark an order as stored in PostgreSQL. On open the log is scanned up to the first
+ * missing or corrupt record, so a crash mid-write only loses the torn tail.
+ *
+ * <p>Appends return a future that completes once the record is fsynced. A single flusher thread forces
+ * the mapping, so appends arriving within the batch window share one fsync.
+ */
+public class OrderJournal implements AutoCloseable {
+
+    private static final byte TYPE_ORDER = 1;
+    private static final byte TYPE_REPLICATED = 2;
+    private static final int INITIAL_CAPACITY = 4 * 1024 * 1024;
+    private static final Path DEFAULT_PATH = Paths.get(System.getProperty("user.home"), ".bara", "journal", "orders.journal");
+
+    private static OrderJournal instance;
+
+    private final Path path;
+    private final long fsyncBatchMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition unflushed = lock.newCondition();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final LinkedHashMap<UUID, PlacedOrder> pending = new LinkedHashMap<>();
+    private final ArrayDeque<DurabilityWaiter> waiters = new ArrayDeque<>();
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int durablePosition;
+    private volatile boolean closed = false;
+
+    /**
+     * The application's journal under {@code ~/.bara/journal}, opened and recovered on first use.
+     */
+    public static synchronized OrderJournal getInstance() throws IOException {
+        if (instance == null) {
+            instance = new OrderJournal(DEFAULT_PATH, Long.getLong("bara.journal.fsyncBatchMillis", 2L));
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * @param path Journal file, created if missing
+     * @param fsyncBatchMillis How long the flusher waits for more appends before forcing to disk
+     */
+    public OrderJournal(Path path, long fsyncBatchMillis) throws IOException {
+        this.path = path;
+        this.fsyncBatchMillis = fsyncBatchMillis;
+        Files.createDirectories(path.getParent());
+        open();
+
+        this.flusher = new Thread(this::flushLoop, "bara-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), INITIAL_CAPACITY);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        recover();
+    }
+
+    /**
+     * Rebuild the set of unreplicated orders by scanning the log.
+     */
+    private void recover() throws IOException {
+        pending.clear();
+        JournalRecords.Reader records = new JournalRecords.Reader(channel, buffer.capacity(), true);
+        while (records.next()) {
+            if (records.type() == TYPE_ORDER) {
+                PlacedOrder draft = OrderCodec.decode(records.payload());
+                pending.put(draft.getOrder().getClientUuid(), draft);
+            } else if (records.type() == TYPE_REPLICATED) {
+                pending.remove(uuidFrom(records.payload()));
+            }
+        }
+
+        // Within the mapping, so within an int
+        int position = (int) records.position();
+        if (records.isTorn()) {
+            System.err.println("Order journal: discarding torn tail at offset " + position);
+            zero(position, buffer.capacity());
+            buffer.force();
+        }
+        writePosition = position;
+        durablePosition = position;
+        if (!pending.isEmpty()) {
+            System.out.println("Order journal: " + pending.size() + " order(s) awaiting replication.");
+        }
+    }
+
+    /**
+     * Journal a confirmed order.
+     *
+     * @return Future completing once the record is on disk
+     */
+    public CompletableFuture<Void> append(PlacedOrder draft) throws IOException {
+        byte[] payload = OrderCodec.encode(draft);
+        lock.lock();
+        try {
+            ensureOpen();
+            int end = writeRecord(TYPE_ORDER, payload);
+            pending.put(draft.getOrder().getClientUuid(), draft);
+
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            waiters.addLast(new DurabilityWaiter(end, durable));
+            unflushed.signal();
+            pendingAvailable.signalAll();
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record that an order is now stored in the database.
+     * Not awaited: if the marker is lost in a crash, the replay is simply repeated, idempotently.
+     */
+    public void markReplicated(UUID clientUuid) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            if (pending.remove(clientUuid) != null) {
+                writeRecord(TYPE_REPLICATED, uuidBytes(clientUuid));
+                unflushed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Snapshot of journaled orders not yet replicated, oldest first.
+     */
+    public List<PlacedOrder> pendingOrders() {
+        lock.lock();
+        try {
+            return new ArrayList<>(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until at least one order is pending or the timeout elapses.
+     *
+     * @return true if there are pending orders
+     */
+    public boolean awaitPending(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                pendingAvailable.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            return !pending.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop replicated entries. When everything is replicated the log is simply zeroed in place;
+     * otherwise the pending orders are rewritten to a new file that atomically replaces the old one.
+     */
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            forceLocked();
+            if (writePosition == 0) {
+                return;
+            }
+
+            if (pending.isEmpty()) {
+                zero(0, writePosition);
+                buffer.force();
+                writePosition = 0;
+                durablePosition = 0;
+                return;
+            }
+
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (PlacedOrder draft : pending.values()) {
+                    out.write(ByteBuffer.wrap(JournalRecords.encode(TYPE_ORDER, OrderCodec.encode(draft))));
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compact once everything is replicated, or when the log has grown past half its mapping.
+     */
+    public void compactIfNeeded() throws IOException {
+        lock.lock();
+        try {
+            boolean drained = pending.isEmpty() && writePosition > 0;
+            boolean large = writePosition > buffer.capacity() / 2;
+            if (drained || large) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            forceLocked();
+            unflushed.signalAll();
+            pendingAvailable.signalAll();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing order journal: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        flusher.interrupt();
+    }
+
+    // --- Internals (callers hold the lock) ---
+
+    private int writeRecord(byte type, byte[] payload) throws IOException {
+        byte[] record = JournalRecords.encode(type, payload);
+        // Leave room for the zero length that terminates the log
+        ensureCapacity(writePosition + record.length + 4);
+        // Write the body before the length so a torn write never looks like a complete record
+        buffer.put(writePosition + 4, record, 4, record.length - 4);
+        buffer.put(writePosition, record, 0, 4);
+        writePosition += record.length;
+        return writePosition;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long newSize = Math.max((long) buffer.capacity() * 2, required);
+        if (newSize > Integer.MAX_VALUE) {
+            throw new IOException("Order journal is full; replication is not keeping up");
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            lock.lock();
+            try {
+                while (!closed && durablePosition == writePosition && waiters.isEmpty()) {
+                    unflushed.await();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                // Let concurrent appends join this fsync
+                if (fsyncBatchMillis > 0) {
+                    Thread.sleep(fsyncBatchMillis);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            lock.lock();
+            try {
+                if (!closed) {
+                    forceLocked();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void forceLocked() {
+        int target = writePosition;
+        try {
+            if (target > durablePosition) {
+                buffer.force(durablePosition, target - durablePosition);
+            }
+            durablePosition = target;
+            while (!waiters.isEmpty() && waiters.peekFirst().position <= target) {
+                waiters.pollFirst().future.complete(null);
+            }
+        } catch (UncheckedIOException e) {
+            while (!waiters.isEmpty()) {
+                waiters.pollFirst().future.completeExceptionally(e.getCause());
+            }
+        }
+    }
+
+    private void zero(int from, int to) {
+        int position = from;
+        for (; position + 8 <= to; position += 8) {
+            buffer.putLong(position, 0L);
+        }
+        for (; position < to; position++) {
+            buffer.put(position, (byte) 0);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Order journal is closed");
+        }
+    }
+
+    private static byte[] uuidBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID uuidFrom(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return new UUID(buf.getLong(), buf.getLong());
+    }
+
+    private static final class DurabilityWaiter {
+        private final int position;
+        private final CompletableFuture<Void> future;
+
+        private DurabilityWaiter(int position, CompletableFuture<Void> future) {
+            this.position = position;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.bara.app.journal;
+
+import com.bara.app.model.MenuItem;
+import com.bara.app.model.OrderTicket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operation log of the open ticket, so a crash or restart does not lose an order being rung up.
+ *
+ * <p>Records use the {@link JournalRecords} framing shared with {@link OrderJournal}, in a plain append-only
+ * file: APPLIED carries a group of edits, UNDONE and REDONE mark history moves. The file is
+ * truncated whenever the ticket is reset, so it only ever holds the current ticket. Writes are not fsynced:
+ * they survive the process dying, which is the failure that matters for a ticket still on screen.
+ */
+public class TicketLog implements OrderTicket.Log, AutoCloseable {
+
+    private static final byte TYPE_APPLIED = 1;
+    private static final byte TYPE_UNDONE = 2;
+    private static final byte TYPE_REDONE = 3;
+    private static final Path DEFAULT_PATH = Paths.get(System.getProperty("user.home"), ".bara", "journal", "ticket.log");
+
+    private static TicketLog instance;
+
+    private final FileChannel channel;
+
+    /**
+     * The application's ticket log under {@code ~/.bara/journal}.
+     */
+    public static synchronized TicketLog getInstance() throws IOException {
+        if (instance == null) {
+            instance = new TicketLog(DEFAULT_PATH);
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    public TicketLog(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Rebuild the logged ticket into {@code ticket}, which must be empty and not yet logging.
+     * A torn or corrupt tail is dropped.
+     *
+     * @return Number of operations replayed
+     */
+    public synchronized int replayInto(OrderTicket ticket) throws IOException {
+        long size = channel.size();
+        JournalRecords.Reader records = new JournalRecords.Reader(channel, size, false);
+        int operations = 0;
+        while (records.next()) {
+            if (records.type() == TYPE_APPLIED) {
+                ticket.apply(decodeEdits(records.payload()));
+            } else if (records.type() == TYPE_UNDONE) {
+                ticket.undo();
+            } else if (records.type() == TYPE_REDONE) {
+                ticket.redo();
+            }
+            operations++;
+        }
+
+        long position = records.position();
+        if (position < size) {
+            System.err.println("Ticket log: discarding torn tail at offset " + position);
+            channel.truncate(position);
+        }
+        channel.position(position);
+        return operations;
+    }
+
+    @Override
+    public void applied(List<OrderTicket.Edit> edits) {
+        try {
+            write(TYPE_APPLIED, encodeEdits(edits));
+        } catch (IOException e) {
+            System.err.println("Ticket log: could not record edit: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void undone() {
+        write(TYPE_UNDONE);
+    }
+
+    @Override
+    public void redone() {
+        write(TYPE_REDONE);
+    }
+
+    @Override
+    public synchronized void reset() {
+        try {
+            channel.truncate(0);
+            channel.position(0);
+        } catch (IOException e) {
+            System.err.println("Ticket log: could not reset: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing ticket log: " + e.getMessage());
+        }
+    }
+
+    private void write(byte type) {
+        try {
+            write(type, new byte[0]);
+        } catch (IOException e) {
+            System.err.println("Ticket log: could not record history move: " + e.getMessage());
+        }
+    }
+
+    private synchronized void write(byte type, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(JournalRecords.encode(type, payload));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    // Menu items are logged whole so a ticket recovers at the prices it was rung up with
+
+    private static byte[] encodeEdits(List<OrderTicket.Edit> edits) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * edits.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(edits.size());
+        for (OrderTicket.Edit edit : edits) {
+            MenuItem item = edit.getMenuItem();
+            out.writeInt(item.getId());
+            out.writeUTF(item.getName());
+            out.writeLong(item.getPriceCents());
+            out.writeBoolean(item.getDescription() != null);
+            if (item.getDescription() != null) {
+                out.writeUTF(item.getDescription());
+            }
+            out.writeBoolean(item.isAvailable());
+            out.writeUTF(edit.getNotes());
+            out.writeInt(edit.getBefore());
+            out.writeInt(edit.getAfter());
+            out.writeInt(edit.getIndex());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<OrderTicket.Edit> decodeEdits(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readInt();
+        List<OrderTicket.Edit> edits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            String name = in.readUTF();
+            long priceCents = in.readLong();
+            String description = in.readBoolean() ? in.readUTF() : null;
+            MenuItem item = new MenuItem(id, name, priceCents, description, in.readBoolean());
+            edits.add(new OrderTicket.Edit(item, in.readUTF(), in.readInt(), in.readInt(), in.readInt()));
+        }
+        return edits;
+    }
+}
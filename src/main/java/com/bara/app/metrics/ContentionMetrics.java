@@ -0,0 +1,55 @@
+package com.bara.app.metrics;
+
+/**
+ * Snapshot of {@link ContentionStats} for one table.
+ */
+public class ContentionMetrics {
+
+    private final String table;
+    private final long writes;
+    private final long conflicts;
+    private final long retries;
+    private final long giveUps;
+
+    public ContentionMetrics(String table, long writes, long conflicts, long retries, long giveUps) {
+        this.table = table;
+        this.writes = writes;
+        this.conflicts = conflicts;
+        this.retries = retries;
+        this.giveUps = giveUps;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /** Versioned writes attempted, including retries. */
+    public long getWrites() {
+        return writes;
+    }
+
+    /** Writes that found the row already changed. */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /** Edits that were still conflicting after the last attempt. */
+    public long getGiveUps() {
+        return giveUps;
+    }
+
+    /** Share of writes that conflicted, between 0 and 1. */
+    public double getConflictRate() {
+        return writes == 0 ? 0.0 : conflicts / (double) writes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: writes=%d conflicts=%d (%.1f%%) retries=%d giveUps=%d",
+                table, writes, conflicts, getConflictRate() * 100.0, retries, giveUps);
+    }
+}
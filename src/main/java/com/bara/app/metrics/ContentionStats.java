@@ -0,0 +1,68 @@
+package com.bara.app.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters of optimistic writes per table: how many were attempted, how many found the row
+ * already changed by another terminal, how many were retried and how many gave up.
+ * Recording is a lock-free add, so it is safe on every write path.
+ */
+public final class ContentionStats {
+
+    private static final Map<String, Counters> COUNTERS = new ConcurrentHashMap<>();
+
+    private ContentionStats() {
+    }
+
+    public static void recordWrite(String table) {
+        counters(table).writes.increment();
+    }
+
+    public static void recordConflict(String table) {
+        counters(table).conflicts.increment();
+    }
+
+    public static void recordRetry(String table) {
+        counters(table).retries.increment();
+    }
+
+    public static void recordGiveUp(String table) {
+        counters(table).giveUps.increment();
+    }
+
+    /**
+     * Current counts for one table.
+     */
+    public static ContentionMetrics snapshot(String table) {
+        Counters c = COUNTERS.get(table);
+        if (c == null) {
+            return new ContentionMetrics(table, 0, 0, 0, 0);
+        }
+        return new ContentionMetrics(table, c.writes.sum(), c.conflicts.sum(), c.retries.sum(), c.giveUps.sum());
+    }
+
+    /**
+     * Current counts for every table written so far, by name.
+     */
+    public static Map<String, ContentionMetrics> snapshotAll() {
+        Map<String, ContentionMetrics> all = new TreeMap<>();
+        for (String table : COUNTERS.keySet()) {
+            all.put(table, snapshot(table));
+        }
+        return all;
+    }
+
+    private static Counters counters(String table) {
+        return COUNTERS.computeIfAbsent(table, name -> new Counters());
+    }
+
+    private static final class Counters {
+        final LongAdder writes = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder giveUps = new LongAdder();
+    }
+}
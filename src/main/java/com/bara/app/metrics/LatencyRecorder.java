@@ -0,0 +1,83 @@
+package com.bara.app.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of latency samples (nanoseconds) with percentile snapshots.
+ * Recording is O(1) and allocation-free; only {@link #percentile(double)} copies the window.
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    public LatencyRecorder(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        this.samples = new long[windowSize];
+    }
+
+    /**
+     * Record one sample, in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        samples[(int) (count % samples.length)] = nanos;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} reading.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Percentile over the most recent window, in nanoseconds.
+     *
+     * @param p Percentile between 0 and 100
+     * @return Sample at that percentile, or 0 if nothing was recorded yet
+     */
+    public synchronized long percentile(double p) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] window = Arrays.copyOf(samples, size);
+        Arrays.sort(window);
+        int index = (int) Math.ceil(p / 100.0 * size) - 1;
+        return window[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0.0 : totalNanos / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary in milliseconds, for console logging.
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                getCount(), getMeanMillis(),
+                percentile(50) / 1e6, percentile(95) / 1e6, percentile(99) / 1e6, getMaxNanos() / 1e6);
+    }
+}
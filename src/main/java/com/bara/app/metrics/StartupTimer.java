@@ -0,0 +1,71 @@
+package com.bara.app.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each startup phase takes, plus time-to-first-order.
+ * Phases are marked in order from whichever thread finishes them.
+ */
+public class StartupTimer {
+
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static long startNanos = System.nanoTime();
+    private static long lastMarkNanos = startNanos;
+    private static long jvmBootMillis = 0;
+    private static boolean firstOrderRecorded = false;
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Start timing. Called once, as early as possible in application startup.
+     */
+    public static synchronized void begin() {
+        jvmBootMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        startNanos = System.nanoTime();
+        lastMarkNanos = startNanos;
+        phases.clear();
+        firstOrderRecorded = false;
+    }
+
+    /**
+     * Close the current phase under the given name.
+     */
+    public static synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.put(phase, (now - lastMarkNanos) / 1_000_000);
+        lastMarkNanos = now;
+    }
+
+    /**
+     * Milliseconds since {@link #begin()}.
+     */
+    public static synchronized long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Print the phase breakdown, e.g. once the POS is ready for input.
+     */
+    public static synchronized void report() {
+        StringBuilder line = new StringBuilder("Startup: jvm=").append(jvmBootMillis).append("ms");
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            line.append(' ').append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+        }
+        line.append(" total=").append(elapsedMillis()).append("ms");
+        System.out.println(line);
+    }
+
+    /**
+     * Record time-to-first-order. Only the first call after startup is reported.
+     */
+    public static synchronized void markFirstOrder() {
+        if (firstOrderRecorded) {
+            return;
+        }
+        firstOrderRecorded = true;
+        System.out.println("Time to first order: " + (jvmBootMillis + elapsedMillis()) + "ms since JVM start");
+    }
+}
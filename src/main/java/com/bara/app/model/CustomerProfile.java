@@ -0,0 +1,66 @@
+package com.bara.app.model;
+
+import java.util.List;
+
+/**
+ * The behavioral profile columns of a customer, as derived from their orders.
+ */
+public final class CustomerProfile {
+
+    private final int customerId;
+    private final Integer typicalPartySize;
+    private final List<String> favoriteItems;
+    private final List<String> typicalVisitDays;
+    private final List<String> typicalVisitTimes;
+    private final Long avgTicketCents;
+    private final long lifetimeValueCents;
+    private final Float visitFrequencyDays;
+
+    public CustomerProfile(int customerId, Integer typicalPartySize, List<String> favoriteItems,
+                           List<String> typicalVisitDays, List<String> typicalVisitTimes,
+                           Long avgTicketCents, long lifetimeValueCents, Float visitFrequencyDays) {
+        this.customerId = customerId;
+        this.typicalPartySize = typicalPartySize;
+        this.favoriteItems = favoriteItems;
+        this.typicalVisitDays = typicalVisitDays;
+        this.typicalVisitTimes = typicalVisitTimes;
+        this.avgTicketCents = avgTicketCents;
+        this.lifetimeValueCents = lifetimeValueCents;
+        this.visitFrequencyDays = visitFrequencyDays;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public Integer getTypicalPartySize() {
+        return typicalPartySize;
+    }
+
+    public List<String> getFavoriteItems() {
+        return favoriteItems;
+    }
+
+    public List<String> getTypicalVisitDays() {
+        return typicalVisitDays;
+    }
+
+    public List<String> getTypicalVisitTimes() {
+        return typicalVisitTimes;
+    }
+
+    public Long getAvgTicketCents() {
+        return avgTicketCents;
+    }
+
+    public long getLifetimeValueCents() {
+        return lifetimeValueCents;
+    }
+
+    /**
+     * Smoothed days between visits, or null before a second visit.
+     */
+    public Float getVisitFrequencyDays() {
+        return visitFrequencyDays;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bara.app.model;
+
+/**
+ * Two customers that are probably the same person, with the evidence. The customer registered first
+ * (lower id) is suggested as the master to merge the other into.
+ */
+public final class DuplicateCandidate {
+
+    private final int masterId;
+    private final int duplicateId;
+    private final float score;
+    private final float nameSimilarity;
+    private final boolean samePhone;
+    private final boolean sameAddress;
+
+    public DuplicateCandidate(int masterId, int duplicateId, float score, float nameSimilarity,
+                              boolean samePhone, boolean sameAddress) {
+        this.masterId = masterId;
+        this.duplicateId = duplicateId;
+        this.score = score;
+        this.nameSimilarity = nameSimilarity;
+        this.samePhone = samePhone;
+        this.sameAddress = sameAddress;
+    }
+
+    public int getMasterId() {
+        return masterId;
+    }
+
+    public int getDuplicateId() {
+        return duplicateId;
+    }
+
+    /**
+     * How likely the two are the same person, from 0 to 1.
+     */
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * Jaccard similarity of the names' trigrams, from 0 to 1.
+     */
+    public float getNameSimilarity() {
+        return nameSimilarity;
+    }
+
+    /**
+     * Both have a phone with the same local number (last 7 digits).
+     */
+    public boolean isSamePhone() {
+        return samePhone;
+    }
+
+    /**
+     * Both have an address with the same normalized key.
+     */
+    public boolean isSameAddress() {
+        return sameAddress;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d <- %d (%.2f: name %.2f%s%s)", masterId, duplicateId, score, nameSimilarity,
+                samePhone ? ", phone" : "", sameAddress ? ", address" : "");
+    }
+}
@@ -5,18 +5,24 @@ import java.util.Objects;
 public class MenuItem {
     private int id;
     private String name;
-    private double price;
+    private long priceCents;
     private String description; // Optional: for detailed menu display
+    private boolean available; // false = 86'd
 
-    public MenuItem(int id, String name, double price, String description) {
+    public MenuItem(int id, String name, long priceCents, String description) {
+        this(id, name, priceCents, description, true);
+    }
+
+    public MenuItem(int id, String name, long priceCents, String description, boolean available) {
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.priceCents = priceCents;
         this.description = description;
+        this.available = available;
     }
 
-    public MenuItem(String name, double price, String description) {
-        this(-1, name, price, description); // -1 indicates not yet persisted
+    public MenuItem(String name, long priceCents, String description) {
+        this(-1, name, priceCents, description); // -1 indicates not yet persisted
     }
 
     public int getId() {
@@ -35,12 +41,15 @@ public class MenuItem {
         this.name = name;
     }
 
-    public double getPrice() {
-        return price;
+    /**
+     * Price in cents; see {@link Money}.
+     */
+    public long getPriceCents() {
+        return priceCents;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public String getDescription() {
@@ -51,9 +60,17 @@ public class MenuItem {
         this.description = description;
     }
 
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
     @Override
     public String toString() {
-        return name + " - " + String.format("%.2f", price);
+        return name + " - " + Money.toPlainString(priceCents);
     }
 
     @Override
@@ -61,11 +78,11 @@ public class MenuItem {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MenuItem menuItem = (MenuItem) o;
-        return id == menuItem.id && Double.compare(menuItem.price, price) == 0 && Objects.equals(name, menuItem.name) && Objects.equals(description, menuItem.description);
+        return id == menuItem.id && priceCents == menuItem.priceCents && available == menuItem.available && Objects.equals(name, menuItem.name) && Objects.equals(description, menuItem.description);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, price, description);
+        return Objects.hash(id, name, priceCents, description, available);
     }
 }
@@ -0,0 +1,96 @@
+package com.bara.app.model;
+
+/**
+ * Money as a primitive {@code long} count of cents.
+ * All arithmetic is exact integer math and allocation-free; overflow throws instead of wrapping.
+ * Rounding, where a rate is applied, is half-up.
+ */
+public final class Money {
+
+    public static final long ZERO = 0L;
+
+    private Money() {
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Line total: unit price times quantity.
+     */
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    /**
+     * Apply a rate given in basis points (1600 = 16%), rounding half-up to the cent.
+     */
+    public static long percent(long cents, int basisPoints) {
+        long product = Math.multiplyExact(cents, (long) basisPoints);
+        return Math.floorDiv(Math.addExact(product, 5_000L), 10_000L);
+    }
+
+    /**
+     * Integer average, rounded half-up; 0 when {@code count} is 0.
+     */
+    public static long average(long totalCents, long count) {
+        return count == 0 ? 0L : Math.floorDiv(Math.addExact(Math.multiplyExact(totalCents, 2L), count), 2L * count);
+    }
+
+    /**
+     * Parse a user-entered amount such as {@code "25"}, {@code "25.5"} or {@code "$1,025.50"}.
+     *
+     * @throws NumberFormatException If the text is not an amount with at most two decimals
+     */
+    public static long parse(String text) {
+        String cleaned = text.trim().replace("$", "").replace(",", "");
+        boolean negative = cleaned.startsWith("-");
+        if (negative) {
+            cleaned = cleaned.substring(1);
+        }
+        int dot = cleaned.indexOf('.');
+        String whole = dot < 0 ? cleaned : cleaned.substring(0, dot);
+        String fraction = dot < 0 ? "" : cleaned.substring(dot + 1);
+        if ((whole.isEmpty() && fraction.isEmpty()) || fraction.length() > 2
+                || !isDigits(whole) || !isDigits(fraction)) {
+            throw new NumberFormatException("Not a money amount: " + text);
+        }
+
+        long cents = Math.multiplyExact(whole.isEmpty() ? 0L : Long.parseLong(whole), 100L);
+        if (!fraction.isEmpty()) {
+            cents = Math.addExact(cents, Long.parseLong(fraction.length() == 1 ? fraction + "0" : fraction));
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Amount without currency symbol, always with two decimals: {@code 1025.50}.
+     */
+    public static String toPlainString(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Display form used across the POS: {@code $1025.50}.
+     */
+    public static String format(long cents) {
+        return cents < 0 ? "-$" + toPlainString(-cents) : "$" + toPlainString(cents);
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -41,16 +41,19 @@ public class OrderItem {
         this.notes = notes;
     }
 
-    public double getTotalPrice() {
-        return menuItem.getPrice() * quantity;
+    /**
+     * Line total in cents.
+     */
+    public long getTotalPriceCents() {
+        return Money.times(menuItem.getPriceCents(), quantity);
     }
 
     public String getMenuItemName() {
         return menuItem.getName();
     }
 
-    public double getMenuItemPrice() {
-        return menuItem.getPrice();
+    public long getMenuItemPriceCents() {
+        return menuItem.getPriceCents();
     }
 
     @Override
@@ -0,0 +1,433 @@
+package com.bara.app.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The ticket being rung up on this terminal.
+ *
+ * <p>Lines are keyed by menu item id and notes, so tapping an item that is already on the ticket is a hash
+ * lookup, and the subtotal, tax and total are adjusted by the line's delta instead of being re-summed.
+ * Every user action is recorded as a group of {@link Edit}s: the groups drive undo/redo, and the same
+ * stream, handed to a {@link Log}, is enough to rebuild the ticket after a crash.
+ *
+ * <p>Not thread-safe; used from the FX thread.
+ */
+public class OrderTicket {
+
+    /**
+     * Fine-grained change notifications, so a view only repaints the affected row.
+     */
+    public interface Listener {
+        void lineAdded(int index, OrderItem line);
+
+        void lineChanged(int index, OrderItem line);
+
+        void lineRemoved(int index, OrderItem line);
+
+        /**
+         * Called once per user action, after all of its line events.
+         */
+        void totalsChanged(OrderTicket ticket);
+    }
+
+    /**
+     * Receives the operation stream, in order. Replaying it through {@link #apply}, {@link #undo},
+     * {@link #redo} and {@link #reset} reproduces the ticket, including its undo history.
+     */
+    public interface Log {
+        void applied(List<Edit> edits);
+
+        void undone();
+
+        void redone();
+
+        void reset();
+    }
+
+    /**
+     * One line going from {@code before} to {@code after} units (0 meaning absent) at {@code index}.
+     */
+    public static final class Edit {
+        private final MenuItem menuItem;
+        private final String notes;
+        private final int before;
+        private final int after;
+        private final int index;
+
+        public Edit(MenuItem menuItem, String notes, int before, int after, int index) {
+            this.menuItem = menuItem;
+            this.notes = notes;
+            this.before = before;
+            this.after = after;
+            this.index = index;
+        }
+
+        public MenuItem getMenuItem() {
+            return menuItem;
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+
+        public int getBefore() {
+            return before;
+        }
+
+        public int getAfter() {
+            return after;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        Edit inverse() {
+            return new Edit(menuItem, notes, after, before, index);
+        }
+    }
+
+    private static final int MAX_HISTORY = 200;
+
+    private final int taxBasisPoints;
+    private final List<OrderItem> lines = new ArrayList<>();
+    private final Map<LineKey, Integer> indexByKey = new HashMap<>();
+    private final Deque<List<Edit>> undoStack = new ArrayDeque<>();
+    private final Deque<List<Edit>> redoStack = new ArrayDeque<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private Log log;
+
+    private long subtotalCents = Money.ZERO;
+    private long taxCents = Money.ZERO;
+
+    public OrderTicket() {
+        this(0);
+    }
+
+    /**
+     * @param taxBasisPoints Tax applied to the subtotal, in basis points (1600 = 16%)
+     */
+    public OrderTicket(int taxBasisPoints) {
+        this.taxBasisPoints = taxBasisPoints;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start (or stop, with null) recording operations.
+     */
+    public void setLog(Log log) {
+        this.log = log;
+    }
+
+    // --- Edits ---
+
+    /**
+     * One more unit of {@code menuItem} without notes.
+     */
+    public void add(MenuItem menuItem) {
+        add(menuItem, "", 1);
+    }
+
+    /**
+     * Add units to the line for ({@code menuItem}, {@code notes}), creating it at the end if needed.
+     */
+    public void add(MenuItem menuItem, String notes, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        String key = normalizeNotes(notes);
+        Integer index = indexByKey.get(new LineKey(menuItem.getId(), key));
+        if (index == null) {
+            record(List.of(new Edit(menuItem, key, 0, quantity, lines.size())));
+        } else {
+            OrderItem line = lines.get(index);
+            record(List.of(new Edit(line.getMenuItem(), key, line.getQuantity(), line.getQuantity() + quantity, index)));
+        }
+    }
+
+    /**
+     * Set a line's quantity; 0 removes it.
+     */
+    public void setQuantity(OrderItem line, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative: " + quantity);
+        }
+        int index = indexOf(line);
+        if (line.getQuantity() != quantity) {
+            record(List.of(new Edit(line.getMenuItem(), line.getNotes(), line.getQuantity(), quantity, index)));
+        }
+    }
+
+    public void remove(OrderItem line) {
+        setQuantity(line, 0);
+    }
+
+    /**
+     * Change a line's notes. If another line already has the new notes the two are merged.
+     */
+    public void setNotes(OrderItem line, String notes) {
+        int index = indexOf(line);
+        String key = normalizeNotes(notes);
+        if (key.equals(line.getNotes())) {
+            return;
+        }
+        List<Edit> edits = new ArrayList<>(2);
+        edits.add(new Edit(line.getMenuItem(), line.getNotes(), line.getQuantity(), 0, index));
+        Integer targetIndex = indexByKey.get(new LineKey(line.getMenuItem().getId(), key));
+        if (targetIndex == null) {
+            // Takes the old line's place once it is removed
+            edits.add(new Edit(line.getMenuItem(), key, 0, line.getQuantity(), index));
+        } else {
+            OrderItem target = lines.get(targetIndex);
+            int shifted = targetIndex > index ? targetIndex - 1 : targetIndex;
+            edits.add(new Edit(target.getMenuItem(), key, target.getQuantity(),
+                    target.getQuantity() + line.getQuantity(), shifted));
+        }
+        record(edits);
+    }
+
+    /**
+     * Empty the ticket as one undoable action.
+     */
+    public void clear() {
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<Edit> edits = new ArrayList<>(lines.size());
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            OrderItem line = lines.get(i);
+            edits.add(new Edit(line.getMenuItem(), line.getNotes(), line.getQuantity(), 0, i));
+        }
+        record(edits);
+    }
+
+    /**
+     * Start a new ticket: empty, with no history. Used once the ticket has been checked out.
+     */
+    public void reset() {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            OrderItem line = lines.remove(i);
+            for (Listener listener : listeners) {
+                listener.lineRemoved(i, line);
+            }
+        }
+        indexByKey.clear();
+        undoStack.clear();
+        redoStack.clear();
+        subtotalCents = Money.ZERO;
+        taxCents = Money.ZERO;
+        if (log != null) {
+            log.reset();
+        }
+        fireTotalsChanged();
+    }
+
+    // --- History ---
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    public boolean undo() {
+        List<Edit> edits = undoStack.pollFirst();
+        if (edits == null) {
+            return false;
+        }
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            applyEdit(edits.get(i).inverse());
+        }
+        redoStack.push(edits);
+        if (log != null) {
+            log.undone();
+        }
+        fireTotalsChanged();
+        return true;
+    }
+
+    public boolean redo() {
+        List<Edit> edits = redoStack.pollFirst();
+        if (edits == null) {
+            return false;
+        }
+        for (Edit edit : edits) {
+            applyEdit(edit);
+        }
+        pushUndo(edits);
+        if (log != null) {
+            log.redone();
+        }
+        fireTotalsChanged();
+        return true;
+    }
+
+    /**
+     * Apply a group of edits as one user action. Used by the mutators above and to replay a {@link Log}.
+     */
+    public void apply(List<Edit> edits) {
+        record(edits);
+    }
+
+    private void record(List<Edit> edits) {
+        for (Edit edit : edits) {
+            applyEdit(edit);
+        }
+        pushUndo(edits);
+        redoStack.clear();
+        if (log != null) {
+            log.applied(edits);
+        }
+        fireTotalsChanged();
+    }
+
+    private void pushUndo(List<Edit> edits) {
+        undoStack.push(edits);
+        if (undoStack.size() > MAX_HISTORY) {
+            undoStack.pollLast();
+        }
+    }
+
+    private void applyEdit(Edit edit) {
+        LineKey key = new LineKey(edit.getMenuItem().getId(), edit.getNotes());
+        Integer index = indexByKey.get(key);
+
+        if (index == null) {
+            if (edit.getAfter() == 0) {
+                return;
+            }
+            int at = Math.min(edit.getIndex(), lines.size());
+            OrderItem line = new OrderItem(edit.getMenuItem(), edit.getAfter(), edit.getNotes());
+            lines.add(at, line);
+            reindexFrom(at);
+            addToSubtotal(line.getTotalPriceCents());
+            for (Listener listener : listeners) {
+                listener.lineAdded(at, line);
+            }
+            return;
+        }
+
+        OrderItem line = lines.get(index);
+        if (edit.getAfter() == 0) {
+            lines.remove((int) index);
+            indexByKey.remove(key);
+            reindexFrom(index);
+            addToSubtotal(-line.getTotalPriceCents());
+            for (Listener listener : listeners) {
+                listener.lineRemoved(index, line);
+            }
+        } else {
+            addToSubtotal(Money.times(line.getMenuItemPriceCents(), edit.getAfter() - line.getQuantity()));
+            line.setQuantity(edit.getAfter());
+            for (Listener listener : listeners) {
+                listener.lineChanged(index, line);
+            }
+        }
+    }
+
+    private void addToSubtotal(long deltaCents) {
+        subtotalCents = Money.add(subtotalCents, deltaCents);
+        taxCents = Money.percent(subtotalCents, taxBasisPoints);
+    }
+
+    private void reindexFrom(int from) {
+        for (int i = from; i < lines.size(); i++) {
+            OrderItem line = lines.get(i);
+            indexByKey.put(new LineKey(line.getMenuItem().getId(), line.getNotes()), i);
+        }
+    }
+
+    private int indexOf(OrderItem line) {
+        Integer index = indexByKey.get(new LineKey(line.getMenuItem().getId(), line.getNotes()));
+        if (index == null || lines.get(index) != line) {
+            throw new IllegalArgumentException("Not a line of this ticket: " + line);
+        }
+        return index;
+    }
+
+    private void fireTotalsChanged() {
+        for (Listener listener : listeners) {
+            listener.totalsChanged(this);
+        }
+    }
+
+    private static String normalizeNotes(String notes) {
+        return notes == null ? "" : notes.trim();
+    }
+
+    // --- Reads ---
+
+    /**
+     * Lines in ticket order. Unmodifiable view.
+     */
+    public List<OrderItem> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * The line for ({@code menuItemId}, {@code notes}), or null.
+     */
+    public OrderItem find(int menuItemId, String notes) {
+        Integer index = indexByKey.get(new LineKey(menuItemId, normalizeNotes(notes)));
+        return index != null ? lines.get(index) : null;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getTaxCents() {
+        return taxCents;
+    }
+
+    public long getTotalCents() {
+        return Money.add(subtotalCents, taxCents);
+    }
+
+    private static final class LineKey {
+        private final int menuItemId;
+        private final String notes;
+
+        LineKey(int menuItemId, String notes) {
+            this.menuItemId = menuItemId;
+            this.notes = notes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LineKey)) return false;
+            LineKey other = (LineKey) o;
+            return menuItemId == other.menuItemId && notes.equals(other.notes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(menuItemId, notes);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bara.app.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One page of a list read with a keyset cursor: the rows, and where the next page starts.
+ * Pages are read by seeking past the sort key of the last row, so every page costs the same however
+ * deep it is, and rows inserted meanwhile never shift a page or make it repeat rows.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final Cursor next;
+
+    public Page(List<T> items, Cursor next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Cursor to pass back for the following page, or null if this is the last one.
+     */
+    public Cursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Position in a list: the sort key of the last row read. Only meaningful to the query that made it.
+     */
+    public static final class Cursor {
+
+        private final Object[] key;
+
+        public Cursor(Object... key) {
+            this.key = key.clone();
+        }
+
+        public Object[] getKey() {
+            return key.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor" + Arrays.toString(key);
+        }
+    }
+}
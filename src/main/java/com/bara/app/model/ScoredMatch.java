@@ -0,0 +1,28 @@
+package com.bara.app.model;
+
+/**
+ * A search result with how well it matched, from 0 (unrelated) to 1 (contains the search term).
+ */
+public final class ScoredMatch<T> {
+
+    private final T value;
+    private final float score;
+
+    public ScoredMatch(T value, float score) {
+        this.value = value;
+        this.score = score;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%.2f)", value, score);
+    }
+}
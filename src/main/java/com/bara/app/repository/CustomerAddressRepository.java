@@ -1,7 +1,11 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.Keyset;
+import com.bara.app.database.TextNormalizer;
 import com.bara.app.db.jooq.tables.pojos.CustomerAddresses;
 import com.bara.app.db.jooq.tables.records.CustomerAddressesRecord;
+import com.bara.app.model.Page;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 
@@ -17,10 +21,11 @@ import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
 public class CustomerAddressRepository {
 
     /**
-     * Create a new customer address.
+     * Create a new customer address. Its normalized key is always {@link #normalizedKeyOf computed}, whatever
+     * the address carries.
      */
     public CustomerAddresses create(Connection conn, CustomerAddresses address) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         CustomerAddressesRecord record = dsl.newRecord(CUSTOMER_ADDRESSES);
@@ -34,7 +39,7 @@ public class CustomerAddressRepository {
         record.setFormattedProviderData(address.getFormattedProviderData());
         record.setLatitude(address.getLatitude());
         record.setLongitude(address.getLongitude());
-        record.setNormalizedKey(address.getNormalizedKey());
+        record.setNormalizedKey(normalizedKeyOf(address));
         record.setValidationStatus(address.getValidationStatus() != null ? address.getValidationStatus() : "pending");
         record.setValidationMetadata(address.getValidationMetadata());
         record.setIsDefault(address.getIsDefault() != null ? address.getIsDefault() : false);
@@ -51,7 +56,7 @@ public class CustomerAddressRepository {
      * Find address by ID.
      */
     public CustomerAddresses findById(Connection conn, int id) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         CustomerAddressesRecord record = dsl.selectFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.ID.eq(id))
                 .fetchOne();
@@ -59,21 +64,29 @@ public class CustomerAddressRepository {
     }
 
     /**
-     * Find all addresses for a customer.
+     * One page of a customer's addresses: the default first, then newest first.
+     *
+     * @param after Cursor of the previous page, or null for the first page
      */
-    public List<CustomerAddresses> findByCustomerId(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(CUSTOMER_ADDRESSES)
+    public Page<CustomerAddresses> findByCustomerId(Connection conn, int customerId, Page.Cursor after, int limit) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        List<CustomerAddresses> rows = dsl.selectFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(customerId))
-                .orderBy(CUSTOMER_ADDRESSES.IS_DEFAULT.desc(), CUSTOMER_ADDRESSES.ADDED_DATE.desc())
+                .and(Keyset.after(after, true,
+                        CUSTOMER_ADDRESSES.IS_DEFAULT, CUSTOMER_ADDRESSES.ADDED_DATE, CUSTOMER_ADDRESSES.ID))
+                .orderBy(CUSTOMER_ADDRESSES.IS_DEFAULT.desc(), CUSTOMER_ADDRESSES.ADDED_DATE.desc(),
+                        CUSTOMER_ADDRESSES.ID.desc())
+                .limit(Keyset.fetchSize(limit))
                 .fetchInto(CustomerAddresses.class);
+        return Keyset.page(rows, limit,
+                address -> new Object[]{address.getIsDefault(), address.getAddedDate(), address.getId()});
     }
 
     /**
      * Find customer's default address.
      */
     public CustomerAddresses findDefaultAddress(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         CustomerAddressesRecord record = dsl.selectFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(customerId))
                 .and(CUSTOMER_ADDRESSES.IS_DEFAULT.eq(true))
@@ -83,37 +96,38 @@ public class CustomerAddressRepository {
 
     /**
      * Set address as default (unsets other defaults for same customer).
+     * One statement: the customer is found by a subquery, and only the old and new defaults are touched.
+     *
+     * @return The new default address, or null if it does not exist
      */
-    public void setAsDefault(Connection conn, int addressId) {
-        DSLContext dsl = DSL.using(conn);
+    public CustomerAddresses setAsDefault(Connection conn, int addressId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
+        com.bara.app.db.jooq.tables.CustomerAddresses target = CUSTOMER_ADDRESSES.as("target");
+
+        List<CustomerAddresses> changed = dsl.update(CUSTOMER_ADDRESSES)
+                .set(CUSTOMER_ADDRESSES.IS_DEFAULT, CUSTOMER_ADDRESSES.ID.eq(addressId))
+                .set(CUSTOMER_ADDRESSES.UPDATED_AT, DSL.when(CUSTOMER_ADDRESSES.ID.eq(addressId), now)
+                        .otherwise(CUSTOMER_ADDRESSES.UPDATED_AT))
+                .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(
+                        DSL.select(target.CUSTOMER_ID).from(target).where(target.ID.eq(addressId))))
+                .and(CUSTOMER_ADDRESSES.IS_DEFAULT.isTrue().or(CUSTOMER_ADDRESSES.ID.eq(addressId)))
+                .returning()
+                .fetchInto(CustomerAddresses.class);
 
-        // Get the address to find its customer
-        CustomerAddressesRecord address = dsl.selectFrom(CUSTOMER_ADDRESSES)
-                .where(CUSTOMER_ADDRESSES.ID.eq(addressId))
-                .fetchOne();
-
-        if (address != null) {
-            // Unset all defaults for this customer
-            dsl.update(CUSTOMER_ADDRESSES)
-                    .set(CUSTOMER_ADDRESSES.IS_DEFAULT, false)
-                    .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(address.getCustomerId()))
-                    .execute();
-
-            // Set this address as default
-            dsl.update(CUSTOMER_ADDRESSES)
-                    .set(CUSTOMER_ADDRESSES.IS_DEFAULT, true)
-                    .set(CUSTOMER_ADDRESSES.UPDATED_AT, now)
-                    .where(CUSTOMER_ADDRESSES.ID.eq(addressId))
-                    .execute();
+        for (CustomerAddresses address : changed) {
+            if (address.getId() == addressId) {
+                return address;
+            }
         }
+        return null;
     }
 
     /**
      * Update validation status after async validation.
      */
     public void updateValidationStatus(Connection conn, int addressId, String status, org.jooq.JSONB metadata) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(CUSTOMER_ADDRESSES)
@@ -129,7 +143,7 @@ public class CustomerAddressRepository {
      * Mark validation attempt.
      */
     public void markValidationAttempted(Connection conn, int addressId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(CUSTOMER_ADDRESSES)
@@ -143,7 +157,7 @@ public class CustomerAddressRepository {
      * Find addresses pending validation (for background job).
      */
     public List<CustomerAddresses> findPendingValidation(Connection conn, int limit) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.VALIDATION_STATUS.eq("pending"))
                 .and(CUSTOMER_ADDRESSES.VALIDATION_ATTEMPTED_AT.isNull()
@@ -154,11 +168,18 @@ public class CustomerAddressRepository {
                 .fetchInto(CustomerAddresses.class);
     }
 
+    /**
+     * Find other addresses that normalize to the same key as this one.
+     */
+    public List<CustomerAddresses> findDuplicates(Connection conn, CustomerAddresses address) {
+        return findByNormalizedKey(conn, normalizedKeyOf(address));
+    }
+
     /**
      * Find potential duplicate addresses by normalized key.
      */
     public List<CustomerAddresses> findByNormalizedKey(Connection conn, String normalizedKey) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.NORMALIZED_KEY.eq(normalizedKey))
                 .fetchInto(CustomerAddresses.class);
@@ -168,7 +189,7 @@ public class CustomerAddressRepository {
      * Update delivery instructions.
      */
     public void updateDeliveryInstructions(Connection conn, int addressId, String instructions) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(CUSTOMER_ADDRESSES)
@@ -178,11 +199,24 @@ public class CustomerAddressRepository {
                 .execute();
     }
 
+    /**
+     * Duplicate-detection key of an address: street, postal code, city and state without accents, case or
+     * punctuation; the raw input when the address has not been parsed yet.
+     */
+    public static String normalizedKeyOf(CustomerAddresses address) {
+        if (address.getStreet() == null && address.getPostalCode() == null && address.getCity() == null
+                && address.getState() == null) {
+            return TextNormalizer.addressKey(address.getRawInput());
+        }
+        return TextNormalizer.addressKey(address.getStreet(), address.getPostalCode(), address.getCity(),
+                address.getState());
+    }
+
     /**
      * Delete address.
      */
     public void delete(Connection conn, int addressId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         dsl.deleteFrom(CUSTOMER_ADDRESSES)
                 .where(CUSTOMER_ADDRESSES.ID.eq(addressId))
                 .execute();
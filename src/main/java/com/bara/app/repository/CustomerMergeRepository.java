@@ -0,0 +1,220 @@
+package com.bara.app.repository;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.db.jooq.tables.CustomerAddresses;
+import com.bara.app.db.jooq.tables.CustomerPhones;
+import com.bara.app.db.jooq.tables.pojos.Customers;
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record4;
+import org.jooq.impl.DSL;
+
+import java.sql.Connection;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PHONES;
+import static com.bara.app.db.jooq.Tables.ORDERS;
+import static com.bara.app.db.jooq.Tables.UNIDENTIFIED_CUSTOMER_CLUSTERS;
+
+/**
+ * Reads for duplicate detection, and the statements that merge a duplicate customer into its master.
+ * The move methods are steps of one merge and need the caller's transaction.
+ */
+public class CustomerMergeRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Stream the active customers with what duplicates would share: id, {@code full_name_search}, the
+     * last {@code phoneDigits} digits of each phone (shorter phones left out) and the normalized keys of the
+     * addresses that have a street.
+     * Rows are fetched as they are read, so the connection must not be in auto-commit. Close the cursor.
+     */
+    public Cursor<Record4<Integer, String, String[], String[]>> streamDuplicateKeys(Connection conn, int phoneDigits) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Field<String[]> phones = DSL.array(DSL.select(DSL.right(CUSTOMER_PHONES.PHONE_DIGITS, phoneDigits))
+                .from(CUSTOMER_PHONES)
+                .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(CUSTOMERS.ID))
+                .and(DSL.length(CUSTOMER_PHONES.PHONE_DIGITS).ge(phoneDigits)));
+        Field<String[]> addresses = DSL.array(DSL.select(CUSTOMER_ADDRESSES.NORMALIZED_KEY)
+                .from(CUSTOMER_ADDRESSES)
+                .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(CUSTOMERS.ID))
+                .and(hasStreet(CUSTOMER_ADDRESSES.NORMALIZED_KEY)));
+        return dsl.select(CUSTOMERS.ID, CUSTOMERS.FULL_NAME_SEARCH, phones, addresses)
+                .from(CUSTOMERS)
+                .where(CUSTOMERS.STATUS.eq("active"))
+                .orderBy(CUSTOMERS.ID.asc())
+                .fetchSize(STREAM_FETCH_SIZE)
+                .fetchLazy();
+    }
+
+    /**
+     * The two customers, locked until the transaction ends, in id order so concurrent merges cannot
+     * deadlock. Needs a transaction.
+     */
+    public List<Customers> lockForMerge(Connection conn, int masterId, int duplicateId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.selectFrom(CUSTOMERS)
+                .where(CUSTOMERS.ID.in(masterId, duplicateId))
+                .orderBy(CUSTOMERS.ID.asc())
+                .forUpdate()
+                .fetchInto(Customers.class);
+    }
+
+    /**
+     * Give the duplicate's orders to the master. Marks them for cloud sync.
+     *
+     * @return Number of orders moved
+     */
+    public int moveOrders(Connection conn, int duplicateId, int masterId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.update(ORDERS)
+                .set(ORDERS.CUSTOMER_ID, masterId)
+                .set(ORDERS.UPDATED_AT, OffsetDateTime.now())
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .where(ORDERS.CUSTOMER_ID.eq(duplicateId))
+                .execute();
+    }
+
+    /**
+     * Highest id among the customer's orders, 0 if it has none.
+     */
+    public int lastOrderId(Connection conn, int customerId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(DSL.coalesce(DSL.max(ORDERS.ID), 0))
+                .from(ORDERS)
+                .where(ORDERS.CUSTOMER_ID.eq(customerId))
+                .fetchOne(0, int.class);
+    }
+
+    /**
+     * Give the duplicate's phones to the master. Numbers the master already has (same last
+     * {@code matchDigits} digits, both at least that long) are dropped, and the master keeps its primary
+     * phone if it has one.
+     */
+    public void movePhones(Connection conn, int duplicateId, int masterId, int matchDigits) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        CustomerPhones kept = CUSTOMER_PHONES.as("kept");
+
+        dsl.deleteFrom(CUSTOMER_PHONES)
+                .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(duplicateId))
+                .andExists(DSL.selectOne()
+                        .from(kept)
+                        .where(kept.CUSTOMER_ID.eq(masterId))
+                        .and(DSL.length(kept.PHONE_DIGITS).ge(matchDigits))
+                        .and(DSL.right(kept.PHONE_DIGITS, matchDigits)
+                                .eq(DSL.right(CUSTOMER_PHONES.PHONE_DIGITS, matchDigits))))
+                .and(DSL.length(CUSTOMER_PHONES.PHONE_DIGITS).ge(matchDigits))
+                .execute();
+
+        dsl.update(CUSTOMER_PHONES)
+                .set(CUSTOMER_PHONES.CUSTOMER_ID, masterId)
+                .set(CUSTOMER_PHONES.IS_PRIMARY, DSL.field(CUSTOMER_PHONES.IS_PRIMARY.isTrue()
+                        .andNotExists(DSL.selectOne()
+                                .from(kept)
+                                .where(kept.CUSTOMER_ID.eq(masterId))
+                                .and(kept.IS_PRIMARY.isTrue()))))
+                .set(CUSTOMER_PHONES.UPDATED_AT, OffsetDateTime.now())
+                .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(duplicateId))
+                .execute();
+    }
+
+    /**
+     * Give the duplicate's addresses to the master. An address the master already has (same normalized
+     * key, with a street) is dropped, and orders delivered to it point at the master's copy instead. The
+     * master keeps its default address if it has one.
+     */
+    public void moveAddresses(Connection conn, int duplicateId, int masterId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
+        CustomerAddresses kept = CUSTOMER_ADDRESSES.as("kept");
+        CustomerAddresses dropped = CUSTOMER_ADDRESSES.as("dropped");
+
+        dsl.update(ORDERS)
+                .set(ORDERS.CUSTOMER_ADDRESS_ID, DSL.select(DSL.min(kept.ID))
+                        .from(kept)
+                        .join(dropped).on(dropped.NORMALIZED_KEY.eq(kept.NORMALIZED_KEY))
+                        .where(dropped.ID.eq(ORDERS.CUSTOMER_ADDRESS_ID))
+                        .and(kept.CUSTOMER_ID.eq(masterId))
+                        .and(hasStreet(kept.NORMALIZED_KEY)))
+                .set(ORDERS.UPDATED_AT, now)
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .where(ORDERS.CUSTOMER_ADDRESS_ID.in(DSL.select(dropped.ID)
+                        .from(dropped)
+                        .join(kept).on(kept.NORMALIZED_KEY.eq(dropped.NORMALIZED_KEY))
+                        .where(dropped.CUSTOMER_ID.eq(duplicateId))
+                        .and(kept.CUSTOMER_ID.eq(masterId))
+                        .and(hasStreet(dropped.NORMALIZED_KEY))))
+                .execute();
+
+        dsl.deleteFrom(CUSTOMER_ADDRESSES)
+                .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(duplicateId))
+                .andExists(DSL.selectOne()
+                        .from(kept)
+                        .where(kept.CUSTOMER_ID.eq(masterId))
+                        .and(kept.NORMALIZED_KEY.eq(CUSTOMER_ADDRESSES.NORMALIZED_KEY)))
+                .and(hasStreet(CUSTOMER_ADDRESSES.NORMALIZED_KEY))
+                .execute();
+
+        dsl.update(CUSTOMER_ADDRESSES)
+                .set(CUSTOMER_ADDRESSES.CUSTOMER_ID, masterId)
+                .set(CUSTOMER_ADDRESSES.IS_DEFAULT, DSL.field(CUSTOMER_ADDRESSES.IS_DEFAULT.isTrue()
+                        .andNotExists(DSL.selectOne()
+                                .from(kept)
+                                .where(kept.CUSTOMER_ID.eq(masterId))
+                                .and(kept.IS_DEFAULT.isTrue()))))
+                .set(CUSTOMER_ADDRESSES.UPDATED_AT, now)
+                .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(duplicateId))
+                .execute();
+    }
+
+    /**
+     * Clusters of anonymous orders matched to the duplicate are matched to the master instead.
+     */
+    public void moveClusters(Connection conn, int duplicateId, int masterId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        dsl.update(UNIDENTIFIED_CUSTOMER_CLUSTERS)
+                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID, masterId)
+                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.UPDATED_AT, OffsetDateTime.now())
+                .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID.eq(duplicateId))
+                .execute();
+    }
+
+    /**
+     * Mark the duplicate merged into the master. Customers merged into the duplicate earlier point at
+     * the master directly, so {@code master_id} is never a chain. Marks them for cloud sync.
+     */
+    public void markMerged(Connection conn, int duplicateId, int masterId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        dsl.update(CUSTOMERS)
+                .set(CUSTOMERS.STATUS, DSL.when(CUSTOMERS.ID.eq(duplicateId), DSL.inline("merged"))
+                        .otherwise(CUSTOMERS.STATUS))
+                .set(CUSTOMERS.MASTER_ID, masterId)
+                .set(CUSTOMERS.UPDATED_AT, now)
+                .set(CUSTOMERS.VERSION, CUSTOMERS.VERSION.plus(1))
+                .set(CUSTOMERS.SYNC_VERSION, CUSTOMERS.SYNC_VERSION.plus(1))
+                .set(CUSTOMERS.SYNCED_TO_CLOUD, false)
+                .where(CUSTOMERS.ID.eq(duplicateId).or(CUSTOMERS.MASTER_ID.eq(duplicateId)))
+                .execute();
+    }
+
+    /**
+     * Whether a normalized address key can identify an address: empty keys (blank or punctuation-only
+     * input) and keys without a street (e.g. {@code "||CDMX|"}) are shared by unrelated addresses. Keys of
+     * unparsed addresses have no {@code |} and are all street.
+     */
+    private static Condition hasStreet(Field<String> normalizedKey) {
+        return DSL.splitPart(normalizedKey, DSL.inline("|"), DSL.inline(1)).ne(DSL.inline(""));
+    }
+}
@@ -1,5 +1,7 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.CachedQuery;
+import com.bara.app.database.DatabaseManager;
 import com.bara.app.db.jooq.tables.pojos.CustomerPhones;
 import com.bara.app.db.jooq.tables.records.CustomerPhonesRecord;
 import org.jooq.DSLContext;
@@ -13,8 +15,12 @@ import static com.bara.app.db.jooq.Tables.CUSTOMER_PHONES;
 
 public class CustomerPhoneRepository {
 
+    private static final CachedQuery FIND_BY_CUSTOMER_ID = new CachedQuery(dsl -> dsl.selectFrom(CUSTOMER_PHONES)
+            .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(0))
+            .orderBy(CUSTOMER_PHONES.IS_PRIMARY.desc()));
+
     public CustomerPhones create(Connection conn, CustomerPhones phone) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         CustomerPhonesRecord record = dsl.newRecord(CUSTOMER_PHONES);
@@ -31,15 +37,14 @@ public class CustomerPhoneRepository {
     }
 
     public List<CustomerPhones> findByCustomerId(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(CUSTOMER_PHONES)
-                .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(customerId))
-                .orderBy(CUSTOMER_PHONES.IS_PRIMARY.desc())
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return FIND_BY_CUSTOMER_ID.bind(dsl, customerId)
+                .coerce(CUSTOMER_PHONES)
                 .fetchInto(CustomerPhones.class);
     }
 
     public CustomerPhones findPrimaryPhone(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         CustomerPhonesRecord record = dsl.selectFrom(CUSTOMER_PHONES)
                 .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(customerId))
                 .and(CUSTOMER_PHONES.IS_PRIMARY.eq(true))
@@ -47,25 +52,31 @@ public class CustomerPhoneRepository {
         return record != null ? record.into(CustomerPhones.class) : null;
     }
 
-    public void setPrimary(Connection conn, int phoneId) {
-        DSLContext dsl = DSL.using(conn);
+    /**
+     * Make a phone its customer's primary, demoting the previous one, in a single statement.
+     *
+     * @return The new primary phone, or null if it does not exist
+     */
+    public CustomerPhones setPrimary(Connection conn, int phoneId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
+        com.bara.app.db.jooq.tables.CustomerPhones target = CUSTOMER_PHONES.as("target");
 
-        CustomerPhonesRecord phone = dsl.selectFrom(CUSTOMER_PHONES)
-                .where(CUSTOMER_PHONES.ID.eq(phoneId))
-                .fetchOne();
-
-        if (phone != null) {
-            dsl.update(CUSTOMER_PHONES)
-                    .set(CUSTOMER_PHONES.IS_PRIMARY, false)
-                    .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(phone.getCustomerId()))
-                    .execute();
+        List<CustomerPhones> changed = dsl.update(CUSTOMER_PHONES)
+                .set(CUSTOMER_PHONES.IS_PRIMARY, CUSTOMER_PHONES.ID.eq(phoneId))
+                .set(CUSTOMER_PHONES.UPDATED_AT, DSL.when(CUSTOMER_PHONES.ID.eq(phoneId), now)
+                        .otherwise(CUSTOMER_PHONES.UPDATED_AT))
+                .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(
+                        DSL.select(target.CUSTOMER_ID).from(target).where(target.ID.eq(phoneId))))
+                .and(CUSTOMER_PHONES.IS_PRIMARY.isTrue().or(CUSTOMER_PHONES.ID.eq(phoneId)))
+                .returning()
+                .fetchInto(CustomerPhones.class);
 
-            dsl.update(CUSTOMER_PHONES)
-                    .set(CUSTOMER_PHONES.IS_PRIMARY, true)
-                    .set(CUSTOMER_PHONES.UPDATED_AT, now)
-                    .where(CUSTOMER_PHONES.ID.eq(phoneId))
-                    .execute();
+        for (CustomerPhones phone : changed) {
+            if (phone.getId() == phoneId) {
+                return phone;
+            }
         }
+        return null;
     }
 }
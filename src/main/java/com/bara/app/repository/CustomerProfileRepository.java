@@ -0,0 +1,195 @@
+package com.bara.app.repository;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.db.jooq.tables.pojos.CustomerProfileSketches;
+import com.bara.app.db.jooq.tables.records.CustomerProfileSketchesRecord;
+import com.bara.app.model.CustomerProfile;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Record2;
+import org.jooq.Record6;
+import org.jooq.Record8;
+import org.jooq.Row8;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.sql.Connection;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PROFILE_SKETCHES;
+import static com.bara.app.db.jooq.Tables.ORDERS;
+import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
+
+/**
+ * Storage of the customer profile sketches (V19) and of the profile columns derived from them.
+ */
+public class CustomerProfileRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // Rows per write statement, well under the 32767 bind values of a statement
+    private static final int WRITE_CHUNK = 1000;
+
+    /**
+     * Sketches of the customers, locked until the transaction ends; missing ones are created empty first,
+     * and customers that no longer exist are left out. Rows are locked in id order, so concurrent callers
+     * cannot deadlock. Needs a transaction.
+     */
+    public List<CustomerProfileSketches> lockSketches(Connection conn, Integer[] customerIds) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        dsl.insertInto(CUSTOMER_PROFILE_SKETCHES, CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID)
+                .select(DSL.select(CUSTOMERS.ID).from(CUSTOMERS).where(CUSTOMERS.ID.eq(DSL.any(customerIds))))
+                .onConflictDoNothing()
+                .execute();
+        return dsl.selectFrom(CUSTOMER_PROFILE_SKETCHES)
+                .where(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID.eq(DSL.any(customerIds)))
+                .orderBy(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID.asc())
+                .forUpdate()
+                .fetchInto(CustomerProfileSketches.class);
+    }
+
+    /**
+     * Lock the sketches of customers {@code fromId..toId} (created empty where missing), then the customers
+     * themselves, until the transaction ends; both in id order, and sketches first as flushes and merges
+     * lock them. Orders for these customers wait meanwhile (see {@link CustomerRepository#lockForOrder}), so
+     * a rebuild under these locks sees every order stored before it and none after. Needs a transaction.
+     */
+    public void lockForRebuild(Connection conn, int fromId, int toId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        dsl.insertInto(CUSTOMER_PROFILE_SKETCHES, CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID)
+                .select(DSL.select(CUSTOMERS.ID).from(CUSTOMERS).where(CUSTOMERS.ID.between(fromId, toId)))
+                .onConflictDoNothing()
+                .execute();
+        dsl.select(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID)
+                .from(CUSTOMER_PROFILE_SKETCHES)
+                .where(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID.between(fromId, toId))
+                .orderBy(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID.asc())
+                .forUpdate()
+                .execute();
+        dsl.select(CUSTOMERS.ID)
+                .from(CUSTOMERS)
+                .where(CUSTOMERS.ID.between(fromId, toId))
+                .orderBy(CUSTOMERS.ID.asc())
+                .forUpdate()
+                .execute();
+    }
+
+    /**
+     * Highest id among the orders of customers {@code fromId..toId}, 0 if they have none.
+     */
+    public int findLastOrderId(Connection conn, int fromId, int toId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(DSL.coalesce(DSL.max(ORDERS.ID), 0))
+                .from(ORDERS)
+                .where(ORDERS.CUSTOMER_ID.between(fromId, toId))
+                .fetchOne(0, int.class);
+    }
+
+    /**
+     * Insert or overwrite sketches, a multi-row statement per {@value #WRITE_CHUNK} sketches.
+     */
+    public void saveSketches(Connection conn, List<CustomerProfileSketches> sketches) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Map<Field<?>, Field<?>> overwrite = new LinkedHashMap<>();
+        for (Field<?> field : CUSTOMER_PROFILE_SKETCHES.fields()) {
+            overwrite.put(field, DSL.excluded(field));
+        }
+        for (int from = 0; from < sketches.size(); from += WRITE_CHUNK) {
+            List<CustomerProfileSketchesRecord> records = new ArrayList<>();
+            for (CustomerProfileSketches sketch : sketches.subList(from, Math.min(from + WRITE_CHUNK, sketches.size()))) {
+                records.add(dsl.newRecord(CUSTOMER_PROFILE_SKETCHES, sketch));
+            }
+            dsl.insertInto(CUSTOMER_PROFILE_SKETCHES)
+                    .columns(CUSTOMER_PROFILE_SKETCHES.fields())
+                    .valuesOfRecords(records)
+                    .onConflict(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID)
+                    .doUpdate()
+                    .set(overwrite)
+                    .execute();
+        }
+    }
+
+    /**
+     * Write the profile columns of each customer, an update statement per {@value #WRITE_CHUNK}
+     * customers. Marks the customers for cloud sync.
+     */
+    public void updateProfiles(Connection conn, List<CustomerProfile> profiles) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
+        for (int from = 0; from < profiles.size(); from += WRITE_CHUNK) {
+            List<CustomerProfile> chunk = profiles.subList(from, Math.min(from + WRITE_CHUNK, profiles.size()));
+            List<Row8<Integer, Integer, String[], String[], String[], Long, Long, Float>> rows = new ArrayList<>(chunk.size());
+            for (CustomerProfile profile : chunk) {
+                rows.add(DSL.row(profile.getCustomerId(), profile.getTypicalPartySize(),
+                        profile.getFavoriteItems().toArray(new String[0]),
+                        profile.getTypicalVisitDays().toArray(new String[0]),
+                        profile.getTypicalVisitTimes().toArray(new String[0]),
+                        profile.getAvgTicketCents(), profile.getLifetimeValueCents(), profile.getVisitFrequencyDays()));
+            }
+            // No generic array creation in Java; every element comes from rows, so the cast holds
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Row8<Integer, Integer, String[], String[], String[], Long, Long, Float>[] values = rows.toArray(new Row8[0]);
+            Table<Record8<Integer, Integer, String[], String[], String[], Long, Long, Float>> updates = DSL.values(values)
+                    .as("p", "id", "party_size", "favorite_items", "visit_days", "visit_times", "avg_ticket_cents",
+                            "lifetime_value_cents", "visit_frequency_days");
+            // Casts: a column that is null in every row (no party size, a single visit) is typed text in VALUES
+            dsl.update(CUSTOMERS)
+                    .set(CUSTOMERS.TYPICAL_PARTY_SIZE, updates.field(1, Integer.class).cast(SQLDataType.INTEGER))
+                    .set(CUSTOMERS.FAVORITE_ITEMS, jsonArray(updates.field(2, String[].class)))
+                    .set(CUSTOMERS.TYPICAL_VISIT_DAYS, jsonArray(updates.field(3, String[].class)))
+                    .set(CUSTOMERS.TYPICAL_VISIT_TIMES, jsonArray(updates.field(4, String[].class)))
+                    .set(CUSTOMERS.AVG_TICKET_SIZE_CENTS, updates.field(5, Long.class).cast(SQLDataType.BIGINT))
+                    .set(CUSTOMERS.TOTAL_LIFETIME_VALUE_CENTS, updates.field(6, Long.class))
+                    .set(CUSTOMERS.VISIT_FREQUENCY_DAYS, updates.field(7, Float.class).cast(SQLDataType.REAL))
+                    .set(CUSTOMERS.UPDATED_AT, now)
+                    .set(CUSTOMERS.SYNC_VERSION, CUSTOMERS.SYNC_VERSION.plus(1))
+                    .set(CUSTOMERS.SYNCED_TO_CLOUD, false)
+                    .from(updates)
+                    .where(CUSTOMERS.ID.eq(updates.field(0, Integer.class)))
+                    .execute();
+        }
+    }
+
+    /**
+     * Lowest and highest customer id, or null without customers.
+     */
+    public Record2<Integer, Integer> findCustomerIdRange(Connection conn) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Record2<Integer, Integer> range = dsl.select(DSL.min(CUSTOMERS.ID), DSL.max(CUSTOMERS.ID))
+                .from(CUSTOMERS)
+                .fetchOne();
+        return range != null && range.value1() != null ? range : null;
+    }
+
+    /**
+     * Stream the non-cancelled orders of customers {@code fromId..toId} (inclusive), by customer and in
+     * the order they were placed: customer id, order time, total, party size, item names and quantities.
+     * Rows are fetched as they are read, so the connection must not be in auto-commit. Close the cursor.
+     */
+    public Cursor<Record6<Integer, OffsetDateTime, Long, Integer, String[], Integer[]>> streamOrderHistory(
+            Connection conn, int fromId, int toId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(ORDERS.CUSTOMER_ID, ORDERS.ORDERED_AT, ORDERS.TOTAL_CENTS, ORDERS.PARTY_SIZE,
+                        DSL.arrayAgg(ORDER_ITEMS.ITEM_NAME).orderBy(ORDER_ITEMS.ID).filterWhere(ORDER_ITEMS.ID.isNotNull()),
+                        DSL.arrayAgg(ORDER_ITEMS.QUANTITY).orderBy(ORDER_ITEMS.ID).filterWhere(ORDER_ITEMS.ID.isNotNull()))
+                .from(ORDERS)
+                .leftJoin(ORDER_ITEMS).on(ORDER_ITEMS.ORDER_ID.eq(ORDERS.ID))
+                .where(ORDERS.CUSTOMER_ID.between(fromId, toId))
+                .and(ORDERS.STATUS.ne("cancelled"))
+                .groupBy(ORDERS.ID)
+                .orderBy(ORDERS.CUSTOMER_ID.asc(), ORDERS.ORDERED_AT.asc(), ORDERS.ID.asc())
+                .fetchSize(STREAM_FETCH_SIZE)
+                .fetchLazy();
+    }
+
+    private static Field<JSONB> jsonArray(Field<String[]> values) {
+        return DSL.field("to_jsonb({0})", JSONB.class, values);
+    }
+}
@@ -1,13 +1,20 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.CachedQuery;
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.Keyset;
 import com.bara.app.db.jooq.tables.pojos.Customers;
 import com.bara.app.db.jooq.tables.records.CustomersRecord;
+import com.bara.app.metrics.ContentionStats;
+import com.bara.app.model.Page;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
-import org.jooq.impl.DSL;
+import org.jooq.Record2;
 
 import java.sql.Connection;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import static com.bara.app.db.jooq.Tables.CUSTOMERS;
 
@@ -16,6 +23,12 @@ import static com.bara.app.db.jooq.Tables.CUSTOMERS;
  */
 public class CustomerRepository {
 
+    private static final String TABLE = "customers";
+    private static final int MAX_MERGE_HOPS = 8;
+
+    private static final CachedQuery FIND_BY_ID = new CachedQuery(dsl -> dsl.selectFrom(CUSTOMERS)
+            .where(CUSTOMERS.ID.eq(0)));
+
     /**
      * Create a new customer.
      *
@@ -24,7 +37,7 @@ public class CustomerRepository {
      * @return Created customer with generated ID
      */
     public Customers create(Connection conn, Customers customer) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
 
         OffsetDateTime now = OffsetDateTime.now();
 
@@ -38,6 +51,7 @@ public class CustomerRepository {
         record.setRegistrationDate(now);
         record.setCreatedAt(now);
         record.setUpdatedAt(now);
+        record.setVersion(1);
         record.setSyncVersion(1);
         record.setSyncedToCloud(false);
 
@@ -48,16 +62,26 @@ public class CustomerRepository {
     /**
      * Update an existing customer.
      *
+     * <p>If {@code customer} carries a version (i.e. it was read from the database), the write only
+     * applies to that version of the row; a customer changed in the meantime by another terminal raises
+     * {@link OptimisticLockException} instead of being overwritten.
+     *
      * @param conn Database connection
      * @param customer Customer data with ID
-     * @return Updated customer
+     * @return Updated customer, or null if it does not exist
      */
     public Customers update(Connection conn, Customers customer) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
 
         OffsetDateTime now = OffsetDateTime.now();
+        Integer expectedVersion = customer.getVersion();
 
-        int updated = dsl.update(CUSTOMERS)
+        Condition condition = CUSTOMERS.ID.eq(customer.getId());
+        if (expectedVersion != null) {
+            condition = condition.and(CUSTOMERS.VERSION.eq(expectedVersion));
+        }
+
+        CustomersRecord updated = dsl.update(CUSTOMERS)
                 .set(CUSTOMERS.FIRST_NAME, customer.getFirstName())
                 .set(CUSTOMERS.PATERNAL_LAST_NAME, customer.getPaternalLastName())
                 .set(CUSTOMERS.MATERNAL_LAST_NAME, customer.getMaternalLastName())
@@ -65,11 +89,67 @@ public class CustomerRepository {
                 .set(CUSTOMERS.NOTES, customer.getNotes())
                 .set(CUSTOMERS.STATUS, customer.getStatus())
                 .set(CUSTOMERS.UPDATED_AT, now)
+                .set(CUSTOMERS.VERSION, CUSTOMERS.VERSION.plus(1))
                 .set(CUSTOMERS.SYNC_VERSION, CUSTOMERS.SYNC_VERSION.plus(1))
-                .where(CUSTOMERS.ID.eq(customer.getId()))
-                .execute();
+                .set(CUSTOMERS.SYNCED_TO_CLOUD, false)
+                .where(condition)
+                .returning()
+                .fetchOne();
 
-        return updated > 0 ? findById(conn, customer.getId()) : null;
+        if (expectedVersion != null) {
+            ContentionStats.recordWrite(TABLE);
+        }
+        if (updated != null) {
+            return updated.into(Customers.class);
+        }
+        if (expectedVersion != null && findById(conn, customer.getId()) != null) {
+            ContentionStats.recordConflict(TABLE);
+            throw new OptimisticLockException(TABLE, customer.getId(), expectedVersion);
+        }
+        return null;
+    }
+
+    /**
+     * Read-modify-write of one customer that survives concurrent edits: {@code edit} is applied to the
+     * current row and written back against its version, re-reading and reapplying on conflict.
+     *
+     * @param edit Changes the fields it owns on the customer it is given; may be called more than once
+     * @return Updated customer, or null if it does not exist
+     * @throws OptimisticLockException If the row kept changing for every attempt
+     */
+    public Customers update(Connection conn, int customerId, UnaryOperator<Customers> edit) {
+        return OptimisticRetry.run(TABLE, () -> {
+            Customers current = findById(conn, customerId);
+            return current != null ? update(conn, edit.apply(current)) : null;
+        });
+    }
+
+    /**
+     * The customer an order for {@code customerId} is stored under: the customer itself or, if it was
+     * merged, its master. The row is key-share locked until the transaction ends, so a merge of it still
+     * running finishes first and none starts until the order is stored. Needs a transaction.
+     *
+     * @return Customer id for the order, or null if the customer does not exist
+     */
+    public Integer lockForOrder(Connection conn, int customerId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        int id = customerId;
+        // Merges point master_id at the final master, so this is one hop unless a merge races it
+        for (int hop = 0; hop < MAX_MERGE_HOPS; hop++) {
+            Record2<String, Integer> row = dsl.select(CUSTOMERS.STATUS, CUSTOMERS.MASTER_ID)
+                    .from(CUSTOMERS)
+                    .where(CUSTOMERS.ID.eq(id))
+                    .forKeyShare()
+                    .fetchOne();
+            if (row == null) {
+                return null;
+            }
+            if (!"merged".equals(row.value1()) || row.value2() == null) {
+                return id;
+            }
+            id = row.value2();
+        }
+        throw new IllegalStateException("Customer " + customerId + " is merged in a loop");
     }
 
     /**
@@ -80,25 +160,30 @@ public class CustomerRepository {
      * @return Customer or null if not found
      */
     public Customers findById(Connection conn, int id) {
-        DSLContext dsl = DSL.using(conn);
-        CustomersRecord record = dsl.selectFrom(CUSTOMERS)
-                .where(CUSTOMERS.ID.eq(id))
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        CustomersRecord record = FIND_BY_ID.bind(dsl, id)
+                .coerce(CUSTOMERS)
                 .fetchOne();
         return record != null ? record.into(Customers.class) : null;
     }
 
     /**
-     * Find all active customers.
+     * One page of the active customers, by first name (then id).
      *
      * @param conn Database connection
-     * @return List of active customers
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Page size
+     * @return Page of active customers
      */
-    public List<Customers> findAllActive(Connection conn) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(CUSTOMERS)
+    public Page<Customers> findActive(Connection conn, Page.Cursor after, int limit) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        List<Customers> rows = dsl.selectFrom(CUSTOMERS)
                 .where(CUSTOMERS.STATUS.eq("active"))
-                .orderBy(CUSTOMERS.FIRST_NAME.asc())
+                .and(Keyset.after(after, false, CUSTOMERS.FIRST_NAME, CUSTOMERS.ID))
+                .orderBy(CUSTOMERS.FIRST_NAME.asc(), CUSTOMERS.ID.asc())
+                .limit(Keyset.fetchSize(limit))
                 .fetchInto(Customers.class);
+        return Keyset.page(rows, limit, customer -> new Object[]{customer.getFirstName(), customer.getId()});
     }
 
     /**
@@ -108,12 +193,15 @@ public class CustomerRepository {
      * @param customerId Customer ID
      */
     public void markInactive(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(CUSTOMERS)
                 .set(CUSTOMERS.STATUS, "inactive")
                 .set(CUSTOMERS.UPDATED_AT, now)
+                .set(CUSTOMERS.VERSION, CUSTOMERS.VERSION.plus(1))
+                .set(CUSTOMERS.SYNC_VERSION, CUSTOMERS.SYNC_VERSION.plus(1))
+                .set(CUSTOMERS.SYNCED_TO_CLOUD, false)
                 .where(CUSTOMERS.ID.eq(customerId))
                 .execute();
     }
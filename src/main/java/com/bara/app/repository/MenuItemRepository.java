@@ -1,5 +1,7 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.CachedQuery;
+import com.bara.app.database.DatabaseManager;
 import com.bara.app.db.jooq.tables.pojos.MenuItems;
 import com.bara.app.db.jooq.tables.records.MenuItemsRecord;
 import org.jooq.DSLContext;
@@ -13,14 +15,24 @@ import static com.bara.app.db.jooq.Tables.MENU_ITEMS;
 
 public class MenuItemRepository {
 
+    private static final CachedQuery FIND_BY_ID = new CachedQuery(dsl -> dsl.selectFrom(MENU_ITEMS)
+            .where(MENU_ITEMS.ID.eq(0)));
+
+    private static final CachedQuery FIND_ALL = new CachedQuery(dsl -> dsl.selectFrom(MENU_ITEMS)
+            .orderBy(MENU_ITEMS.NAME.asc()));
+
+    private static final CachedQuery FIND_AVAILABLE = new CachedQuery(dsl -> dsl.selectFrom(MENU_ITEMS)
+            .where(MENU_ITEMS.IS_AVAILABLE.eq(DSL.inline(true)))
+            .orderBy(MENU_ITEMS.NAME.asc()));
+
     public MenuItems create(Connection conn, MenuItems item) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         MenuItemsRecord record = dsl.newRecord(MENU_ITEMS);
         record.setName(item.getName());
         record.setDescription(item.getDescription());
-        record.setPrice(item.getPrice());
+        record.setPriceCents(item.getPriceCents());
         record.setIsAvailable(item.getIsAvailable() != null ? item.getIsAvailable() : true);
         record.setCreatedAt(now);
         record.setUpdatedAt(now);
@@ -29,47 +41,49 @@ public class MenuItemRepository {
         return record.into(MenuItems.class);
     }
 
+    /**
+     * @return The updated item, or null if it no longer exists
+     */
     public MenuItems update(Connection conn, MenuItems item) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
-        dsl.update(MENU_ITEMS)
+        MenuItemsRecord updated = dsl.update(MENU_ITEMS)
                 .set(MENU_ITEMS.NAME, item.getName())
                 .set(MENU_ITEMS.DESCRIPTION, item.getDescription())
-                .set(MENU_ITEMS.PRICE, item.getPrice())
+                .set(MENU_ITEMS.PRICE_CENTS, item.getPriceCents())
                 .set(MENU_ITEMS.IS_AVAILABLE, item.getIsAvailable())
                 .set(MENU_ITEMS.UPDATED_AT, now)
                 .where(MENU_ITEMS.ID.eq(item.getId()))
-                .execute();
-
-        return findById(conn, item.getId());
+                .returning()
+                .fetchOne();
+        return updated != null ? updated.into(MenuItems.class) : null;
     }
 
     public MenuItems findById(Connection conn, int id) {
-        DSLContext dsl = DSL.using(conn);
-        MenuItemsRecord record = dsl.selectFrom(MENU_ITEMS)
-                .where(MENU_ITEMS.ID.eq(id))
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        MenuItemsRecord record = FIND_BY_ID.bind(dsl, id)
+                .coerce(MENU_ITEMS)
                 .fetchOne();
         return record != null ? record.into(MenuItems.class) : null;
     }
 
     public List<MenuItems> findAll(Connection conn) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(MENU_ITEMS)
-                .orderBy(MENU_ITEMS.NAME.asc())
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return FIND_ALL.bind(dsl)
+                .coerce(MENU_ITEMS)
                 .fetchInto(MenuItems.class);
     }
 
     public List<MenuItems> findAvailable(Connection conn) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(MENU_ITEMS)
-                .where(MENU_ITEMS.IS_AVAILABLE.eq(true))
-                .orderBy(MENU_ITEMS.NAME.asc())
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return FIND_AVAILABLE.bind(dsl)
+                .coerce(MENU_ITEMS)
                 .fetchInto(MenuItems.class);
     }
 
     public void setAvailability(Connection conn, int itemId, boolean available) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(MENU_ITEMS)
@@ -80,7 +94,7 @@ public class MenuItemRepository {
     }
 
     public void delete(Connection conn, int itemId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         dsl.deleteFrom(MENU_ITEMS)
                 .where(MENU_ITEMS.ID.eq(itemId))
                 .execute();
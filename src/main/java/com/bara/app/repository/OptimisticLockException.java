@@ -0,0 +1,33 @@
+package com.bara.app.repository;
+
+/**
+ * A versioned write found the row changed since it was read (typically by another terminal).
+ * Re-read and reapply the edit, or let {@link OptimisticRetry} do it.
+ */
+public class OptimisticLockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String table;
+    private final int id;
+    private final int expectedVersion;
+
+    public OptimisticLockException(String table, int id, int expectedVersion) {
+        super("Concurrent update of " + table + " " + id + " (expected version " + expectedVersion + ")");
+        this.table = table;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+}
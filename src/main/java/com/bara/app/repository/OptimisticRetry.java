@@ -0,0 +1,42 @@
+package com.bara.app.repository;
+
+import com.bara.app.metrics.ContentionStats;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Retries a read-modify-write whose versioned write lost a race.
+ * Each attempt must re-read the row, so the edit is reapplied on top of the other terminal's change.
+ */
+final class OptimisticRetry {
+
+    private static final int MAX_ATTEMPTS = Integer.getInteger("bara.optimistic.maxAttempts", 5);
+
+    private OptimisticRetry() {
+    }
+
+    static <T> T run(String table, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockException e) {
+                if (attemptNumber >= MAX_ATTEMPTS) {
+                    ContentionStats.recordGiveUp(table);
+                    throw e;
+                }
+                ContentionStats.recordRetry(table);
+                backOff(attemptNumber);
+            }
+        }
+    }
+
+    // A few milliseconds, jittered, so terminals racing for the same row stop colliding in lockstep
+    private static void backOff(int attemptNumber) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 1L << Math.min(attemptNumber + 1, 6)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.CachedQuery;
+import com.bara.app.database.DatabaseManager;
 import com.bara.app.db.jooq.tables.pojos.OrderItems;
 import com.bara.app.db.jooq.tables.records.OrderItemsRecord;
+import com.bara.app.metrics.ContentionStats;
+import org.jooq.CommonTableExpression;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep9;
+import org.jooq.Record1;
+import org.jooq.Record2;
+import org.jooq.ResultQuery;
+import org.jooq.SelectField;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
+import static com.bara.app.db.jooq.Tables.ORDERS;
 import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
 
 /**
@@ -16,35 +32,78 @@ import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
  */
 public class OrderItemRepository {
 
+    private static final String TABLE = "order_items";
+    private static final String DELTA = "delta_cents";
+
+    private static final CachedQuery FIND_BY_ID = new CachedQuery(dsl -> dsl.selectFrom(ORDER_ITEMS)
+            .where(ORDER_ITEMS.ID.eq(0)));
+
+    private static final CachedQuery FIND_BY_ORDER_ID = new CachedQuery(dsl -> dsl.selectFrom(ORDER_ITEMS)
+            .where(ORDER_ITEMS.ORDER_ID.eq(0))
+            .orderBy(ORDER_ITEMS.ID.asc()));
+
     /**
-     * Create a new order item.
+     * Add a line to an existing order. The order's subtotal and total move by the line total in the
+     * same statement.
      */
     public OrderItems create(Connection conn, OrderItems item) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
-        OrderItemsRecord record = dsl.newRecord(ORDER_ITEMS);
-        record.setOrderId(item.getOrderId());
-        record.setMenuItemId(item.getMenuItemId());
-        record.setItemName(item.getItemName());
-        record.setItemPrice(item.getItemPrice());
-        record.setQuantity(item.getQuantity());
-        record.setNotes(item.getNotes());
-        record.setLineTotal(item.getLineTotal());
-        record.setCreatedAt(now);
-        record.setUpdatedAt(now);
+        CommonTableExpression<?> inserted = DSL.name("inserted").as(dsl.insertInto(ORDER_ITEMS)
+                .set(ORDER_ITEMS.ORDER_ID, item.getOrderId())
+                .set(ORDER_ITEMS.MENU_ITEM_ID, item.getMenuItemId())
+                .set(ORDER_ITEMS.ITEM_NAME, item.getItemName())
+                .set(ORDER_ITEMS.ITEM_PRICE_CENTS, item.getItemPriceCents())
+                .set(ORDER_ITEMS.QUANTITY, item.getQuantity())
+                .set(ORDER_ITEMS.NOTES, item.getNotes())
+                .set(ORDER_ITEMS.LINE_TOTAL_CENTS, item.getLineTotalCents())
+                .set(ORDER_ITEMS.CREATED_AT, now)
+                .set(ORDER_ITEMS.UPDATED_AT, now)
+                .returning());
+
+        return dsl.with(inserted)
+                .with(DSL.name("totals").as(adjustTotals(dsl, inserted,
+                        inserted.field(ORDER_ITEMS.ORDER_ID), inserted.field(ORDER_ITEMS.LINE_TOTAL_CENTS))))
+                .select(inserted.fields(ORDER_ITEMS.fields()))
+                .from(inserted)
+                .fetchOneInto(OrderItems.class);
+    }
+
+    /**
+     * Create all lines of a new order with one multi-row INSERT ... RETURNING.
+     * One round trip regardless of how many lines the ticket has. The order's totals are not adjusted:
+     * it was created with totals computed from these same lines (see {@code OrderCheckoutService.prepare}).
+     */
+    public List<OrderItems> createAll(Connection conn, List<OrderItems> items) {
+        if (items.isEmpty()) {
+            return new ArrayList<>();
+        }
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        InsertValuesStep9<OrderItemsRecord, Integer, Integer, String, Long, Integer, String, Long, OffsetDateTime, OffsetDateTime> insert =
+                dsl.insertInto(ORDER_ITEMS,
+                        ORDER_ITEMS.ORDER_ID, ORDER_ITEMS.MENU_ITEM_ID, ORDER_ITEMS.ITEM_NAME, ORDER_ITEMS.ITEM_PRICE_CENTS,
+                        ORDER_ITEMS.QUANTITY, ORDER_ITEMS.NOTES, ORDER_ITEMS.LINE_TOTAL_CENTS,
+                        ORDER_ITEMS.CREATED_AT, ORDER_ITEMS.UPDATED_AT);
+        for (OrderItems item : items) {
+            insert = insert.values(item.getOrderId(), item.getMenuItemId(), item.getItemName(), item.getItemPriceCents(),
+                    item.getQuantity(), item.getNotes(), item.getLineTotalCents(), now, now);
+        }
 
-        record.store();
-        return record.into(OrderItems.class);
+        return insert.returning()
+                .fetch()
+                .into(OrderItems.class);
     }
 
     /**
      * Find order item by ID.
      */
     public OrderItems findById(Connection conn, int id) {
-        DSLContext dsl = DSL.using(conn);
-        OrderItemsRecord record = dsl.selectFrom(ORDER_ITEMS)
-                .where(ORDER_ITEMS.ID.eq(id))
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OrderItemsRecord record = FIND_BY_ID.bind(dsl, id)
+                .coerce(ORDER_ITEMS)
                 .fetchOne();
         return record != null ? record.into(OrderItems.class) : null;
     }
@@ -53,84 +112,203 @@ public class OrderItemRepository {
      * Find all items for a specific order.
      */
     public List<OrderItems> findByOrderId(Connection conn, int orderId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return FIND_BY_ORDER_ID.bind(dsl, orderId)
+                .coerce(ORDER_ITEMS)
+                .fetchInto(OrderItems.class);
+    }
+
+    /**
+     * Find the items of several orders in one query, ordered by order and then item.
+     */
+    public List<OrderItems> findByOrderIds(Connection conn, Integer[] orderIds) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(ORDER_ITEMS)
-                .where(ORDER_ITEMS.ORDER_ID.eq(orderId))
-                .orderBy(ORDER_ITEMS.ID.asc())
+                .where(ORDER_ITEMS.ORDER_ID.eq(DSL.any(orderIds)))
+                .orderBy(ORDER_ITEMS.ORDER_ID.asc(), ORDER_ITEMS.ID.asc())
                 .fetchInto(OrderItems.class);
     }
 
     /**
      * Update order item quantity and recalculate line total.
+     * The line total is computed from the stored price in the same statement. Last writer wins; use
+     * {@link #updateQuantity(Connection, OrderItems, int)} or {@link #incrementQuantity} when another
+     * terminal may be editing the same order.
      */
     public OrderItems updateQuantity(Connection conn, int itemId, int newQuantity) {
-        DSLContext dsl = DSL.using(conn);
-        OffsetDateTime now = OffsetDateTime.now();
+        return setQuantity(conn, ORDER_ITEMS.ID.eq(itemId), newQuantity);
+    }
 
-        // Fetch current item to get price
-        OrderItemsRecord item = dsl.selectFrom(ORDER_ITEMS)
-                .where(ORDER_ITEMS.ID.eq(itemId))
-                .fetchOne();
+    /**
+     * Set the quantity of the line as it was read. If the line has changed since (its version moved on),
+     * nothing is written and {@link OptimisticLockException} is thrown.
+     *
+     * @return Updated item, or null if it no longer exists
+     */
+    public OrderItems updateQuantity(Connection conn, OrderItems expected, int newQuantity) {
+        ContentionStats.recordWrite(TABLE);
+        OrderItems updated = setQuantity(conn,
+                ORDER_ITEMS.ID.eq(expected.getId()).and(ORDER_ITEMS.VERSION.eq(expected.getVersion())), newQuantity);
+        if (updated == null && findById(conn, expected.getId()) != null) {
+            ContentionStats.recordConflict(TABLE);
+            throw new OptimisticLockException(TABLE, expected.getId(), expected.getVersion());
+        }
+        return updated;
+    }
 
-        if (item != null) {
-            float newLineTotal = item.getItemPrice() * newQuantity;
+    /**
+     * Add {@code delta} units (negative to take away) to a line.
+     *
+     * <p>Increments commute, so this needs no version check: two terminals adding to the same line both
+     * count, whatever order they land in. Prefer it over a read-then-set for taps on "+" and "-".
+     *
+     * @return Updated item, or null if it does not exist or would drop to zero units
+     */
+    public OrderItems incrementQuantity(Connection conn, int itemId, int delta) {
+        Field<Integer> quantity = ORDER_ITEMS.QUANTITY.plus(delta);
+        return updateLine(conn, ORDER_ITEMS.ID.eq(itemId).and(quantity.gt(0)), quantity);
+    }
 
-            dsl.update(ORDER_ITEMS)
-                    .set(ORDER_ITEMS.QUANTITY, newQuantity)
-                    .set(ORDER_ITEMS.LINE_TOTAL, newLineTotal)
-                    .set(ORDER_ITEMS.UPDATED_AT, now)
-                    .where(ORDER_ITEMS.ID.eq(itemId))
-                    .execute();
+    /**
+     * Read-modify-write of a line's quantity that survives concurrent edits: {@code change} is applied
+     * to the current quantity and written back against the line's version, retried on conflict.
+     * For plain increments {@link #incrementQuantity} is cheaper.
+     *
+     * @return Updated item, or null if it does not exist
+     */
+    public OrderItems updateQuantity(Connection conn, int itemId, IntUnaryOperator change) {
+        return OptimisticRetry.run(TABLE, () -> {
+            OrderItems current = findById(conn, itemId);
+            return current != null ? updateQuantity(conn, current, change.applyAsInt(current.getQuantity())) : null;
+        });
+    }
 
-            return findById(conn, itemId);
-        }
+    private OrderItems setQuantity(Connection conn, Condition condition, int newQuantity) {
+        return updateLine(conn, condition, DSL.val(newQuantity));
+    }
+
+    /**
+     * Set the quantity of the line matching {@code which} and move its order's totals by the change in
+     * line total, as one statement:
+     * <pre>
+     * WITH changed AS (UPDATE order_items ... FROM (SELECT ... FOR UPDATE) before ... RETURNING ..., delta),
+     *      totals AS (UPDATE orders SET subtotal_cents = subtotal_cents + delta, ... FROM changed ...)
+     * SELECT ... FROM changed
+     * </pre>
+     * The previous line total is read with FOR UPDATE so it is the one being replaced, even when another
+     * terminal changed the line while this statement waited for it.
+     */
+    private OrderItems updateLine(Connection conn, Condition which, Field<Integer> quantity) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
 
-        return null;
+        Table<Record2<Integer, Long>> before = dsl.select(ORDER_ITEMS.ID, ORDER_ITEMS.LINE_TOTAL_CENTS)
+                .from(ORDER_ITEMS)
+                .where(which)
+                .forUpdate()
+                .asTable("before");
+
+        List<SelectField<?>> returning = new ArrayList<>(List.of(ORDER_ITEMS.fields()));
+        returning.add(ORDER_ITEMS.LINE_TOTAL_CENTS.minus(before.field(ORDER_ITEMS.LINE_TOTAL_CENTS)).as(DELTA));
+        CommonTableExpression<?> changed = DSL.name("changed").as(dsl.update(ORDER_ITEMS)
+                .set(ORDER_ITEMS.QUANTITY, quantity)
+                .set(ORDER_ITEMS.LINE_TOTAL_CENTS, ORDER_ITEMS.ITEM_PRICE_CENTS.mul(quantity.cast(Long.class)))
+                .set(ORDER_ITEMS.UPDATED_AT, now)
+                .set(ORDER_ITEMS.VERSION, ORDER_ITEMS.VERSION.plus(1))
+                .from(before)
+                .where(ORDER_ITEMS.ID.eq(before.field(ORDER_ITEMS.ID)))
+                .returning(returning));
+
+        return dsl.with(changed)
+                .with(DSL.name("totals").as(adjustTotals(dsl, changed,
+                        changed.field(ORDER_ITEMS.ORDER_ID), changed.field(DELTA, Long.class))))
+                .select(changed.fields(ORDER_ITEMS.fields()))
+                .from(changed)
+                .fetchOneInto(OrderItems.class);
+    }
+
+    /**
+     * UPDATE orders moving subtotal and total by {@code deltaCents} for the order of each row of
+     * {@code changes} (at most one row per order). Tax and delivery fee stay as charged.
+     */
+    private static ResultQuery<Record1<Integer>> adjustTotals(DSLContext dsl, Table<?> changes,
+                                                              Field<Integer> orderId, Field<Long> deltaCents) {
+        return dsl.update(ORDERS)
+                .set(ORDERS.SUBTOTAL_CENTS, ORDERS.SUBTOTAL_CENTS.plus(deltaCents))
+                .set(ORDERS.TOTAL_CENTS, ORDERS.TOTAL_CENTS.plus(deltaCents))
+                .set(ORDERS.UPDATED_AT, OffsetDateTime.now())
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .from(changes)
+                .where(ORDERS.ID.eq(orderId))
+                .returningResult(ORDERS.ID);
     }
 
     /**
      * Update order item notes.
      */
     public void updateNotes(Connection conn, int itemId, String notes) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(ORDER_ITEMS)
                 .set(ORDER_ITEMS.NOTES, notes)
                 .set(ORDER_ITEMS.UPDATED_AT, now)
+                .set(ORDER_ITEMS.VERSION, ORDER_ITEMS.VERSION.plus(1))
                 .where(ORDER_ITEMS.ID.eq(itemId))
                 .execute();
     }
 
     /**
-     * Delete order item.
+     * Delete order item, taking its line total off the order's totals in the same statement.
      */
     public void delete(Connection conn, int itemId) {
-        DSLContext dsl = DSL.using(conn);
-        dsl.deleteFrom(ORDER_ITEMS)
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        CommonTableExpression<?> removed = DSL.name("removed").as(dsl.deleteFrom(ORDER_ITEMS)
                 .where(ORDER_ITEMS.ID.eq(itemId))
+                .returning(ORDER_ITEMS.ORDER_ID, ORDER_ITEMS.LINE_TOTAL_CENTS));
+
+        dsl.with(removed)
+                .with(DSL.name("totals").as(adjustTotals(dsl, removed,
+                        removed.field(ORDER_ITEMS.ORDER_ID), removed.field(ORDER_ITEMS.LINE_TOTAL_CENTS).neg())))
+                .selectCount()
+                .from(removed)
                 .execute();
     }
 
     /**
-     * Delete all items for an order (used when order is cancelled).
+     * Delete all items for an order (used when order is cancelled). The order's subtotal drops by what
+     * was deleted, to zero, in the same statement.
      */
     public void deleteByOrderId(Connection conn, int orderId) {
-        DSLContext dsl = DSL.using(conn);
-        dsl.deleteFrom(ORDER_ITEMS)
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        CommonTableExpression<?> removed = DSL.name("removed").as(dsl.deleteFrom(ORDER_ITEMS)
                 .where(ORDER_ITEMS.ORDER_ID.eq(orderId))
+                .returning(ORDER_ITEMS.LINE_TOTAL_CENTS));
+        Table<Record1<Long>> removedTotal = dsl
+                .select(DSL.coalesce(DSL.sum(removed.field(ORDER_ITEMS.LINE_TOTAL_CENTS)), BigDecimal.ZERO)
+                        .cast(Long.class).as(DELTA))
+                .from(removed)
+                .asTable("removed_total");
+
+        dsl.with(removed)
+                .with(DSL.name("totals").as(adjustTotals(dsl, removedTotal,
+                        DSL.val(orderId), removedTotal.field(DELTA, Long.class).neg())))
+                .selectOne()
                 .execute();
     }
 
     /**
-     * Calculate total for all items in an order.
+     * Total of all items in an order, in cents. Read from the order's subtotal, which every item write
+     * above keeps current, so this is a primary key lookup rather than a sum over the lines.
+     * {@link OrderRepository#findTotalsDrift} checks the two still agree.
      */
-    public float calculateOrderTotal(Connection conn, int orderId) {
-        DSLContext dsl = DSL.using(conn);
-        Float total = dsl.select(DSL.sum(ORDER_ITEMS.LINE_TOTAL))
-                .from(ORDER_ITEMS)
-                .where(ORDER_ITEMS.ORDER_ID.eq(orderId))
-                .fetchOne(0, Float.class);
-        return total != null ? total : 0.0f;
+    public long calculateOrderTotal(Connection conn, int orderId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Long total = dsl.select(ORDERS.SUBTOTAL_CENTS)
+                .from(ORDERS)
+                .where(ORDERS.ID.eq(orderId))
+                .fetchOne(ORDERS.SUBTOTAL_CENTS);
+        return total != null ? total : 0L;
     }
 }
@@ -1,23 +1,72 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.CachedQuery;
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.Keyset;
 import com.bara.app.db.jooq.tables.pojos.Orders;
 import com.bara.app.db.jooq.tables.records.OrdersRecord;
+import com.bara.app.metrics.ContentionStats;
+import com.bara.app.model.Page;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record2;
+import org.jooq.Record3;
+import org.jooq.SelectSeekStep1;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 
 import java.sql.Connection;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.UUID;
 
 import static com.bara.app.db.jooq.Tables.ORDERS;
+import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
 
 public class OrderRepository {
 
+    private static final String TABLE = "orders";
+    private static final String LINES_SUBTOTAL = "lines_subtotal";
+
+    private static final CachedQuery FIND_BY_ID = new CachedQuery(dsl -> dsl.selectFrom(ORDERS)
+            .where(ORDERS.ID.eq(0)));
+
     public Orders create(Connection conn, Orders order) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OrdersRecord record = newRecord(dsl, order);
+        record.store();
+        return record.into(Orders.class);
+    }
+
+    /**
+     * Insert an order keyed by its client UUID, unless that UUID is already stored.
+     * Makes journal replays idempotent.
+     *
+     * @return The created order, or null if an order with the same client UUID already exists
+     */
+    public Orders createIfAbsent(Connection conn, Orders order) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OrdersRecord record = newRecord(dsl, order);
+
+        OrdersRecord created = dsl.insertInto(ORDERS)
+                .set(record)
+                .onConflict(ORDERS.CLIENT_UUID)
+                .doNothing()
+                .returning()
+                .fetchOne();
+        return created != null ? created.into(Orders.class) : null;
+    }
+
+    private OrdersRecord newRecord(DSLContext dsl, Orders order) {
         OffsetDateTime now = OffsetDateTime.now();
+        // Journaled orders are written later than they were taken; keep the original time
+        OffsetDateTime orderedAt = order.getOrderedAt() != null ? order.getOrderedAt() : now;
+        LocalDateTime localOrderedAt = orderedAt.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
 
         OrdersRecord record = dsl.newRecord(ORDERS);
         record.setCustomerId(order.getCustomerId());
@@ -28,86 +77,278 @@ public class OrderRepository {
         record.setPartySize(order.getPartySize());
         record.setPartyComposition(order.getPartyComposition());
         record.setTableNumber(order.getTableNumber());
-        record.setDayOfWeek(LocalDateTime.now().getDayOfWeek().toString());
-        record.setTimeOfDay(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm")));
+        record.setDayOfWeek(localOrderedAt.getDayOfWeek().toString());
+        record.setTimeOfDay(localOrderedAt.format(DateTimeFormatter.ofPattern("HH:mm")));
         record.setStatus(order.getStatus() != null ? order.getStatus() : "pending");
-        record.setSubtotal(order.getSubtotal());
-        record.setTax(order.getTax() != null ? order.getTax().floatValue() : 0.0f);
-        record.setDeliveryFee(order.getDeliveryFee() != null ? order.getDeliveryFee().floatValue() : 0.0f);
-        record.setTotal(order.getTotal());
+        record.setSubtotalCents(order.getSubtotalCents());
+        record.setTaxCents(order.getTaxCents() != null ? order.getTaxCents() : 0L);
+        record.setDeliveryFeeCents(order.getDeliveryFeeCents() != null ? order.getDeliveryFeeCents() : 0L);
+        record.setTotalCents(order.getTotalCents());
         record.setPaymentStatus(order.getPaymentStatus() != null ? order.getPaymentStatus() : "unpaid");
         record.setPaymentMethod(order.getPaymentMethod());
         record.setCustomerNotes(order.getCustomerNotes());
         record.setInternalNotes(order.getInternalNotes());
         record.setStaffObservations(order.getStaffObservations());
-        record.setOrderedAt(now);
+        record.setClientUuid(order.getClientUuid());
+        record.setOrderedAt(orderedAt);
         record.setCreatedAt(now);
         record.setUpdatedAt(now);
+        record.setVersion(1);
         record.setSyncVersion(1);
         record.setSyncedToCloud(false);
-
-        record.store();
-        return record.into(Orders.class);
+        return record;
     }
 
     public Orders findById(Connection conn, int orderId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OrdersRecord record = FIND_BY_ID.bind(dsl, orderId)
+                .coerce(ORDERS)
+                .fetchOne();
+        return record != null ? record.into(Orders.class) : null;
+    }
+
+    public Orders findByClientUuid(Connection conn, UUID clientUuid) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OrdersRecord record = dsl.selectFrom(ORDERS)
-                .where(ORDERS.ID.eq(orderId))
+                .where(ORDERS.CLIENT_UUID.eq(clientUuid))
                 .fetchOne();
         return record != null ? record.into(Orders.class) : null;
     }
 
-    public List<Orders> findByCustomerId(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(ORDERS)
-                .where(ORDERS.CUSTOMER_ID.eq(customerId))
-                .orderBy(ORDERS.ORDERED_AT.desc())
-                .fetchInto(Orders.class);
+    /**
+     * One page of a customer's orders, newest first.
+     *
+     * @param after Cursor of the previous page, or null for the first page
+     */
+    public Page<Orders> findByCustomerId(Connection conn, int customerId, Page.Cursor after, int limit) {
+        return findNewestFirst(conn, ORDERS.CUSTOMER_ID.eq(customerId), after, limit);
     }
 
-    public List<Orders> findByClusterId(Connection conn, int clusterId) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(ORDERS)
-                .where(ORDERS.CLUSTER_ID.eq(clusterId))
-                .orderBy(ORDERS.ORDERED_AT.desc())
-                .fetchInto(Orders.class);
+    /**
+     * One page of the orders of an unidentified customer cluster, newest first.
+     *
+     * @param after Cursor of the previous page, or null for the first page
+     */
+    public Page<Orders> findByClusterId(Connection conn, int clusterId, Page.Cursor after, int limit) {
+        return findNewestFirst(conn, ORDERS.CLUSTER_ID.eq(clusterId), after, limit);
     }
 
-    public List<Orders> findAnonymousOrders(Connection conn) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(ORDERS)
-                .where(ORDERS.CUSTOMER_ID.isNull())
-                .and(ORDERS.CLUSTER_ID.isNull())
-                .orderBy(ORDERS.ORDERED_AT.desc())
-                .limit(100)
+    /**
+     * One page of the orders linked to neither a customer nor a cluster, newest first.
+     *
+     * @param after Cursor of the previous page, or null for the first page
+     */
+    public Page<Orders> findAnonymousOrders(Connection conn, Page.Cursor after, int limit) {
+        return findNewestFirst(conn, ORDERS.CUSTOMER_ID.isNull().and(ORDERS.CLUSTER_ID.isNull()), after, limit);
+    }
+
+    // Ordered by (ordered_at, id) descending; V18 indexes each filter in that order
+    private Page<Orders> findNewestFirst(Connection conn, Condition filter, Page.Cursor after, int limit) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        List<Orders> rows = dsl.selectFrom(ORDERS)
+                .where(filter)
+                .and(Keyset.after(after, true, ORDERS.ORDERED_AT, ORDERS.ID))
+                .orderBy(ORDERS.ORDERED_AT.desc(), ORDERS.ID.desc())
+                .limit(Keyset.fetchSize(limit))
                 .fetchInto(Orders.class);
+        return Keyset.page(rows, limit, order -> new Object[]{order.getOrderedAt(), order.getId()});
     }
 
+    /**
+     * Set an order's status.
+     *
+     * @return The updated order, or null if it does not exist
+     */
     public Orders updateStatus(Connection conn, int orderId, String status) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
-        dsl.update(ORDERS)
+        OrdersRecord updated = dsl.update(ORDERS)
                 .set(ORDERS.STATUS, status)
                 .set(ORDERS.UPDATED_AT, now)
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
                 .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
                 .where(ORDERS.ID.eq(orderId))
-                .execute();
+                .returning()
+                .fetchOne();
+        return updated != null ? updated.into(Orders.class) : null;
+    }
+
+    /**
+     * Set the status of the order as it was read. If the order has changed since (its version moved on,
+     * e.g. another terminal edited or bumped it), nothing is written and {@link OptimisticLockException}
+     * is thrown.
+     *
+     * @return The updated order, or null if it no longer exists
+     */
+    public Orders updateStatus(Connection conn, Orders expected, String status) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+
+        ContentionStats.recordWrite(TABLE);
+        OrdersRecord updated = dsl.update(ORDERS)
+                .set(ORDERS.STATUS, status)
+                .set(ORDERS.UPDATED_AT, OffsetDateTime.now())
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .where(ORDERS.ID.eq(expected.getId()))
+                .and(ORDERS.VERSION.eq(expected.getVersion()))
+                .returning()
+                .fetchOne();
+        if (updated != null) {
+            return updated.into(Orders.class);
+        }
+        if (findById(conn, expected.getId()) != null) {
+            ContentionStats.recordConflict(TABLE);
+            throw new OptimisticLockException(TABLE, expected.getId(), expected.getVersion());
+        }
+        return null;
+    }
 
-        return findById(conn, orderId);
+    /**
+     * Set the status of many orders in one statement. Orders already in {@code status} are left untouched.
+     *
+     * @return The orders that changed
+     */
+    public List<Orders> updateStatuses(Connection conn, Integer[] orderIds, String status) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        return dsl.update(ORDERS)
+                .set(ORDERS.STATUS, status)
+                .set(ORDERS.UPDATED_AT, now)
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .where(ORDERS.ID.eq(DSL.any(orderIds)))
+                .and(ORDERS.STATUS.ne(status))
+                .returning()
+                .fetchInto(Orders.class);
+    }
+
+    /**
+     * Orders in any of {@code statuses}, oldest first.
+     */
+    public List<Orders> findByStatuses(Connection conn, List<String> statuses) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.selectFrom(ORDERS)
+                .where(ORDERS.STATUS.in(statuses))
+                .orderBy(ORDERS.ORDERED_AT.asc(), ORDERS.ID.asc())
+                .fetchInto(Orders.class);
+    }
+
+    /**
+     * Move an order from {@code expectedStatus} to {@code newStatus} in a single statement.
+     * Nothing is written if the status has already been changed (e.g. bumped on another screen).
+     *
+     * @return Whether the order was updated
+     */
+    public boolean advanceStatus(Connection conn, int orderId, String expectedStatus, String newStatus) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.update(ORDERS)
+                .set(ORDERS.STATUS, newStatus)
+                .set(ORDERS.UPDATED_AT, OffsetDateTime.now())
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .where(ORDERS.ID.eq(orderId))
+                .and(ORDERS.STATUS.eq(expectedStatus))
+                .execute() == 1;
     }
 
     public void linkToCustomer(Connection conn, int orderId, int customerId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(ORDERS)
                 .set(ORDERS.CUSTOMER_ID, customerId)
                 .set(ORDERS.CLUSTER_ID, (Integer) null)
                 .set(ORDERS.UPDATED_AT, now)
+                .set(ORDERS.VERSION, ORDERS.VERSION.plus(1))
                 .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
                 .where(ORDERS.ID.eq(orderId))
                 .execute();
     }
+
+    /**
+     * Orders whose stored totals disagree with their lines: subtotal is not the sum of the line totals, or
+     * total is not subtotal + tax + delivery fee. Item writes keep these in step, so any row here means
+     * something wrote around them (or it predates integer cents: V11 rounded each amount on its own, so
+     * older totals can be a cent off). One pass over orders and grouped items; nothing is locked.
+     */
+    public List<Orders> findTotalsDrift(Connection conn) {
+        return totalsDrift(DatabaseManager.dsl(conn), DSL.noCondition(), DSL.noCondition())
+                .fetchInto(Orders.class);
+    }
+
+    /**
+     * Drifted orders among those in {@code statuses} and not yet paid, locked until the transaction ends
+     * so they can be repaired without racing item writes.
+     */
+    public List<Orders> lockOpenTotalsDrift(Connection conn, List<String> statuses) {
+        Condition open = ORDERS.STATUS.in(statuses).and(ORDERS.PAYMENT_STATUS.eq("unpaid"));
+        return totalsDrift(DatabaseManager.dsl(conn), open,
+                ORDER_ITEMS.ORDER_ID.in(DSL.select(ORDERS.ID).from(ORDERS).where(open)))
+                .forUpdate()
+                .of(ORDERS)
+                .fetchInto(Orders.class);
+    }
+
+    private static SelectSeekStep1<Record, Integer> totalsDrift(DSLContext dsl, Condition which,
+                                                                 Condition whichLines) {
+        Table<Record2<Integer, Long>> lines = lineTotals(dsl, whichLines);
+        Field<Long> linesSubtotal = DSL.coalesce(lines.field(LINES_SUBTOTAL, Long.class), 0L);
+
+        return dsl.select(ORDERS.fields())
+                .from(ORDERS)
+                .leftJoin(lines).on(lines.field(ORDER_ITEMS.ORDER_ID).eq(ORDERS.ID))
+                .where(which)
+                .and(ORDERS.SUBTOTAL_CENTS.ne(linesSubtotal)
+                        .or(ORDERS.TOTAL_CENTS.ne(ORDERS.SUBTOTAL_CENTS.plus(ORDERS.TAX_CENTS).plus(ORDERS.DELIVERY_FEE_CENTS))))
+                .orderBy(ORDERS.ID.asc());
+    }
+
+    /**
+     * Recompute the totals of {@code orderIds} from their lines, in one statement.
+     * Tax and delivery fee are kept; only subtotal and total are rewritten.
+     *
+     * @return The orders that changed, as repaired
+     */
+    public List<Orders> repairTotals(Connection conn, Integer[] orderIds) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Table<Record2<Integer, Long>> lines = lineTotals(dsl, ORDER_ITEMS.ORDER_ID.eq(DSL.any(orderIds)));
+        Field<Long> linesSubtotal = DSL.coalesce(lines.field(LINES_SUBTOTAL, Long.class), 0L);
+        Field<Long> repairedTotal = linesSubtotal.plus(ORDERS.TAX_CENTS).plus(ORDERS.DELIVERY_FEE_CENTS);
+
+        // An order with no lines left has no row in "lines", hence the outer query
+        Table<Record3<Integer, Long, Long>> repaired = dsl.select(ORDERS.ID, linesSubtotal.as(LINES_SUBTOTAL),
+                        repairedTotal.as("lines_total"))
+                .from(ORDERS)
+                .leftJoin(lines).on(lines.field(ORDER_ITEMS.ORDER_ID).eq(ORDERS.ID))
+                .where(ORDERS.ID.eq(DSL.any(orderIds)))
+                .asTable("repaired");
+
+        return dsl.update(ORDERS)
+                .set(ORDERS.SUBTOTAL_CENTS, repaired.field(LINES_SUBTOTAL, Long.class))
+                .set(ORDERS.TOTAL_CENTS, repaired.field("lines_total", Long.class))
+                .set(ORDERS.UPDATED_AT, OffsetDateTime.now())
+                .set(ORDERS.SYNC_VERSION, ORDERS.SYNC_VERSION.plus(1))
+                .set(ORDERS.SYNCED_TO_CLOUD, false)
+                .from(repaired)
+                .where(ORDERS.ID.eq(repaired.field(ORDERS.ID)))
+                .and(ORDERS.SUBTOTAL_CENTS.ne(repaired.field(LINES_SUBTOTAL, Long.class))
+                        .or(ORDERS.TOTAL_CENTS.ne(repaired.field("lines_total", Long.class))))
+                .returning()
+                .fetchInto(Orders.class);
+    }
+
+    private static Table<Record2<Integer, Long>> lineTotals(DSLContext dsl, Condition condition) {
+        return dsl.select(ORDER_ITEMS.ORDER_ID, DSL.sum(ORDER_ITEMS.LINE_TOTAL_CENTS).cast(Long.class).as(LINES_SUBTOTAL))
+                .from(ORDER_ITEMS)
+                .where(condition)
+                .groupBy(ORDER_ITEMS.ORDER_ID)
+                .asTable("lines");
+    }
 }
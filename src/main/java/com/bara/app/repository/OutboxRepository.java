@@ -0,0 +1,85 @@
+package com.bara.app.repository;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.sync.SyncEntity;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.sql.Connection;
+import java.time.OffsetDateTime;
+
+import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
+
+/**
+ * Reads rows waiting to be pushed to the cloud ({@code synced_to_cloud = false}) and marks them as pushed.
+ */
+public class OutboxRepository {
+
+    /**
+     * Next batch of pending rows after a keyset cursor, in id order.
+     *
+     * @param afterId Last id of the previous batch (0 to start)
+     * @param limit Maximum rows to return
+     */
+    public Result<Record> findPending(Connection conn, SyncEntity entity, int afterId, int limit) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(entity.getTable().fields())
+                .from(entity.getTable())
+                .where(entity.getSyncedToCloud().isFalse())
+                .and(entity.getId().gt(afterId))
+                .orderBy(entity.getId().asc())
+                .limit(limit)
+                .fetch();
+    }
+
+    /**
+     * Lines of the given orders, pushed alongside their order headers.
+     */
+    public Result<Record> findOrderItems(Connection conn, Integer[] orderIds) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(ORDER_ITEMS.fields())
+                .from(ORDER_ITEMS)
+                .where(ORDER_ITEMS.ORDER_ID.eq(DSL.any(orderIds)))
+                .orderBy(ORDER_ITEMS.ORDER_ID.asc(), ORDER_ITEMS.ID.asc())
+                .fetch();
+    }
+
+    /**
+     * Mark pushed rows as synced in one statement.
+     * A row only counts as synced if its sync_version is still the one that was pushed;
+     * rows edited in the meantime stay pending and go out again on the next pass.
+     *
+     * @param ids Pushed row ids
+     * @param versions sync_version of each pushed row, parallel to {@code ids}
+     * @return Number of rows marked
+     */
+    public int markSynced(Connection conn, SyncEntity entity, Integer[] ids, Integer[] versions) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Field<Integer[]> idArray = DSL.val(ids, SQLDataType.INTEGER.getArrayDataType());
+        Field<Integer[]> versionArray = DSL.val(versions, SQLDataType.INTEGER.getArrayDataType());
+        Field<Integer> pushedVersion = DSL.field("({0})[array_position({1}, {2})]",
+                Integer.class, versionArray, idArray, entity.getId());
+
+        return dsl.update(entity.getTable())
+                .set(entity.getSyncedToCloud(), true)
+                .set(entity.getLastSyncedAt(), OffsetDateTime.now())
+                .where(entity.getId().eq(DSL.any(idArray)))
+                .and(entity.getSyncVersion().eq(pushedVersion))
+                .execute();
+    }
+
+    /**
+     * updated_at of the oldest pending row, or null when everything is synced.
+     */
+    public OffsetDateTime findOldestPending(Connection conn, SyncEntity entity) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return dsl.select(DSL.min(entity.getUpdatedAt()))
+                .from(entity.getTable())
+                .where(entity.getSyncedToCloud().isFalse())
+                .fetchOne(0, OffsetDateTime.class);
+    }
+}
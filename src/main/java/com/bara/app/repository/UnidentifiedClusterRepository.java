@@ -1,12 +1,19 @@
 package com.bara.app.repository;
 
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TextNormalizer;
+import com.bara.app.database.Trigram;
+import com.bara.app.db.jooq.Routines;
 import com.bara.app.db.jooq.tables.pojos.UnidentifiedCustomerClusters;
 import com.bara.app.db.jooq.tables.records.UnidentifiedCustomerClustersRecord;
+import com.bara.app.model.ScoredMatch;
 import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.impl.DSL;
 
 import java.sql.Connection;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.bara.app.db.jooq.Tables.UNIDENTIFIED_CUSTOMER_CLUSTERS;
@@ -21,7 +28,7 @@ public class UnidentifiedClusterRepository {
      * Create a new cluster.
      */
     public UnidentifiedCustomerClusters create(Connection conn, UnidentifiedCustomerClusters cluster) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         UnidentifiedCustomerClustersRecord record = dsl.newRecord(UNIDENTIFIED_CUSTOMER_CLUSTERS);
@@ -32,8 +39,8 @@ public class UnidentifiedClusterRepository {
         record.setTypicalDays(cluster.getTypicalDays());
         record.setTypicalTimes(cluster.getTypicalTimes());
         record.setOrderCount(cluster.getOrderCount() != null ? cluster.getOrderCount() : 0);
-        record.setTotalSpent(cluster.getTotalSpent() != null ? cluster.getTotalSpent() : 0.0f);
-        record.setAvgTicketSize(cluster.getAvgTicketSize());
+        record.setTotalSpentCents(cluster.getTotalSpentCents() != null ? cluster.getTotalSpentCents() : 0L);
+        record.setAvgTicketSizeCents(cluster.getAvgTicketSizeCents());
         record.setFirstSeen(cluster.getFirstSeen() != null ? cluster.getFirstSeen() : now);
         record.setLastSeen(cluster.getLastSeen() != null ? cluster.getLastSeen() : now);
         record.setPatternConfidence(cluster.getPatternConfidence() != null ? cluster.getPatternConfidence() : 0.5f);
@@ -53,7 +60,7 @@ public class UnidentifiedClusterRepository {
      * Find cluster by ID.
      */
     public UnidentifiedCustomerClusters findById(Connection conn, int id) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         UnidentifiedCustomerClustersRecord record = dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.ID.eq(id))
                 .fetchOne();
@@ -64,7 +71,7 @@ public class UnidentifiedClusterRepository {
      * Find unmatched clusters sorted by info quality (best candidates for matching).
      */
     public List<UnidentifiedCustomerClusters> findUnmatched(Connection conn, int limit) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID.isNull())
                 .orderBy(UNIDENTIFIED_CUSTOMER_CLUSTERS.INFO_QUALITY_SCORE.desc(),
@@ -77,7 +84,7 @@ public class UnidentifiedClusterRepository {
      * Find high-confidence clusters (likely same customer).
      */
     public List<UnidentifiedCustomerClusters> findHighConfidence(Connection conn, float minConfidence) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID.isNull())
                 .and(UNIDENTIFIED_CUSTOMER_CLUSTERS.PATTERN_CONFIDENCE.ge(minConfidence))
@@ -86,22 +93,42 @@ public class UnidentifiedClusterRepository {
     }
 
     /**
-     * Find clusters by name pattern (for matching suggestions).
+     * Find clusters by name pattern (for matching suggestions), most similar first.
      */
     public List<UnidentifiedCustomerClusters> findByNamePattern(Connection conn, String namePattern) {
-        DSLContext dsl = DSL.using(conn);
-        return dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
-                .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.NAME_PATTERN.likeIgnoreCase("%" + namePattern + "%"))
+        List<UnidentifiedCustomerClusters> clusters = new ArrayList<>();
+        for (ScoredMatch<UnidentifiedCustomerClusters> match : findSimilarByNamePattern(conn, namePattern, Integer.MAX_VALUE)) {
+            clusters.add(match.getValue());
+        }
+        return clusters;
+    }
+
+    /**
+     * Find unmatched clusters whose name pattern contains or resembles the given name, ignoring case and
+     * accents and tolerating typos ("gonzales" finds "Los González"). Best score first, then the clusters
+     * seen most often. Served by the trigram index on the unaccented name pattern.
+     */
+    public List<ScoredMatch<UnidentifiedCustomerClusters>> findSimilarByNamePattern(Connection conn, String name,
+                                                                                  int limit) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        Field<String> term = DSL.val(TextNormalizer.unaccent(name));
+        Field<String> pattern = Routines.immutableUnaccent(UNIDENTIFIED_CUSTOMER_CLUSTERS.NAME_PATTERN);
+        Field<Float> score = Trigram.score(pattern, term);
+
+        return dsl.select(UNIDENTIFIED_CUSTOMER_CLUSTERS, score)
+                .from(UNIDENTIFIED_CUSTOMER_CLUSTERS)
+                .where(Trigram.matches(pattern, term))
                 .and(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID.isNull())
-                .orderBy(UNIDENTIFIED_CUSTOMER_CLUSTERS.ORDER_COUNT.desc())
-                .fetchInto(UnidentifiedCustomerClusters.class);
+                .orderBy(score.desc(), UNIDENTIFIED_CUSTOMER_CLUSTERS.ORDER_COUNT.desc())
+                .limit(limit)
+                .fetch(row -> new ScoredMatch<>(row.value1().into(UnidentifiedCustomerClusters.class), row.value2()));
     }
 
     /**
      * Find clusters by party size (helps narrow down matches).
      */
     public List<UnidentifiedCustomerClusters> findByPartySize(Connection conn, int partySize) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         return dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.TYPICAL_PARTY_SIZE.eq(partySize))
                 .and(UNIDENTIFIED_CUSTOMER_CLUSTERS.MATCHED_CUSTOMER_ID.isNull())
@@ -113,7 +140,7 @@ public class UnidentifiedClusterRepository {
      * Find recently seen unmatched clusters (active customers).
      */
     public List<UnidentifiedCustomerClusters> findRecentlyActive(Connection conn, int daysBack, int limit) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime cutoff = OffsetDateTime.now().minusDays(daysBack);
 
         return dsl.selectFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
@@ -128,7 +155,7 @@ public class UnidentifiedClusterRepository {
      * Link cluster to customer (retroactive matching).
      */
     public void linkToCustomer(Connection conn, int clusterId, int customerId, String matchMethod, float confidence) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(UNIDENTIFIED_CUSTOMER_CLUSTERS)
@@ -144,15 +171,15 @@ public class UnidentifiedClusterRepository {
     /**
      * Update cluster statistics (called by background job).
      */
-    public void updateStatistics(Connection conn, int clusterId, int orderCount, float totalSpent,
-                                  float avgTicketSize, OffsetDateTime lastSeen) {
-        DSLContext dsl = DSL.using(conn);
+    public void updateStatistics(Connection conn, int clusterId, int orderCount, long totalSpentCents,
+                                  long avgTicketSizeCents, OffsetDateTime lastSeen) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.ORDER_COUNT, orderCount)
-                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.TOTAL_SPENT, totalSpent)
-                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.AVG_TICKET_SIZE, avgTicketSize)
+                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.TOTAL_SPENT_CENTS, totalSpentCents)
+                .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.AVG_TICKET_SIZE_CENTS, avgTicketSizeCents)
                 .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.LAST_SEEN, lastSeen)
                 .set(UNIDENTIFIED_CUSTOMER_CLUSTERS.UPDATED_AT, now)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.ID.eq(clusterId))
@@ -164,7 +191,7 @@ public class UnidentifiedClusterRepository {
      */
     public void updatePatternConfidence(Connection conn, int clusterId, float confidence,
                                         boolean hasPartyPattern, boolean hasTemporalPattern, boolean hasItemPreferences) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(UNIDENTIFIED_CUSTOMER_CLUSTERS)
@@ -181,7 +208,7 @@ public class UnidentifiedClusterRepository {
      * Add staff notes to cluster (helps with manual matching).
      */
     public void updateStaffNotes(Connection conn, int clusterId, String notes) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         OffsetDateTime now = OffsetDateTime.now();
 
         dsl.update(UNIDENTIFIED_CUSTOMER_CLUSTERS)
@@ -195,7 +222,7 @@ public class UnidentifiedClusterRepository {
      * Delete cluster (used when merging or cleaning up low-quality clusters).
      */
     public void delete(Connection conn, int clusterId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         dsl.deleteFrom(UNIDENTIFIED_CUSTOMER_CLUSTERS)
                 .where(UNIDENTIFIED_CUSTOMER_CLUSTERS.ID.eq(clusterId))
                 .execute();
@@ -0,0 +1,298 @@
+package com.bara.app.service;
+
+import com.bara.app.model.DuplicateCandidate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds customers that are probably the same person without comparing every pair. Customers are put in
+ * blocks by what a duplicate would share: a phone's local number, an address's normalized key, and the
+ * bands of a MinHash signature over the name's trigrams (locality-sensitive hashing: names with trigram
+ * Jaccard similarity {@code s} share a band with probability {@code 1 - (1 - s^5)^6}, e.g. 0.17 at 0.5, 0.91
+ * at 0.8 and 0.995 at 0.9). Only customers in a common block are compared, and then exactly. The bands are
+ * steep because a pair with nothing but the name in common needs a very similar name to score; pairs
+ * sharing a phone or address meet in those blocks whatever their names.
+ *
+ * <p>Blocks are found by sorting one {@code long} per (block key, customer), so the whole run is
+ * {@code O(n log n)} plus the pairs inside blocks. Blocks larger than {@value #MAX_BLOCK} (a very common
+ * name, the restaurant's own number typed as a placeholder) say little and are skipped.
+ *
+ * <p>Names must be normalized like {@code customers.full_name_search} (upper case, no accents). Not
+ * thread-safe.
+ */
+public final class CustomerDuplicateDetector {
+
+    private static final int BANDS = 6;
+    private static final int ROWS = 5;
+    private static final int HASHES = BANDS * ROWS;
+    private static final int MAX_BLOCK = 50;
+
+    // A block entry is the top bits of the block key with the customer's row in the low bits
+    private static final int ROW_BITS = 24;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+
+    // The name decides; a shared phone or address adds to it, but cannot make different names a match
+    private static final float NAME_WEIGHT = 0.6f;
+    private static final float PHONE_WEIGHT = 0.25f;
+    private static final float ADDRESS_WEIGHT = 0.15f;
+
+    private static final long PHONE_SEED = 0x50484F4E45L;
+    private static final long ADDRESS_SEED = 0x41444452L;
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        for (int i = 0; i < HASHES; i++) {
+            SEEDS[i] = mix(i + 1);
+        }
+    }
+
+    private int size;
+    private int[] ids = new int[1024];
+    // Trigrams of all names in one array (CSR): row r's are at trigramStart[r] until trigramStart[r + 1]
+    private int[] trigramStart = new int[1025];
+    private int[] trigrams = new int[16384];
+    private String[][] phones = new String[1024][];
+    private String[][] addresses = new String[1024][];
+    private int entryCount;
+    private long[] entries = new long[8192];
+
+    /**
+     * Add a customer.
+     *
+     * @param name Normalized full name
+     * @param localPhones Last {@value CustomerPhoneIndex#LOCAL_DIGITS} digits of each phone
+     * @param addressKeys Normalized keys of the addresses
+     */
+    public void add(int customerId, String name, String[] localPhones, String[] addressKeys) {
+        if (size > ROW_MASK) {
+            throw new IllegalStateException("Too many customers for duplicate detection: " + size);
+        }
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            trigramStart = Arrays.copyOf(trigramStart, capacity + 1);
+            phones = Arrays.copyOf(phones, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+        }
+        int row = size++;
+        ids[row] = customerId;
+        int[] nameTrigrams = trigramsOf(name);
+        int start = trigramStart[row];
+        if (start + nameTrigrams.length > trigrams.length) {
+            trigrams = Arrays.copyOf(trigrams, Math.max(trigrams.length * 2, start + nameTrigrams.length));
+        }
+        System.arraycopy(nameTrigrams, 0, trigrams, start, nameTrigrams.length);
+        trigramStart[row + 1] = start + nameTrigrams.length;
+        phones[row] = sorted(localPhones);
+        addresses[row] = sorted(addressKeys);
+
+        if (nameTrigrams.length > 0) {
+            long[] signature = signatureOf(nameTrigrams);
+            for (int band = 0; band < BANDS; band++) {
+                long key = mix(band + 1);
+                for (int r = 0; r < ROWS; r++) {
+                    key = mix(key ^ signature[band * ROWS + r]);
+                }
+                addEntry(key, row);
+            }
+        }
+        for (String phone : phones[row]) {
+            addEntry(hash(PHONE_SEED, phone), row);
+        }
+        for (String address : addresses[row]) {
+            addEntry(hash(ADDRESS_SEED, address), row);
+        }
+    }
+
+    /**
+     * Number of customers added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Pairs scoring at least {@code minScore}, most likely first.
+     */
+    public List<DuplicateCandidate> candidates(float minScore, int limit) {
+        long[] pairs = pairsInBlocks();
+        List<DuplicateCandidate> candidates = new ArrayList<>();
+        for (long pair : pairs) {
+            int a = (int) (pair >>> 32);
+            int b = (int) pair;
+            float name = jaccard(a, b);
+            if (name < minScore) {
+                continue; // Cannot reach it whatever else they share
+            }
+            boolean samePhone = intersects(phones[a], phones[b]);
+            boolean sameAddress = intersects(addresses[a], addresses[b]);
+            float score = name * (NAME_WEIGHT + (samePhone ? PHONE_WEIGHT : 0) + (sameAddress ? ADDRESS_WEIGHT : 0));
+            if (score >= minScore) {
+                candidates.add(new DuplicateCandidate(Math.min(ids[a], ids[b]), Math.max(ids[a], ids[b]), score,
+                        name, samePhone, sameAddress));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(DuplicateCandidate::getScore).reversed()
+                .thenComparingInt(DuplicateCandidate::getMasterId)
+                .thenComparingInt(DuplicateCandidate::getDuplicateId));
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    // Distinct pairs of rows sharing a block, each as (lower row << 32 | higher row), ascending
+    private long[] pairsInBlocks() {
+        Arrays.sort(entries, 0, entryCount);
+        long[] pairs = new long[Math.max(16, entryCount)];
+        int pairCount = 0;
+        for (int start = 0; start < entryCount; ) {
+            long key = entries[start] >>> ROW_BITS;
+            int end = start + 1;
+            while (end < entryCount && entries[end] >>> ROW_BITS == key) {
+                end++;
+            }
+            if (end - start <= MAX_BLOCK) {
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        int a = (int) (entries[i] & ROW_MASK);
+                        int b = (int) (entries[j] & ROW_MASK);
+                        if (a == b) {
+                            continue;
+                        }
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, pairCount * 2);
+                        }
+                        pairs[pairCount++] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+                    }
+                }
+            }
+            start = end;
+        }
+        Arrays.sort(pairs, 0, pairCount);
+        int distinct = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (distinct == 0 || pairs[i] != pairs[distinct - 1]) {
+                pairs[distinct++] = pairs[i];
+            }
+        }
+        return Arrays.copyOf(pairs, distinct);
+    }
+
+    private void addEntry(long key, int row) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount * 2);
+        }
+        entries[entryCount++] = key & ~ROW_MASK | row;
+    }
+
+    /**
+     * Hashes of the distinct trigrams of the name's words, sorted. Words are padded as pg_trgm does (two
+     * spaces before, one after), so "ANA" and "ANAYA" share the trigrams of their start.
+     */
+    private static int[] trigramsOf(String name) {
+        if (name == null) {
+            return new int[0];
+        }
+        int[] hashes = new int[name.length() * 3 + 3];
+        int count = 0;
+        int wordStart = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            boolean letter = i < name.length() && name.charAt(i) != ' ';
+            if (letter && wordStart < 0) {
+                wordStart = i;
+            } else if (!letter && wordStart >= 0) {
+                String word = "  " + name.substring(wordStart, i) + " ";
+                for (int t = 0; t + 3 <= word.length(); t++) {
+                    long trigram = (long) word.charAt(t) << 32 | (long) word.charAt(t + 1) << 16 | word.charAt(t + 2);
+                    hashes[count++] = (int) mix(trigram);
+                }
+                wordStart = -1;
+            }
+        }
+        Arrays.sort(hashes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, distinct);
+    }
+
+    // Minimum of each of the HASHES hash functions over the trigrams
+    private static long[] signatureOf(int[] trigrams) {
+        long[] signature = new long[HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int trigram : trigrams) {
+            for (int i = 0; i < HASHES; i++) {
+                long h = mix(trigram ^ SEEDS[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    // Jaccard similarity of the trigram sets of two rows
+    private float jaccard(int a, int b) {
+        int aEnd = trigramStart[a + 1];
+        int bEnd = trigramStart[b + 1];
+        if (aEnd == trigramStart[a] || bEnd == trigramStart[b]) {
+            return 0f;
+        }
+        int total = aEnd - trigramStart[a] + bEnd - trigramStart[b];
+        int common = 0;
+        for (int i = trigramStart[a], j = trigramStart[b]; i < aEnd && j < bEnd; ) {
+            if (trigrams[i] == trigrams[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (trigrams[i] < trigrams[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (float) common / (total - common);
+    }
+
+    private static boolean intersects(String[] a, String[] b) {
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            int c = a[i].compareTo(b[j]);
+            if (c == 0) {
+                return true;
+            } else if (c < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    private static String[] sorted(String[] values) {
+        if (values == null) {
+            return new String[0];
+        }
+        String[] copy = Arrays.stream(values).filter(value -> value != null && !value.isEmpty()).toArray(String[]::new);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static long hash(long seed, String value) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = h * 31 + value.charAt(i);
+        }
+        return mix(h);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,113 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.db.jooq.tables.pojos.Customers;
+import com.bara.app.model.DuplicateCandidate;
+import com.bara.app.repository.CustomerMergeRepository;
+import com.bara.app.repository.CustomerProfileRepository;
+import org.jooq.Cursor;
+import org.jooq.Record4;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Finds customers registered more than once and merges them. Detection reads every active customer once
+ * and ranks likely pairs (see {@link CustomerDuplicateDetector}); staff confirm a pair and
+ * {@link #merge(int, int)} folds the duplicate into the master.
+ */
+public class CustomerDuplicateService {
+
+    private static final float MIN_SCORE = Float.parseFloat(System.getProperty("bara.dedup.minScore", "0.5"));
+
+    private final CustomerMergeRepository repository = new CustomerMergeRepository();
+    private final CustomerProfileRepository profileRepository = new CustomerProfileRepository();
+
+    /**
+     * Likely duplicate pairs among the active customers, most likely first. Reads every active customer.
+     */
+    public List<DuplicateCandidate> findCandidates(int limit) throws SQLException {
+        CustomerDuplicateDetector detector = new CustomerDuplicateDetector();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Cursor<Record4<Integer, String, String[], String[]>> customers =
+                         repository.streamDuplicateKeys(conn, CustomerPhoneIndex.LOCAL_DIGITS)) {
+                for (Record4<Integer, String, String[], String[]> customer : customers) {
+                    detector.add(customer.value1(), customer.value2(), customer.value3(), customer.value4());
+                }
+            }
+            conn.commit();
+        }
+        return detector.candidates(MIN_SCORE, limit);
+    }
+
+    public CompletableFuture<List<DuplicateCandidate>> findCandidatesAsync(int limit) {
+        return DbExecutor.supply(() -> findCandidates(limit));
+    }
+
+    /**
+     * Merge a duplicate customer into its master, in one transaction: the duplicate's orders, phones,
+     * addresses and matched clusters move to the master (phones and addresses the master already has are
+     * dropped), the duplicate is marked {@code merged} with {@code master_id} set, and the master's
+     * behavioral profile is rebuilt from the combined orders. Orders taken for the duplicate from then on
+     * are stored under the master (see {@link OrderCheckoutService#persist}).
+     *
+     * @return Number of orders moved
+     * @throws IllegalArgumentException If the two are the same customer or either does not exist
+     * @throws IllegalStateException If either was already merged
+     */
+    public int merge(int masterId, int duplicateId) throws SQLException {
+        if (masterId == duplicateId) {
+            throw new IllegalArgumentException("Cannot merge a customer into itself: " + masterId);
+        }
+        CustomerProfileAggregator profiles = CustomerProfileAggregator.getInstance();
+        // Orders recorded for the two but not flushed are counted by the rebuild, then discarded
+        profiles.holdFlushes();
+        try {
+            int moved;
+            int lastOrderId;
+            try (Connection conn = DatabaseManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    // Sketches before customers, in the order a flush locks them
+                    profileRepository.lockSketches(conn, new Integer[]{Math.min(masterId, duplicateId),
+                            Math.max(masterId, duplicateId)});
+                    List<Customers> locked = repository.lockForMerge(conn, masterId, duplicateId);
+                    if (locked.size() < 2) {
+                        throw new IllegalArgumentException("No such customer: "
+                                + (locked.isEmpty() || locked.get(0).getId() != masterId ? masterId : duplicateId));
+                    }
+                    for (Customers customer : locked) {
+                        if ("merged".equals(customer.getStatus())) {
+                            throw new IllegalStateException("Customer " + customer.getId()
+                                    + " was already merged into " + customer.getMasterId());
+                        }
+                    }
+
+                    moved = repository.moveOrders(conn, duplicateId, masterId);
+                    repository.movePhones(conn, duplicateId, masterId, CustomerPhoneIndex.NATIONAL_DIGITS);
+                    repository.moveAddresses(conn, duplicateId, masterId);
+                    repository.moveClusters(conn, duplicateId, masterId);
+                    repository.markMerged(conn, duplicateId, masterId);
+                    profiles.rebuild(conn, masterId);
+                    lastOrderId = repository.lastOrderId(conn, masterId);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            // New orders wait for the locks above and get later ids, so these are exactly what was rebuilt
+            profiles.discard(masterId, lastOrderId);
+            profiles.discard(duplicateId, lastOrderId);
+            CustomerOverviewService.invalidate(masterId);
+            CustomerOverviewService.invalidate(duplicateId);
+            return moved;
+        } finally {
+            profiles.releaseFlushes();
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.bara.app.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable in-memory trigram index over {@code customers.full_name_search}, answering the same substring
+ * question as {@code LIKE '%TERM%'} without scanning every name.
+ *
+ * <p>The bulk of the index is a base built once in CSR form: the distinct trigrams sorted in a
+ * {@code long[]}, and for each one a slice of a single {@code int[]} of row numbers. Customers written after
+ * the base was built live in a small overlay, and the base rows they replace are marked dead in a bitset;
+ * both are copied on write, so readers never lock. When the overlay grows past a fraction of the base,
+ * the next write folds everything into a new base.
+ *
+ * <p>Names and terms must already be normalized the same way (upper case, no accents). Matches are ranked
+ * prefix of the full name first, then a match at the start of a later name (usually a surname), then any
+ * other substring; ties go alphabetically.
+ */
+public final class CustomerNameIndex {
+
+    private static final int MIN_OVERLAY = 64;
+    private static final int[] NO_IDS = new int[0];
+    private static final String[] NO_NAMES = new String[0];
+
+    static final CustomerNameIndex EMPTY = of(NO_IDS, NO_NAMES);
+
+    private final Base base;
+    private final long[] dead;
+    private final int deadCount;
+    // Customers added or renamed since the base was built, sorted by id
+    private final int[] overlayIds;
+    private final String[] overlayNames;
+
+    private CustomerNameIndex(Base base, long[] dead, int deadCount, int[] overlayIds, String[] overlayNames) {
+        this.base = base;
+        this.dead = dead;
+        this.deadCount = deadCount;
+        this.overlayIds = overlayIds;
+        this.overlayNames = overlayNames;
+    }
+
+    /**
+     * Build an index from a full load.
+     *
+     * @param ids Customer ids, ascending
+     * @param names Normalized names, parallel to {@code ids}
+     */
+    static CustomerNameIndex of(int[] ids, String[] names) {
+        Base base = new Base(ids, names);
+        return new CustomerNameIndex(base, new long[(ids.length + 63) >>> 6], 0, NO_IDS, NO_NAMES);
+    }
+
+    /**
+     * Number of customers indexed.
+     */
+    public int size() {
+        return base.ids.length - deadCount + overlayIds.length;
+    }
+
+    /**
+     * A new index with the customer added or renamed. Returns this index if nothing changes.
+     */
+    CustomerNameIndex with(int id, String name) {
+        int row = Arrays.binarySearch(base.ids, id);
+        int slot = Arrays.binarySearch(overlayIds, id);
+        if (slot >= 0 ? overlayNames[slot].equals(name) : row >= 0 && !isDead(row) && base.names[row].equals(name)) {
+            return this;
+        }
+
+        int[] nextIds;
+        String[] nextNames;
+        if (slot >= 0) {
+            nextIds = overlayIds;
+            nextNames = overlayNames.clone();
+            nextNames[slot] = name;
+        } else {
+            int at = -slot - 1;
+            nextIds = insert(overlayIds, at, id);
+            nextNames = new String[overlayNames.length + 1];
+            System.arraycopy(overlayNames, 0, nextNames, 0, at);
+            nextNames[at] = name;
+            System.arraycopy(overlayNames, at, nextNames, at + 1, overlayNames.length - at);
+        }
+
+        CustomerNameIndex next = row >= 0 && !isDead(row)
+                ? new CustomerNameIndex(base, kill(row), deadCount + 1, nextIds, nextNames)
+                : new CustomerNameIndex(base, dead, deadCount, nextIds, nextNames);
+        return next.compactIfNeeded();
+    }
+
+    /**
+     * A new index without the customer. Returns this index if it was not indexed.
+     */
+    CustomerNameIndex without(int id) {
+        int row = Arrays.binarySearch(base.ids, id);
+        int slot = Arrays.binarySearch(overlayIds, id);
+        boolean inBase = row >= 0 && !isDead(row);
+        if (!inBase && slot < 0) {
+            return this;
+        }
+
+        int[] nextIds = overlayIds;
+        String[] nextNames = overlayNames;
+        if (slot >= 0) {
+            nextIds = new int[overlayIds.length - 1];
+            System.arraycopy(overlayIds, 0, nextIds, 0, slot);
+            System.arraycopy(overlayIds, slot + 1, nextIds, slot, nextIds.length - slot);
+            nextNames = new String[overlayNames.length - 1];
+            System.arraycopy(overlayNames, 0, nextNames, 0, slot);
+            System.arraycopy(overlayNames, slot + 1, nextNames, slot, nextNames.length - slot);
+        }
+        CustomerNameIndex next = inBase
+                ? new CustomerNameIndex(base, kill(row), deadCount + 1, nextIds, nextNames)
+                : new CustomerNameIndex(base, dead, deadCount, nextIds, nextNames);
+        return next.compactIfNeeded();
+    }
+
+    /**
+     * Ids of the customers whose name contains {@code term}, best match first.
+     *
+     * @param term Normalized search term
+     * @param limit Maximum number of ids returned
+     */
+    public int[] search(String term, int limit) {
+        if (term.isEmpty() || limit <= 0) {
+            return NO_IDS;
+        }
+        TopMatches top = new TopMatches(limit);
+
+        if (!prefixesFill(top, term, limit)) {
+            top.clear();
+            if (term.length() < 3) {
+                // Too short for a trigram: scan the names, still without touching the database
+                for (int row = 0; row < base.ids.length; row++) {
+                    if (!isDead(row)) {
+                        offerBase(top, row, term);
+                    }
+                }
+            } else {
+                searchBase(top, term);
+            }
+        }
+        for (int i = 0; i < overlayIds.length; i++) {
+            int rank = rank(overlayNames[i], term);
+            if (rank >= 0) {
+                top.offer(rank, base.insertionPoint(overlayNames[i]), base.ids.length + i);
+            }
+        }
+
+        long[] keys = top.sorted();
+        int[] ids = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int slot = TopMatches.slot(keys[i]);
+            ids[i] = slot < base.ids.length ? base.ids[slot] : overlayIds[slot - base.ids.length];
+        }
+        return ids;
+    }
+
+    /**
+     * Names starting with {@code term} are a contiguous, alphabetical run of the base; when that run
+     * alone fills the result, nothing else can outrank it and the posting lists are never touched.
+     */
+    private boolean prefixesFill(TopMatches top, String term, int limit) {
+        int found = 0;
+        for (int pos = base.insertionPoint(term); pos < base.byName.length && found < limit; pos++) {
+            int row = base.byName[pos];
+            if (!base.names[row].startsWith(term)) {
+                break;
+            }
+            if (!isDead(row)) {
+                top.offer(0, pos, row);
+                found++;
+            }
+        }
+        return found == limit;
+    }
+
+    private void searchBase(TopMatches top, String term) {
+        long[] termGrams = distinctGrams(term);
+        int[] from = new int[termGrams.length];
+        int[] to = new int[termGrams.length];
+        for (int i = 0; i < termGrams.length; i++) {
+            int g = Arrays.binarySearch(base.grams, termGrams[i]);
+            if (g < 0) {
+                return; // Some trigram of the term appears in no name
+            }
+            from[i] = base.offsets[g];
+            to[i] = base.offsets[g + 1];
+        }
+
+        // Walk the shortest posting list and probe the others; all are ascending, so probes only move forward
+        int shortest = 0;
+        for (int i = 1; i < from.length; i++) {
+            if (to[i] - from[i] < to[shortest] - from[shortest]) {
+                shortest = i;
+            }
+        }
+        int[] postings = base.postings;
+        candidates:
+        for (int p = from[shortest]; p < to[shortest]; p++) {
+            int row = postings[p];
+            for (int i = 0; i < from.length; i++) {
+                if (i == shortest) {
+                    continue;
+                }
+                int at = gallop(postings, from[i], to[i], row);
+                if (at < 0) {
+                    from[i] = -at - 1;
+                    continue candidates;
+                }
+                from[i] = at + 1;
+            }
+            if (!isDead(row)) {
+                offerBase(top, row, term);
+            }
+        }
+    }
+
+    /**
+     * {@link Arrays#binarySearch(int[], int, int, int)} that first doubles its step from {@code from}:
+     * successive probes land close to each other, so this is usually a handful of comparisons.
+     */
+    private static int gallop(int[] a, int from, int to, int key) {
+        int step = 1;
+        int low = from;
+        while (low + step < to && a[low + step] < key) {
+            low += step;
+            step <<= 1;
+        }
+        return Arrays.binarySearch(a, low, Math.min(low + step + 1, to), key);
+    }
+
+    private void offerBase(TopMatches top, int row, String term) {
+        // Sharing every trigram does not make it a substring, so check the name itself
+        int rank = rank(base.names[row], term);
+        if (rank >= 0) {
+            top.offer(rank, base.namePos[row], row);
+        }
+    }
+
+    /**
+     * 0 if {@code name} starts with {@code term}, 1 if a later word does, 2 for any other substring,
+     * -1 if it does not contain it.
+     */
+    static int rank(String name, String term) {
+        if (name.startsWith(term)) {
+            return 0;
+        }
+        int at = name.indexOf(term);
+        if (at < 0) {
+            return -1;
+        }
+        for (; at >= 0; at = name.indexOf(term, at + 1)) {
+            if (name.charAt(at - 1) == ' ') {
+                return 1;
+            }
+        }
+        return 2;
+    }
+
+    private boolean isDead(int row) {
+        return (dead[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private long[] kill(int row) {
+        long[] next = dead.clone();
+        next[row >>> 6] |= 1L << row;
+        return next;
+    }
+
+    private CustomerNameIndex compactIfNeeded() {
+        int rows = base.ids.length;
+        if (overlayIds.length <= Math.max(MIN_OVERLAY, rows / 16) && deadCount <= Math.max(MIN_OVERLAY, rows / 4)) {
+            return this;
+        }
+        // Merge the live base rows and the overlay, both sorted by id
+        int[] ids = new int[size()];
+        String[] names = new String[ids.length];
+        int n = 0;
+        int o = 0;
+        for (int row = 0; row < rows; row++) {
+            if (isDead(row)) {
+                continue;
+            }
+            for (; o < overlayIds.length && overlayIds[o] < base.ids[row]; o++, n++) {
+                ids[n] = overlayIds[o];
+                names[n] = overlayNames[o];
+            }
+            ids[n] = base.ids[row];
+            names[n] = base.names[row];
+            n++;
+        }
+        for (; o < overlayIds.length; o++, n++) {
+            ids[n] = overlayIds[o];
+            names[n] = overlayNames[o];
+        }
+        return of(ids, names);
+    }
+
+    private static int[] insert(int[] array, int at, int value) {
+        int[] next = new int[array.length + 1];
+        System.arraycopy(array, 0, next, 0, at);
+        next[at] = value;
+        System.arraycopy(array, at, next, at + 1, array.length - at);
+        return next;
+    }
+
+    // Three UTF-16 units packed into the low 48 bits
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long[] distinctGrams(String s) {
+        List<Long> grams = new ArrayList<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            long g = gram(s, i);
+            if (!grams.contains(g)) {
+                grams.add(g);
+            }
+        }
+        long[] result = new long[grams.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = grams.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * The CSR part, shared by every snapshot derived from it.
+     */
+    private static final class Base {
+        private final int[] ids;
+        private final String[] names;
+        private final long[] grams;
+        private final int[] offsets;
+        private final int[] postings;
+        // Rows in name order, and each row's position in it
+        private final int[] byName;
+        private final int[] namePos;
+
+        Base(int[] ids, String[] names) {
+            this.ids = ids;
+            this.names = names;
+            int rows = ids.length;
+
+            // Each row's distinct trigrams, back to back
+            int capacity = 0;
+            for (String name : names) {
+                capacity += Math.max(0, name.length() - 2);
+            }
+            long[] rowGrams = new long[capacity];
+            int[] rowStart = new int[rows + 1];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                rowStart[row] = count;
+                String name = names[row];
+                int k = Math.max(0, name.length() - 2);
+                for (int i = 0; i < k; i++) {
+                    rowGrams[count + i] = gram(name, i);
+                }
+                Arrays.sort(rowGrams, count, count + k);
+                int unique = 0;
+                for (int i = 0; i < k; i++) {
+                    if (i == 0 || rowGrams[count + i] != rowGrams[count + i - 1]) {
+                        rowGrams[count + unique++] = rowGrams[count + i];
+                    }
+                }
+                count += unique;
+            }
+            rowStart[rows] = count;
+
+            // Few distinct trigrams, many occurrences: count them in a hash table rather than sorting them all
+            GramTable table = new GramTable();
+            for (int j = 0; j < count; j++) {
+                table.increment(rowGrams[j]);
+            }
+            this.grams = table.sortedKeys();
+            int distinct = grams.length;
+            this.offsets = new int[distinct + 1];
+            for (int g = 0; g < distinct; g++) {
+                offsets[g + 1] = offsets[g] + table.setNumber(grams[g], g);
+            }
+
+            // Counting sort: rows are visited in order, so every posting list comes out ascending
+            int[] next = Arrays.copyOf(offsets, distinct);
+            this.postings = new int[count];
+            for (int row = 0; row < rows; row++) {
+                for (int j = rowStart[row]; j < rowStart[row + 1]; j++) {
+                    postings[next[table.get(rowGrams[j])]++] = row;
+                }
+            }
+
+            Integer[] order = new Integer[rows];
+            for (int row = 0; row < rows; row++) {
+                order[row] = row;
+            }
+            Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+            this.byName = new int[rows];
+            this.namePos = new int[rows];
+            for (int pos = 0; pos < rows; pos++) {
+                byName[pos] = order[pos];
+                namePos[order[pos]] = pos;
+            }
+        }
+
+        /**
+         * Position in {@link #byName} of the first name not less than {@code name}.
+         */
+        int insertionPoint(String name) {
+            int low = 0;
+            int high = byName.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (names[byName[mid]].compareTo(name) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Open-addressing map from trigram to an int, used while building a base: first an occurrence count,
+     * then the trigram's number in sorted order.
+     */
+    private static final class GramTable {
+        private long[] keys = new long[1024]; // trigram + 1, so 0 marks an empty slot
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        void increment(long gram) {
+            int slot = slotOf(gram);
+            if (keys[slot] == 0) {
+                keys[slot] = gram + 1;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slotOf(gram);
+                }
+            }
+            values[slot]++;
+        }
+
+        /**
+         * Replace the value of {@code gram} with {@code number}, returning the previous one.
+         */
+        int setNumber(long gram, int number) {
+            int slot = slotOf(gram);
+            int previous = values[slot];
+            values[slot] = number;
+            return previous;
+        }
+
+        int get(long gram) {
+            return values[slotOf(gram)];
+        }
+
+        long[] sortedKeys() {
+            long[] sorted = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != 0) {
+                    sorted[n++] = key - 1;
+                }
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private int slotOf(long gram) {
+            int mask = keys.length - 1;
+            int slot = (int) (gram * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (keys[slot] != 0 && keys[slot] != gram + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slotOf(oldKeys[i] - 1);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded max-heap of the best matches so far, as packed {@code long} keys ordered by rank, then
+     * alphabetical position, then slot (a base row, or past the base rows an overlay entry).
+     */
+    private static final class TopMatches {
+        private final long[] heap;
+        private int size = 0;
+
+        TopMatches(int limit) {
+            this.heap = new long[Math.min(limit, 1 << 16)];
+        }
+
+        static int slot(long key) {
+            return (int) (key & 0x7FFFFFFFL);
+        }
+
+        void offer(int rank, int namePos, int slot) {
+            long key = ((long) rank << 61) | ((long) namePos << 31) | slot;
+            if (size < heap.length) {
+                heap[size] = key;
+                siftUp(size++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(0);
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        long[] sorted() {
+            long[] keys = Arrays.copyOf(heap, size);
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        private void siftUp(int i) {
+            long key = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= key) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = key;
+        }
+
+        private void siftDown(int i) {
+            long key = heap[i];
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (key >= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = key;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bara.app.service;
+
+import com.bara.app.db.jooq.tables.pojos.CustomerAddresses;
+import com.bara.app.db.jooq.tables.pojos.CustomerPhones;
+import com.bara.app.db.jooq.tables.pojos.Customers;
+
+import java.util.List;
+
+/**
+ * Everything shown when a customer is opened, as read by {@link CustomerOverviewService}: the customer row
+ * (profile included), phones, addresses and the most recent orders with their lines.
+ */
+public class CustomerOverview {
+
+    private final Customers customer;
+    private final List<CustomerPhones> phones;
+    private final List<CustomerAddresses> addresses;
+    private final List<PlacedOrder> recentOrders;
+
+    public CustomerOverview(Customers customer, List<CustomerPhones> phones, List<CustomerAddresses> addresses,
+                            List<PlacedOrder> recentOrders) {
+        this.customer = customer;
+        this.phones = phones;
+        this.addresses = addresses;
+        this.recentOrders = recentOrders;
+    }
+
+    public Customers getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Phones, primary first.
+     */
+    public List<CustomerPhones> getPhones() {
+        return phones;
+    }
+
+    /**
+     * Addresses, default first, then newest first.
+     */
+    public List<CustomerAddresses> getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * Default address, or null if none is marked default.
+     */
+    public CustomerAddresses getDefaultAddress() {
+        for (CustomerAddresses address : addresses) {
+            if (Boolean.TRUE.equals(address.getIsDefault())) {
+                return address;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Latest orders, newest first.
+     */
+    public List<PlacedOrder> getRecentOrders() {
+        return recentOrders;
+    }
+}
@@ -0,0 +1,228 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.NotificationListener;
+import com.bara.app.db.jooq.tables.pojos.CustomerAddresses;
+import com.bara.app.db.jooq.tables.pojos.CustomerPhones;
+import com.bara.app.db.jooq.tables.pojos.Customers;
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.db.jooq.tables.records.CustomersRecord;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record4;
+import org.jooq.impl.DSL;
+
+import java.sql.Connection;
+import java.time.OffsetDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PHONES;
+import static com.bara.app.db.jooq.Tables.ORDERS;
+import static com.bara.app.db.jooq.Tables.ORDER_ITEMS;
+
+/**
+ * Opens a customer: profile, phones, addresses and recent orders with their lines in a single query, the
+ * child rows nested with {@code MULTISET} (JSON aggregation in Postgres), instead of a round trip each.
+ *
+ * <p>Overviews are cached for a few seconds by customer id and {@code updated_at}, so reopening a customer
+ * (or opening it again from a search result) costs nothing. Edits to the customer, its phones or its
+ * addresses on any terminal evict it once committed ({@code customer_details_changed}), as do orders and
+ * merges committed by this terminal; other terminals' orders show once the entry expires.
+ */
+public class CustomerOverviewService {
+
+    private static final String CHANGE_CHANNEL = "customer_details_changed";
+    private static final int RECENT_ORDERS = Integer.getInteger("bara.customer.recentOrders", 10);
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("bara.customer.overviewTtlMillis", 10_000L));
+    private static final int CACHE_ENTRIES = 256;
+    private static final int INVALIDATIONS_KEPT = CACHE_ENTRIES * 4;
+
+    // Access-ordered, so the least recently opened customer is dropped first; guarded by itself
+    private static final LinkedHashMap<Integer, Cached> CACHE = new LinkedHashMap<>(CACHE_ENTRIES * 2, 0.75f, true);
+    // A load only caches its result if the customer was not invalidated after the load started. Each
+    // invalidation takes the next generation; the latest per customer is kept for the most recently
+    // invalidated, and any load older than a forgotten one is not cached. All guarded by CACHE
+    private static final LinkedHashMap<Integer, Long> INVALIDATED = new LinkedHashMap<>();
+    private static long generation = 0;
+    private static long forgottenUpTo = 0;
+    private static boolean subscribed = false;
+
+    /**
+     * The customer's overview, from the cache if it was read in the last few seconds.
+     *
+     * @return Overview, or null if the customer does not exist
+     */
+    public CustomerOverview findById(Connection conn, int customerId) {
+        subscribe();
+        Cached cached = cached(customerId, null);
+        if (cached != null) {
+            return cached.overview;
+        }
+        return load(conn, customerId);
+    }
+
+    /**
+     * Overview of a customer row already at hand (e.g. a search result). The cache is used only if it
+     * holds the same version of the row, by {@code updated_at}.
+     */
+    public CustomerOverview findFor(Connection conn, Customers customer) {
+        subscribe();
+        Cached cached = cached(customer.getId(), customer.getUpdatedAt());
+        if (cached != null) {
+            return cached.overview;
+        }
+        return load(conn, customer.getId());
+    }
+
+    public CompletableFuture<CustomerOverview> findByIdAsync(int customerId) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return findById(conn, customerId);
+            }
+        });
+    }
+
+    /**
+     * Drop the cached overview of a customer whose row, orders, phones or addresses were just committed.
+     * A load already running for the customer does not cache what it read.
+     */
+    public static void invalidate(int customerId) {
+        synchronized (CACHE) {
+            CACHE.remove(customerId);
+            INVALIDATED.remove(customerId); // Re-inserted last, so the oldest are forgotten first
+            INVALIDATED.put(customerId, ++generation);
+            Iterator<Long> eldest = INVALIDATED.values().iterator();
+            while (INVALIDATED.size() > INVALIDATIONS_KEPT) {
+                forgottenUpTo = Math.max(forgottenUpTo, eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    private CustomerOverview load(Connection conn, int customerId) {
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        long startedAt;
+        synchronized (CACHE) {
+            startedAt = generation;
+        }
+
+        Field<List<CustomerPhones>> phones = DSL.multiset(
+                DSL.selectFrom(CUSTOMER_PHONES)
+                        .where(CUSTOMER_PHONES.CUSTOMER_ID.eq(CUSTOMERS.ID))
+                        .orderBy(CUSTOMER_PHONES.IS_PRIMARY.desc(), CUSTOMER_PHONES.ID.asc())
+        ).convertFrom(rows -> rows.into(CustomerPhones.class));
+
+        Field<List<CustomerAddresses>> addresses = DSL.multiset(
+                DSL.selectFrom(CUSTOMER_ADDRESSES)
+                        .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(CUSTOMERS.ID))
+                        .orderBy(CUSTOMER_ADDRESSES.IS_DEFAULT.desc(), CUSTOMER_ADDRESSES.ADDED_DATE.desc(),
+                                CUSTOMER_ADDRESSES.ID.desc())
+        ).convertFrom(rows -> rows.into(CustomerAddresses.class));
+
+        // Newest first from idx_orders_customer_ordered_at, each with its lines
+        Field<List<PlacedOrder>> recentOrders = DSL.multiset(
+                DSL.select(ORDERS, DSL.multiset(
+                                DSL.selectFrom(ORDER_ITEMS)
+                                        .where(ORDER_ITEMS.ORDER_ID.eq(ORDERS.ID))
+                                        .orderBy(ORDER_ITEMS.ID.asc())
+                        ).convertFrom(rows -> rows.into(OrderItems.class)))
+                        .from(ORDERS)
+                        .where(ORDERS.CUSTOMER_ID.eq(CUSTOMERS.ID))
+                        .orderBy(ORDERS.ORDERED_AT.desc(), ORDERS.ID.desc())
+                        .limit(RECENT_ORDERS)
+        ).convertFrom(rows -> rows.map(row -> new PlacedOrder(row.value1().into(Orders.class), row.value2())));
+
+        Record4<CustomersRecord, List<CustomerPhones>, List<CustomerAddresses>, List<PlacedOrder>> row = dsl
+                .select(CUSTOMERS, phones, addresses, recentOrders)
+                .from(CUSTOMERS)
+                .where(CUSTOMERS.ID.eq(customerId))
+                .fetchOne();
+        if (row == null) {
+            invalidate(customerId);
+            return null;
+        }
+
+        Customers customer = row.value1().into(Customers.class);
+        CustomerOverview overview = new CustomerOverview(customer, row.value2(), row.value3(), row.value4());
+        synchronized (CACHE) {
+            if (forgottenUpTo > startedAt || INVALIDATED.getOrDefault(customerId, 0L) > startedAt) {
+                return overview; // Changed while it was read; the next open reads it again
+            }
+            CACHE.put(customerId, new Cached(customer.getUpdatedAt(), overview));
+            Iterator<Cached> eldest = CACHE.values().iterator();
+            while (CACHE.size() > CACHE_ENTRIES) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return overview;
+    }
+
+    /**
+     * Fresh cache entry for the customer, at version {@code updatedAt} unless that is null.
+     */
+    private static Cached cached(int customerId, OffsetDateTime updatedAt) {
+        synchronized (CACHE) {
+            Cached cached = CACHE.get(customerId);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.storedAt >= TTL_NANOS) {
+                CACHE.remove(customerId);
+                return null;
+            }
+            if (updatedAt != null && !Objects.equals(updatedAt.toInstant(), cached.updatedAt.toInstant())) {
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private static synchronized void subscribe() {
+        if (!subscribed) {
+            subscribed = true;
+            NotificationListener.getInstance().subscribe(CHANGE_CHANNEL,
+                    CustomerOverviewService::onChangeNotification, CustomerOverviewService::clear);
+        }
+    }
+
+    /**
+     * Handle an {@code <op>:<id>} notification.
+     */
+    private static void onChangeNotification(String payload) {
+        try {
+            invalidate(Integer.parseInt(payload.substring(payload.indexOf(':') + 1)));
+        } catch (RuntimeException e) {
+            System.err.println("Could not apply customer change '" + payload + "', clearing overviews: " + e.getMessage());
+            clear();
+        }
+    }
+
+    private static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            INVALIDATED.clear();
+            forgottenUpTo = ++generation;
+        }
+    }
+
+    private static final class Cached {
+        private final OffsetDateTime updatedAt;
+        private final CustomerOverview overview;
+        private final long storedAt = System.nanoTime();
+
+        private Cached(OffsetDateTime updatedAt, CustomerOverview overview) {
+            this.updatedAt = updatedAt;
+            this.overview = overview;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.bara.app.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable in-memory index of the phones of active customers, by their digits, for caller ID and phone
+ * search.
+ *
+ * <p>Numbers are kept reversed and sorted, so all phones ending in the same digits form one contiguous
+ * run: the leaves of a digit trie on the reversed number, flattened into parallel arrays. A last-7 or
+ * last-10 lookup is two binary searches. Phones are written rarely, so a change copies the arrays.
+ */
+public final class CustomerPhoneIndex {
+
+    /**
+     * Digits that identify a number nationally (area code included).
+     */
+    public static final int NATIONAL_DIGITS = 10;
+
+    /**
+     * Digits of a local number, without area code.
+     */
+    public static final int LOCAL_DIGITS = 7;
+
+    private static final int[] NO_IDS = new int[0];
+
+    static final CustomerPhoneIndex EMPTY = new CustomerPhoneIndex(new String[0], NO_IDS, NO_IDS);
+
+    private final String[] reversed;
+    private final int[] phoneIds;
+    private final int[] customerIds;
+
+    private CustomerPhoneIndex(String[] reversed, int[] phoneIds, int[] customerIds) {
+        this.reversed = reversed;
+        this.phoneIds = phoneIds;
+        this.customerIds = customerIds;
+    }
+
+    /**
+     * Build an index from a full load of parallel arrays.
+     */
+    static CustomerPhoneIndex of(int[] phoneIds, int[] customerIds, String[] digits) {
+        int n = phoneIds.length;
+        String[] keys = new String[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = reverse(digits[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+
+        String[] sortedKeys = new String[n];
+        int[] sortedPhones = new int[n];
+        int[] sortedCustomers = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedKeys[i] = keys[order[i]];
+            sortedPhones[i] = phoneIds[order[i]];
+            sortedCustomers[i] = customerIds[order[i]];
+        }
+        return new CustomerPhoneIndex(sortedKeys, sortedPhones, sortedCustomers);
+    }
+
+    public int size() {
+        return reversed.length;
+    }
+
+    /**
+     * A new index with the phone added, or moved to its new number or customer.
+     */
+    CustomerPhoneIndex with(int phoneId, int customerId, String digits) {
+        CustomerPhoneIndex base = without(phoneId);
+        String key = reverse(digits);
+        int at = base.lowerBound(key);
+        int n = base.reversed.length;
+
+        String[] nextKeys = new String[n + 1];
+        int[] nextPhones = new int[n + 1];
+        int[] nextCustomers = new int[n + 1];
+        System.arraycopy(base.reversed, 0, nextKeys, 0, at);
+        System.arraycopy(base.phoneIds, 0, nextPhones, 0, at);
+        System.arraycopy(base.customerIds, 0, nextCustomers, 0, at);
+        nextKeys[at] = key;
+        nextPhones[at] = phoneId;
+        nextCustomers[at] = customerId;
+        System.arraycopy(base.reversed, at, nextKeys, at + 1, n - at);
+        System.arraycopy(base.phoneIds, at, nextPhones, at + 1, n - at);
+        System.arraycopy(base.customerIds, at, nextCustomers, at + 1, n - at);
+        return new CustomerPhoneIndex(nextKeys, nextPhones, nextCustomers);
+    }
+
+    /**
+     * A new index without the phone. Returns this index if it was not indexed.
+     */
+    CustomerPhoneIndex without(int phoneId) {
+        int at = -1;
+        for (int i = 0; i < phoneIds.length; i++) {
+            if (phoneIds[i] == phoneId) {
+                at = i;
+                break;
+            }
+        }
+        if (at < 0) {
+            return this;
+        }
+        int n = reversed.length - 1;
+        String[] nextKeys = new String[n];
+        int[] nextPhones = new int[n];
+        int[] nextCustomers = new int[n];
+        System.arraycopy(reversed, 0, nextKeys, 0, at);
+        System.arraycopy(phoneIds, 0, nextPhones, 0, at);
+        System.arraycopy(customerIds, 0, nextCustomers, 0, at);
+        System.arraycopy(reversed, at + 1, nextKeys, at, n - at);
+        System.arraycopy(phoneIds, at + 1, nextPhones, at, n - at);
+        System.arraycopy(customerIds, at + 1, nextCustomers, at, n - at);
+        return new CustomerPhoneIndex(nextKeys, nextPhones, nextCustomers);
+    }
+
+    /**
+     * A new index without any phone of the customer. Returns this index if none was indexed.
+     */
+    CustomerPhoneIndex withoutCustomer(int customerId) {
+        int kept = 0;
+        for (int id : customerIds) {
+            if (id != customerId) {
+                kept++;
+            }
+        }
+        if (kept == customerIds.length) {
+            return this;
+        }
+        String[] nextKeys = new String[kept];
+        int[] nextPhones = new int[kept];
+        int[] nextCustomers = new int[kept];
+        for (int i = 0, j = 0; i < customerIds.length; i++) {
+            if (customerIds[i] != customerId) {
+                nextKeys[j] = reversed[i];
+                nextPhones[j] = phoneIds[i];
+                nextCustomers[j++] = customerIds[i];
+            }
+        }
+        return new CustomerPhoneIndex(nextKeys, nextPhones, nextCustomers);
+    }
+
+    /**
+     * Customers an incoming call may come from, most certain first: the exact number, then the same last
+     * 10 digits (the national number, whatever country or carrier prefix either side carries), then the
+     * same last 7 digits when one side was stored or received without area code.
+     *
+     * @param digits Caller number, digits only
+     * @param limit Maximum number of customer ids returned
+     */
+    public int[] callerId(String digits, int limit) {
+        Set<Integer> customers = new LinkedHashSet<>();
+        if (digits.length() < LOCAL_DIGITS) {
+            addRun(customers, limit, reverse(digits), digits.length());
+            return toArray(customers);
+        }
+
+        addRun(customers, limit, reverse(digits), digits.length());
+        if (digits.length() >= NATIONAL_DIGITS) {
+            addRun(customers, limit, reverse(digits.substring(digits.length() - NATIONAL_DIGITS)), 0);
+        }
+        // Last 7 only identify a number when one side lacks the area code
+        String last7 = reverse(digits.substring(digits.length() - LOCAL_DIGITS));
+        int end = upperBound(last7);
+        for (int i = lowerBound(last7); i < end && customers.size() < limit; i++) {
+            if (digits.length() < NATIONAL_DIGITS || reversed[i].length() < NATIONAL_DIGITS) {
+                customers.add(customerIds[i]);
+            }
+        }
+        return toArray(customers);
+    }
+
+    /**
+     * Customers with a phone containing {@code digits}, best match first: the same number as for
+     * {@link #callerId(String, int)}, numbers ending in the digits (what people usually type), numbers
+     * starting with them, then any other position.
+     *
+     * @param digits Partial number, digits only
+     * @param limit Maximum number of customer ids returned
+     */
+    public int[] search(String digits, int limit) {
+        if (digits.isEmpty()) {
+            return NO_IDS;
+        }
+        Set<Integer> customers = new LinkedHashSet<>();
+        for (int customerId : callerId(digits, limit)) {
+            customers.add(customerId);
+        }
+        String key = reverse(digits);
+        addRun(customers, limit, key, 0);
+        if (customers.size() >= limit) {
+            return toArray(customers);
+        }
+
+        // Not a suffix: a scan, about a millisecond over tens of thousands of phones
+        Set<Integer> infix = new LinkedHashSet<>();
+        for (int i = 0; i < reversed.length && customers.size() < limit; i++) {
+            String number = reversed[i];
+            if (number.startsWith(key)) {
+                continue;
+            }
+            if (number.endsWith(key)) {
+                customers.add(customerIds[i]);
+            } else if (infix.size() < limit && number.contains(key)) {
+                infix.add(customerIds[i]);
+            }
+        }
+        for (Integer customerId : infix) {
+            if (customers.size() >= limit) {
+                break;
+            }
+            customers.add(customerId);
+        }
+        return toArray(customers);
+    }
+
+    /**
+     * Add the customers of the run of numbers ending in {@code key} (reversed), keeping only numbers of
+     * exactly {@code length} digits unless {@code length} is 0.
+     */
+    private void addRun(Set<Integer> customers, int limit, String key, int length) {
+        int end = upperBound(key);
+        for (int i = lowerBound(key); i < end && customers.size() < limit; i++) {
+            if (length == 0 || reversed[i].length() == length) {
+                customers.add(customerIds[i]);
+            }
+        }
+    }
+
+    // First key not less than prefix
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = reversed.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reversed[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First key past the run starting with prefix; digits sort below '~'
+    private int upperBound(String prefix) {
+        return lowerBound(prefix + '~');
+    }
+
+    private static String reverse(String digits) {
+        return new StringBuilder(digits).reverse().toString();
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        int[] result = new int[ids.size()];
+        int i = 0;
+        for (Integer id : ids) {
+            result[i++] = id;
+        }
+        return result;
+    }
+}
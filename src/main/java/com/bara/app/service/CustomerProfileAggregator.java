@@ -0,0 +1,383 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.db.jooq.tables.pojos.CustomerProfileSketches;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.model.CustomerProfile;
+import com.bara.app.repository.CustomerProfileRepository;
+import org.jooq.Cursor;
+import org.jooq.Record2;
+import org.jooq.Record6;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the behavioral profile of customers ({@code typical_party_size}, {@code favorite_items}, visit
+ * days and times, average ticket, lifetime value, visit frequency) current as orders come in.
+ *
+ * <p>Each order stored for a customer is {@link #record(PlacedOrder) recorded} in memory and folded into
+ * the customer's {@link CustomerProfileSketch} on the next flush: every few seconds, or at once when
+ * enough orders are waiting. A flush is one transaction for the whole batch, with the sketches locked,
+ * so terminals flushing at the same time add up instead of overwriting each other.
+ *
+ * <p>{@link #rebuild()} recomputes every sketch from the order history, in parallel over customer id
+ * ranges: to drop cancelled orders and orders recorded by a terminal that stopped before flushing. The
+ * first sketches are {@link #seed(Connection) seeded} by a migration. {@link #rebuild(Connection, int)}
+ * recomputes one customer inside a merge. A rebuilt sketch stores the last order id it counted, and
+ * flushes on every terminal skip orders up to it, so both are safe while orders are taken. What the
+ * rebuild counted is also {@link #discard(int, int) discarded} from what is pending here.
+ */
+public class CustomerProfileAggregator {
+
+    private static final long FLUSH_MILLIS = Long.getLong("bara.profile.flushMillis", 5000L);
+    private static final int FLUSH_BATCH = Integer.getInteger("bara.profile.flushBatch", 500);
+    // Customer ids per rebuild task; one transaction each
+    private static final int REBUILD_RANGE = Integer.getInteger("bara.profile.rebuildRange", 2000);
+    private static final int REBUILD_PARALLELISM = Integer.getInteger("bara.profile.rebuildParallelism",
+            Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4)));
+
+    private static CustomerProfileAggregator instance;
+
+    private final CustomerProfileRepository repository = new CustomerProfileRepository();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-profile-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Held by a flush while it writes, and by a rebuild or merge until it has discarded what it counted
+    private final ReentrantLock writing = new ReentrantLock();
+
+    // Orders not yet flushed, per customer in the order recorded; guarded by this
+    private Map<Integer, List<CustomerProfileSketch.Visit>> pending = new HashMap<>();
+    private int pendingOrders = 0;
+    private boolean flushScheduled = false;
+
+    public static synchronized CustomerProfileAggregator getInstance() {
+        if (instance == null) {
+            instance = new CustomerProfileAggregator();
+        }
+        return instance;
+    }
+
+    /**
+     * Count a newly stored order in its customer's profile. Orders without a customer are ignored.
+     * Does not touch the database.
+     */
+    public void record(PlacedOrder placed) {
+        Orders order = placed.getOrder();
+        if (order.getCustomerId() == null) {
+            return;
+        }
+        CustomerProfileSketch.Visit visit = CustomerProfileSketch.Visit.of(order, placed.getItems());
+        synchronized (this) {
+            pending.computeIfAbsent(order.getCustomerId(), id -> new ArrayList<>()).add(visit);
+            pendingOrders++;
+            if (flusher.isShutdown()) {
+                return; // Stopping; counted by the next rebuild
+            }
+            if (pendingOrders >= FLUSH_BATCH) {
+                flusher.execute(this::flushQuietly);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                flusher.schedule(this::flushQuietly, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Fold the recorded orders into their customers' sketches and profiles. On failure they are kept
+     * for the next flush.
+     *
+     * @return Number of customers updated
+     */
+    public int flush() throws SQLException {
+        writing.lock();
+        try {
+            Map<Integer, List<CustomerProfileSketch.Visit>> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new HashMap<>();
+                pendingOrders = 0;
+                flushScheduled = false;
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            try {
+                write(batch);
+                return batch.size();
+            } catch (SQLException | RuntimeException e) {
+                requeue(batch);
+                throw e;
+            }
+        } finally {
+            writing.unlock();
+        }
+    }
+
+    /**
+     * Keep flushes on this terminal from writing until {@link #releaseFlushes()}: a rebuild or merge holds
+     * them off while it rebuilds customers, so what it counts is discarded here instead of flushed.
+     */
+    public void holdFlushes() {
+        writing.lock();
+    }
+
+    public void releaseFlushes() {
+        writing.unlock();
+    }
+
+    /**
+     * Drop the customer's pending orders up to {@code upToOrderId}: a rebuild counted them. Call once the
+     * rebuild has committed. Ones recorded later are skipped when flushed.
+     */
+    public synchronized void discard(int customerId, int upToOrderId) {
+        List<CustomerProfileSketch.Visit> visits = pending.get(customerId);
+        if (visits == null) {
+            return;
+        }
+        int before = visits.size();
+        visits.removeIf(visit -> visit.getOrderId() <= upToOrderId);
+        pendingOrders -= before - visits.size();
+        if (visits.isEmpty()) {
+            pending.remove(customerId);
+        }
+    }
+
+    /**
+     * Flush what is pending and stop flushing in the background.
+     */
+    public void stop() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error updating customer profiles: " + e.getMessage());
+        }
+    }
+
+    private void write(Map<Integer, List<CustomerProfileSketch.Visit>> batch) throws SQLException {
+        Integer[] customerIds = batch.keySet().toArray(new Integer[0]);
+        Arrays.sort(customerIds);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<CustomerProfileSketches> rows = new ArrayList<>(customerIds.length);
+                List<CustomerProfile> profiles = new ArrayList<>(customerIds.length);
+                for (CustomerProfileSketches stored : repository.lockSketches(conn, customerIds)) {
+                    CustomerProfileSketch sketch = CustomerProfileSketch.from(stored);
+                    for (CustomerProfileSketch.Visit visit : batch.get(stored.getCustomerId())) {
+                        if (visit.getOrderId() > stored.getRebuiltUpToOrderId()) {
+                            sketch.add(visit);
+                        }
+                    }
+                    rows.add(sketch.toRow(stored.getCustomerId()).setRebuiltUpToOrderId(stored.getRebuiltUpToOrderId()));
+                    profiles.add(sketch.toProfile(stored.getCustomerId()));
+                }
+                repository.saveSketches(conn, rows);
+                repository.updateProfiles(conn, profiles);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        for (Integer customerId : customerIds) {
+            CustomerOverviewService.invalidate(customerId);
+        }
+    }
+
+    // Put a failed batch back ahead of what was recorded since, keeping each customer's orders in order
+    private synchronized void requeue(Map<Integer, List<CustomerProfileSketch.Visit>> batch) {
+        for (Map.Entry<Integer, List<CustomerProfileSketch.Visit>> entry : batch.entrySet()) {
+            List<CustomerProfileSketch.Visit> later = pending.get(entry.getKey());
+            List<CustomerProfileSketch.Visit> visits = new ArrayList<>(entry.getValue());
+            if (later != null) {
+                visits.addAll(later);
+            }
+            pending.put(entry.getKey(), visits);
+            pendingOrders += entry.getValue().size();
+        }
+        if (!flushScheduled && !flusher.isShutdown()) {
+            flushScheduled = true;
+            flusher.schedule(this::flushQuietly, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Recompute every customer's sketch and profile from their order history, cancelled orders excluded.
+     * Customers left without orders keep their last profile. Each range of customers is locked while it is
+     * rebuilt, so their orders wait for it, and this terminal's flushes wait for the whole run.
+     *
+     * @return Number of customers with orders
+     */
+    public int rebuild() throws SQLException {
+        Record2<Integer, Integer> range;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            range = repository.findCustomerIdRange(conn);
+        }
+        if (range == null) {
+            return 0;
+        }
+        ForkJoinPool pool = new ForkJoinPool(REBUILD_PARALLELISM);
+        holdFlushes();
+        try {
+            return pool.invoke(new RebuildTask(range.value1(), range.value2()));
+        } catch (CompletionException e) {
+            // The pool may wrap the task's exception again when rethrowing it on this thread
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+            }
+            throw e;
+        } finally {
+            releaseFlushes();
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compute every customer's sketch and profile from scratch, in the caller's transaction and one range
+     * at a time, without locking or discarding anything: for seeding, before any order is taken.
+     *
+     * @return Number of customers with orders
+     */
+    public int seed(Connection conn) {
+        Record2<Integer, Integer> range = repository.findCustomerIdRange(conn);
+        if (range == null) {
+            return 0;
+        }
+        int customers = 0;
+        for (int fromId = range.value1(); fromId <= range.value2(); fromId += REBUILD_RANGE) {
+            int toId = Math.min(fromId + REBUILD_RANGE - 1, range.value2());
+            customers += rebuildRange(conn, fromId, toId, repository.findLastOrderId(conn, fromId, toId)).size();
+        }
+        return customers;
+    }
+
+    /**
+     * Rebuild of customer ids {@code fromId..toId}, halved until a range is small enough for one
+     * transaction.
+     */
+    private final class RebuildTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromId;
+        private final int toId;
+
+        RebuildTask(int fromId, int toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (toId - fromId < REBUILD_RANGE) {
+                try {
+                    return rebuildRange(fromId, toId);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }
+            int middle = fromId + (toId - fromId) / 2;
+            RebuildTask lower = new RebuildTask(fromId, middle);
+            lower.fork();
+            int upper = new RebuildTask(middle + 1, toId).compute();
+            return lower.join() + upper;
+        }
+    }
+
+    /**
+     * Recompute one customer's sketch and profile from their order history, in the caller's transaction;
+     * e.g. after orders were moved to them. The customer and its sketch must be locked, so no order for it
+     * is stored meanwhile. Flushes skip the orders it counted once it has committed.
+     */
+    public void rebuild(Connection conn, int customerId) {
+        rebuildRange(conn, customerId, customerId, repository.findLastOrderId(conn, customerId, customerId));
+    }
+
+    private int rebuildRange(int fromId, int toId) throws SQLException {
+        List<Integer> rebuilt;
+        int lastOrderId;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                repository.lockForRebuild(conn, fromId, toId);
+                lastOrderId = repository.findLastOrderId(conn, fromId, toId);
+                rebuilt = rebuildRange(conn, fromId, toId, lastOrderId);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        for (Integer customerId : rebuilt) {
+            discard(customerId, lastOrderId);
+        }
+        return rebuilt.size();
+    }
+
+    // Ids of the customers rebuilt, those with orders. Their orders must all be up to lastOrderId
+    private List<Integer> rebuildRange(Connection conn, int fromId, int toId, int lastOrderId) {
+        List<CustomerProfileSketches> rows = new ArrayList<>();
+        List<CustomerProfile> profiles = new ArrayList<>();
+        try (Cursor<Record6<Integer, OffsetDateTime, Long, Integer, String[], Integer[]>> history =
+                     repository.streamOrderHistory(conn, fromId, toId)) {
+            Integer customerId = null;
+            CustomerProfileSketch sketch = null;
+            for (Record6<Integer, OffsetDateTime, Long, Integer, String[], Integer[]> order : history) {
+                if (!order.value1().equals(customerId)) {
+                    if (sketch != null) {
+                        rows.add(sketch.toRow(customerId).setRebuiltUpToOrderId(lastOrderId));
+                        profiles.add(sketch.toProfile(customerId));
+                    }
+                    customerId = order.value1();
+                    sketch = new CustomerProfileSketch();
+                }
+                sketch.add(visitOf(order));
+            }
+            if (sketch != null) {
+                rows.add(sketch.toRow(customerId).setRebuiltUpToOrderId(lastOrderId));
+                profiles.add(sketch.toProfile(customerId));
+            }
+        }
+        repository.saveSketches(conn, rows);
+        repository.updateProfiles(conn, profiles);
+        List<Integer> customerIds = new ArrayList<>(rows.size());
+        for (CustomerProfileSketches row : rows) {
+            customerIds.add(row.getCustomerId());
+        }
+        return customerIds;
+    }
+
+    private static CustomerProfileSketch.Visit visitOf(Record6<Integer, OffsetDateTime, Long, Integer, String[], Integer[]> order) {
+        String[] names = order.value5() != null ? order.value5() : new String[0];
+        Integer[] quantities = order.value6() != null ? order.value6() : new Integer[0];
+        int[] counts = new int[quantities.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = quantities[i] != null ? quantities[i] : 0;
+        }
+        return new CustomerProfileSketch.Visit(order.value2(), order.value3() != null ? order.value3() : 0,
+                order.value4(), names, counts);
+    }
+}
@@ -0,0 +1,317 @@
+package com.bara.app.service;
+
+import com.bara.app.db.jooq.tables.pojos.CustomerProfileSketches;
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.model.CustomerProfile;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Running summary of one customer's orders, from which the behavioral profile is read. Adding an order is
+ * constant time: counters and histograms are incremented, the interval between visits is an exponentially
+ * weighted moving average, and favorite items are tracked with a Space-Saving top-K.
+ *
+ * <p>Orders must be added in the order they were placed. Not thread-safe.
+ */
+public final class CustomerProfileSketch {
+
+    /**
+     * Weight of the latest interval in the visit frequency; higher follows changes in habit faster.
+     */
+    private static final double INTERVAL_ALPHA = Double.parseDouble(System.getProperty("bara.profile.intervalAlpha", "0.3"));
+
+    // Orders this close to the previous one are the same visit (e.g. a second round)
+    private static final Duration SAME_VISIT = Duration.ofHours(3);
+
+    private static final int MAX_PARTY = 12;
+    private static final int DAYS = 7;
+    private static final int HOURS = 24;
+    // Items counted; the favorites are the top few of these, so a few extra absorb the churn of the tail
+    private static final int TRACKED_ITEMS = 8;
+    private static final int FAVORITE_ITEMS = 3;
+    private static final int TYPICAL_SLOTS = 3;
+
+    private int orderCount;
+    private long spentCents;
+    private OffsetDateTime lastOrderAt;
+    private Float intervalEwmaDays;
+    private final int[] partyCounts = new int[MAX_PARTY + 1];
+    private final int[] dayCounts = new int[DAYS];
+    private final int[] hourCounts = new int[HOURS];
+    private int tracked;
+    private final String[] itemNames = new String[TRACKED_ITEMS];
+    private final int[] itemCounts = new int[TRACKED_ITEMS];
+    private final int[] itemErrors = new int[TRACKED_ITEMS];
+
+    /**
+     * A customer with no orders yet.
+     */
+    public CustomerProfileSketch() {
+    }
+
+    /**
+     * The sketch as stored. Arrays shorter than expected (e.g. a new row) count as zeros.
+     */
+    public static CustomerProfileSketch from(CustomerProfileSketches row) {
+        CustomerProfileSketch sketch = new CustomerProfileSketch();
+        sketch.orderCount = row.getOrderCount() != null ? row.getOrderCount() : 0;
+        sketch.spentCents = row.getSpentCents() != null ? row.getSpentCents() : 0;
+        sketch.lastOrderAt = row.getLastOrderAt();
+        sketch.intervalEwmaDays = row.getIntervalEwmaDays();
+        copy(row.getPartyCounts(), sketch.partyCounts);
+        copy(row.getDayCounts(), sketch.dayCounts);
+        copy(row.getHourCounts(), sketch.hourCounts);
+        if (row.getItemNames() != null) {
+            sketch.tracked = Math.min(row.getItemNames().length, TRACKED_ITEMS);
+            System.arraycopy(row.getItemNames(), 0, sketch.itemNames, 0, sketch.tracked);
+            copy(row.getItemCounts(), sketch.itemCounts);
+            copy(row.getItemErrors(), sketch.itemErrors);
+        }
+        return sketch;
+    }
+
+    public CustomerProfileSketches toRow(int customerId) {
+        return new CustomerProfileSketches()
+                .setCustomerId(customerId)
+                .setOrderCount(orderCount)
+                .setSpentCents(spentCents)
+                .setLastOrderAt(lastOrderAt)
+                .setIntervalEwmaDays(intervalEwmaDays)
+                .setPartyCounts(box(partyCounts, partyCounts.length))
+                .setDayCounts(box(dayCounts, dayCounts.length))
+                .setHourCounts(box(hourCounts, hourCounts.length))
+                .setItemNames(Arrays.copyOf(itemNames, tracked))
+                .setItemCounts(box(itemCounts, tracked))
+                .setItemErrors(box(itemErrors, tracked))
+                .setUpdatedAt(OffsetDateTime.now());
+    }
+
+    /**
+     * The profile columns this sketch gives the customer.
+     */
+    public CustomerProfile toProfile(int customerId) {
+        return new CustomerProfile(customerId, getTypicalPartySize(), getFavoriteItems(), getTypicalVisitDays(),
+                getTypicalVisitTimes(), getAvgTicketCents(), spentCents, intervalEwmaDays);
+    }
+
+    /**
+     * Count one order.
+     */
+    public void add(Visit visit) {
+        orderCount++;
+        spentCents += visit.totalCents;
+
+        if (lastOrderAt == null || visit.orderedAt.isAfter(lastOrderAt)) {
+            if (lastOrderAt != null) {
+                Duration gap = Duration.between(lastOrderAt, visit.orderedAt);
+                if (gap.compareTo(SAME_VISIT) >= 0) {
+                    float days = gap.toMinutes() / (24f * 60f);
+                    intervalEwmaDays = intervalEwmaDays == null ? days
+                            : (float) (INTERVAL_ALPHA * days + (1 - INTERVAL_ALPHA) * intervalEwmaDays);
+                }
+            }
+            lastOrderAt = visit.orderedAt;
+        }
+
+        if (visit.partySize != null && visit.partySize > 0) {
+            partyCounts[Math.min(visit.partySize, MAX_PARTY)]++;
+        }
+        ZonedDateTime local = visit.orderedAt.atZoneSameInstant(ZoneId.systemDefault());
+        dayCounts[local.getDayOfWeek().getValue() - 1]++;
+        hourCounts[local.getHour()]++;
+
+        for (int i = 0; i < visit.itemNames.length; i++) {
+            countItem(visit.itemNames[i], visit.quantities[i]);
+        }
+    }
+
+    /**
+     * Space-Saving: a tracked item gains its quantity; a new one replaces the least counted, inheriting
+     * its count as possible overestimate.
+     */
+    private void countItem(String name, int quantity) {
+        if (name == null || quantity <= 0) {
+            return;
+        }
+        int least = 0;
+        for (int i = 0; i < tracked; i++) {
+            if (itemNames[i].equals(name)) {
+                itemCounts[i] += quantity;
+                return;
+            }
+            if (itemCounts[i] < itemCounts[least]) {
+                least = i;
+            }
+        }
+        if (tracked < TRACKED_ITEMS) {
+            itemNames[tracked] = name;
+            itemCounts[tracked] = quantity;
+            itemErrors[tracked] = 0;
+            tracked++;
+            return;
+        }
+        itemErrors[least] = itemCounts[least];
+        itemCounts[least] += quantity;
+        itemNames[least] = name;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public long getSpentCents() {
+        return spentCents;
+    }
+
+    /**
+     * Average order total, or null without orders.
+     */
+    public Long getAvgTicketCents() {
+        return orderCount > 0 ? spentCents / orderCount : null;
+    }
+
+    /**
+     * Smoothed days between visits, or null before the second visit.
+     */
+    public Float getVisitFrequencyDays() {
+        return intervalEwmaDays;
+    }
+
+    /**
+     * Most frequent party size (the smaller on ties), or null if no order had one.
+     */
+    public Integer getTypicalPartySize() {
+        int best = 0;
+        for (int size = 1; size <= MAX_PARTY; size++) {
+            if (partyCounts[size] > partyCounts[best]) {
+                best = size;
+            }
+        }
+        return best > 0 ? best : null;
+    }
+
+    /**
+     * Most ordered items, most first, by quantity.
+     */
+    public List<String> getFavoriteItems() {
+        Integer[] order = new Integer[tracked];
+        for (int i = 0; i < tracked; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(itemCounts[b], itemCounts[a]));
+        List<String> favorites = new ArrayList<>(FAVORITE_ITEMS);
+        for (int i = 0; i < tracked && favorites.size() < FAVORITE_ITEMS; i++) {
+            favorites.add(itemNames[order[i]]);
+        }
+        return favorites;
+    }
+
+    /**
+     * Days the customer usually comes, busiest first, e.g. {@code THURSDAY} as in {@code orders.day_of_week}.
+     */
+    public List<String> getTypicalVisitDays() {
+        List<String> days = new ArrayList<>();
+        for (int day : typicalSlots(dayCounts)) {
+            days.add(DayOfWeek.of(day + 1).toString());
+        }
+        return days;
+    }
+
+    /**
+     * Hours the customer usually comes, busiest first, e.g. {@code 19:00-20:00}.
+     */
+    public List<String> getTypicalVisitTimes() {
+        List<String> times = new ArrayList<>();
+        for (int hour : typicalSlots(hourCounts)) {
+            times.add(String.format("%02d:00-%02d:00", hour, (hour + 1) % HOURS));
+        }
+        return times;
+    }
+
+    // Slots with at least half the orders of the busiest one, busiest first, at most TYPICAL_SLOTS
+    private static List<Integer> typicalSlots(int[] counts) {
+        Integer[] order = new Integer[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a]));
+        List<Integer> slots = new ArrayList<>(TYPICAL_SLOTS);
+        int busiest = counts[order[0]];
+        for (int i = 0; i < order.length && slots.size() < TYPICAL_SLOTS; i++) {
+            if (busiest == 0 || counts[order[i]] * 2 < busiest) {
+                break;
+            }
+            slots.add(order[i]);
+        }
+        return slots;
+    }
+
+    private static void copy(Integer[] from, int[] to) {
+        if (from == null) {
+            return;
+        }
+        for (int i = 0; i < Math.min(from.length, to.length); i++) {
+            to[i] = from[i] != null ? from[i] : 0;
+        }
+    }
+
+    private static Integer[] box(int[] values, int length) {
+        Integer[] boxed = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * What a sketch needs of one order.
+     */
+    public static final class Visit {
+        private final int orderId;
+        private final OffsetDateTime orderedAt;
+        private final long totalCents;
+        private final Integer partySize;
+        private final String[] itemNames;
+        private final int[] quantities;
+
+        public Visit(OffsetDateTime orderedAt, long totalCents, Integer partySize, String[] itemNames, int[] quantities) {
+            this(0, orderedAt, totalCents, partySize, itemNames, quantities);
+        }
+
+        private Visit(int orderId, OffsetDateTime orderedAt, long totalCents, Integer partySize, String[] itemNames,
+                      int[] quantities) {
+            this.orderId = orderId;
+            this.orderedAt = orderedAt;
+            this.totalCents = totalCents;
+            this.partySize = partySize;
+            this.itemNames = itemNames;
+            this.quantities = quantities;
+        }
+
+        public static Visit of(Orders order, List<OrderItems> items) {
+            String[] names = new String[items.size()];
+            int[] quantities = new int[items.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = items.get(i).getItemName();
+                quantities[i] = items.get(i).getQuantity() != null ? items.get(i).getQuantity() : 0;
+            }
+            return new Visit(order.getId() != null ? order.getId() : 0, order.getOrderedAt(),
+                    order.getTotalCents() != null ? order.getTotalCents() : 0, order.getPartySize(), names, quantities);
+        }
+
+        /**
+         * Id of the order, or 0 if the visit was not made from a stored order.
+         */
+        public int getOrderId() {
+            return orderId;
+        }
+    }
+}
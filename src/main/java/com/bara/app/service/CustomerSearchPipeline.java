@@ -0,0 +1,373 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.TextNormalizer;
+import com.bara.app.db.jooq.tables.pojos.Customers;
+import com.bara.app.metrics.LatencyRecorder;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type in front of {@link CustomerSearchService}, one per search box.
+ *
+ * <p>Every keystroke goes to {@link #onInput(String)}. Queries the recent results can answer are answered
+ * at once: the same query again (e.g. after a backspace), or one extending a query whose results were
+ * complete ({@code JUA} → {@code JUAN}), which is narrowed locally. Anything else waits for typing to pause,
+ * then runs on the database; a newer keystroke aborts the connection still running a query for an older
+ * one, which the pool then replaces. Results are delivered in input order on a background thread shared by
+ * all search boxes, only while they are for the latest input, and never while the pipeline's lock is held.
+ */
+public class CustomerSearchPipeline implements AutoCloseable {
+
+    /**
+     * What the search box searches by.
+     */
+    public enum Mode {
+        NAME,
+        PHONE
+    }
+
+    /**
+     * Where a result came from.
+     */
+    public enum Source {
+        CACHE,
+        NARROWED,
+        DATABASE
+    }
+
+    private static final long DEBOUNCE_MILLIS = Long.getLong("bara.search.debounceMillis", 150L);
+    private static final int CACHE_ENTRIES = 16;
+    private static final long CACHE_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final ScheduledExecutorService DEBOUNCER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-search-debounce");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService RESULTS = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-search-results");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LatencyRecorder KEYSTROKE_LATENCY = new LatencyRecorder(1024);
+    private static final LongAdder FROM_CACHE = new LongAdder();
+    private static final LongAdder NARROWED = new LongAdder();
+    private static final LongAdder FROM_DATABASE = new LongAdder();
+    private static final LongAdder SUPERSEDED = new LongAdder();
+
+    private final CustomerSearchService service;
+    private final Mode mode;
+    private final Consumer<Results> onResults;
+    private final Consumer<Throwable> onError;
+
+    // Everything below is guarded by lock
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Cached> cache = new LinkedHashMap<>(CACHE_ENTRIES * 2, 0.75f, true);
+    private long latest = 0;
+    private ScheduledFuture<?> pending;
+    private Connection running;
+
+    /**
+     * @param onResults Called on a background thread with the results of the latest input
+     * @param onError Called on a background thread when the latest input's query fails
+     */
+    public CustomerSearchPipeline(CustomerSearchService service, Mode mode,
+                                  Consumer<Results> onResults, Consumer<Throwable> onError) {
+        this.service = service;
+        this.mode = mode;
+        this.onResults = onResults;
+        this.onError = onError;
+    }
+
+    /**
+     * The search box now holds {@code text}. Supersedes every earlier input.
+     */
+    public void onInput(String text) {
+        long typedAt = System.nanoTime();
+        String key = keyOf(text);
+        long generation;
+        synchronized (lock) {
+            generation = ++latest;
+            supersede();
+            if (key.isEmpty()) {
+                deliver(generation, new Results(text, Collections.emptyList(), Source.CACHE, typedAt));
+                return;
+            }
+
+            Cached hit = cache.get(key);
+            if (hit != null && hit.isFresh()) {
+                deliver(generation, new Results(text, hit.customers, Source.CACHE, typedAt));
+                return;
+            }
+            List<Customers> narrowed = narrow(key);
+            if (narrowed != null) {
+                remember(key, narrowed);
+                deliver(generation, new Results(text, narrowed, Source.NARROWED, typedAt));
+                return;
+            }
+
+            pending = DEBOUNCER.schedule(() -> query(generation, text, key, typedAt), DEBOUNCE_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drop the cached results, e.g. when the search box is cleared or reopened.
+     */
+    public void clearCache() {
+        synchronized (lock) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Stop delivering results and cancel whatever is pending or running.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            latest++;
+            supersede();
+            cache.clear();
+        }
+    }
+
+    /**
+     * Keystroke-to-results latency and where results came from, across all search boxes.
+     */
+    public static String metricsSummary() {
+        return String.format("keystrokes %s cache=%d narrowed=%d database=%d superseded=%d",
+                KEYSTROKE_LATENCY.summary(), FROM_CACHE.sum(), NARROWED.sum(), FROM_DATABASE.sum(), SUPERSEDED.sum());
+    }
+
+    // Caller holds lock
+    private void supersede() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (running != null) {
+            // A cancel request reaches the server asynchronously and could cancel the next borrower's
+            // statement instead, so the connection is closed and the pool discards it when it is returned.
+            // Under the lock, so it is still this query's
+            try {
+                running.abort(Runnable::run);
+            } catch (SQLException e) {
+                System.err.println("Could not cancel customer search: " + e.getMessage());
+            }
+            running = null;
+        }
+    }
+
+    private void query(long generation, String text, String key, long typedAt) {
+        DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                synchronized (lock) {
+                    if (generation != latest) {
+                        return null;
+                    }
+                    running = conn;
+                }
+                try {
+                    return mode == Mode.NAME ? service.searchByName(conn, text) : service.searchByPhone(conn, text);
+                } finally {
+                    synchronized (lock) {
+                        if (running == conn) {
+                            running = null;
+                        }
+                    }
+                }
+            }
+        }).whenComplete((customers, error) -> {
+            synchronized (lock) {
+                if (generation != latest) {
+                    SUPERSEDED.increment();
+                    return;
+                }
+                if (error != null) {
+                    RESULTS.execute(() -> {
+                        if (isLatest(generation)) {
+                            onError.accept(error);
+                        }
+                    });
+                    return;
+                }
+                remember(key, customers);
+                deliver(generation, new Results(text, customers, Source.DATABASE, typedAt));
+            }
+        });
+    }
+
+    /**
+     * Answer {@code key} from a cached, complete result set for a query it extends, or null if none can.
+     * Caller holds lock.
+     */
+    private List<Customers> narrow(String key) {
+        Cached superset = null;
+        for (Map.Entry<String, Cached> entry : cache.entrySet()) {
+            Cached cached = entry.getValue();
+            if (key.startsWith(entry.getKey()) && cached.isComplete() && cached.isFresh()
+                    && (superset == null || entry.getKey().length() > superset.key.length())) {
+                superset = cached;
+            }
+        }
+        if (superset == null) {
+            return null;
+        }
+
+        // With an index loaded, it ranks the matches and the superset supplies their rows
+        int[] ids = mode == Mode.NAME ? CustomerSearchService.indexedNameMatches(key)
+                : CustomerSearchService.indexedPhoneMatches(key);
+        if (ids != null) {
+            Map<Integer, Customers> byId = new HashMap<>(superset.customers.size() * 2);
+            for (Customers customer : superset.customers) {
+                byId.put(customer.getId(), customer);
+            }
+            List<Customers> narrowed = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Customers customer = byId.get(id);
+                if (customer == null) {
+                    return null; // Not within the superset (e.g. matched by caller ID rules); ask the database
+                }
+                narrowed.add(customer);
+            }
+            return Collections.unmodifiableList(narrowed);
+        }
+        if (mode == Mode.NAME) {
+            List<Customers> narrowed = new ArrayList<>();
+            for (Customers customer : superset.customers) {
+                if (customer.getFullNameSearch() != null && customer.getFullNameSearch().contains(key)) {
+                    narrowed.add(customer);
+                }
+            }
+            narrowed.sort(Comparator.comparingInt((Customers customer) -> CustomerNameIndex.rank(customer.getFullNameSearch(), key))
+                    .thenComparing(Customers::getFullNameSearch));
+            return Collections.unmodifiableList(narrowed);
+        }
+        return null;
+    }
+
+    // Caller holds lock
+    private void remember(String key, List<Customers> customers) {
+        cache.put(key, new Cached(key, Collections.unmodifiableList(customers)));
+        Iterator<Cached> eldest = cache.values().iterator();
+        while (cache.size() > CACHE_ENTRIES) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    // Caller holds lock, so results of one box are queued in input order; the callback runs without it
+    private void deliver(long generation, Results results) {
+        if (generation != latest) {
+            SUPERSEDED.increment();
+            return;
+        }
+        RESULTS.execute(() -> {
+            if (!isLatest(generation)) {
+                SUPERSEDED.increment();
+                return;
+            }
+            KEYSTROKE_LATENCY.record(results.latencyNanos);
+            switch (results.source) {
+                case CACHE:
+                    FROM_CACHE.increment();
+                    break;
+                case NARROWED:
+                    NARROWED.increment();
+                    break;
+                default:
+                    FROM_DATABASE.increment();
+                    break;
+            }
+            onResults.accept(results);
+        });
+    }
+
+    private boolean isLatest(long generation) {
+        synchronized (lock) {
+            return generation == latest;
+        }
+    }
+
+    private String keyOf(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        return mode == Mode.NAME ? TextNormalizer.forSearch(text) : CustomerSearchService.digitsOf(text);
+    }
+
+    /**
+     * Results for one input.
+     */
+    public static final class Results {
+        private final String query;
+        private final List<Customers> customers;
+        private final Source source;
+        private final long latencyNanos;
+
+        private Results(String query, List<Customers> customers, Source source, long typedAt) {
+            this.query = query;
+            this.customers = customers;
+            this.source = source;
+            this.latencyNanos = System.nanoTime() - typedAt;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public List<Customers> getCustomers() {
+            return customers;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * Time from the keystroke to these results, debounce included.
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    private static final class Cached {
+        private final String key;
+        private final List<Customers> customers;
+        private final long storedAt = System.nanoTime();
+
+        private Cached(String key, List<Customers> customers) {
+            this.key = key;
+            this.customers = customers;
+        }
+
+        // A full page may have cut off matches, so only a shorter one is known to hold them all
+        boolean isComplete() {
+            return customers.size() < CustomerSearchService.NAME_SEARCH_LIMIT;
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - storedAt < CACHE_TTL_NANOS;
+        }
+    }
+}
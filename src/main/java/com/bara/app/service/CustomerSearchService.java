@@ -1,49 +1,154 @@
 package com.bara.app.service;
 
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.Keyset;
+import com.bara.app.database.NotificationListener;
+import com.bara.app.database.TextNormalizer;
+import com.bara.app.database.Trigram;
 import com.bara.app.db.jooq.tables.pojos.Customers;
 import com.bara.app.db.jooq.tables.records.CustomersRecord;
+import com.bara.app.model.Page;
+import com.bara.app.model.ScoredMatch;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record2;
+import org.jooq.Record3;
+import org.jooq.Result;
 import org.jooq.impl.DSL;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PHONES;
 
 /**
  * Service for searching customers with fuzzy matching and multi-component name search.
  * Supports Mexican naming conventions: first_name, paternal_last_name, maternal_last_name.
+ *
+ * <p>Name search is answered from a shared in-memory {@link CustomerNameIndex} once it is loaded
+ * ({@link #loadNameIndex()}, done at startup); a trigger on {@code customers} publishes every name or status
+ * change on the {@code customers_changed} channel and each terminal applies it to its index. Phone search
+ * and caller ID work the same way with a {@link CustomerPhoneIndex} and {@code customer_phones_changed},
+ * dropping the phones of customers that stop being active.
+ * Index loads and notifications are applied one at a time on the indexes' own thread, in the order they
+ * arrive: a change that arrives during a reload is applied after it, so the reload cannot overwrite it, and
+ * the shared notification thread never waits on the database.
+ * The {@code *Similar} searches run in the database on trigram indexes and also tolerate typos.
  */
 public class CustomerSearchService {
 
+    private static final String CHANGE_CHANNEL = "customers_changed";
+    private static final String PHONE_CHANGE_CHANNEL = "customer_phones_changed";
+    static final int NAME_SEARCH_LIMIT = 50;
+    private static final int CALLER_ID_LIMIT = 5;
+
+    private static final AtomicReference<CustomerNameIndex> NAME_INDEX = new AtomicReference<>();
+    private static final AtomicReference<CustomerPhoneIndex> PHONE_INDEX = new AtomicReference<>();
+    private static final ExecutorService INDEX_UPDATER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static boolean subscribed = false; // Only touched on the updater thread
+    private static boolean phonesSubscribed = false; // Only touched on the updater thread
+
     /**
      * Search customers by any part of their name (first, paternal, maternal).
-     * Uses the generated full_name_search column for accent-insensitive matching.
+     * Uses the generated full_name_search column for accent-insensitive matching; the term is normalized
+     * the same way by {@link TextNormalizer#forSearch(String)}. Served from the name
+     * index when it is loaded: the index ranks the matches and only their rows are read, by primary key.
      *
      * @param conn Database connection
      * @param searchTerm Search query (can be partial name)
-     * @return List of matching customers
+     * @return List of matching customers, best match first
      */
     public List<Customers> searchByName(Connection conn, String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return new ArrayList<>();
         }
 
-        String normalizedSearch = normalizeForSearch(searchTerm);
-        DSLContext dsl = DSL.using(conn);
+        String normalizedSearch = TextNormalizer.forSearch(searchTerm);
+        DSLContext dsl = DatabaseManager.dsl(conn);
+
+        int[] ranked = indexedNameMatches(normalizedSearch);
+        if (ranked != null) {
+            return findActiveInOrder(dsl, ranked);
+        }
 
         return dsl.selectFrom(CUSTOMERS)
                 .where(CUSTOMERS.FULL_NAME_SEARCH.like("%" + normalizedSearch + "%"))
                 .and(CUSTOMERS.STATUS.eq("active"))
                 .orderBy(CUSTOMERS.FIRST_NAME.asc())
-                .limit(50)
+                .limit(NAME_SEARCH_LIMIT)
                 .fetchInto(Customers.class);
     }
 
+    /**
+     * Every active customer whose name contains the term, a page at a time in alphabetical order (then
+     * id), for browsing past the best {@value #NAME_SEARCH_LIMIT} that {@link #searchByName(Connection, String)}
+     * returns.
+     *
+     * @param after Cursor of the previous page, or null for the first page
+     */
+    public Page<Customers> searchByName(Connection conn, String searchTerm, Page.Cursor after, int limit) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        return findActivePage(DatabaseManager.dsl(conn),
+                CUSTOMERS.FULL_NAME_SEARCH.contains(TextNormalizer.forSearch(searchTerm)), after, limit);
+    }
+
+    /**
+     * Ids of the customers {@link #searchByName(Connection, String)} returns for a normalized term, best
+     * first, or null until the name index is loaded. No database access.
+     */
+    static int[] indexedNameMatches(String normalizedSearch) {
+        CustomerNameIndex index = NAME_INDEX.get();
+        return index != null ? index.search(normalizedSearch, NAME_SEARCH_LIMIT) : null;
+    }
+
+    /**
+     * Phone counterpart of {@link #indexedNameMatches(String)}, for digits only.
+     */
+    static int[] indexedPhoneMatches(String digits) {
+        CustomerPhoneIndex index = PHONE_INDEX.get();
+        return index != null ? index.search(digits, NAME_SEARCH_LIMIT) : null;
+    }
+
+    private static List<Customers> findActiveInOrder(DSLContext dsl, int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Integer[] boxed = new Integer[ids.length];
+        Map<Integer, Integer> position = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            boxed[i] = ids[i];
+            position.put(ids[i], i);
+        }
+        List<Customers> customers = dsl.selectFrom(CUSTOMERS)
+                .where(CUSTOMERS.ID.eq(DSL.any(boxed)))
+                .and(CUSTOMERS.STATUS.eq("active"))
+                .fetchInto(Customers.class);
+        customers.sort(Comparator.comparingInt(customer -> position.get(customer.getId())));
+        return customers;
+    }
+
     /**
      * Search customers by phone number.
-     * Searches across all phone records (primary and secondary).
+     * Searches across all phone records (primary and secondary), comparing digits only. Served from the
+     * phone index when it is loaded: exact numbers first, then numbers ending in the digits typed.
      *
      * @param conn Database connection
      * @param phoneNumber Phone number to search
@@ -54,21 +159,150 @@ public class CustomerSearchService {
             return new ArrayList<>();
         }
 
-        String cleanedPhone = phoneNumber.replaceAll("[^0-9]", "");
-        DSLContext dsl = DSL.using(conn);
+        String cleanedPhone = digitsOf(phoneNumber);
+        if (cleanedPhone.isEmpty()) {
+            return new ArrayList<>();
+        }
+        DSLContext dsl = DatabaseManager.dsl(conn);
+
+        int[] ranked = indexedPhoneMatches(cleanedPhone);
+        if (ranked != null) {
+            return findActiveInOrder(dsl, ranked);
+        }
 
         return dsl.selectFrom(CUSTOMERS)
                 .where(CUSTOMERS.ID.in(
-                        dsl.select(com.bara.app.db.jooq.Tables.CUSTOMER_PHONES.CUSTOMER_ID)
-                                .from(com.bara.app.db.jooq.Tables.CUSTOMER_PHONES)
-                                .where(com.bara.app.db.jooq.Tables.CUSTOMER_PHONES.PHONE_NUMBER.like("%" + cleanedPhone + "%"))
+                        dsl.select(CUSTOMER_PHONES.CUSTOMER_ID)
+                                .from(CUSTOMER_PHONES)
+                                .where(CUSTOMER_PHONES.PHONE_DIGITS.contains(cleanedPhone))
                 ))
                 .and(CUSTOMERS.STATUS.eq("active"))
                 .orderBy(CUSTOMERS.FIRST_NAME.asc())
-                .limit(50)
+                .limit(NAME_SEARCH_LIMIT)
+                .fetchInto(Customers.class);
+    }
+
+    /**
+     * Every active customer with a phone containing the digits, a page at a time in alphabetical order
+     * (then id), like {@link #searchByName(Connection, String, Page.Cursor, int)}.
+     *
+     * @param after Cursor of the previous page, or null for the first page
+     */
+    public Page<Customers> searchByPhone(Connection conn, String phoneNumber, Page.Cursor after, int limit) {
+        String cleanedPhone = phoneNumber != null ? digitsOf(phoneNumber) : "";
+        if (cleanedPhone.isEmpty()) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        DSLContext dsl = DatabaseManager.dsl(conn);
+        return findActivePage(dsl, CUSTOMERS.ID.in(
+                dsl.select(CUSTOMER_PHONES.CUSTOMER_ID)
+                        .from(CUSTOMER_PHONES)
+                        .where(CUSTOMER_PHONES.PHONE_DIGITS.contains(cleanedPhone))
+        ), after, limit);
+    }
+
+    // Ordered by (full_name_search, id), the columns of idx_customer_name_search (V18)
+    private static Page<Customers> findActivePage(DSLContext dsl, Condition filter, Page.Cursor after, int limit) {
+        List<Customers> rows = dsl.selectFrom(CUSTOMERS)
+                .where(filter)
+                .and(CUSTOMERS.STATUS.eq("active"))
+                .and(Keyset.after(after, false, CUSTOMERS.FULL_NAME_SEARCH, CUSTOMERS.ID))
+                .orderBy(CUSTOMERS.FULL_NAME_SEARCH.asc(), CUSTOMERS.ID.asc())
+                .limit(Keyset.fetchSize(limit))
+                .fetchInto(Customers.class);
+        return Keyset.page(rows, limit, customer -> new Object[]{customer.getFullNameSearch(), customer.getId()});
+    }
+
+    /**
+     * Caller ID: the customers an incoming call may come from, most certain first (same number, same last
+     * 10 digits, then same last 7 when one side has no area code). Answered from the phone index plus a
+     * primary key read; before the index is loaded, from the reversed-digits index in the database.
+     *
+     * @param conn Database connection
+     * @param incomingNumber Number as delivered by the phone line, in any format
+     * @return Matching active customers, usually zero or one
+     */
+    public List<Customers> identifyCaller(Connection conn, String incomingNumber) {
+        String digits = incomingNumber != null ? digitsOf(incomingNumber) : "";
+        if (digits.length() < CustomerPhoneIndex.LOCAL_DIGITS) {
+            return new ArrayList<>();
+        }
+        DSLContext dsl = DatabaseManager.dsl(conn);
+
+        CustomerPhoneIndex index = PHONE_INDEX.get();
+        if (index != null) {
+            return findActiveInOrder(dsl, index.callerId(digits, CALLER_ID_LIMIT));
+        }
+
+        String suffix = digits.substring(Math.max(0, digits.length() - CustomerPhoneIndex.NATIONAL_DIGITS));
+        return dsl.selectFrom(CUSTOMERS)
+                .where(CUSTOMERS.ID.in(
+                        dsl.select(CUSTOMER_PHONES.CUSTOMER_ID)
+                                .from(CUSTOMER_PHONES)
+                                .where(DSL.reverse(CUSTOMER_PHONES.PHONE_DIGITS)
+                                        .startsWith(new StringBuilder(suffix).reverse().toString()))
+                ))
+                .and(CUSTOMERS.STATUS.eq("active"))
+                .limit(CALLER_ID_LIMIT)
                 .fetchInto(Customers.class);
     }
 
+    /**
+     * Typo-tolerant name search in the database, best match first: customers whose name contains the term
+     * score 1, then those with words close to it by trigram similarity (so "GONZALES" finds GONZALEZ).
+     * Served by the trigram index on full_name_search.
+     *
+     * @param conn Database connection
+     * @param searchTerm Search query (can be partial or misspelled)
+     * @param limit Maximum number of results
+     * @return Matching active customers with their similarity score
+     */
+    public List<ScoredMatch<Customers>> searchByNameSimilar(Connection conn, String searchTerm, int limit) {
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String normalizedSearch = TextNormalizer.forSearch(searchTerm.trim());
+        Field<Float> score = Trigram.score(CUSTOMERS.FULL_NAME_SEARCH, normalizedSearch);
+        return DatabaseManager.dsl(conn)
+                .select(CUSTOMERS, score)
+                .from(CUSTOMERS)
+                .where(Trigram.matches(CUSTOMERS.FULL_NAME_SEARCH, normalizedSearch))
+                .and(CUSTOMERS.STATUS.eq("active"))
+                .orderBy(score.desc(), CUSTOMERS.FULL_NAME_SEARCH.asc())
+                .limit(limit)
+                .fetch(row -> new ScoredMatch<>(row.value1().into(Customers.class), row.value2()));
+    }
+
+    /**
+     * Typo-tolerant phone search in the database, best match first: customers with a phone containing the
+     * digits score 1, then those with a number close to them (a digit mistyped or missing). Served by the
+     * trigram index on phone_digits.
+     *
+     * @param conn Database connection
+     * @param phoneNumber Phone number to search, in any format
+     * @param limit Maximum number of results
+     * @return Matching active customers with the score of their best matching phone
+     */
+    public List<ScoredMatch<Customers>> searchByPhoneSimilar(Connection conn, String phoneNumber, int limit) {
+        String digits = phoneNumber != null ? digitsOf(phoneNumber) : "";
+        if (digits.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Field<Float> score = DSL.max(Trigram.score(CUSTOMER_PHONES.PHONE_DIGITS, digits));
+        return DatabaseManager.dsl(conn)
+                .select(CUSTOMERS, score)
+                .from(CUSTOMER_PHONES)
+                .join(CUSTOMERS).on(CUSTOMERS.ID.eq(CUSTOMER_PHONES.CUSTOMER_ID))
+                .where(Trigram.matches(CUSTOMER_PHONES.PHONE_DIGITS, digits))
+                .and(CUSTOMERS.STATUS.eq("active"))
+                .groupBy(CUSTOMERS.ID)
+                .orderBy(score.desc(), CUSTOMERS.ID.asc())
+                .limit(limit)
+                .fetch(row -> new ScoredMatch<>(row.value1().into(Customers.class), row.value2()));
+    }
+
     /**
      * Find exact customer by ID.
      *
@@ -77,7 +311,7 @@ public class CustomerSearchService {
      * @return Customer or null if not found
      */
     public Customers findById(Connection conn, int customerId) {
-        DSLContext dsl = DSL.using(conn);
+        DSLContext dsl = DatabaseManager.dsl(conn);
         CustomersRecord record = dsl.selectFrom(CUSTOMERS)
                 .where(CUSTOMERS.ID.eq(customerId))
                 .fetchOne();
@@ -85,19 +319,295 @@ public class CustomerSearchService {
     }
 
     /**
-     * Normalize search term: uppercase, remove accents.
-     * Matches the logic in the generated full_name_search column.
+     * Asynchronous {@link #searchByName(Connection, String)} on a pooled connection.
+     */
+    public CompletableFuture<List<Customers>> searchByNameAsync(String searchTerm) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return searchByName(conn, searchTerm);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous {@link #searchByPhone(Connection, String)} on a pooled connection.
+     */
+    public CompletableFuture<List<Customers>> searchByPhoneAsync(String phoneNumber) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return searchByPhone(conn, phoneNumber);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous {@link #searchByNameSimilar(Connection, String, int)} on a pooled connection.
+     */
+    public CompletableFuture<List<ScoredMatch<Customers>>> searchByNameSimilarAsync(String searchTerm, int limit) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return searchByNameSimilar(conn, searchTerm, limit);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous {@link #searchByPhoneSimilar(Connection, String, int)} on a pooled connection.
+     */
+    public CompletableFuture<List<ScoredMatch<Customers>>> searchByPhoneSimilarAsync(String phoneNumber, int limit) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return searchByPhoneSimilar(conn, phoneNumber, limit);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous {@link #identifyCaller(Connection, String)} on a pooled connection.
+     */
+    public CompletableFuture<List<Customers>> identifyCallerAsync(String incomingNumber) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return identifyCaller(conn, incomingNumber);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous {@link #findById(Connection, int)} on a pooled connection.
+     */
+    public CompletableFuture<Customers> findByIdAsync(int customerId) {
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return findById(conn, customerId);
+            }
+        });
+    }
+
+    // --- Name index maintenance ---
+
+    /**
+     * Load the name index (once) and start following customer changes. Safe to call repeatedly.
      *
-     * @param text Text to normalize
-     * @return Normalized text
-     */
-    private String normalizeForSearch(String text) {
-        return text.toUpperCase()
-                .replace('Á', 'A')
-                .replace('É', 'E')
-                .replace('Í', 'I')
-                .replace('Ó', 'O')
-                .replace('Ú', 'U')
-                .replace('Ñ', 'N');
+     * @return Number of customers indexed
+     */
+    public int loadNameIndex() {
+        return loadNameIndexAsync().join();
+    }
+
+    /**
+     * Asynchronous {@link #loadNameIndex()}.
+     */
+    public CompletableFuture<Integer> loadNameIndexAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            CustomerNameIndex current = NAME_INDEX.get();
+            if (current != null) {
+                return current.size();
+            }
+            if (!subscribed) {
+                subscribed = true;
+                NotificationListener.getInstance().subscribe(CHANGE_CHANNEL,
+                        payload -> INDEX_UPDATER.execute(() -> onChangeNotification(payload)),
+                        () -> INDEX_UPDATER.execute(this::reloadNameIndex));
+            }
+            return reloadNameIndex().size();
+        }, INDEX_UPDATER);
+    }
+
+    /**
+     * Reload the name index from scratch, after the changes already queued.
+     *
+     * @return Number of customers indexed
+     */
+    CompletableFuture<Integer> reloadNameIndexAsync() {
+        return CompletableFuture.supplyAsync(() -> reloadNameIndex().size(), INDEX_UPDATER);
+    }
+
+    /**
+     * Replace the index with a full load of the active customers. On failure the previous index is kept
+     * (or searches keep going to the database if there is none). On the updater thread.
+     */
+    private CustomerNameIndex reloadNameIndex() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            DSLContext dsl = DatabaseManager.dsl(conn);
+            Result<Record2<Integer, String>> rows = dsl.select(CUSTOMERS.ID, CUSTOMERS.FULL_NAME_SEARCH)
+                    .from(CUSTOMERS)
+                    .where(CUSTOMERS.STATUS.eq("active"))
+                    .orderBy(CUSTOMERS.ID.asc())
+                    .fetch();
+            int[] ids = new int[rows.size()];
+            String[] names = new String[rows.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = rows.get(i).value1();
+                names[i] = rows.get(i).value2();
+            }
+            CustomerNameIndex loaded = CustomerNameIndex.of(ids, names);
+            NAME_INDEX.set(loaded);
+            return loaded;
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error loading customer name index: " + e.getMessage());
+            CustomerNameIndex current = NAME_INDEX.get();
+            return current != null ? current : CustomerNameIndex.EMPTY;
+        }
+    }
+
+    /**
+     * Handle a {@code <op>:<id>} notification from any writer, this terminal included. On the updater
+     * thread.
+     */
+    private void onChangeNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int id = Integer.parseInt(payload.substring(separator + 1));
+            Record2<String, String> row = DatabaseManager.dsl(conn)
+                    .select(CUSTOMERS.FULL_NAME_SEARCH, CUSTOMERS.STATUS)
+                    .from(CUSTOMERS)
+                    .where(CUSTOMERS.ID.eq(id))
+                    .fetchOne();
+            if (row != null && "active".equals(row.value2())) {
+                NAME_INDEX.updateAndGet(index -> index != null ? index.with(id, row.value1()) : null);
+            } else {
+                NAME_INDEX.updateAndGet(index -> index != null ? index.without(id) : null);
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Could not apply customer change '" + payload + "', reloading: " + e.getMessage());
+            reloadNameIndex();
+        }
+    }
+
+    // --- Phone index maintenance ---
+
+    /**
+     * Load the phone index (once) and start following phone changes, from any terminal. Safe to call
+     * repeatedly.
+     *
+     * @return Number of phones indexed
+     */
+    public int loadPhoneIndex() {
+        return loadPhoneIndexAsync().join();
+    }
+
+    /**
+     * Asynchronous {@link #loadPhoneIndex()}.
+     */
+    public CompletableFuture<Integer> loadPhoneIndexAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            CustomerPhoneIndex current = PHONE_INDEX.get();
+            if (current != null) {
+                return current.size();
+            }
+            if (!phonesSubscribed) {
+                phonesSubscribed = true;
+                NotificationListener.getInstance().subscribe(PHONE_CHANGE_CHANNEL,
+                        payload -> INDEX_UPDATER.execute(() -> onPhoneNotification(payload)),
+                        () -> INDEX_UPDATER.execute(this::reloadPhoneIndex));
+                // Phones leave the index when their customer stops being active (inactive, merged)
+                NotificationListener.getInstance().subscribe(CHANGE_CHANNEL,
+                        payload -> INDEX_UPDATER.execute(() -> onPhoneOwnerNotification(payload)),
+                        () -> INDEX_UPDATER.execute(this::reloadPhoneIndex));
+            }
+            return reloadPhoneIndex().size();
+        }, INDEX_UPDATER);
+    }
+
+    /**
+     * Reload the phone index from scratch, after the changes already queued.
+     *
+     * @return Number of phones indexed
+     */
+    CompletableFuture<Integer> reloadPhoneIndexAsync() {
+        return CompletableFuture.supplyAsync(() -> reloadPhoneIndex().size(), INDEX_UPDATER);
+    }
+
+    // On the updater thread, like the phone notifications
+    private CustomerPhoneIndex reloadPhoneIndex() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Result<Record3<Integer, Integer, String>> rows = DatabaseManager.dsl(conn)
+                    .select(CUSTOMER_PHONES.ID, CUSTOMER_PHONES.CUSTOMER_ID, CUSTOMER_PHONES.PHONE_DIGITS)
+                    .from(CUSTOMER_PHONES)
+                    .join(CUSTOMERS).on(CUSTOMERS.ID.eq(CUSTOMER_PHONES.CUSTOMER_ID))
+                    .where(CUSTOMERS.STATUS.eq("active"))
+                    .fetch();
+            int[] phoneIds = new int[rows.size()];
+            int[] customerIds = new int[rows.size()];
+            String[] digits = new String[rows.size()];
+            for (int i = 0; i < phoneIds.length; i++) {
+                phoneIds[i] = rows.get(i).value1();
+                customerIds[i] = rows.get(i).value2();
+                digits[i] = rows.get(i).value3();
+            }
+            CustomerPhoneIndex loaded = CustomerPhoneIndex.of(phoneIds, customerIds, digits);
+            PHONE_INDEX.set(loaded);
+            return loaded;
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error loading customer phone index: " + e.getMessage());
+            CustomerPhoneIndex current = PHONE_INDEX.get();
+            return current != null ? current : CustomerPhoneIndex.EMPTY;
+        }
+    }
+
+    /**
+     * Handle a {@code <op>:<id>} notification for a customer phone (e.g. one just stored by
+     * {@code CustomerPhoneRepository.create}). On the updater thread.
+     */
+    private void onPhoneNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int id = Integer.parseInt(payload.substring(separator + 1));
+            Record2<Integer, String> row = DatabaseManager.dsl(conn)
+                    .select(CUSTOMER_PHONES.CUSTOMER_ID, CUSTOMER_PHONES.PHONE_DIGITS)
+                    .from(CUSTOMER_PHONES)
+                    .join(CUSTOMERS).on(CUSTOMERS.ID.eq(CUSTOMER_PHONES.CUSTOMER_ID))
+                    .where(CUSTOMER_PHONES.ID.eq(id))
+                    .and(CUSTOMERS.STATUS.eq("active"))
+                    .fetchOne();
+            if (row != null) {
+                PHONE_INDEX.updateAndGet(index -> index != null ? index.with(id, row.value1(), row.value2()) : null);
+            } else {
+                PHONE_INDEX.updateAndGet(index -> index != null ? index.without(id) : null);
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Could not apply phone change '" + payload + "', reloading: " + e.getMessage());
+            reloadPhoneIndex();
+        }
+    }
+
+    /**
+     * Handle a {@code customers_changed} notification for the phone index: a customer no longer active
+     * takes its phones out, one active (again) puts them back. On the updater thread.
+     */
+    private void onPhoneOwnerNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int id = Integer.parseInt(payload.substring(separator + 1));
+            DSLContext dsl = DatabaseManager.dsl(conn);
+            Result<Record2<Integer, String>> phones = dsl.select(CUSTOMER_PHONES.ID, CUSTOMER_PHONES.PHONE_DIGITS)
+                    .from(CUSTOMER_PHONES)
+                    .join(CUSTOMERS).on(CUSTOMERS.ID.eq(CUSTOMER_PHONES.CUSTOMER_ID))
+                    .where(CUSTOMERS.ID.eq(id))
+                    .and(CUSTOMERS.STATUS.eq("active"))
+                    .fetch();
+            PHONE_INDEX.updateAndGet(index -> {
+                if (index == null) {
+                    return null;
+                }
+                CustomerPhoneIndex next = index.withoutCustomer(id);
+                for (Record2<Integer, String> phone : phones) {
+                    next = next.with(phone.value1(), id, phone.value2());
+                }
+                return next;
+            });
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Could not apply customer change '" + payload + "' to phones, reloading: "
+                    + e.getMessage());
+            reloadPhoneIndex();
+        }
+    }
+
+    /**
+     * Digits only, as in the {@code phone_digits} column.
+     */
+    static String digitsOf(String phoneNumber) {
+        return phoneNumber.replaceAll("[^0-9]", "");
     }
 }
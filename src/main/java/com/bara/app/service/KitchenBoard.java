@@ -0,0 +1,250 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.NotificationListener;
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.repository.OrderItemRepository;
+import com.bara.app.repository.OrderRepository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-memory board of the orders the kitchen still has to work on.
+ *
+ * <p>Loaded once, then kept current from the {@code orders_changed} channel: a new order is read back
+ * with its items, a status change of a known order is applied without touching the database, a known
+ * order whose lines changed is read back, and orders leaving the active statuses drop off. The board is
+ * republished as an immutable list, oldest first.
+ *
+ * <p>Loads and notifications are handled one at a time on the board's own thread, in the order they
+ * arrive, so a reload cannot overwrite a newer change and the shared notification thread never waits on
+ * the database.
+ */
+public class KitchenBoard {
+
+    private static final String CHANNEL = "orders_changed";
+
+    /**
+     * Statuses shown on the board.
+     */
+    public static final List<String> ACTIVE_STATUSES = List.of("pending", "confirmed", "preparing");
+
+    private static final Comparator<PlacedOrder> OLDEST_FIRST = Comparator
+            .comparing((PlacedOrder ticket) -> ticket.getOrder().getOrderedAt())
+            .thenComparing(ticket -> ticket.getOrder().getId());
+
+    private static KitchenBoard instance;
+
+    private final OrderRepository orderRepository = new OrderRepository();
+    private final OrderItemRepository orderItemRepository = new OrderItemRepository();
+    private final List<Consumer<List<PlacedOrder>>> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kitchen-board");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, PlacedOrder> tickets = new HashMap<>();
+    private volatile List<PlacedOrder> snapshot = Collections.emptyList();
+    private boolean subscribed = false; // Only touched on the updater thread
+
+    public static synchronized KitchenBoard getInstance() {
+        if (instance == null) {
+            instance = new KitchenBoard();
+        }
+        return instance;
+    }
+
+    /**
+     * The status a bump moves an order to, or null if the kitchen is done with it.
+     */
+    public static String nextStatus(String status) {
+        switch (status) {
+            case "pending":
+            case "confirmed":
+                return "preparing";
+            case "preparing":
+                return "ready";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Be told whenever the board changes. Called on a background thread.
+     */
+    public void addListener(Consumer<List<PlacedOrder>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<List<PlacedOrder>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Active orders, oldest first. Empty until the board has been loaded.
+     */
+    public List<PlacedOrder> getTickets() {
+        return snapshot;
+    }
+
+    /**
+     * Subscribe to order changes (once) and load the board.
+     */
+    public CompletableFuture<List<PlacedOrder>> loadAsync() {
+        return CompletableFuture.supplyAsync(this::load, updater);
+    }
+
+    // On the updater thread
+    private List<PlacedOrder> load() {
+        if (!subscribed) {
+            subscribed = true;
+            NotificationListener.getInstance().subscribe(CHANNEL,
+                    payload -> updater.execute(() -> onNotification(payload)),
+                    () -> updater.execute(this::reload));
+        }
+        reload();
+        return snapshot;
+    }
+
+    /**
+     * Advance an order to its next status. The update is a single conditional statement, so a ticket
+     * already bumped elsewhere is left alone.
+     *
+     * @return Future of whether this bump took effect
+     */
+    public CompletableFuture<Boolean> bumpAsync(Orders order) {
+        String from = order.getStatus();
+        String to = nextStatus(from);
+        if (to == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return DbExecutor.supply(() -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                boolean updated = orderRepository.advanceStatus(conn, order.getId(), from, to);
+                if (updated) {
+                    // Don't wait for our own notification to come back
+                    applyStatus(order.getId(), to);
+                }
+                return updated;
+            }
+        });
+    }
+
+    // On the updater thread
+    private void reload() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            List<Orders> orders = orderRepository.findByStatuses(conn, ACTIVE_STATUSES);
+            Integer[] ids = new Integer[orders.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = orders.get(i).getId();
+            }
+            Map<Integer, List<OrderItems>> itemsByOrder = new HashMap<>();
+            for (OrderItems item : orderItemRepository.findByOrderIds(conn, ids)) {
+                itemsByOrder.computeIfAbsent(item.getOrderId(), id -> new ArrayList<>()).add(item);
+            }
+
+            synchronized (this) {
+                tickets.clear();
+                for (Orders order : orders) {
+                    tickets.put(order.getId(), new PlacedOrder(order,
+                            itemsByOrder.getOrDefault(order.getId(), Collections.emptyList())));
+                }
+                publish();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading kitchen board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle an {@code <id>:<status>} or {@code <id>:items} notification. On the updater thread.
+     */
+    private void onNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try {
+            int id = Integer.parseInt(payload.substring(0, separator));
+            String status = payload.substring(separator + 1);
+            if ("items".equals(status)) {
+                if (isOnBoard(id)) {
+                    addFromDatabase(id);
+                }
+            } else if (!ACTIVE_STATUSES.contains(status)) {
+                remove(id);
+            } else if (!applyStatus(id, status)) {
+                addFromDatabase(id);
+            }
+        } catch (RuntimeException | SQLException e) {
+            System.err.println("Could not apply order change '" + payload + "', reloading: " + e.getMessage());
+            reload();
+        }
+    }
+
+    // On the updater thread
+    private void addFromDatabase(int id) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Orders order = orderRepository.findById(conn, id);
+            if (order == null || !ACTIVE_STATUSES.contains(order.getStatus())) {
+                remove(id);
+                return;
+            }
+            PlacedOrder ticket = new PlacedOrder(order, orderItemRepository.findByOrderId(conn, id));
+            synchronized (this) {
+                tickets.put(id, ticket);
+                publish();
+            }
+        }
+    }
+
+    private synchronized boolean isOnBoard(int id) {
+        return tickets.containsKey(id);
+    }
+
+    /**
+     * @return False if the order is not on the board
+     */
+    private synchronized boolean applyStatus(int id, String status) {
+        PlacedOrder current = tickets.get(id);
+        if (current == null) {
+            return false;
+        }
+        if (!status.equals(current.getOrder().getStatus())) {
+            if (ACTIVE_STATUSES.contains(status)) {
+                tickets.put(id, new PlacedOrder(new Orders(current.getOrder()).setStatus(status), current.getItems()));
+            } else {
+                tickets.remove(id);
+            }
+            publish();
+        }
+        return true;
+    }
+
+    private synchronized void remove(int id) {
+        if (tickets.remove(id) != null) {
+            publish();
+        }
+    }
+
+    // Caller holds the monitor, so listeners see boards in order
+    private void publish() {
+        List<PlacedOrder> next = new ArrayList<>(tickets.values());
+        next.sort(OLDEST_FIRST);
+        snapshot = Collections.unmodifiableList(next);
+        for (Consumer<List<PlacedOrder>> listener : listeners) {
+            listener.accept(snapshot);
+        }
+    }
+}
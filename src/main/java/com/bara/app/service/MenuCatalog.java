@@ -0,0 +1,123 @@
+package com.bara.app.service;
+
+import com.bara.app.model.MenuItem;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable, versioned snapshot of the menu.
+ * Lookups by id are an array index; the name-sorted view is precomputed. Changes produce a new snapshot,
+ * so readers never lock and never see a half-applied update.
+ */
+public final class MenuCatalog {
+
+    private static final Collator NAME_COLLATOR = Collator.getInstance(Locale.forLanguageTag("es-MX"));
+    private static final Comparator<MenuItem> BY_NAME = Comparator
+            .comparing(MenuItem::getName, NAME_COLLATOR)
+            .thenComparingInt(MenuItem::getId);
+
+    static final MenuCatalog EMPTY = new MenuCatalog(0, new MenuItem[0], Collections.emptyList());
+
+    private final long version;
+    private final MenuItem[] byId;
+    private final List<MenuItem> byName;
+
+    private MenuCatalog(long version, MenuItem[] byId, List<MenuItem> byName) {
+        this.version = version;
+        this.byId = byId;
+        this.byName = byName;
+    }
+
+    /**
+     * Build a snapshot from a full menu load.
+     */
+    static MenuCatalog of(long version, List<MenuItem> items) {
+        int maxId = 0;
+        for (MenuItem item : items) {
+            maxId = Math.max(maxId, item.getId());
+        }
+        MenuItem[] byId = new MenuItem[maxId + 1];
+        for (MenuItem item : items) {
+            byId[item.getId()] = item;
+        }
+        List<MenuItem> byName = new ArrayList<>(items);
+        byName.sort(BY_NAME);
+        return new MenuCatalog(version, byId, Collections.unmodifiableList(byName));
+    }
+
+    /**
+     * A new snapshot with the item added or replaced.
+     */
+    MenuCatalog with(MenuItem item) {
+        int id = item.getId();
+        MenuItem[] nextById = Arrays.copyOf(byId, Math.max(byId.length, id + 1));
+        MenuItem previous = id < byId.length ? byId[id] : null;
+        nextById[id] = item;
+
+        List<MenuItem> nextByName = new ArrayList<>(byName);
+        if (previous != null) {
+            nextByName.remove(Collections.binarySearch(nextByName, previous, BY_NAME));
+        }
+        int insertAt = Collections.binarySearch(nextByName, item, BY_NAME);
+        nextByName.add(insertAt < 0 ? -insertAt - 1 : insertAt, item);
+        return new MenuCatalog(version + 1, nextById, Collections.unmodifiableList(nextByName));
+    }
+
+    /**
+     * A new snapshot without the item, or this one if it is not present.
+     */
+    MenuCatalog without(int id) {
+        MenuItem previous = get(id);
+        if (previous == null) {
+            return this;
+        }
+        MenuItem[] nextById = byId.clone();
+        nextById[id] = null;
+        List<MenuItem> nextByName = new ArrayList<>(byName);
+        nextByName.remove(Collections.binarySearch(nextByName, previous, BY_NAME));
+        return new MenuCatalog(version + 1, nextById, Collections.unmodifiableList(nextByName));
+    }
+
+    /**
+     * A new snapshot with one item's availability changed, or this one if nothing changes.
+     */
+    MenuCatalog withAvailability(int id, boolean available) {
+        MenuItem current = get(id);
+        if (current == null || current.isAvailable() == available) {
+            return this;
+        }
+        return with(new MenuItem(current.getId(), current.getName(), current.getPriceCents(),
+                current.getDescription(), available));
+    }
+
+    /**
+     * Item by id, or null.
+     */
+    public MenuItem get(int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * All items sorted by name. Unmodifiable.
+     */
+    public List<MenuItem> getItemsByName() {
+        return byName;
+    }
+
+    /**
+     * Increases with every change applied on this terminal.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return byName.size();
+    }
+}
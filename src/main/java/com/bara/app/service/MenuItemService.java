@@ -1,6 +1,8 @@
 package com.bara.app.service;
 
 import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.database.NotificationListener;
 import com.bara.app.db.jooq.tables.pojos.MenuItems;
 import com.bara.app.model.MenuItem;
 import com.bara.app.repository.MenuItemRepository;
@@ -9,25 +11,61 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Service layer that bridges old MenuItem model with jOOQ repository.
+ * The {@code *Async} variants run on {@link DbExecutor} and are what the JavaFX views should call.
+ *
+ * <p>Reads are served from a shared in-memory {@link MenuCatalog}. A trigger on {@code menu_items}
+ * publishes every change on the {@code menu_items_changed} channel, and each terminal swaps in a
+ * new snapshot when it hears one. Availability flips (86'd) arrive on their own {@code menu_availability}
+ * channel carrying the new state, and are applied without touching the database.
  */
 public class MenuItemService {
 
+    private static final String CHANGE_CHANNEL = "menu_items_changed";
+    private static final String AVAILABILITY_CHANNEL = "menu_availability";
+
+    private static final AtomicReference<MenuCatalog> CATALOG = new AtomicReference<>();
+    private static final List<Consumer<MenuCatalog>> CATALOG_LISTENERS = new CopyOnWriteArrayList<>();
+    private static boolean subscribed = false;
+
     private final MenuItemRepository repository = new MenuItemRepository();
 
+    /**
+     * Current menu snapshot, loaded on first use.
+     */
+    public MenuCatalog getCatalog() {
+        MenuCatalog catalog = CATALOG.get();
+        return catalog != null ? catalog : loadCatalog();
+    }
+
+    /**
+     * Be told whenever a new snapshot is swapped in. Called on a background thread.
+     */
+    public static void addCatalogListener(Consumer<MenuCatalog> listener) {
+        CATALOG_LISTENERS.add(listener);
+    }
+
+    public static void removeCatalogListener(Consumer<MenuCatalog> listener) {
+        CATALOG_LISTENERS.remove(listener);
+    }
+
     public List<MenuItem> findAll() {
-        try (Connection conn = DatabaseManager.getConnection()) {
-            List<MenuItems> jooqItems = repository.findAll(conn);
-            return convertToModels(jooqItems);
-        } catch (SQLException e) {
-            System.err.println("Error finding menu items: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        return getCatalog().getItemsByName();
     }
 
     public MenuItem findById(int id) {
+        MenuItem cached = getCatalog().get(id);
+        if (cached != null) {
+            return cached;
+        }
+        // Possibly created on another terminal and not applied here yet
         try (Connection conn = DatabaseManager.getConnection()) {
             MenuItems jooqItem = repository.findById(conn, id);
             return jooqItem != null ? convertToModel(jooqItem) : null;
@@ -40,8 +78,9 @@ public class MenuItemService {
     public MenuItem save(MenuItem item) {
         try (Connection conn = DatabaseManager.getConnection()) {
             MenuItems jooqItem = convertToPojo(item);
-            MenuItems created = repository.create(conn, jooqItem);
-            return convertToModel(created);
+            MenuItem created = convertToModel(repository.create(conn, jooqItem));
+            apply(catalog -> catalog.with(created));
+            return created;
         } catch (SQLException e) {
             System.err.println("Error saving menu item: " + e.getMessage());
             return null;
@@ -52,27 +91,162 @@ public class MenuItemService {
         try (Connection conn = DatabaseManager.getConnection()) {
             MenuItems jooqItem = convertToPojo(item);
             MenuItems updated = repository.update(conn, jooqItem);
-            return convertToModel(updated);
+            if (updated == null) {
+                apply(catalog -> catalog.without(item.getId()));
+                return null;
+            }
+            MenuItem model = convertToModel(updated);
+            apply(catalog -> catalog.with(model));
+            return model;
         } catch (SQLException e) {
             System.err.println("Error updating menu item: " + e.getMessage());
             return null;
         }
     }
 
+    public void setAvailability(int id, boolean available) {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            repository.setAvailability(conn, id, available);
+            apply(catalog -> catalog.withAvailability(id, available));
+        } catch (SQLException e) {
+            System.err.println("Error updating menu item availability: " + e.getMessage());
+        }
+    }
+
     public void delete(int id) {
         try (Connection conn = DatabaseManager.getConnection()) {
             repository.delete(conn, id);
+            apply(catalog -> catalog.without(id));
         } catch (SQLException e) {
             System.err.println("Error deleting menu item: " + e.getMessage());
         }
     }
 
+    public CompletableFuture<List<MenuItem>> findAllAsync() {
+        return DbExecutor.supply(this::findAll);
+    }
+
+    public CompletableFuture<MenuItem> findByIdAsync(int id) {
+        return DbExecutor.supply(() -> findById(id));
+    }
+
+    public CompletableFuture<MenuItem> saveAsync(MenuItem item) {
+        return DbExecutor.supply(() -> save(item));
+    }
+
+    public CompletableFuture<MenuItem> updateAsync(MenuItem item) {
+        return DbExecutor.supply(() -> update(item));
+    }
+
+    public CompletableFuture<Void> setAvailabilityAsync(int id, boolean available) {
+        return DbExecutor.run(() -> setAvailability(id, available));
+    }
+
+    public CompletableFuture<Void> deleteAsync(int id) {
+        return DbExecutor.run(() -> delete(id));
+    }
+
+    // --- Catalog maintenance ---
+
+    private MenuCatalog loadCatalog() {
+        synchronized (MenuItemService.class) {
+            MenuCatalog current = CATALOG.get();
+            if (current != null) {
+                return current;
+            }
+            if (!subscribed) {
+                subscribed = true;
+                NotificationListener listener = NotificationListener.getInstance();
+                listener.subscribe(CHANGE_CHANNEL, this::onChangeNotification, this::reloadCatalog);
+                listener.subscribe(AVAILABILITY_CHANNEL, this::onAvailabilityNotification, () -> { });
+            }
+            return reloadCatalog();
+        }
+    }
+
+    /**
+     * Replace the snapshot with a full reload. On failure the previous snapshot is kept.
+     */
+    private MenuCatalog reloadCatalog() {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            List<MenuItem> items = convertToModels(repository.findAll(conn));
+            MenuCatalog loaded = MenuCatalog.of(0, items);
+            return apply(catalog -> MenuCatalog.of(catalog.getVersion() + 1, items), loaded);
+        } catch (SQLException e) {
+            System.err.println("Error loading menu catalog: " + e.getMessage());
+            MenuCatalog current = CATALOG.get();
+            return current != null ? current : MenuCatalog.EMPTY;
+        }
+    }
+
+    private void refreshItem(Connection conn, int id) {
+        MenuItems jooqItem = repository.findById(conn, id);
+        if (jooqItem != null) {
+            MenuItem model = convertToModel(jooqItem);
+            apply(catalog -> catalog.with(model));
+        } else {
+            apply(catalog -> catalog.without(id));
+        }
+    }
+
+    /**
+     * Handle a {@code <op>:<id>} notification from another writer (or our own echo).
+     */
+    private void onChangeNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try (Connection conn = DatabaseManager.getConnection()) {
+            refreshItem(conn, Integer.parseInt(payload.substring(separator + 1)));
+        } catch (SQLException | NumberFormatException e) {
+            System.err.println("Could not apply menu change '" + payload + "', reloading: " + e.getMessage());
+            reloadCatalog();
+        }
+    }
+
+    /**
+     * Handle an {@code <id>:<0|1>} availability notification.
+     */
+    private void onAvailabilityNotification(String payload) {
+        int separator = payload.indexOf(':');
+        try {
+            int id = Integer.parseInt(payload.substring(0, separator));
+            boolean available = payload.charAt(separator + 1) == '1';
+            apply(catalog -> catalog.withAvailability(id, available));
+        } catch (RuntimeException e) {
+            System.err.println("Could not apply availability change '" + payload + "', reloading: " + e.getMessage());
+            reloadCatalog();
+        }
+    }
+
+    private static MenuCatalog apply(UnaryOperator<MenuCatalog> change) {
+        return apply(change, null);
+    }
+
+    /**
+     * Swap in {@code change(current)}, or {@code initial} if nothing is cached yet, and notify listeners.
+     */
+    private static MenuCatalog apply(UnaryOperator<MenuCatalog> change, MenuCatalog initial) {
+        MenuCatalog[] previous = new MenuCatalog[1];
+        MenuCatalog next = CATALOG.updateAndGet(catalog -> {
+            previous[0] = catalog;
+            // Nothing cached yet: the first read loads everything, including this change
+            return catalog != null ? change.apply(catalog) : initial;
+        });
+        if (next == null || next == previous[0]) {
+            return next;
+        }
+        for (Consumer<MenuCatalog> listener : CATALOG_LISTENERS) {
+            listener.accept(next);
+        }
+        return next;
+    }
+
     private MenuItem convertToModel(MenuItems jooqItem) {
         return new MenuItem(
                 jooqItem.getId(),
                 jooqItem.getName(),
-                jooqItem.getPrice().doubleValue(),
-                jooqItem.getDescription()
+                jooqItem.getPriceCents(),
+                jooqItem.getDescription(),
+                jooqItem.getIsAvailable()
         );
     }
 
@@ -90,9 +264,9 @@ public class MenuItemService {
             pojo.setId(model.getId());
         }
         pojo.setName(model.getName());
-        pojo.setPrice((float) model.getPrice());
+        pojo.setPriceCents(model.getPriceCents());
         pojo.setDescription(model.getDescription());
-        pojo.setIsAvailable(true);
+        pojo.setIsAvailable(model.isAvailable());
         return pojo;
     }
 }
@@ -0,0 +1,170 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.DbExecutor;
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.journal.OrderJournal;
+import com.bara.app.model.MenuItem;
+import com.bara.app.model.Money;
+import com.bara.app.model.OrderItem;
+import com.bara.app.repository.CustomerAddressRepository;
+import com.bara.app.repository.CustomerRepository;
+import com.bara.app.repository.OrderItemRepository;
+import com.bara.app.repository.OrderRepository;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persists a ticket as one {@code orders} row plus its {@code order_items}, in a single transaction.
+ * Commits in three round trips (order insert, one multi-row line insert, commit) whatever the ticket size,
+ * plus one to resolve the customer of orders that have one. Orders carry a client UUID so the same order
+ * can be persisted more than once without duplicating it.
+ */
+public class OrderCheckoutService {
+
+    private final OrderRepository orderRepository = new OrderRepository();
+    private final CustomerRepository customerRepository = new CustomerRepository();
+    private final CustomerAddressRepository addressRepository = new CustomerAddressRepository();
+    private final OrderItemRepository orderItemRepository = new OrderItemRepository();
+    private final MenuItemService menuItemService = new MenuItemService();
+
+    /**
+     * Write the order and all its lines atomically.
+     * Item name and price are snapshotted from the ticket; subtotal and total are computed in memory.
+     *
+     * @param header Order header (type, customer, notes...). Subtotal and total are overwritten.
+     * @param lines Ticket lines, must not be empty
+     * @return The committed order with its generated IDs
+     */
+    public PlacedOrder checkout(Orders header, List<OrderItem> lines) throws SQLException {
+        return persist(prepare(header, lines));
+    }
+
+    /**
+     * Build the order to be stored: a client UUID, the order time, snapshotted lines and computed totals.
+     * Nothing is written; the result has no database IDs yet.
+     *
+     * @throws IllegalStateException If a line's menu item is 86'd or no longer on the menu
+     */
+    public PlacedOrder prepare(Orders header, List<OrderItem> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("Cannot check out an empty order");
+        }
+        MenuCatalog catalog = menuItemService.getCatalog();
+        for (OrderItem line : lines) {
+            MenuItem current = catalog.get(line.getMenuItem().getId());
+            if (current == null || !current.isAvailable()) {
+                throw new IllegalStateException("Menu item is not available: " + line.getMenuItemName());
+            }
+        }
+
+        List<OrderItems> rows = new ArrayList<>(lines.size());
+        long subtotal = Money.ZERO;
+        for (OrderItem line : lines) {
+            long lineTotal = line.getTotalPriceCents();
+            subtotal = Money.add(subtotal, lineTotal);
+            rows.add(new OrderItems()
+                    .setMenuItemId(line.getMenuItem().getId())
+                    .setItemName(line.getMenuItemName())
+                    .setItemPriceCents(line.getMenuItemPriceCents())
+                    .setQuantity(line.getQuantity())
+                    .setNotes(line.getNotes())
+                    .setLineTotalCents(lineTotal));
+        }
+
+        Orders order = new Orders(header);
+        if (order.getClientUuid() == null) {
+            order.setClientUuid(UUID.randomUUID());
+        }
+        if (order.getOrderedAt() == null) {
+            order.setOrderedAt(OffsetDateTime.now());
+        }
+        long tax = order.getTaxCents() != null ? order.getTaxCents() : Money.ZERO;
+        long deliveryFee = order.getDeliveryFeeCents() != null ? order.getDeliveryFeeCents() : Money.ZERO;
+        order.setSubtotalCents(subtotal);
+        order.setTotalCents(Money.add(Money.add(subtotal, tax), deliveryFee));
+        return new PlacedOrder(order, rows);
+    }
+
+    /**
+     * Store a prepared order in one transaction. Idempotent on the client UUID:
+     * if the order was already stored, the existing rows are returned and nothing is written.
+     * An order for a customer merged since the ticket was taken is stored under the master.
+     */
+    public PlacedOrder persist(PlacedOrder draft) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Orders header = draft.getOrder();
+                if (header.getCustomerId() != null) {
+                    Integer customerId = customerRepository.lockForOrder(conn, header.getCustomerId());
+                    if (customerId != null && !customerId.equals(header.getCustomerId())) {
+                        header = new Orders(header).setCustomerId(customerId);
+                        // The merge drops addresses the master already had; as ON DELETE SET NULL would
+                        if (header.getCustomerAddressId() != null
+                                && addressRepository.findById(conn, header.getCustomerAddressId()) == null) {
+                            System.err.println("Address " + header.getCustomerAddressId() + " of order "
+                                    + header.getClientUuid() + " was merged away; storing it without address");
+                            header.setCustomerAddressId(null);
+                        }
+                    }
+                }
+                Orders order = orderRepository.createIfAbsent(conn, header);
+                if (order == null) {
+                    conn.rollback();
+                    Orders existing = orderRepository.findByClientUuid(conn, draft.getOrder().getClientUuid());
+                    return new PlacedOrder(existing, orderItemRepository.findByOrderId(conn, existing.getId()));
+                }
+
+                List<OrderItems> rows = new ArrayList<>(draft.getItems().size());
+                for (OrderItems item : draft.getItems()) {
+                    rows.add(new OrderItems(item).setOrderId(order.getId()));
+                }
+                List<OrderItems> items = orderItemRepository.createAll(conn, rows);
+                conn.commit();
+                PlacedOrder placed = new PlacedOrder(order, items);
+                CustomerProfileAggregator.getInstance().record(placed);
+                if (order.getCustomerId() != null) {
+                    CustomerOverviewService.invalidate(order.getCustomerId());
+                }
+                return placed;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Confirm an order through the local journal.
+     * The future completes as soon as the order is durable on this terminal; the
+     * {@link com.bara.app.journal.JournalReplayer} writes it to the database in the background.
+     *
+     * @return The prepared order (without database IDs)
+     */
+    public CompletableFuture<PlacedOrder> submit(Orders header, List<OrderItem> lines) {
+        try {
+            PlacedOrder draft = prepare(header, lines);
+            return OrderJournal.getInstance().append(draft).thenApply(ignored -> draft);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Write straight to the database, bypassing the journal.
+     */
+    public CompletableFuture<PlacedOrder> checkoutAsync(Orders header, List<OrderItem> lines) {
+        // Snapshot now, on the caller's thread: the ticket's lines are not safe to read from the database thread
+        PlacedOrder draft = prepare(header, lines);
+        return DbExecutor.supply(() -> persist(draft));
+    }
+}
@@ -0,0 +1,86 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.repository.OrderRepository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Verifies the order totals that {@link com.bara.app.repository.OrderItemRepository} maintains
+ * incrementally, and rewrites any that drifted from their lines (e.g. after a manual edit in psql).
+ * Only open, unpaid orders are rewritten: a closed receipt keeps the amounts it was charged with.
+ */
+public class OrderTotalsChecker {
+
+    /**
+     * Statuses of orders whose totals {@link #repair()} may rewrite.
+     */
+    public static final List<String> OPEN_STATUSES = List.of("pending", "confirmed", "preparing", "ready",
+            "out_for_delivery");
+
+    private final OrderRepository orderRepository = new OrderRepository();
+
+    /**
+     * Orders whose stored totals disagree with their lines. Nothing is changed.
+     */
+    public List<Orders> findDrift() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return orderRepository.findTotalsDrift(conn);
+        }
+    }
+
+    /**
+     * Log how many orders have drifted, and how many of those {@link #repair()} would fix. Nothing is
+     * changed.
+     */
+    public void report() throws SQLException {
+        List<Orders> drifted = findDrift();
+        if (drifted.isEmpty()) {
+            return;
+        }
+        int open = 0;
+        for (Orders order : drifted) {
+            if (OPEN_STATUSES.contains(order.getStatus()) && "unpaid".equals(order.getPaymentStatus())) {
+                open++;
+            }
+        }
+        System.out.println("Order totals disagree with their lines on " + drifted.size() + " order(s), "
+                + open + " of them open (first: " + drifted.get(0).getId() + ")");
+    }
+
+    /**
+     * Find and fix drifted open, unpaid orders in one transaction. The drifted orders are locked first, so
+     * item writes landing meanwhile wait and then apply their delta on top of the repaired totals.
+     *
+     * @return The repaired orders
+     */
+    public List<Orders> repair() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Orders> drifted = orderRepository.lockOpenTotalsDrift(conn, OPEN_STATUSES);
+                if (drifted.isEmpty()) {
+                    conn.commit();
+                    return drifted;
+                }
+                Integer[] ids = new Integer[drifted.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = drifted.get(i).getId();
+                }
+                List<Orders> repaired = orderRepository.repairTotals(conn, ids);
+                conn.commit();
+                for (Orders order : repaired) {
+                    System.out.println("Repaired totals of order " + order.getId()
+                            + ": subtotal=" + order.getSubtotalCents() + " total=" + order.getTotalCents());
+                }
+                return repaired;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+}
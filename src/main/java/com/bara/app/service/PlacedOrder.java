@@ -0,0 +1,28 @@
+package com.bara.app.service;
+
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+
+import java.util.List;
+
+/**
+ * An order as committed by {@link OrderCheckoutService}: the {@code orders} row and its lines.
+ */
+public class PlacedOrder {
+
+    private final Orders order;
+    private final List<OrderItems> items;
+
+    public PlacedOrder(Orders order, List<OrderItems> items) {
+        this.order = order;
+        this.items = items;
+    }
+
+    public Orders getOrder() {
+        return order;
+    }
+
+    public List<OrderItems> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,38 @@
+package com.bara.app.sync;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends each batch as one JSON line to a local file, fsynced before the batch is acknowledged.
+ * Stands in for the cloud endpoint until there is one.
+ */
+public class FileSyncSink implements SyncSink {
+
+    private final FileChannel channel;
+
+    public FileSyncSink(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void push(SyncBatch batch) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((batch.getPayload() + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
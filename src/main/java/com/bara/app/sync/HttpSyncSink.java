@@ -0,0 +1,42 @@
+package com.bara.app.sync;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * POSTs each batch as JSON to an HTTP endpoint; any 2xx response acknowledges the batch.
+ */
+public class HttpSyncSink implements SyncSink {
+
+    private final URI endpoint;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    public HttpSyncSink(URI endpoint, Duration timeout) {
+        this.endpoint = endpoint;
+        this.timeout = timeout;
+        // HTTP/2 lets pipelined batches share one connection
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public void push(SyncBatch batch) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(batch.getPayload()))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Sync endpoint returned HTTP " + response.statusCode() + ": " + response.body());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.bara.app.sync;
+
+/**
+ * A batch of pending rows read from one table, ready to push.
+ */
+public class SyncBatch {
+
+    private final SyncEntity entity;
+    private final Integer[] ids;
+    private final Integer[] versions;
+    private final String payload;
+
+    /**
+     * @param ids Row ids in ascending order
+     * @param versions sync_version of each row, parallel to {@code ids}
+     * @param payload JSON document sent to the sink
+     */
+    public SyncBatch(SyncEntity entity, Integer[] ids, Integer[] versions, String payload) {
+        this.entity = entity;
+        this.ids = ids;
+        this.versions = versions;
+        this.payload = payload;
+    }
+
+    public SyncEntity getEntity() {
+        return entity;
+    }
+
+    public Integer[] getIds() {
+        return ids;
+    }
+
+    public Integer[] getVersions() {
+        return versions;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** Keyset cursor for the next batch. */
+    public int getLastId() {
+        return ids[ids.length - 1];
+    }
+}
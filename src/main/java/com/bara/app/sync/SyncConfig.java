@@ -0,0 +1,190 @@
+package com.bara.app.sync;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings for {@link SyncEngine}.
+ * Every value can be overridden with a {@code bara.sync.*} system property.
+ */
+public class SyncConfig {
+
+    private boolean enabled = false;
+    private int batchSize = 500;
+    private int maxInFlight = 4;
+    private long pollIntervalMillis = 10_000;
+    private int maxAttempts = 5;
+    private long initialBackoffMillis = 500;
+    private long maxBackoffMillis = 30_000;
+    private String sink = "file";
+    private Path filePath = Paths.get(System.getProperty("user.home"), ".bara", "sync", "outbox.jsonl");
+    private String httpEndpoint = null;
+    private long httpTimeoutMillis = 10_000;
+
+    /**
+     * Build a config from defaults plus any {@code bara.sync.*} system properties.
+     */
+    public static SyncConfig fromSystemProperties() {
+        SyncConfig config = new SyncConfig();
+        config.enabled = Boolean.parseBoolean(System.getProperty("bara.sync.enabled", String.valueOf(config.enabled)));
+        config.batchSize = Integer.getInteger("bara.sync.batchSize", config.batchSize);
+        config.maxInFlight = Integer.getInteger("bara.sync.maxInFlight", config.maxInFlight);
+        config.pollIntervalMillis = Long.getLong("bara.sync.pollIntervalMillis", config.pollIntervalMillis);
+        config.maxAttempts = Integer.getInteger("bara.sync.maxAttempts", config.maxAttempts);
+        config.initialBackoffMillis = Long.getLong("bara.sync.initialBackoffMillis", config.initialBackoffMillis);
+        config.maxBackoffMillis = Long.getLong("bara.sync.maxBackoffMillis", config.maxBackoffMillis);
+        config.sink = System.getProperty("bara.sync.sink", config.sink);
+        String file = System.getProperty("bara.sync.file");
+        if (file != null) {
+            config.filePath = Paths.get(file);
+        }
+        config.httpEndpoint = System.getProperty("bara.sync.endpoint", config.httpEndpoint);
+        config.httpTimeoutMillis = Long.getLong("bara.sync.httpTimeoutMillis", config.httpTimeoutMillis);
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (batchSize <= 0 || maxInFlight <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Invalid sync config: batchSize=" + batchSize
+                    + ", maxInFlight=" + maxInFlight + ", maxAttempts=" + maxAttempts);
+        }
+    }
+
+    /**
+     * Open the configured sink: {@code file} (default) or {@code http}.
+     */
+    public SyncSink createSink() throws IOException {
+        switch (sink) {
+            case "file":
+                return new FileSyncSink(filePath);
+            case "http":
+                if (httpEndpoint == null) {
+                    throw new IllegalArgumentException("bara.sync.endpoint is required for the http sink");
+                }
+                return new HttpSyncSink(URI.create(httpEndpoint), Duration.ofMillis(httpTimeoutMillis));
+            default:
+                throw new IllegalArgumentException("Unknown sync sink: " + sink);
+        }
+    }
+
+    /**
+     * Whether the engine runs at startup. Off until there is a cloud to sync with.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public SyncConfig setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Rows read and pushed per batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public SyncConfig setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        validate();
+        return this;
+    }
+
+    /**
+     * Batches pushed concurrently while the next ones are being read.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public SyncConfig setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        validate();
+        return this;
+    }
+
+    /**
+     * Pause between passes once everything pending has been pushed.
+     */
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public SyncConfig setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Push attempts per batch within one pass; rows of a batch that still fails are retried next pass.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public SyncConfig setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        validate();
+        return this;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public SyncConfig setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        return this;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public SyncConfig setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public String getSink() {
+        return sink;
+    }
+
+    public SyncConfig setSink(String sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    public SyncConfig setFilePath(Path filePath) {
+        this.filePath = filePath;
+        return this;
+    }
+
+    public String getHttpEndpoint() {
+        return httpEndpoint;
+    }
+
+    public SyncConfig setHttpEndpoint(String httpEndpoint) {
+        this.httpEndpoint = httpEndpoint;
+        return this;
+    }
+
+    public long getHttpTimeoutMillis() {
+        return httpTimeoutMillis;
+    }
+
+    public SyncConfig setHttpTimeoutMillis(long httpTimeoutMillis) {
+        this.httpTimeoutMillis = httpTimeoutMillis;
+        return this;
+    }
+}
@@ -0,0 +1,238 @@
+package com.bara.app.sync;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.metrics.LatencyRecorder;
+import com.bara.app.repository.OutboxRepository;
+import org.jooq.JSONFormat;
+import org.jooq.Record;
+import org.jooq.Result;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes rows with {@code synced_to_cloud = false} to a {@link SyncSink}.
+ *
+ * <p>Each pass walks every {@link SyncEntity} with a keyset cursor in fixed-size batches. Reading the next
+ * batch overlaps with pushing the previous ones (up to {@code maxInFlight}); each acknowledged batch is
+ * marked synced with a single {@code UPDATE ... WHERE id = ANY(?)}. Failed pushes are retried with
+ * exponential backoff and jitter, and rows still failing simply stay pending for the next pass.
+ */
+public class SyncEngine {
+
+    private static final JSONFormat ROW_FORMAT = new JSONFormat()
+            .header(false)
+            .recordFormat(JSONFormat.RecordFormat.OBJECT);
+
+    private final SyncConfig config;
+    private final SyncSink sink;
+    private final OutboxRepository outboxRepository = new OutboxRepository();
+    private final ExecutorService pushers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+
+    private final AtomicLong rowsSynced = new AtomicLong();
+    private final AtomicLong batchesSynced = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final LatencyRecorder pushLatency = new LatencyRecorder(512);
+    private volatile double lastRowsPerSecond = 0.0;
+    private volatile long lagMillis = 0;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public SyncEngine(SyncConfig config, SyncSink sink) {
+        this.config = config;
+        this.sink = sink;
+        this.inFlight = new Semaphore(config.getMaxInFlight());
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofVirtual().name("bara-sync").start(this::run);
+    }
+
+    /**
+     * Stop after the batches in flight, then close the sink.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        pushers.shutdown();
+        try {
+            sink.close();
+        } catch (Exception e) {
+            System.err.println("Error closing sync sink: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        long backoff = config.getInitialBackoffMillis();
+        while (running) {
+            try {
+                int synced = syncOnce();
+                if (synced > 0) {
+                    System.out.println("Sync: " + getMetrics());
+                }
+                backoff = config.getInitialBackoffMillis();
+                Thread.sleep(config.getPollIntervalMillis());
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Sync pass failed, retrying in " + backoff + "ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, config.getMaxBackoffMillis());
+            }
+        }
+    }
+
+    /**
+     * Push everything currently pending, once.
+     *
+     * @return Rows marked as synced during this pass
+     */
+    public int syncOnce() throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> pushes = new ArrayList<>();
+
+        for (SyncEntity entity : SyncEntity.values()) {
+            int cursor = 0;
+            SyncBatch batch;
+            while ((batch = readBatch(entity, cursor)) != null) {
+                cursor = batch.getLastId();
+                inFlight.acquire();
+                SyncBatch pushed = batch;
+                CompletableFuture<Integer> push = CompletableFuture.supplyAsync(() -> deliver(pushed), pushers);
+                push.whenComplete((rows, error) -> inFlight.release());
+                pushes.add(push);
+            }
+        }
+
+        int synced = 0;
+        for (CompletableFuture<Integer> push : pushes) {
+            synced += push.join();
+        }
+
+        if (synced > 0) {
+            double seconds = Duration.ofNanos(System.nanoTime() - start).toMillis() / 1000.0;
+            lastRowsPerSecond = synced / Math.max(seconds, 0.001);
+        }
+        lagMillis = measureLag();
+        return synced;
+    }
+
+    private SyncBatch readBatch(SyncEntity entity, int afterId) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            Result<Record> rows = outboxRepository.findPending(conn, entity, afterId, config.getBatchSize());
+            if (rows.isEmpty()) {
+                return null;
+            }
+
+            Integer[] ids = rows.getValues(entity.getId()).toArray(new Integer[0]);
+            Integer[] versions = rows.getValues(entity.getSyncVersion()).toArray(new Integer[0]);
+
+            StringBuilder payload = new StringBuilder(rows.size() * 256);
+            payload.append("{\"entity\":\"").append(entity.getName()).append("\",\"rows\":")
+                    .append(rows.formatJSON(ROW_FORMAT));
+            if (entity == SyncEntity.ORDERS) {
+                payload.append(",\"items\":").append(outboxRepository.findOrderItems(conn, ids).formatJSON(ROW_FORMAT));
+            }
+            payload.append('}');
+            return new SyncBatch(entity, ids, versions, payload.toString());
+        }
+    }
+
+    /**
+     * Push one batch with retries, then mark its rows synced.
+     *
+     * @return Rows marked, or 0 if the batch stays pending
+     */
+    private int deliver(SyncBatch batch) {
+        long backoff = config.getInitialBackoffMillis();
+        for (int attempt = 1; attempt <= config.getMaxAttempts(); attempt++) {
+            try {
+                long pushStart = System.nanoTime();
+                sink.push(batch);
+                pushLatency.recordSince(pushStart);
+
+                int marked;
+                try (Connection conn = DatabaseManager.getConnection()) {
+                    marked = outboxRepository.markSynced(conn, batch.getEntity(), batch.getIds(), batch.getVersions());
+                }
+                rowsSynced.addAndGet(marked);
+                batchesSynced.incrementAndGet();
+                return marked;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (Exception e) {
+                if (attempt == config.getMaxAttempts()) {
+                    System.err.println("Giving up on " + batch.getEntity().getName() + " batch of " + batch.size()
+                            + " after " + attempt + " attempts: " + e.getMessage());
+                    break;
+                }
+                retries.incrementAndGet();
+                try {
+                    // Jitter keeps pipelined retries from hitting the sink in lockstep
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+                backoff = Math.min(backoff * 2, config.getMaxBackoffMillis());
+            }
+        }
+        failedBatches.incrementAndGet();
+        return 0;
+    }
+
+    private long measureLag() throws SQLException {
+        OffsetDateTime now = OffsetDateTime.now();
+        long lag = 0;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            for (SyncEntity entity : SyncEntity.values()) {
+                OffsetDateTime oldest = outboxRepository.findOldestPending(conn, entity);
+                if (oldest != null) {
+                    lag = Math.max(lag, Duration.between(oldest, now).toMillis());
+                }
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * Point-in-time sync statistics.
+     */
+    public SyncMetrics getMetrics() {
+        return new SyncMetrics(
+                rowsSynced.get(),
+                batchesSynced.get(),
+                failedBatches.get(),
+                retries.get(),
+                lastRowsPerSecond,
+                lagMillis,
+                pushLatency.percentile(50) / 1_000_000.0,
+                pushLatency.percentile(95) / 1_000_000.0
+        );
+    }
+}
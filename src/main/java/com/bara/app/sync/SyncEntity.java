@@ -0,0 +1,66 @@
+package com.bara.app.sync;
+
+import com.bara.app.db.jooq.Tables;
+import org.jooq.Field;
+import org.jooq.Table;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Tables pushed to the cloud, with the sync columns they share.
+ */
+public enum SyncEntity {
+
+    CUSTOMERS("customers", Tables.CUSTOMERS, Tables.CUSTOMERS.ID, Tables.CUSTOMERS.SYNC_VERSION,
+            Tables.CUSTOMERS.SYNCED_TO_CLOUD, Tables.CUSTOMERS.LAST_SYNCED_AT, Tables.CUSTOMERS.UPDATED_AT),
+    ORDERS("orders", Tables.ORDERS, Tables.ORDERS.ID, Tables.ORDERS.SYNC_VERSION,
+            Tables.ORDERS.SYNCED_TO_CLOUD, Tables.ORDERS.LAST_SYNCED_AT, Tables.ORDERS.UPDATED_AT);
+
+    private final String name;
+    private final Table<?> table;
+    private final Field<Integer> id;
+    private final Field<Integer> syncVersion;
+    private final Field<Boolean> syncedToCloud;
+    private final Field<OffsetDateTime> lastSyncedAt;
+    private final Field<OffsetDateTime> updatedAt;
+
+    SyncEntity(String name, Table<?> table, Field<Integer> id, Field<Integer> syncVersion,
+               Field<Boolean> syncedToCloud, Field<OffsetDateTime> lastSyncedAt, Field<OffsetDateTime> updatedAt) {
+        this.name = name;
+        this.table = table;
+        this.id = id;
+        this.syncVersion = syncVersion;
+        this.syncedToCloud = syncedToCloud;
+        this.lastSyncedAt = lastSyncedAt;
+        this.updatedAt = updatedAt;
+    }
+
+    /** Name used in pushed payloads. */
+    public String getName() {
+        return name;
+    }
+
+    public Table<?> getTable() {
+        return table;
+    }
+
+    public Field<Integer> getId() {
+        return id;
+    }
+
+    public Field<Integer> getSyncVersion() {
+        return syncVersion;
+    }
+
+    public Field<Boolean> getSyncedToCloud() {
+        return syncedToCloud;
+    }
+
+    public Field<OffsetDateTime> getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public Field<OffsetDateTime> getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,73 @@
+package com.bara.app.sync;
+
+/**
+ * Snapshot of {@link SyncEngine} statistics.
+ */
+public class SyncMetrics {
+
+    private final long rowsSynced;
+    private final long batchesSynced;
+    private final long failedBatches;
+    private final long retries;
+    private final double rowsPerSecond;
+    private final long lagMillis;
+    private final double pushP50Millis;
+    private final double pushP95Millis;
+
+    public SyncMetrics(long rowsSynced, long batchesSynced, long failedBatches, long retries,
+                       double rowsPerSecond, long lagMillis, double pushP50Millis, double pushP95Millis) {
+        this.rowsSynced = rowsSynced;
+        this.batchesSynced = batchesSynced;
+        this.failedBatches = failedBatches;
+        this.retries = retries;
+        this.rowsPerSecond = rowsPerSecond;
+        this.lagMillis = lagMillis;
+        this.pushP50Millis = pushP50Millis;
+        this.pushP95Millis = pushP95Millis;
+    }
+
+    /** Rows marked as synced since the engine started. */
+    public long getRowsSynced() {
+        return rowsSynced;
+    }
+
+    public long getBatchesSynced() {
+        return batchesSynced;
+    }
+
+    /** Batches that exhausted their attempts; their rows stay pending. */
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    /** Throughput of the last pass that synced anything. */
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /** Age of the oldest row still pending after the last pass, 0 when fully synced. */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /** Sink push latency percentiles, per batch. */
+    public double getPushP50Millis() {
+        return pushP50Millis;
+    }
+
+    public double getPushP95Millis() {
+        return pushP95Millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rows=%d batches=%d failed=%d retries=%d throughput=%.0f rows/s lag=%dms "
+                        + "push p50=%.2fms p95=%.2fms",
+                rowsSynced, batchesSynced, failedBatches, retries, rowsPerSecond, lagMillis,
+                pushP50Millis, pushP95Millis);
+    }
+}
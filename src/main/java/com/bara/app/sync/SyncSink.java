@@ -0,0 +1,20 @@
+package com.bara.app.sync;
+
+import java.io.IOException;
+
+/**
+ * Destination for synced rows.
+ * Rows are keyed by id and sync_version, so a sink must accept the same batch more than once.
+ */
+public interface SyncSink extends AutoCloseable {
+
+    /**
+     * Deliver a batch. Returning normally acknowledges every row in it; throwing leaves them pending.
+     * Called from several threads at once when pushes are pipelined.
+     */
+    void push(SyncBatch batch) throws IOException, InterruptedException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
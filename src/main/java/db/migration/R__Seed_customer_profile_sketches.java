@@ -0,0 +1,27 @@
+package db.migration;
+
+import com.bara.app.service.CustomerProfileAggregator;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Migration: Seed customer_profile_sketches (V19) from the order history.
+ * Flushes fold new orders into a customer's sketch and rewrite the profile columns of customers from it,
+ * so without a seeded sketch the first flush would replace every existing profile with one counting only
+ * orders taken after the deploy. Runs the application's rebuild, which writes the columns of the current
+ * schema; as a repeatable migration it runs after all versioned ones, and its fixed checksum makes it run
+ * once.
+ */
+public class R__Seed_customer_profile_sketches extends BaseJavaMigration {
+
+    @Override
+    public Integer getChecksum() {
+        return 1;
+    }
+
+    @Override
+    public void migrate(Context context) {
+        int customers = CustomerProfileAggregator.getInstance().seed(context.getConnection());
+        System.out.println("Seeded the profile sketches of " + customers + " customer(s)");
+    }
+}
@@ -0,0 +1,61 @@
+package db.migration;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.db.jooq.tables.pojos.CustomerAddresses;
+import com.bara.app.repository.CustomerAddressRepository;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.jooq.BatchBindStep;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record7;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
+
+/**
+ * Migration: Recompute customer_addresses.normalized_key.
+ * Keys stored before {@link CustomerAddressRepository#normalizedKeyOf} were whatever the caller passed, or
+ * null, so duplicate lookups and customer merges missed those addresses. Every key is recomputed with the
+ * rule new addresses get; in Java because that rule is {@link com.bara.app.database.TextNormalizer}'s.
+ * Only the columns the key reads are selected, so later changes to the table do not break it.
+ */
+public class V22__Recompute_address_keys extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) {
+        DSLContext dsl = DatabaseManager.dsl(context.getConnection());
+        BatchBindStep updates = updates(dsl);
+        int pending = 0;
+        try (Cursor<Record7<Integer, String, String, String, String, String, String>> addresses = dsl.select(CUSTOMER_ADDRESSES.ID, CUSTOMER_ADDRESSES.RAW_INPUT,
+                        CUSTOMER_ADDRESSES.STREET, CUSTOMER_ADDRESSES.POSTAL_CODE, CUSTOMER_ADDRESSES.CITY,
+                        CUSTOMER_ADDRESSES.STATE, CUSTOMER_ADDRESSES.NORMALIZED_KEY)
+                .from(CUSTOMER_ADDRESSES)
+                .fetchSize(BATCH_SIZE)
+                .fetchLazy()) {
+            for (Record7<Integer, String, String, String, String, String, String> record : addresses) {
+                CustomerAddresses address = record.into(CustomerAddresses.class);
+                String key = CustomerAddressRepository.normalizedKeyOf(address);
+                if (key.equals(address.getNormalizedKey())) {
+                    continue;
+                }
+                updates.bind(key, address.getId());
+                if (++pending == BATCH_SIZE) {
+                    updates.execute();
+                    updates = updates(dsl);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updates.execute();
+        }
+    }
+
+    private static BatchBindStep updates(DSLContext dsl) {
+        return dsl.batch(dsl.update(CUSTOMER_ADDRESSES)
+                .set(CUSTOMER_ADDRESSES.NORMALIZED_KEY, (String) null)
+                .where(CUSTOMER_ADDRESSES.ID.eq((Integer) null)));
+    }
+}
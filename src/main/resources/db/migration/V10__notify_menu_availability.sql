@@ -0,0 +1,19 @@
+-- Migration: Separate availability feed for menu items
+-- Description: Updates that only flip is_available (86'd / back in stock) are published on
+-- menu_availability as '<id>:<0|1>', so terminals apply them without re-reading the row.
+-- Every other change keeps going to menu_items_changed.
+
+CREATE OR REPLACE FUNCTION notify_menu_items_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || OLD.id);
+    ELSIF TG_OP = 'UPDATE'
+            AND OLD.is_available IS DISTINCT FROM NEW.is_available
+            AND (OLD.name, OLD.price, OLD.description) IS NOT DISTINCT FROM (NEW.name, NEW.price, NEW.description) THEN
+        PERFORM pg_notify('menu_availability', NEW.id || ':' || CASE WHEN NEW.is_available THEN '1' ELSE '0' END);
+    ELSE
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
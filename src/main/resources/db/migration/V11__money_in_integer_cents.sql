@@ -0,0 +1,47 @@
+-- Migration: Store money as integer cents
+-- Description: REAL (float4) cannot represent most cent amounts exactly, so sums drift.
+-- Every money column becomes BIGINT cents, renamed with a _cents suffix so the unit is explicit.
+-- Existing values are rounded to the nearest cent.
+
+ALTER TABLE menu_items RENAME COLUMN price TO price_cents;
+ALTER TABLE menu_items ALTER COLUMN price_cents TYPE BIGINT USING round(price_cents::numeric * 100)::bigint;
+
+ALTER TABLE order_items RENAME COLUMN item_price TO item_price_cents;
+ALTER TABLE order_items ALTER COLUMN item_price_cents TYPE BIGINT USING round(item_price_cents::numeric * 100)::bigint;
+ALTER TABLE order_items RENAME COLUMN line_total TO line_total_cents;
+ALTER TABLE order_items ALTER COLUMN line_total_cents TYPE BIGINT USING round(line_total_cents::numeric * 100)::bigint;
+
+ALTER TABLE orders RENAME COLUMN subtotal TO subtotal_cents;
+ALTER TABLE orders ALTER COLUMN subtotal_cents TYPE BIGINT USING round(subtotal_cents::numeric * 100)::bigint;
+ALTER TABLE orders RENAME COLUMN tax TO tax_cents;
+ALTER TABLE orders ALTER COLUMN tax_cents TYPE BIGINT USING round(tax_cents::numeric * 100)::bigint;
+ALTER TABLE orders RENAME COLUMN delivery_fee TO delivery_fee_cents;
+ALTER TABLE orders ALTER COLUMN delivery_fee_cents TYPE BIGINT USING round(delivery_fee_cents::numeric * 100)::bigint;
+ALTER TABLE orders RENAME COLUMN total TO total_cents;
+ALTER TABLE orders ALTER COLUMN total_cents TYPE BIGINT USING round(total_cents::numeric * 100)::bigint;
+
+ALTER TABLE customers RENAME COLUMN avg_ticket_size TO avg_ticket_size_cents;
+ALTER TABLE customers ALTER COLUMN avg_ticket_size_cents TYPE BIGINT USING round(avg_ticket_size_cents::numeric * 100)::bigint;
+ALTER TABLE customers RENAME COLUMN total_lifetime_value TO total_lifetime_value_cents;
+ALTER TABLE customers ALTER COLUMN total_lifetime_value_cents TYPE BIGINT USING round(total_lifetime_value_cents::numeric * 100)::bigint;
+
+ALTER TABLE unidentified_customer_clusters RENAME COLUMN total_spent TO total_spent_cents;
+ALTER TABLE unidentified_customer_clusters ALTER COLUMN total_spent_cents TYPE BIGINT USING round(total_spent_cents::numeric * 100)::bigint;
+ALTER TABLE unidentified_customer_clusters RENAME COLUMN avg_ticket_size TO avg_ticket_size_cents;
+ALTER TABLE unidentified_customer_clusters ALTER COLUMN avg_ticket_size_cents TYPE BIGINT USING round(avg_ticket_size_cents::numeric * 100)::bigint;
+
+-- The menu change trigger compares the price column by name
+CREATE OR REPLACE FUNCTION notify_menu_items_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || OLD.id);
+    ELSIF TG_OP = 'UPDATE'
+            AND OLD.is_available IS DISTINCT FROM NEW.is_available
+            AND (OLD.name, OLD.price_cents, OLD.description) IS NOT DISTINCT FROM (NEW.name, NEW.price_cents, NEW.description) THEN
+        PERFORM pg_notify('menu_availability', NEW.id || ':' || CASE WHEN NEW.is_available THEN '1' ELSE '0' END);
+    ELSE
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
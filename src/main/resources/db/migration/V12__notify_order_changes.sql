@@ -0,0 +1,23 @@
+-- Migration: Publish order inserts and status changes
+-- Description: NOTIFY orders_changed with '<id>:<status>' when an order is created or its status changes,
+-- and '<id>:deleted' when it is removed, so kitchen displays follow the queue without polling.
+-- Notifications are delivered on commit, so a listener that reads the order back also sees its items.
+
+CREATE OR REPLACE FUNCTION notify_orders_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('orders_changed', OLD.id || ':deleted');
+    ELSIF TG_OP = 'INSERT' OR OLD.status IS DISTINCT FROM NEW.status THEN
+        PERFORM pg_notify('orders_changed', NEW.id || ':' || NEW.status);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_orders_notify
+    AFTER INSERT OR UPDATE OF status OR DELETE ON orders
+    FOR EACH ROW EXECUTE FUNCTION notify_orders_changed();
+
+-- The kitchen board's initial load: the open queue, oldest first
+CREATE INDEX idx_orders_kitchen_queue ON orders(ordered_at, id)
+    WHERE status IN ('pending', 'confirmed', 'preparing');
@@ -0,0 +1,12 @@
+-- Migration: Row versions for optimistic concurrency
+-- Description: Terminals write with "WHERE id = ? AND <version> = ?" and bump the version, so a concurrent
+-- edit is detected instead of silently overwritten. customers and orders reuse sync_version (made NOT NULL);
+-- order_items gets its own version column.
+
+UPDATE customers SET sync_version = 1 WHERE sync_version IS NULL;
+ALTER TABLE customers ALTER COLUMN sync_version SET NOT NULL;
+
+UPDATE orders SET sync_version = 1 WHERE sync_version IS NULL;
+ALTER TABLE orders ALTER COLUMN sync_version SET NOT NULL;
+
+ALTER TABLE order_items ADD COLUMN version INTEGER NOT NULL DEFAULT 1;
@@ -0,0 +1,18 @@
+-- Migration: Publish customer name changes
+-- Description: NOTIFY customers_changed with '<op>:<id>' when a customer is created or deleted, or its
+-- name or status is written, so each terminal keeps its in-memory name index current without polling.
+
+CREATE OR REPLACE FUNCTION notify_customers_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('customers_changed', TG_OP || ':' || OLD.id);
+    ELSE
+        PERFORM pg_notify('customers_changed', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_customers_notify
+    AFTER INSERT OR UPDATE OF first_name, paternal_last_name, maternal_last_name, status OR DELETE ON customers
+    FOR EACH ROW EXECUTE FUNCTION notify_customers_changed();
@@ -0,0 +1,25 @@
+-- Migration: Normalized phone digits
+-- Description: phone_number is stored as typed ("55 1234-5678", "+52 1 55..."). phone_digits keeps only the
+-- digits, so lookups compare like with like. Suffix lookups (last 7 / last 10 digits, as caller ID needs)
+-- are served by an index on the reversed digits; terminals also publish phone changes on
+-- customer_phones_changed ('<op>:<id>') to keep their in-memory phone index current.
+
+ALTER TABLE customer_phones
+    ADD COLUMN phone_digits TEXT GENERATED ALWAYS AS (regexp_replace(phone_number, '[^0-9]', '', 'g')) STORED;
+
+CREATE INDEX idx_customer_phones_digits_suffix ON customer_phones (reverse(phone_digits) text_pattern_ops);
+
+CREATE OR REPLACE FUNCTION notify_customer_phones_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('customer_phones_changed', TG_OP || ':' || OLD.id);
+    ELSE
+        PERFORM pg_notify('customer_phones_changed', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_customer_phones_notify
+    AFTER INSERT OR UPDATE OF phone_number, customer_id OR DELETE ON customer_phones
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_phones_changed();
@@ -0,0 +1,14 @@
+-- Migration: Trigram indexes for database-side search
+-- Description: Substring searches (LIKE '%..%') could not use a btree and scanned the whole table.
+-- pg_trgm GIN indexes serve both those and typo-tolerant similarity matches (term <% column).
+-- Phones are indexed by their digits (V15) and cluster names without accents, because in the C locale
+-- pg_trgm treats accented letters as word breaks. Queries must use the same expressions to hit the indexes.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_customer_name_trgm ON customers USING gin (full_name_search gin_trgm_ops);
+
+CREATE INDEX idx_customer_phones_digits_trgm ON customer_phones USING gin (phone_digits gin_trgm_ops);
+
+CREATE INDEX idx_clusters_name_pattern_trgm ON unidentified_customer_clusters
+    USING gin (immutable_unaccent(name_pattern) gin_trgm_ops);
@@ -0,0 +1,21 @@
+-- Migration: Unaccent full_name_search before upper-casing it
+-- Description: upper() only knows the letters of the database's locale and encoding; under C or
+-- SQL_ASCII it left "Núñez" as "NúñEZ", which unaccent then turned into "NunEZ", so a search for NUNEZ
+-- missed it. Unaccenting first leaves upper() only ASCII letters and the letters unaccent keeps (Greek,
+-- Cyrillic...). TextNormalizer.forSearch in the application upper-cases ASCII only, so it computes the
+-- same key where upper() does too (SQL_ASCII, or the C collation); under a UTF-8 collation the two
+-- differ on those other letters.
+
+ALTER TABLE customers DROP COLUMN full_name_search;
+
+ALTER TABLE customers ADD COLUMN full_name_search TEXT GENERATED ALWAYS AS (
+    upper(immutable_unaccent(
+        first_name || ' ' ||
+        COALESCE(paternal_last_name, '') || ' ' ||
+        COALESCE(maternal_last_name, '')
+    ))
+) STORED;
+
+-- Dropped with the column
+CREATE INDEX idx_customer_name_search ON customers(full_name_search);
+CREATE INDEX idx_customer_name_trgm ON customers USING gin (full_name_search gin_trgm_ops);
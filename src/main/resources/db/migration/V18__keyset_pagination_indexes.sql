@@ -0,0 +1,27 @@
+-- Migration: Indexes for keyset pagination
+-- Description: Lists are read a page at a time by seeking past the last row's sort key, e.g.
+-- (ordered_at, id) < (?, ?) ORDER BY ordered_at DESC, id DESC LIMIT ?. Each index below holds its list's
+-- filter and full sort key in order, so a page is one short index range scan and no sort. Indexes they
+-- make redundant (same leading columns) are replaced.
+
+-- Customer list, by first name
+CREATE INDEX idx_customers_active_first_name ON customers(first_name, id) WHERE status = 'active';
+
+-- Name search paged alphabetically; still serves prefix matches on full_name_search
+DROP INDEX IF EXISTS idx_customer_name_search;
+CREATE INDEX idx_customer_name_search ON customers(full_name_search, id);
+
+-- Order history of a customer, a cluster, and of anonymous orders, newest first
+DROP INDEX IF EXISTS idx_orders_customer_ordered_at;
+CREATE INDEX idx_orders_customer_ordered_at ON orders(customer_id, ordered_at DESC, id DESC);
+
+DROP INDEX IF EXISTS idx_orders_cluster_id;
+CREATE INDEX idx_orders_cluster_ordered_at ON orders(cluster_id, ordered_at DESC, id DESC);
+
+CREATE INDEX idx_orders_anonymous_ordered_at ON orders(ordered_at DESC, id DESC)
+    WHERE customer_id IS NULL AND cluster_id IS NULL;
+
+-- Addresses of a customer, default first, then newest
+DROP INDEX IF EXISTS idx_customer_addresses_default;
+CREATE INDEX idx_customer_addresses_customer_page
+    ON customer_addresses(customer_id, is_default DESC, added_date DESC, id DESC);
@@ -0,0 +1,22 @@
+-- Migration: Running sketches behind the customer behavioral profile
+-- Description: The profile columns of customers (typical_party_size, favorite_items, typical_visit_days,
+-- typical_visit_times, avg_ticket_size_cents, total_lifetime_value_cents, visit_frequency_days) are
+-- derived from these sketches, which each new order updates in constant time instead of re-reading the
+-- customer's order history. Histograms are indexed arrays: party size 0..12 (12 = 12 or more), day of
+-- week 0..6 (Monday first), hour 0..23. Favorite items are Space-Saving counters: parallel arrays of item
+-- name, count and the overestimate the count may carry.
+
+CREATE TABLE customer_profile_sketches (
+    customer_id INTEGER PRIMARY KEY REFERENCES customers(id) ON DELETE CASCADE,
+    order_count INTEGER NOT NULL DEFAULT 0,
+    spent_cents BIGINT NOT NULL DEFAULT 0,
+    last_order_at TIMESTAMPTZ,
+    interval_ewma_days REAL,               -- Smoothed days between visits
+    party_counts INTEGER[] NOT NULL DEFAULT '{}',
+    day_counts INTEGER[] NOT NULL DEFAULT '{}',
+    hour_counts INTEGER[] NOT NULL DEFAULT '{}',
+    item_names TEXT[] NOT NULL DEFAULT '{}',
+    item_counts INTEGER[] NOT NULL DEFAULT '{}',
+    item_errors INTEGER[] NOT NULL DEFAULT '{}',
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,22 @@
+-- Migration: Publish order line changes
+-- Description: NOTIFY orders_changed with '<order id>:items' when a line of an order is added, changed or
+-- removed, so kitchen displays pick up quantity and note edits on orders already on the board.
+-- pg_notify folds identical payloads within a transaction, so editing several lines sends one notification.
+
+CREATE OR REPLACE FUNCTION notify_order_items_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('orders_changed', OLD.order_id || ':items');
+    ELSE
+        PERFORM pg_notify('orders_changed', NEW.order_id || ':items');
+        IF TG_OP = 'UPDATE' AND OLD.order_id IS DISTINCT FROM NEW.order_id THEN
+            PERFORM pg_notify('orders_changed', OLD.order_id || ':items');
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_order_items_notify
+    AFTER INSERT OR UPDATE OR DELETE ON order_items
+    FOR EACH ROW EXECUTE FUNCTION notify_order_items_changed();
@@ -0,0 +1,8 @@
+-- Migration: Own row versions for customers and orders
+-- Description: V13 let terminals check sync_version on customers and orders, but background writes (profile
+-- flushes, order totals following line edits) also move sync_version, so edits failed for no user-visible
+-- reason. Optimistic checks now use a version column moved only by edits and status changes; sync_version
+-- keeps tracking what the cloud has seen.
+
+ALTER TABLE customers ADD COLUMN version INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE orders ADD COLUMN version INTEGER NOT NULL DEFAULT 1;
@@ -0,0 +1,6 @@
+-- Migration: Remember which orders a rebuilt profile sketch already counts
+-- Description: A rebuild (or a customer merge) recomputes a sketch from the customer's order history,
+-- including orders another terminal has recorded but not flushed yet. Flushes skip orders up to this id,
+-- so they are not counted twice. 0 for sketches never rebuilt.
+
+ALTER TABLE customer_profile_sketches ADD COLUMN rebuilt_up_to_order_id INTEGER NOT NULL DEFAULT 0;
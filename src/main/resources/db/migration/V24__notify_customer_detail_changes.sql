@@ -0,0 +1,48 @@
+-- Migration: Publish changes to anything a customer overview shows
+-- Description: NOTIFY customer_details_changed with '<op>:<customer_id>' when a customer row is edited (its
+-- version or updated_at moves, as on edits, status changes and profile flushes) or deleted, or one of its
+-- phones or addresses is written. Sent on commit, so terminals evict cached overviews only once the change
+-- is visible, whichever terminal made it.
+
+CREATE OR REPLACE FUNCTION notify_customer_details_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_TABLE_NAME = 'customers' THEN
+        IF TG_OP = 'DELETE' THEN
+            PERFORM pg_notify('customer_details_changed', TG_OP || ':' || OLD.id);
+        ELSE
+            PERFORM pg_notify('customer_details_changed', TG_OP || ':' || NEW.id);
+        END IF;
+        RETURN NULL;
+    END IF;
+    -- Phones and addresses: their owner, before and after (a row moved by a merge changes both)
+    IF TG_OP = 'INSERT' THEN
+        PERFORM pg_notify('customer_details_changed', TG_OP || ':' || NEW.customer_id);
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('customer_details_changed', TG_OP || ':' || OLD.customer_id);
+    ELSE
+        PERFORM pg_notify('customer_details_changed', TG_OP || ':' || OLD.customer_id);
+        IF NEW.customer_id IS DISTINCT FROM OLD.customer_id THEN
+            PERFORM pg_notify('customer_details_changed', TG_OP || ':' || NEW.customer_id);
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_customers_details_notify
+    AFTER UPDATE ON customers
+    FOR EACH ROW
+    WHEN (OLD.version IS DISTINCT FROM NEW.version OR OLD.updated_at IS DISTINCT FROM NEW.updated_at)
+    EXECUTE FUNCTION notify_customer_details_changed();
+
+CREATE TRIGGER trg_customers_details_notify_delete
+    AFTER DELETE ON customers
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_details_changed();
+
+CREATE TRIGGER trg_customer_phones_details_notify
+    AFTER INSERT OR UPDATE OR DELETE ON customer_phones
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_details_changed();
+
+CREATE TRIGGER trg_customer_addresses_details_notify
+    AFTER INSERT OR UPDATE OR DELETE ON customer_addresses
+    FOR EACH ROW EXECUTE FUNCTION notify_customer_details_changed();
@@ -0,0 +1,7 @@
+-- Migration: Add client-generated order UUID
+-- Description: Idempotency key for orders replayed from the local order journal (write-behind)
+
+ALTER TABLE orders ADD COLUMN client_uuid UUID;
+
+-- One row per client order; replays of an already-stored order become no-ops
+CREATE UNIQUE INDEX idx_orders_client_uuid ON orders(client_uuid);
@@ -0,0 +1,9 @@
+-- Migration: Key the sync-pending partial indexes on id
+-- Description: The outbox sync engine walks pending rows with a keyset cursor (id > ? ORDER BY id LIMIT ?).
+-- Indexing the constant synced_to_cloud column gave the planner nothing to order by.
+
+DROP INDEX IF EXISTS idx_customers_sync_pending;
+CREATE INDEX idx_customers_sync_pending ON customers(id) WHERE synced_to_cloud = false;
+
+DROP INDEX IF EXISTS idx_orders_sync_pending;
+CREATE INDEX idx_orders_sync_pending ON orders(id) WHERE synced_to_cloud = false;
@@ -0,0 +1,18 @@
+-- Migration: Publish menu changes
+-- Description: NOTIFY menu_items_changed with '<op>:<id>' on every insert, update and delete,
+-- so each terminal can refresh its in-memory menu catalog without polling.
+
+CREATE OR REPLACE FUNCTION notify_menu_items_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || OLD.id);
+    ELSE
+        PERFORM pg_notify('menu_items_changed', TG_OP || ':' || NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_menu_items_notify
+    AFTER INSERT OR UPDATE OR DELETE ON menu_items
+    FOR EACH ROW EXECUTE FUNCTION notify_menu_items_changed();
@@ -0,0 +1,49 @@
+package com.bara.app.database;
+
+import com.bara.app.model.Page;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeysetTest {
+
+    private static final DSLContext DSL_CONTEXT = DSL.using(SQLDialect.POSTGRES);
+    private static final Field<String> NAME = DSL.field(DSL.name("full_name_search"), String.class);
+    private static final Field<Integer> ID = DSL.field(DSL.name("id"), Integer.class);
+
+    @Test
+    void afterSeeksPastTheCursorInTheSortDirection() {
+        Page.Cursor cursor = new Page.Cursor("JUAN", 42);
+        assertEquals("(\"full_name_search\", \"id\") > ('JUAN', 42)",
+                DSL_CONTEXT.renderInlined(Keyset.after(cursor, false, NAME, ID)));
+        assertEquals("(\"full_name_search\", \"id\") < ('JUAN', 42)",
+                DSL_CONTEXT.renderInlined(Keyset.after(cursor, true, NAME, ID)));
+        assertEquals(DSL.noCondition(), Keyset.after(null, false, NAME, ID));
+        assertThrows(IllegalArgumentException.class, () -> Keyset.after(new Page.Cursor(42), false, NAME, ID));
+    }
+
+    @Test
+    void theExtraRowOnlyTellsThatAnotherPageFollows() {
+        Page<String> more = Keyset.page(List.of("ANA", "LUIS", "PEDRO"), 2, name -> new Object[]{name});
+        assertEquals(List.of("ANA", "LUIS"), more.getItems());
+        assertTrue(more.hasNext());
+        assertArrayEquals(new Object[]{"LUIS"}, more.getNext().getKey());
+
+        Page<String> last = Keyset.page(List.of("ANA", "LUIS"), 2, name -> new Object[]{name});
+        assertEquals(List.of("ANA", "LUIS"), last.getItems());
+        assertFalse(last.hasNext());
+
+        assertEquals(3, Keyset.fetchSize(2));
+        assertThrows(IllegalArgumentException.class, () -> Keyset.fetchSize(0));
+    }
+}
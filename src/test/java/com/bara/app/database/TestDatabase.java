@@ -0,0 +1,61 @@
+package com.bara.app.database;
+
+import org.junit.jupiter.api.Assumptions;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The PostgreSQL database of the tests that need one: {@code bara.db.url}, which the Gradle test task
+ * points at a {@code bara_test} database. Migrated on first use. Tests truncate its tables, so it refuses
+ * to run against the dev database, and tests calling {@link #assumeAvailable()} are skipped when it cannot
+ * be reached.
+ */
+public final class TestDatabase {
+
+    private static final String DEV_URL = "jdbc:postgresql://localhost:5432/bara";
+
+    static {
+        // Before DatabaseManager reads it, when run outside Gradle
+        if (System.getProperty("bara.db.url") == null) {
+            System.setProperty("bara.db.url", System.getProperty("bara.test.db.url",
+                    "jdbc:postgresql://localhost:5432/bara_test"));
+        }
+    }
+
+    private static Boolean available;
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Skip the calling test unless the test database is reachable; migrate it the first time.
+     */
+    public static synchronized void assumeAvailable() {
+        if (available == null) {
+            available = !DEV_URL.equals(DatabaseManager.getDatabaseUrl()) && canConnect();
+            if (available) {
+                DatabaseManager.initializeDatabase();
+            }
+        }
+        Assumptions.assumeTrue(available, "No test database at " + DatabaseManager.getDatabaseUrl());
+    }
+
+    /**
+     * Empty the tables, and those referencing them, and restart their ids.
+     */
+    public static void truncate(String... tables) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("TRUNCATE " + String.join(", ", tables) + " RESTART IDENTITY CASCADE");
+        }
+    }
+
+    private static boolean canConnect() {
+        try (Connection conn = DatabaseManager.openDedicatedConnection()) {
+            return conn.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.bara.app.database;
+
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link TextNormalizer} against the database it mirrors: every code point up to U+33FF (Latin, combining
+ * marks, Greek, Cyrillic, symbols), the fullwidth and enclosed forms, and a set of real names and addresses
+ * go through {@code unaccent()} and {@code upper(immutable_unaccent())} in one round trip. Rerun after
+ * changing the rules file or the database encoding, collation or extension version.
+ */
+class TextNormalizerParityTest {
+
+    private static final String[] SAMPLES = {
+            "José María Núñez Ibáñez", "MÜLLER Straße", "Ærø Œuvre", "ﬁesta ﬂor", "Ｆｕｌｌ ｗｉｄｔｈ",
+            "Peña Nieto", "çà et là", "Dvořák", "Łódź", "Ångström", "Calle 5 de Mayo #12, Col. Centro",
+            "é ñ ü", "ǅǆǄ", "½ kg", "", "ya normalizado", "YA NORMALIZADO"
+    };
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @Test
+    void unaccentMatches() throws SQLException {
+        List<String> mismatches = new ArrayList<>();
+        for (Record3<String, String, String> row : normalizeInDatabase(inputs())) {
+            String text = row.value1();
+            if (!row.value2().equals(TextNormalizer.unaccent(text))) {
+                mismatches.add(describe(text) + " unaccent: db=" + describe(row.value2())
+                        + " java=" + describe(TextNormalizer.unaccent(text)));
+            }
+        }
+        assertNoMismatches(mismatches);
+    }
+
+    @Test
+    void forSearchMatchesWhereUpperIsAsciiOnly() throws SQLException {
+        assumeTrue(databaseUpperIsAsciiOnly(), "upper() of this database changes non-ASCII letters");
+        List<String> mismatches = new ArrayList<>();
+        for (Record3<String, String, String> row : normalizeInDatabase(inputs())) {
+            String text = row.value1();
+            if (!row.value3().equals(TextNormalizer.forSearch(text))) {
+                mismatches.add(describe(text) + " forSearch: db=" + describe(row.value3())
+                        + " java=" + describe(TextNormalizer.forSearch(text)));
+            }
+        }
+        assertNoMismatches(mismatches);
+    }
+
+    /**
+     * Under a UTF-8 collation forSearch is known to differ, but only on letters unaccent keeps and
+     * {@code upper()} changes.
+     */
+    @Test
+    void forSearchDiffersOnlyOnLettersUnaccentKeeps() throws SQLException {
+        assumeFalse(databaseUpperIsAsciiOnly(), "upper() of this database is ASCII only");
+        List<String> unexplained = new ArrayList<>();
+        int differing = 0;
+        for (Record3<String, String, String> row : normalizeInDatabase(inputs())) {
+            String text = row.value1();
+            String java = TextNormalizer.forSearch(text);
+            if (row.value3().equals(java)) {
+                continue;
+            }
+            differing++;
+            boolean explained = TextNormalizer.unaccent(text).codePoints()
+                    .anyMatch(codePoint -> codePoint >= 0x80 && Character.toUpperCase(codePoint) != codePoint);
+            if (!explained) {
+                unexplained.add(describe(text) + " forSearch: db=" + describe(row.value3()) + " java=" + describe(java));
+            }
+        }
+        assertTrue(differing > 0, "forSearch matched a database whose upper() is not ASCII only");
+        assertNoMismatches(unexplained);
+    }
+
+    private static boolean databaseUpperIsAsciiOnly() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            String greek = "ωж";
+            return greek.equals(DatabaseManager.dsl(conn).select(DSL.upper(DSL.val(greek))).fetchOne(0, String.class));
+        }
+    }
+
+    private static void assertNoMismatches(List<String> mismatches) {
+        assertTrue(mismatches.isEmpty(), () -> mismatches.size() + " mismatches, e.g.\n"
+                + String.join("\n", mismatches.subList(0, Math.min(20, mismatches.size()))));
+    }
+
+    static List<String> inputs() {
+        List<String> inputs = new ArrayList<>(List.of(SAMPLES));
+        for (int codePoint = 1; codePoint <= 0x33FF; codePoint++) {
+            if (!Character.isSurrogate((char) codePoint)) {
+                inputs.add("a" + Character.toString(codePoint) + "z");
+            }
+        }
+        for (int codePoint = 0xFF01; codePoint <= 0xFFEF; codePoint++) {
+            inputs.add(Character.toString(codePoint));
+        }
+        for (int codePoint = 0x1F100; codePoint <= 0x1F1FF; codePoint++) {
+            inputs.add(Character.toString(codePoint));
+        }
+        return inputs;
+    }
+
+    // (input, unaccent(input), upper(immutable_unaccent(input))) per input
+    static List<Record3<String, String, String>> normalizeInDatabase(List<String> inputs) throws SQLException {
+        Field<String> input = DSL.field(DSL.name("input"), SQLDataType.VARCHAR);
+        Field<String> unaccented = DSL.field("unaccent({0})", String.class, input);
+        Field<String> search = DSL.field("upper(immutable_unaccent({0}))", String.class, input);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.dsl(conn)
+                    .select(input, unaccented, search)
+                    .from(DSL.unnest(DSL.val(inputs.toArray(new String[0]))).as("t", "input"))
+                    .fetch();
+        }
+    }
+
+    static String describe(String text) {
+        StringBuilder out = new StringBuilder("\"").append(text).append("\" [");
+        text.codePoints().forEach(codePoint -> out.append(String.format(" U+%04X", codePoint)));
+        return out.append(" ]").toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.bara.app.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TextNormalizerTest {
+
+    @Test
+    void unaccentReplacesAccentsAndLigatures() {
+        assertEquals("Jose Maria Nunez Ibanez", TextNormalizer.unaccent("José María Núñez Ibáñez"));
+        assertEquals("AEro OEuvre", TextNormalizer.unaccent("Ærø Œuvre"));
+        assertEquals("fiesta flor", TextNormalizer.unaccent("ﬁesta ﬂor"));
+        assertEquals("Lodz", TextNormalizer.unaccent("Łódź"));
+    }
+
+    @Test
+    void unaccentKeepsWhatItDoesNotKnow() {
+        assertEquals("ωmega жук", TextNormalizer.unaccent("ωmega жук"));
+        assertEquals("a-b", TextNormalizer.unaccent("a-b"));
+    }
+
+    @Test
+    void forSearchIsUpperCaseWithoutAccents() {
+        assertEquals("JOSE NUNEZ", TextNormalizer.forSearch("José Núñez"));
+        assertEquals("MULLER STRASSE", TextNormalizer.forSearch("Müller Straße"));
+        assertEquals("PENA NIETO", TextNormalizer.forSearch("peña nieto"));
+    }
+
+    @Test
+    void forSearchUpperCasesAsciiOnly() {
+        assertEquals("ΩMEGA ωMEGA жUK", TextNormalizer.forSearch("Ωmega ωmega жuk"));
+    }
+
+    @Test
+    void unchangedTextIsReturnedAsIs() {
+        String plain = "YA NORMALIZADO";
+        assertSame(plain, TextNormalizer.forSearch(plain));
+        assertSame(plain, TextNormalizer.unaccent(plain));
+    }
+
+    @Test
+    void nullStaysNull() {
+        assertNull(TextNormalizer.unaccent(null));
+        assertNull(TextNormalizer.forSearch(null));
+    }
+
+    @Test
+    void addressKeyIgnoresCaseAccentsAndPunctuation() {
+        assertEquals("CALLE 5 DE MAYO 12|CENTRO|CDMX|",
+                TextNormalizer.addressKey("Calle 5 de Mayo #12,", "Centro", "  cdmx.", null));
+        assertEquals(TextNormalizer.addressKey("Av. Juárez 10", "Centro"),
+                TextNormalizer.addressKey("AV JUAREZ   10", "centro"));
+        assertEquals("|", TextNormalizer.addressKey("?", "..."));
+    }
+}
@@ -0,0 +1,127 @@
+package com.bara.app.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalRecordsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsRecordsPastTheBufferIncludingOnesLargerThanIt() throws IOException {
+        byte[][] payloads = new byte[3000][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = payload(i, i == 1500 ? 200_000 : i % 97);
+        }
+        try (FileChannel channel = open()) {
+            long size = 0;
+            for (int i = 0; i < payloads.length; i++) {
+                size += write(channel, (byte) (i % 3), payloads[i]);
+            }
+
+            JournalRecords.Reader records = new JournalRecords.Reader(channel, size, false);
+            for (int i = 0; i < payloads.length; i++) {
+                assertTrue(records.next(), "Record " + i);
+                assertEquals((byte) (i % 3), records.type());
+                assertArrayEquals(payloads[i], records.payload());
+            }
+            assertFalse(records.next());
+            assertFalse(records.isTorn());
+            assertEquals(size, records.position());
+        }
+    }
+
+    @Test
+    void stopsAtACutShortRecord() throws IOException {
+        try (FileChannel channel = open()) {
+            long good = write(channel, (byte) 1, payload(1, 10)) + write(channel, (byte) 1, payload(2, 10));
+            byte[] torn = JournalRecords.encode((byte) 1, payload(3, 10));
+            channel.write(ByteBuffer.wrap(torn, 0, torn.length - 1));
+            // A header alone, cut short too
+            channel.write(ByteBuffer.wrap(torn, 0, 5), channel.size());
+
+            JournalRecords.Reader records = new JournalRecords.Reader(channel, channel.size(), false);
+            assertTrue(records.next());
+            assertTrue(records.next());
+            assertFalse(records.next());
+            assertTrue(records.isTorn());
+            assertEquals(good, records.position());
+        }
+    }
+
+    @Test
+    void stopsAtACorruptRecord() throws IOException {
+        try (FileChannel channel = open()) {
+            long good = write(channel, (byte) 1, payload(1, 10));
+            write(channel, (byte) 1, payload(2, 10));
+            write(channel, (byte) 1, payload(3, 10));
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), good + JournalRecords.HEADER_BYTES + 4);
+
+            JournalRecords.Reader records = new JournalRecords.Reader(channel, channel.size(), false);
+            assertTrue(records.next());
+            assertFalse(records.next());
+            assertTrue(records.isTorn());
+            assertEquals(good, records.position());
+        }
+    }
+
+    @Test
+    void zeroLengthIsAnEmptyRecordOrTheEnd() throws IOException {
+        try (FileChannel channel = open()) {
+            long size = write(channel, (byte) 2, new byte[0]);
+            // Preallocated, zero-filled space after the last record
+            channel.write(ByteBuffer.allocate(64), size);
+
+            JournalRecords.Reader preallocated = new JournalRecords.Reader(channel, channel.size(), true);
+            assertFalse(preallocated.next());
+            assertFalse(preallocated.isTorn());
+            assertEquals(0, preallocated.position());
+
+            JournalRecords.Reader appended = new JournalRecords.Reader(channel, size, false);
+            assertTrue(appended.next());
+            assertEquals(2, appended.type());
+            assertEquals(0, appended.payload().length);
+            assertFalse(appended.next());
+            assertFalse(appended.isTorn());
+        }
+    }
+
+    @Test
+    void refusesRecordsLargerThanReadersAccept() {
+        assertThrows(IllegalArgumentException.class,
+                () -> JournalRecords.encode((byte) 1, new byte[JournalRecords.MAX_PAYLOAD_BYTES + 1]));
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(dir.resolve("records.log"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private static long write(FileChannel channel, byte type, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(JournalRecords.encode(type, payload));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        return record.capacity();
+    }
+
+    private static byte[] payload(int seed, int length) {
+        byte[] payload = new byte[length];
+        Arrays.fill(payload, (byte) seed);
+        return payload;
+    }
+}
@@ -0,0 +1,114 @@
+package com.bara.app.journal;
+
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import com.bara.app.service.PlacedOrder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversTheOrdersNotReplicated() throws IOException {
+        Path path = dir.resolve("orders.journal");
+        PlacedOrder first = order(1);
+        PlacedOrder second = order(2);
+        PlacedOrder third = order(3);
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            journal.append(first).join();
+            journal.append(second).join();
+            journal.append(third).join();
+            journal.markReplicated(second.getOrder().getClientUuid());
+        }
+
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            List<PlacedOrder> pending = journal.pendingOrders();
+            assertEquals(List.of(first.getOrder().getClientUuid(), third.getOrder().getClientUuid()), uuids(pending));
+            assertEquals(3, pending.get(1).getItems().get(0).getQuantity());
+            assertEquals(3000L, pending.get(1).getOrder().getTotalCents());
+        }
+    }
+
+    @Test
+    void dropsATornTailAndAppendsAfterTheLastGoodRecord() throws IOException {
+        Path path = dir.resolve("orders.journal");
+        PlacedOrder first = order(1);
+        PlacedOrder second = order(2);
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            journal.append(first).join();
+            journal.append(second).join();
+        }
+        // A byte of the second record's payload that never reached the disk
+        long secondPayload = JournalRecords.HEADER_BYTES + OrderCodec.encode(first).length + JournalRecords.HEADER_BYTES;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), secondPayload + 5);
+        }
+
+        PlacedOrder third = order(3);
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            assertEquals(List.of(first.getOrder().getClientUuid()), uuids(journal.pendingOrders()));
+            journal.append(third).join();
+        }
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            assertEquals(List.of(first.getOrder().getClientUuid(), third.getOrder().getClientUuid()),
+                    uuids(journal.pendingOrders()));
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyThePendingOrders() throws IOException {
+        Path path = dir.resolve("orders.journal");
+        PlacedOrder first = order(1);
+        PlacedOrder second = order(2);
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            journal.append(first).join();
+            journal.append(second).join();
+            journal.markReplicated(first.getOrder().getClientUuid());
+            journal.compact();
+            assertEquals(List.of(second.getOrder().getClientUuid()), uuids(journal.pendingOrders()));
+        }
+        try (OrderJournal journal = new OrderJournal(path, 1)) {
+            assertEquals(List.of(second.getOrder().getClientUuid()), uuids(journal.pendingOrders()));
+        }
+    }
+
+    private static PlacedOrder order(int quantity) {
+        Orders header = new Orders()
+                .setOrderType("dine_in")
+                .setStatus("pending")
+                .setClientUuid(UUID.randomUUID())
+                .setOrderedAt(OffsetDateTime.now())
+                .setSubtotalCents(1000L * quantity)
+                .setTotalCents(1000L * quantity);
+        OrderItems line = new OrderItems()
+                .setMenuItemId(1)
+                .setItemName("Tacos")
+                .setItemPriceCents(1000L)
+                .setQuantity(quantity)
+                .setLineTotalCents(1000L * quantity);
+        return new PlacedOrder(header, List.of(line));
+    }
+
+    private static List<UUID> uuids(List<PlacedOrder> orders) {
+        List<UUID> uuids = new ArrayList<>();
+        for (PlacedOrder order : orders) {
+            uuids.add(order.getOrder().getClientUuid());
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bara.app.journal;
+
+import com.bara.app.model.MenuItem;
+import com.bara.app.model.OrderTicket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketLogTest {
+
+    private static final MenuItem TACOS = new MenuItem(1, "Tacos", 1000, null);
+    private static final MenuItem AGUA = new MenuItem(2, "Agua", 300, "Jamaica");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysEditsAndHistoryMoves() throws IOException {
+        Path path = dir.resolve("ticket.log");
+        try (TicketLog log = new TicketLog(path)) {
+            OrderTicket ticket = new OrderTicket();
+            ticket.setLog(log);
+            ticket.add(TACOS);
+            ticket.add(TACOS);
+            ticket.add(AGUA, "sin hielo", 2);
+            ticket.undo();
+            ticket.undo();
+            ticket.redo();
+        }
+
+        try (TicketLog log = new TicketLog(path)) {
+            OrderTicket recovered = new OrderTicket();
+            assertEquals(6, log.replayInto(recovered));
+            assertEquals(1, recovered.size());
+            assertEquals(2, recovered.getLines().get(0).getQuantity());
+            assertEquals(2000, recovered.getSubtotalCents());
+            assertTrue(recovered.canRedo());
+        }
+    }
+
+    @Test
+    void dropsATornTailAndAppendsAfterTheLastGoodRecord() throws IOException {
+        Path path = dir.resolve("ticket.log");
+        try (TicketLog log = new TicketLog(path)) {
+            OrderTicket ticket = new OrderTicket();
+            ticket.setLog(log);
+            ticket.add(TACOS);
+            ticket.add(AGUA);
+        }
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (TicketLog log = new TicketLog(path)) {
+            OrderTicket recovered = new OrderTicket();
+            assertEquals(1, log.replayInto(recovered));
+            recovered.setLog(log);
+            recovered.add(TACOS);
+        }
+        try (TicketLog log = new TicketLog(path)) {
+            OrderTicket recovered = new OrderTicket();
+            assertEquals(2, log.replayInto(recovered));
+            assertEquals(2000, recovered.getSubtotalCents());
+        }
+    }
+}
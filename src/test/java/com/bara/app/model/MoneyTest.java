@@ -0,0 +1,49 @@
+package com.bara.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void arithmeticThrowsOnOverflow() {
+        assertEquals(3000, Money.times(1000, 3));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    @Test
+    void ratesAndAveragesRoundHalfUp() {
+        assertEquals(160, Money.percent(1000, 1600));
+        assertEquals(0, Money.percent(3, 1600));
+        assertEquals(1, Money.percent(4, 1250));
+        assertEquals(0, Money.percent(-4, 1250));
+        assertEquals(3, Money.average(5, 2));
+        assertEquals(2, Money.average(7, 3));
+        assertEquals(0, Money.average(500, 0));
+    }
+
+    @Test
+    void parsesWhatIsTyped() {
+        assertEquals(2500, Money.parse("25"));
+        assertEquals(2550, Money.parse(" 25.5 "));
+        assertEquals(102550, Money.parse("$1,025.50"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(-305, Money.parse("-3.05"));
+        for (String text : new String[]{"", "$", ".", "1.234", "12a", "1.-5", "--1"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), text);
+        }
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("0.05", Money.toPlainString(5));
+        assertEquals("1025.50", Money.toPlainString(102550));
+        assertEquals("-1.05", Money.toPlainString(-105));
+        assertEquals("$1025.50", Money.format(102550));
+        assertEquals("-$1.05", Money.format(-105));
+    }
+}
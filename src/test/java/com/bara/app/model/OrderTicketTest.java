@@ -0,0 +1,125 @@
+package com.bara.app.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderTicketTest {
+
+    private static final MenuItem TACOS = new MenuItem(1, "Tacos", 1000, null);
+    private static final MenuItem AGUA = new MenuItem(2, "Agua", 350, null);
+
+    @Test
+    void tappingAnItemAgainAddsToItsLine() {
+        OrderTicket ticket = new OrderTicket(1600);
+        ticket.add(TACOS);
+        ticket.add(AGUA, " sin hielo ", 1);
+        ticket.add(TACOS);
+        ticket.add(AGUA, "sin hielo", 2);
+
+        assertEquals(List.of("Tacos x2", "Agua x3 sin hielo"), lines(ticket));
+        assertEquals(3050, ticket.getSubtotalCents());
+        assertEquals(488, ticket.getTaxCents());
+        assertEquals(3538, ticket.getTotalCents());
+        assertThrows(IllegalArgumentException.class, () -> ticket.add(TACOS, "", 0));
+    }
+
+    @Test
+    void changingNotesToAnotherLinesMergesThem() {
+        OrderTicket ticket = new OrderTicket();
+        ticket.add(TACOS, "sin cebolla", 1);
+        ticket.add(AGUA);
+        ticket.add(TACOS, "", 2);
+
+        ticket.setNotes(ticket.find(1, "sin cebolla"), "");
+        assertEquals(List.of("Agua x1", "Tacos x3"), lines(ticket));
+        assertNull(ticket.find(1, "sin cebolla"));
+
+        ticket.undo();
+        assertEquals(List.of("Tacos x1 sin cebolla", "Agua x1", "Tacos x2"), lines(ticket));
+        assertEquals(3350, ticket.getSubtotalCents());
+    }
+
+    @Test
+    void undoAndRedoRestoreLinesAndTotals() {
+        OrderTicket ticket = new OrderTicket();
+        ticket.add(TACOS);
+        ticket.add(AGUA);
+        ticket.setQuantity(ticket.find(1, ""), 4);
+        ticket.clear();
+        assertTrue(ticket.isEmpty());
+        assertEquals(0, ticket.getSubtotalCents());
+
+        assertTrue(ticket.undo());
+        assertEquals(List.of("Tacos x4", "Agua x1"), lines(ticket));
+        assertTrue(ticket.undo());
+        assertEquals(1350, ticket.getSubtotalCents());
+        assertTrue(ticket.redo());
+        assertEquals(4350, ticket.getSubtotalCents());
+
+        // A new edit drops what could be redone; a reset drops the whole history
+        ticket.remove(ticket.find(2, ""));
+        assertFalse(ticket.canRedo());
+        ticket.reset();
+        assertFalse(ticket.canUndo());
+        assertTrue(ticket.isEmpty());
+    }
+
+    @Test
+    void replayingTheLogRebuildsTicketAndHistory() {
+        List<Consumer<OrderTicket>> operations = new ArrayList<>();
+        OrderTicket ticket = new OrderTicket(1600);
+        ticket.setLog(new OrderTicket.Log() {
+            @Override
+            public void applied(List<OrderTicket.Edit> edits) {
+                operations.add(replayed -> replayed.apply(edits));
+            }
+
+            @Override
+            public void undone() {
+                operations.add(OrderTicket::undo);
+            }
+
+            @Override
+            public void redone() {
+                operations.add(OrderTicket::redo);
+            }
+
+            @Override
+            public void reset() {
+                operations.add(OrderTicket::reset);
+            }
+        });
+        ticket.add(TACOS);
+        ticket.add(AGUA, "mineral", 2);
+        ticket.setNotes(ticket.find(1, ""), "sin cebolla");
+        ticket.add(TACOS);
+        ticket.undo();
+
+        OrderTicket replayed = new OrderTicket(1600);
+        for (Consumer<OrderTicket> operation : operations) {
+            operation.accept(replayed);
+        }
+        assertEquals(lines(ticket), lines(replayed));
+        assertEquals(ticket.getTotalCents(), replayed.getTotalCents());
+        assertTrue(replayed.redo());
+        assertEquals(List.of("Tacos x1 sin cebolla", "Agua x2 mineral", "Tacos x1"), lines(replayed));
+    }
+
+    private static List<String> lines(OrderTicket ticket) {
+        List<String> lines = new ArrayList<>();
+        for (OrderItem line : ticket.getLines()) {
+            lines.add(line.getMenuItemName() + " x" + line.getQuantity()
+                    + (line.getNotes().isEmpty() ? "" : " " + line.getNotes()));
+        }
+        return lines;
+    }
+}
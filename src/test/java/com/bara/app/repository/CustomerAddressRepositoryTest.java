@@ -0,0 +1,61 @@
+package com.bara.app.repository;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import com.bara.app.db.jooq.tables.pojos.CustomerAddresses;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerAddressRepositoryTest {
+
+    private final CustomerAddressRepository repository = new CustomerAddressRepository();
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @BeforeEach
+    void customers() throws SQLException {
+        TestDatabase.truncate("customers", "customer_addresses");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO customers (first_name) VALUES ('Ana'), ('Ana')");
+        }
+    }
+
+    @Test
+    void createComputesTheKeyWhateverTheCallerPassed() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            CustomerAddresses created = repository.create(conn, new CustomerAddresses()
+                    .setCustomerId(1)
+                    .setRawInput("Av. Juárez 10, Centro")
+                    .setStreet("Av. Juárez 10")
+                    .setCity("Centro")
+                    .setNormalizedKey("av juarez 10 centro"));
+            assertEquals("AV JUAREZ 10||CENTRO|", created.getNormalizedKey());
+        }
+    }
+
+    @Test
+    void findDuplicatesMatchesOtherSpellings() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            CustomerAddresses first = repository.create(conn, new CustomerAddresses()
+                    .setCustomerId(1).setRawInput("Av. Juárez 10").setStreet("Av. Juárez 10").setCity("Centro"));
+            repository.create(conn, new CustomerAddresses()
+                    .setCustomerId(2).setRawInput("Calle 1").setStreet("Calle 1").setCity("Centro"));
+
+            List<CustomerAddresses> duplicates = repository.findDuplicates(conn, new CustomerAddresses()
+                    .setRawInput("av juarez #10").setStreet("AV JUAREZ 10").setCity("centro."));
+            assertEquals(1, duplicates.size());
+            assertEquals(first.getId(), duplicates.get(0).getId());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.bara.app.service;
+
+import com.bara.app.model.DuplicateCandidate;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerDuplicateDetectorTest {
+
+    private static final String[] NONE = new String[0];
+
+    @Test
+    void nameSimilarityIsTheTrigramJaccard() {
+        CustomerDuplicateDetector detector = new CustomerDuplicateDetector();
+        detector.add(1, "MARIA GUADALUPE LOPEZ", new String[]{"1234567"}, NONE);
+        detector.add(2, "MARIA LUPE LOPEZ", new String[]{"1234567"}, NONE);
+
+        DuplicateCandidate candidate = only(detector.candidates(0f, 10));
+        assertEquals(jaccard("MARIA GUADALUPE LOPEZ", "MARIA LUPE LOPEZ"), candidate.getNameSimilarity(), 1e-6);
+        assertTrue(candidate.isSamePhone());
+        assertFalse(candidate.isSameAddress());
+    }
+
+    @Test
+    void scoreWeighsTheNameByWhatElseIsShared() {
+        CustomerDuplicateDetector detector = new CustomerDuplicateDetector();
+        detector.add(7, "ANA TORRES", NONE, NONE);
+        detector.add(3, "ANA TORRES", new String[]{"1234567"}, new String[]{"AV JUAREZ 10||CENTRO|"});
+        detector.add(9, "ANA TORRES", new String[]{"1234567"}, new String[]{"AV JUAREZ 10||CENTRO|"});
+
+        List<DuplicateCandidate> candidates = detector.candidates(0f, 10);
+        assertEquals(3, candidates.size());
+        assertEquals(3, candidates.get(0).getMasterId());
+        assertEquals(9, candidates.get(0).getDuplicateId());
+        assertEquals(1f, candidates.get(0).getScore(), 1e-6);
+        assertEquals(0.6f, candidates.get(1).getScore(), 1e-6);
+        assertEquals(1f, candidates.get(1).getNameSimilarity(), 1e-6);
+    }
+
+    @Test
+    void differentNamesSharingNothingAreNotCompared() {
+        CustomerDuplicateDetector detector = new CustomerDuplicateDetector();
+        detector.add(1, "ANA TORRES", new String[]{"1234567"}, NONE);
+        detector.add(2, "LUIS PEREZ", new String[]{"7654321"}, NONE);
+
+        assertTrue(detector.candidates(0f, 10).isEmpty());
+    }
+
+    @Test
+    void bandsFindSimilarNamesAndMissDissimilarOnes() {
+        Random random = new Random(42);
+        int pairs = 200;
+        CustomerDuplicateDetector similar = new CustomerDuplicateDetector();
+        CustomerDuplicateDetector dissimilar = new CustomerDuplicateDetector();
+        for (int i = 0; i < pairs; i++) {
+            String[] words = new String[5];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = word(random);
+            }
+            String name = String.join(" ", words);
+
+            // One letter changed at the end of a word: two of 40 trigrams differ, Jaccard 38 / 42
+            String[] typo = words.clone();
+            typo[2] = typo[2].substring(0, 6) + (char) ('A' + (typo[2].charAt(6) - 'A' + 1) % 26);
+            similar.add(2 * i, name, NONE, NONE);
+            similar.add(2 * i + 1, String.join(" ", typo), NONE, NONE);
+
+            // Three of five words different: Jaccard 16 / 64
+            String[] other = words.clone();
+            for (int w = 0; w < 3; w++) {
+                other[w] = word(random);
+            }
+            dissimilar.add(2 * i, name, NONE, NONE);
+            dissimilar.add(2 * i + 1, String.join(" ", other), NONE, NONE);
+        }
+
+        assertTrue(pairsFound(similar) > pairs * 0.95, "similar names found: " + pairsFound(similar));
+        assertTrue(pairsFound(dissimilar) < pairs * 0.05, "dissimilar names found: " + pairsFound(dissimilar));
+    }
+
+    @Test
+    void blocksOverTheLimitAreSkipped() {
+        assertEquals(50 * 49 / 2, sharingOnePhone(50).candidates(0f, Integer.MAX_VALUE).size());
+        assertTrue(sharingOnePhone(51).candidates(0f, Integer.MAX_VALUE).isEmpty());
+    }
+
+    private static CustomerDuplicateDetector sharingOnePhone(int customers) {
+        CustomerDuplicateDetector detector = new CustomerDuplicateDetector();
+        for (int id = 1; id <= customers; id++) {
+            detector.add(id, null, new String[]{"1234567"}, NONE);
+        }
+        return detector;
+    }
+
+    // Pairs (2i, 2i + 1) reported, at any score
+    private static int pairsFound(CustomerDuplicateDetector detector) {
+        int found = 0;
+        for (DuplicateCandidate candidate : detector.candidates(0f, Integer.MAX_VALUE)) {
+            if (candidate.getMasterId() % 2 == 0 && candidate.getDuplicateId() == candidate.getMasterId() + 1) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static String word(Random random) {
+        char[] letters = new char[7];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    private static DuplicateCandidate only(List<DuplicateCandidate> candidates) {
+        assertEquals(1, candidates.size());
+        return candidates.get(0);
+    }
+
+    // Jaccard of the padded word trigrams, computed on the strings themselves
+    private static float jaccard(String a, String b) {
+        Set<String> common = trigrams(a);
+        Set<String> all = trigrams(a);
+        common.retainAll(trigrams(b));
+        all.addAll(trigrams(b));
+        return (float) common.size() / all.size();
+    }
+
+    private static Set<String> trigrams(String name) {
+        Set<String> trigrams = new HashSet<>();
+        for (String word : name.split(" ")) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,168 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PHONES;
+import static com.bara.app.db.jooq.Tables.ORDERS;
+import static com.bara.app.service.CustomerProfileAggregatorTest.movePending;
+import static com.bara.app.service.CustomerProfileAggregatorTest.order;
+import static com.bara.app.service.CustomerProfileAggregatorTest.sketches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CustomerDuplicateServiceTest {
+
+    private final CustomerDuplicateService service = new CustomerDuplicateService();
+    private final CustomerProfileAggregator aggregator = CustomerProfileAggregator.getInstance();
+    private final OrderCheckoutService checkout = new OrderCheckoutService();
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @BeforeEach
+    void customers() throws SQLException {
+        aggregator.flush();
+        TestDatabase.truncate("customers", "orders", "order_items", "menu_items", "customer_phones",
+                "customer_addresses", "customer_profile_sketches", "unidentified_customer_clusters");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO menu_items (name, price_cents) VALUES ('Tacos', 1000)");
+            statement.execute("INSERT INTO customers (first_name) VALUES ('Ana'), ('Ana')");
+        }
+    }
+
+    @Test
+    void mergedProfileCountsOrdersOnceOnEveryTerminal() throws SQLException {
+        CustomerProfileAggregator otherTerminal = new CustomerProfileAggregator();
+        for (int customerId = 1; customerId <= 2; customerId++) {
+            checkout.persist(order(customerId));
+            checkout.persist(order(customerId));
+        }
+        aggregator.flush();
+        // Recorded but not flushed when the merge counts them: here, and on another terminal
+        checkout.persist(order(1));
+        checkout.persist(order(2));
+        otherTerminal.record(movePending(checkout.persist(order(1))));
+        otherTerminal.record(movePending(checkout.persist(order(2))));
+
+        assertEquals(4, service.merge(1, 2));
+        aggregator.flush();
+        otherTerminal.flush();
+        checkout.persist(order(2));
+        aggregator.flush();
+
+        List<List<Object>> master = sketches().subList(0, 1);
+        assertEquals(List.of(List.of(1, 9, 9000L)), master);
+        aggregator.rebuild();
+        assertEquals(master, sketches().subList(0, 1));
+    }
+
+    @Test
+    void phonesTheMasterHasAreDroppedAndItKeepsItsPrimary() throws SQLException {
+        execute("INSERT INTO customer_phones (customer_id, phone_number, is_primary) VALUES "
+                + "(1, '55 1234 5678', true), (2, '+52 55 1234 5678', false), (2, '55 9999 8888', true)");
+
+        service.merge(1, 2);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals(List.of(List.of("55 1234 5678", true), List.of("55 9999 8888", false)),
+                    DatabaseManager.dsl(conn)
+                            .select(CUSTOMER_PHONES.PHONE_NUMBER, CUSTOMER_PHONES.IS_PRIMARY)
+                            .from(CUSTOMER_PHONES)
+                            .orderBy(CUSTOMER_PHONES.PHONE_NUMBER)
+                            .fetch(Record2::intoList));
+        }
+    }
+
+    @Test
+    void addressesTheMasterHasAreDroppedAndTheirOrdersPointAtItsCopy() throws SQLException {
+        execute("INSERT INTO customer_addresses (customer_id, raw_input, normalized_key, is_default) VALUES "
+                + "(1, 'Av. Juárez 10', 'AV JUAREZ 10||CENTRO|', true), "
+                + "(1, 'Centro', '||CENTRO|', false), "
+                + "(2, 'av juarez #10', 'AV JUAREZ 10||CENTRO|', true), "
+                + "(2, 'Calle 5', 'CALLE 5||CENTRO|', false), "
+                + "(2, 'centro', '||CENTRO|', false)");
+        execute("INSERT INTO orders (customer_id, customer_address_id, order_type, status, subtotal_cents, total_cents) "
+                + "VALUES (2, 3, 'delivery', 'delivered', 1000, 1000), (2, 4, 'delivery', 'delivered', 1000, 1000)");
+
+        assertEquals(2, service.merge(1, 2));
+        try (Connection conn = DatabaseManager.getConnection()) {
+            DSLContext dsl = DatabaseManager.dsl(conn);
+            // The duplicate's copy of the master's address goes; one without a street identifies nothing
+            assertEquals(List.of(List.of(1, true), List.of(2, false), List.of(4, false), List.of(5, false)),
+                    dsl.select(CUSTOMER_ADDRESSES.ID, CUSTOMER_ADDRESSES.IS_DEFAULT)
+                            .from(CUSTOMER_ADDRESSES)
+                            .where(CUSTOMER_ADDRESSES.CUSTOMER_ID.eq(1))
+                            .orderBy(CUSTOMER_ADDRESSES.ID)
+                            .fetch(Record2::intoList));
+            assertEquals(List.of(List.of(1, 1), List.of(1, 4)),
+                    dsl.select(ORDERS.CUSTOMER_ID, ORDERS.CUSTOMER_ADDRESS_ID)
+                            .from(ORDERS)
+                            .orderBy(ORDERS.ID)
+                            .fetch(Record2::intoList));
+        }
+    }
+
+    @Test
+    void customersMergedIntoTheDuplicatePointAtTheNewMaster() throws SQLException {
+        execute("INSERT INTO customers (first_name) VALUES ('Ana')");
+
+        service.merge(3, 2);
+        service.merge(1, 3);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals(List.of(List.of(2, 1), List.of(3, 1)),
+                    DatabaseManager.dsl(conn)
+                            .select(CUSTOMERS.ID, CUSTOMERS.MASTER_ID)
+                            .from(CUSTOMERS)
+                            .where(CUSTOMERS.STATUS.eq("merged"))
+                            .orderBy(CUSTOMERS.ID)
+                            .fetch(Record2::intoList));
+        }
+        assertThrows(IllegalStateException.class, () -> service.merge(1, 2));
+    }
+
+    @Test
+    void ordersForAMergedCustomerAreStoredUnderTheMaster() throws SQLException {
+        execute("INSERT INTO customer_addresses (customer_id, raw_input, normalized_key) VALUES "
+                + "(1, 'Av. Juárez 10', 'AV JUAREZ 10||CENTRO|'), "
+                + "(2, 'av juarez #10', 'AV JUAREZ 10||CENTRO|'), "
+                + "(2, 'Calle 5', 'CALLE 5||CENTRO|')");
+        service.merge(1, 2);
+
+        // Taken on a terminal that had not seen the merge
+        PlacedOrder toDroppedAddress = order(2);
+        toDroppedAddress.getOrder().setCustomerAddressId(2);
+        PlacedOrder toMovedAddress = order(2);
+        toMovedAddress.getOrder().setCustomerAddressId(3);
+        checkout.persist(toDroppedAddress);
+        checkout.persist(toMovedAddress);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals(List.of(Arrays.asList(1, null), List.of(1, 3)),
+                    DatabaseManager.dsl(conn)
+                            .select(ORDERS.CUSTOMER_ID, ORDERS.CUSTOMER_ADDRESS_ID)
+                            .from(ORDERS)
+                            .orderBy(ORDERS.ID)
+                            .fetch(Record2::intoList));
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
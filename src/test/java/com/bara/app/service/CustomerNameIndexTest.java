@@ -0,0 +1,170 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CustomerNameIndexTest {
+
+    private static final String[] FIRST = {"José", "María", "Ana", "Juan Pablo", "Ñeco", "Luz"};
+    private static final String[] PATERNAL = {"Pérez", "López", "Núñez", null, "De la Cruz"};
+    private static final String[] MATERNAL = {"García", null, "Ruiz"};
+
+    @Test
+    void ranksPrefixThenLaterWordThenSubstring() {
+        CustomerNameIndex index = CustomerNameIndex.of(new int[]{1, 2, 3, 4, 5},
+                new String[]{"SANTANA LOPEZ", "ANA TORRES", "LUZ ANAYA", "ANABEL RUIZ", "JUAN PEREZ"});
+
+        assertArrayEquals(new int[]{2, 4, 3, 1}, index.search("ANA", 10));
+        assertArrayEquals(new int[]{2, 4}, index.search("ANA", 2));
+        assertArrayEquals(new int[]{2, 4, 3, 1}, index.search("NA", 10));
+        assertArrayEquals(new int[0], index.search("ANAS", 10));
+    }
+
+    @Test
+    void changesAreSearchedUntilAndAfterCompaction() {
+        CustomerNameIndex index = CustomerNameIndex.of(new int[]{1, 2}, new String[]{"ANA TORRES", "LUIS PEREZ"});
+        assertSame(index, index.with(1, "ANA TORRES"));
+        assertSame(index, index.without(9));
+
+        index = index.with(1, "ANA PEREZ").without(2).with(3, "LUIS TORRES");
+        assertArrayEquals(new int[]{1}, index.search("PEREZ", 10));
+        assertArrayEquals(new int[]{3}, index.search("TORRES", 10));
+        assertEquals(2, index.size());
+
+        // Enough new customers to fold the overlay into a new base
+        for (int id = 100; id < 300; id++) {
+            index = index.with(id, "CLIENTE " + id);
+        }
+        index = index.without(150);
+        assertEquals(201, index.size());
+        assertArrayEquals(new int[]{1}, index.search("ANA", 10));
+        assertArrayEquals(new int[]{249}, index.search("TE 249", 10));
+        assertArrayEquals(new int[0], index.search("TE 150", 10));
+    }
+
+    @Test
+    void matchesLikeForEveryTestTerm() throws SQLException {
+        TestDatabase.assumeAvailable();
+        TestDatabase.truncate("customers");
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO customers (first_name, paternal_last_name, maternal_last_name) VALUES (?, ?, ?)")) {
+                for (String first : FIRST) {
+                    for (String paternal : PATERNAL) {
+                        for (String maternal : MATERNAL) {
+                            insert.setString(1, first);
+                            insert.setString(2, paternal);
+                            insert.setString(3, maternal);
+                            insert.addBatch();
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+
+            // Half built as the base, the rest added on top, then renames and deletions on both sides
+            Map<Integer, String> names = names(conn, "TRUE");
+            int half = names.size() / 2;
+            int[] ids = new int[half];
+            String[] baseNames = new String[half];
+            CustomerNameIndex index = null;
+            int row = 0;
+            for (Map.Entry<Integer, String> customer : names.entrySet()) {
+                if (row < half) {
+                    ids[row] = customer.getKey();
+                    baseNames[row++] = customer.getValue();
+                    continue;
+                }
+                if (index == null) {
+                    index = CustomerNameIndex.of(ids, baseNames);
+                }
+                index = index.with(customer.getKey(), customer.getValue());
+            }
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("UPDATE customers SET paternal_last_name = 'Ibáñez' WHERE id % 7 = 0");
+                statement.execute("DELETE FROM customers WHERE id % 11 = 0");
+            }
+            for (Map.Entry<Integer, String> renamed : names(conn, "id % 7 = 0").entrySet()) {
+                index = index.with(renamed.getKey(), renamed.getValue());
+            }
+            for (int id : names.keySet()) {
+                if (id % 11 == 0) {
+                    index = index.without(id);
+                }
+            }
+
+            List<String> terms = terms(names(conn, "TRUE").values());
+            Map<String, int[]> like = like(conn, terms);
+            List<String> mismatches = new ArrayList<>();
+            for (String term : terms) {
+                int[] found = index.search(term, 1000);
+                Arrays.sort(found);
+                if (!Arrays.equals(like.get(term), found)) {
+                    mismatches.add("'" + term + "': LIKE " + Arrays.toString(like.get(term))
+                            + " index " + Arrays.toString(found));
+                }
+            }
+            assertEquals(List.of(), mismatches);
+        }
+    }
+
+    // Every substring of up to 4 characters of the names (spaces included), and terms matching nothing
+    private static List<String> terms(Iterable<String> names) {
+        TreeSet<String> terms = new TreeSet<>(List.of("XYZ", "Q", "ANA  ", "PEREZ GARCIAS", "JUAN PABLO PEREZ GARCIA"));
+        for (String name : names) {
+            for (int from = 0; from < name.length(); from++) {
+                for (int to = from + 1; to <= Math.min(name.length(), from + 4); to++) {
+                    terms.add(name.substring(from, to));
+                }
+            }
+            terms.add(name);
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private static Map<Integer, String> names(Connection conn, String where) throws SQLException {
+        Map<Integer, String> names = new LinkedHashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT id, full_name_search FROM customers WHERE " + where + " ORDER BY id")) {
+            while (rows.next()) {
+                names.put(rows.getInt(1), rows.getString(2));
+            }
+        }
+        return names;
+    }
+
+    // Ids whose full_name_search is LIKE '%term%', ascending, per term
+    private static Map<String, int[]> like(Connection conn, List<String> terms) throws SQLException {
+        Map<String, int[]> matches = new LinkedHashMap<>();
+        try (PreparedStatement query = conn.prepareStatement(
+                "SELECT t.term, array_remove(array_agg(c.id ORDER BY c.id), NULL) FROM unnest(?::text[]) AS t(term) "
+                        + "LEFT JOIN customers c ON c.full_name_search LIKE '%' || t.term || '%' GROUP BY t.term")) {
+            query.setArray(1, conn.createArrayOf("text", terms.toArray()));
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    Integer[] ids = (Integer[]) rows.getArray(2).getArray();
+                    matches.put(rows.getString(1), Arrays.stream(ids).mapToInt(Integer::intValue).toArray());
+                }
+            }
+        }
+        return matches;
+    }
+}
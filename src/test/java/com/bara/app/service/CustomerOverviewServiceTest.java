@@ -0,0 +1,109 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import com.bara.app.db.jooq.tables.pojos.CustomerPhones;
+import com.bara.app.repository.CustomerPhoneRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class CustomerOverviewServiceTest {
+
+    private static final long WAIT_MILLIS = 5_000;
+
+    private final CustomerOverviewService service = new CustomerOverviewService();
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @BeforeEach
+    void customers() throws SQLException {
+        TestDatabase.truncate("customers", "customer_phones");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO customers (first_name) VALUES ('Ana'), ('Luis')");
+        }
+        listening();
+    }
+
+    @Test
+    void phoneWriteEvictsTheOverviewOnceCommitted() throws SQLException {
+        CustomerOverview before = findById(1);
+        assertEquals(0, before.getPhones().size());
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                new CustomerPhoneRepository().create(conn, new CustomerPhones().setCustomerId(1).setPhoneNumber("5512345678"));
+                // Not visible to other connections yet, so the cached overview is still right
+                assertSame(before, findById(1));
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        assertEquals(1, awaitEvicted(1, before).getPhones().size());
+    }
+
+    @Test
+    void customerEditEvictsTheOverview() throws SQLException {
+        CustomerOverview before = findById(1);
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("UPDATE customers SET notes = 'Mesa 4', updated_at = now(), version = version + 1 WHERE id = 1");
+        }
+        assertEquals("Mesa 4", awaitEvicted(1, before).getCustomer().getNotes());
+    }
+
+    // Notifications sent before the listener has subscribed are lost: touch a customer until one arrives
+    private void listening() throws SQLException {
+        CustomerOverview before = findById(2);
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (findById(2) == before) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("No customer_details_changed notification");
+            }
+            try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+                statement.execute("UPDATE customers SET updated_at = now() WHERE id = 2");
+            }
+            pause();
+        }
+    }
+
+    private CustomerOverview awaitEvicted(int customerId, CustomerOverview before) throws SQLException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        CustomerOverview overview = findById(customerId);
+        while (overview == before && System.currentTimeMillis() < deadline) {
+            pause();
+            overview = findById(customerId);
+        }
+        assertNotSame(before, overview);
+        return overview;
+    }
+
+    private CustomerOverview findById(int customerId) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return service.findById(conn, customerId);
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bara.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CustomerPhoneIndexTest {
+
+    // Customer 10 is stored with area code, 20 with country code, 30 and 40 without area code, 50 in another city
+    private final CustomerPhoneIndex index = CustomerPhoneIndex.of(
+            new int[]{1, 2, 3, 4, 5},
+            new int[]{10, 20, 30, 40, 50},
+            new String[]{"5512345678", "525512345678", "12345678", "2345678", "3312345678"});
+
+    @Test
+    void callerIdPrefersTheExactThenTheNationalNumber() {
+        assertArrayEquals(new int[]{10, 20, 40, 30}, index.callerId("5512345678", 10));
+        assertArrayEquals(new int[]{20, 10, 40, 30}, index.callerId("525512345678", 10));
+        assertArrayEquals(new int[]{20, 10}, index.callerId("525512345678", 2));
+        // Without area code the caller could be any of them
+        assertEquals(5, index.callerId("2345678", 10).length);
+        assertEquals(40, index.callerId("2345678", 10)[0]);
+    }
+
+    @Test
+    void searchFindsEndingsThenBeginningsThenAnyPosition() {
+        int[] endings = index.search("5678", 10);
+        Arrays.sort(endings);
+        assertArrayEquals(new int[]{10, 20, 30, 40, 50}, endings);
+        assertArrayEquals(new int[]{10, 20}, index.search("551234", 10));
+        assertArrayEquals(new int[]{50}, index.search("331", 10));
+        assertArrayEquals(new int[0], index.search("", 10));
+    }
+
+    @Test
+    void changesCopyTheIndex() {
+        CustomerPhoneIndex moved = index.with(1, 60, "5598765432");
+        assertArrayEquals(new int[]{60}, moved.callerId("5598765432", 10));
+        assertArrayEquals(new int[]{20, 40, 30}, moved.callerId("5512345678", 10));
+        assertEquals(5, moved.size());
+
+        CustomerPhoneIndex removed = moved.without(2).withoutCustomer(60);
+        assertEquals(3, removed.size());
+        assertArrayEquals(new int[]{40, 30}, removed.callerId("5512345678", 10));
+        assertSame(removed, removed.without(2));
+        assertSame(removed, removed.withoutCustomer(60));
+
+        // The original is unchanged
+        assertArrayEquals(new int[]{10, 20, 40, 30}, index.callerId("5512345678", 10));
+    }
+}
@@ -0,0 +1,128 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import com.bara.app.db.jooq.tables.pojos.OrderItems;
+import com.bara.app.db.jooq.tables.pojos.Orders;
+import org.jooq.Record3;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMERS;
+import static com.bara.app.db.jooq.Tables.CUSTOMER_PROFILE_SKETCHES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerProfileAggregatorTest {
+
+    private final CustomerProfileAggregator aggregator = CustomerProfileAggregator.getInstance();
+    private final OrderCheckoutService checkout = new OrderCheckoutService();
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @BeforeEach
+    void customers() throws SQLException {
+        aggregator.flush();
+        TestDatabase.truncate("customers", "orders", "order_items", "menu_items", "customer_profile_sketches");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO menu_items (name, price_cents) VALUES ('Tacos', 1000)");
+            statement.execute("INSERT INTO customers (first_name) VALUES ('Ana'), ('Luis')");
+        }
+    }
+
+    @Test
+    void seedCountsTheExistingHistory() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO orders (customer_id, order_type, status, subtotal_cents, total_cents, ordered_at) VALUES "
+                    + "(1, 'dine_in', 'delivered', 1000, 1000, now() - interval '10 days'), "
+                    + "(1, 'dine_in', 'delivered', 3000, 3000, now() - interval '3 days'), "
+                    + "(1, 'dine_in', 'cancelled', 9000, 9000, now() - interval '2 days'), "
+                    + "(2, 'dine_in', 'delivered', 500, 500, now())");
+            conn.setAutoCommit(false);
+            assertEquals(2, aggregator.seed(conn));
+            conn.commit();
+        }
+        assertEquals(List.of(List.of(1, 2, 4000L), List.of(2, 1, 500L)), sketches());
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals(4000L, DatabaseManager.dsl(conn).select(CUSTOMERS.TOTAL_LIFETIME_VALUE_CENTS)
+                    .from(CUSTOMERS).where(CUSTOMERS.ID.eq(1)).fetchOne(0, Long.class));
+        }
+    }
+
+    @Test
+    void rebuildWhilePendingCountsEveryOrderOnce() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            checkout.persist(order(1));
+        }
+        aggregator.flush();
+        // Recorded but not flushed when the rebuild counts them
+        checkout.persist(order(1));
+        checkout.persist(order(2));
+        assertEquals(2, aggregator.rebuild());
+        checkout.persist(order(2));
+        aggregator.flush();
+
+        List<List<Object>> live = sketches();
+        assertEquals(List.of(List.of(1, 4, 4000L), List.of(2, 2, 2000L)), live);
+        aggregator.rebuild();
+        assertEquals(live, sketches());
+    }
+
+    @Test
+    void rebuildIsNotCountedAgainByAnotherTerminal() throws SQLException {
+        CustomerProfileAggregator otherTerminal = new CustomerProfileAggregator();
+        checkout.persist(order(1));
+        otherTerminal.record(movePending(checkout.persist(order(1))));
+        aggregator.rebuild();
+        otherTerminal.flush();
+        assertEquals(List.of(List.of(1, 2, 2000L)), sketches());
+    }
+
+    static PlacedOrder order(int customerId) {
+        Orders header = new Orders()
+                .setCustomerId(customerId)
+                .setOrderType("dine_in")
+                .setStatus("pending")
+                .setClientUuid(UUID.randomUUID())
+                .setOrderedAt(OffsetDateTime.now())
+                .setSubtotalCents(1000L)
+                .setTotalCents(1000L)
+                .setPartySize(2);
+        OrderItems line = new OrderItems()
+                .setMenuItemId(1)
+                .setItemName("Tacos")
+                .setItemPriceCents(1000L)
+                .setQuantity(1)
+                .setLineTotalCents(1000L);
+        return new PlacedOrder(header, List.of(line));
+    }
+
+    // An order stored here but recorded by another terminal, as if this one had not recorded it
+    static PlacedOrder movePending(PlacedOrder placed) {
+        CustomerProfileAggregator.getInstance().discard(placed.getOrder().getCustomerId(), placed.getOrder().getId());
+        return placed;
+    }
+
+    // (customer id, order count, spent) per sketch
+    static List<List<Object>> sketches() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return DatabaseManager.dsl(conn)
+                    .select(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID, CUSTOMER_PROFILE_SKETCHES.ORDER_COUNT,
+                            CUSTOMER_PROFILE_SKETCHES.SPENT_CENTS)
+                    .from(CUSTOMER_PROFILE_SKETCHES)
+                    .where(CUSTOMER_PROFILE_SKETCHES.ORDER_COUNT.gt(0))
+                    .orderBy(CUSTOMER_PROFILE_SKETCHES.CUSTOMER_ID)
+                    .fetch(Record3::intoList);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bara.app.service;
+
+import com.bara.app.model.CustomerProfile;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CustomerProfileSketchTest {
+
+    // A Thursday at 20:00 local time
+    private static final ZonedDateTime START = ZonedDateTime.of(LocalDateTime.of(2024, 3, 7, 20, 0), ZoneId.systemDefault());
+
+    @Test
+    void countsOrdersTotalsAndHabits() {
+        CustomerProfileSketch sketch = new CustomerProfileSketch();
+        assertNull(sketch.getAvgTicketCents());
+        assertNull(sketch.getTypicalPartySize());
+
+        sketch.add(visit(at(0, 0), 1000, 2, "Tacos"));
+        sketch.add(visit(at(0, 1), 500, null, "Agua")); // Second round of the same visit
+        sketch.add(visit(at(7, 0), 3000, 4, "Tacos"));
+        sketch.add(visit(at(14, 0), 1500, 2, "Tacos"));
+
+        assertEquals(4, sketch.getOrderCount());
+        assertEquals(6000, sketch.getSpentCents());
+        assertEquals(1500L, sketch.getAvgTicketCents());
+        assertEquals(2, sketch.getTypicalPartySize());
+        assertEquals(List.of("THURSDAY"), sketch.getTypicalVisitDays());
+        assertEquals(List.of("20:00-21:00"), sketch.getTypicalVisitTimes());
+        // Two intervals of 7 days; the hour-later order is not a visit
+        assertEquals(7f, sketch.getVisitFrequencyDays(), 0.05);
+    }
+
+    @Test
+    void spaceSavingKeepsTheItemsOrderedMost() {
+        CustomerProfileSketch sketch = new CustomerProfileSketch();
+        for (int week = 0; week < 10; week++) {
+            sketch.add(visit(at(7 * week, 0), 1000, 2, "Tacos", "Tacos", "Agua"));
+            sketch.add(visit(at(7 * week + 1, 0), 1000, 2, "Pozole"));
+            // Each week a dish never ordered again, more than the tracked items in total
+            sketch.add(visit(at(7 * week + 2, 0), 1000, 2, "Especial " + week));
+        }
+        assertEquals(List.of("Tacos", "Agua", "Pozole"), sketch.getFavoriteItems());
+    }
+
+    @Test
+    void aStoredSketchContinuesWhereItLeftOff() {
+        CustomerProfileSketch sketch = new CustomerProfileSketch();
+        sketch.add(visit(at(0, 0), 1000, 3, "Tacos", "Agua"));
+        sketch.add(visit(at(3, 0), 2000, 3, "Pozole"));
+
+        CustomerProfileSketch stored = CustomerProfileSketch.from(sketch.toRow(1));
+        sketch.add(visit(at(5, 0), 500, 1, "Pozole"));
+        stored.add(visit(at(5, 0), 500, 1, "Pozole"));
+        CustomerProfile expected = sketch.toProfile(1);
+        CustomerProfile actual = stored.toProfile(1);
+        assertEquals(expected.getFavoriteItems(), actual.getFavoriteItems());
+        assertEquals(expected.getTypicalPartySize(), actual.getTypicalPartySize());
+        assertEquals(expected.getAvgTicketCents(), actual.getAvgTicketCents());
+        assertEquals(sketch.getVisitFrequencyDays(), stored.getVisitFrequencyDays());
+        assertEquals(sketch.toRow(1).getItemCounts().length, stored.toRow(1).getItemCounts().length);
+    }
+
+    private static OffsetDateTime at(int days, int hours) {
+        return START.plusDays(days).plusHours(hours).toOffsetDateTime();
+    }
+
+    private static CustomerProfileSketch.Visit visit(OffsetDateTime at, long totalCents, Integer partySize,
+                                                     String... items) {
+        int[] quantities = new int[items.length];
+        Arrays.fill(quantities, 1);
+        return new CustomerProfileSketch.Visit(at, totalCents, partySize, items, quantities);
+    }
+}
@@ -0,0 +1,66 @@
+package com.bara.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerSearchPipelineTest {
+
+    private static final long WAIT_SECONDS = 5;
+
+    @Test
+    void callbacksRunWithoutThePipelineLock() throws Exception {
+        CompletableFuture<CustomerSearchPipeline> created = new CompletableFuture<>();
+        CompletableFuture<Void> called = new CompletableFuture<>();
+        CustomerSearchPipeline pipeline = new CustomerSearchPipeline(new CustomerSearchService(),
+                CustomerSearchPipeline.Mode.NAME, results -> {
+            try {
+                // Another thread using the pipeline from the callback must not wait on it
+                CompletableFuture.runAsync(created.join()::clearCache).get(WAIT_SECONDS, TimeUnit.SECONDS);
+                called.complete(null);
+            } catch (Exception e) {
+                called.completeExceptionally(e);
+            }
+        }, called::completeExceptionally);
+        created.complete(pipeline);
+
+        pipeline.onInput("");
+        called.get(WAIT_SECONDS * 2, TimeUnit.SECONDS);
+        pipeline.close();
+    }
+
+    @Test
+    void resultsAreDeliveredInInputOrderEndingWithTheLatest() throws Exception {
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<Void> last = new CompletableFuture<>();
+        String lastInput = " ".repeat(199);
+        CustomerSearchPipeline pipeline = new CustomerSearchPipeline(new CustomerSearchService(),
+                CustomerSearchPipeline.Mode.PHONE, results -> {
+            synchronized (delivered) {
+                delivered.add(results.getQuery());
+            }
+            if (results.getQuery().equals(lastInput)) {
+                last.complete(null);
+            }
+        }, last::completeExceptionally);
+
+        for (int length = 0; length < 200; length++) {
+            pipeline.onInput(" ".repeat(length));
+        }
+        last.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        pipeline.close();
+
+        synchronized (delivered) {
+            for (int i = 1; i < delivered.size(); i++) {
+                assertTrue(delivered.get(i).length() > delivered.get(i - 1).length(), "Out of order at " + i);
+            }
+            assertEquals(lastInput, delivered.get(delivered.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.bara.app.service;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerSearchServiceTest {
+
+    private static final long WAIT_MILLIS = 10_000;
+    private static final int CUSTOMERS = 300;
+    // Enough rows that each reload takes a while
+    private static final int FILLER = 50_000;
+
+    private final CustomerSearchService service = new CustomerSearchService();
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @BeforeEach
+    void customers() throws SQLException {
+        TestDatabase.truncate("customers", "customer_phones");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            // Without a notification each
+            statement.execute("SET session_replication_role = replica");
+            try {
+                statement.execute("INSERT INTO customers (first_name) SELECT 'FILLER' FROM generate_series(1, " + FILLER + ")");
+                statement.execute("INSERT INTO customer_phones (customer_id, phone_number) SELECT id, '99' || id FROM customers ORDER BY id");
+            } finally {
+                statement.execute("RESET session_replication_role");
+            }
+        }
+        service.loadNameIndex();
+        service.loadPhoneIndex();
+    }
+
+    @Test
+    void nameIndexKeepsChangesMadeDuringReloads() throws Exception {
+        service.reloadNameIndexAsync().join();
+        writeDuringReloads((statement, n) -> statement.execute(
+                "UPDATE customers SET first_name = '" + name(n) + "' WHERE id = " + n), service::reloadNameIndexAsync);
+
+        awaitIndexed(n -> CustomerSearchService.indexedNameMatches(name(n)));
+    }
+
+    @Test
+    void phoneIndexKeepsChangesMadeDuringReloads() throws Exception {
+        service.reloadPhoneIndexAsync().join();
+        writeDuringReloads((statement, n) -> statement.execute(
+                "UPDATE customer_phones SET phone_number = '" + phone(n) + "' WHERE id = " + n), service::reloadPhoneIndexAsync);
+
+        awaitIndexed(n -> CustomerSearchService.indexedPhoneMatches(phone(n)));
+    }
+
+    // Writes customers 1.., deactivating the one before every third; the last reload reads while the second
+    // half is written
+    private static void writeDuringReloads(Write write, Supplier<CompletableFuture<Integer>> reload) {
+        CountDownLatch halfway = new CountDownLatch(1);
+        CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> {
+            try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+                for (int n = 1; n <= CUSTOMERS; n++) {
+                    write.apply(statement, n);
+                    if (n % 3 == 0) {
+                        statement.execute("UPDATE customers SET status = 'inactive' WHERE id = " + (n - 1));
+                    }
+                    if (n == CUSTOMERS / 2) {
+                        halfway.countDown();
+                    }
+                    Thread.sleep(2);
+                }
+            } catch (SQLException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (halfway.getCount() > 0) {
+            reload.get().join();
+        }
+        reload.get().join();
+        writes.join();
+    }
+
+    // Each customer found by its own term alone, unless deactivated
+    private static void awaitIndexed(IntFunction<int[]> search) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        List<Integer> wrong = wronglyIndexed(search);
+        while (!wrong.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            wrong = wronglyIndexed(search);
+        }
+        assertEquals(List.of(), wrong);
+    }
+
+    private static List<Integer> wronglyIndexed(IntFunction<int[]> search) {
+        IntPredicate active = n -> n % 3 != 2;
+        List<Integer> wrong = new ArrayList<>();
+        for (int n = 1; n <= CUSTOMERS; n++) {
+            int[] matches = search.apply(n);
+            boolean indexed = matches != null && matches.length == 1 && matches[0] == n;
+            if (indexed != active.test(n)) {
+                wrong.add(n);
+            }
+        }
+        return wrong;
+    }
+
+    private static String name(int n) {
+        return "ZQ" + n + "Z";
+    }
+
+    private static String phone(int n) {
+        return String.valueOf(551_000_000 + n);
+    }
+
+    private interface Write {
+        void apply(Statement statement, int n) throws SQLException;
+    }
+}
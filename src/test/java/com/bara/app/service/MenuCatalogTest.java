@@ -0,0 +1,63 @@
+package com.bara.app.service;
+
+import com.bara.app.model.MenuItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MenuCatalogTest {
+
+    private final MenuCatalog catalog = MenuCatalog.of(7, List.of(
+            new MenuItem(3, "Orden de tacos", 9000, null),
+            new MenuItem(1, "Agua", 300, null),
+            new MenuItem(2, "Nachos", 8000, null)));
+
+    @Test
+    void withAddsOrReplacesInNameOrder() {
+        MenuCatalog added = catalog.with(new MenuItem(10, "Ñoquis", 12000, null));
+        assertEquals(List.of("Agua", "Nachos", "Ñoquis", "Orden de tacos"), names(added));
+        assertEquals(8, added.getVersion());
+        assertEquals(12000, added.get(10).getPriceCents());
+
+        MenuCatalog renamed = added.with(new MenuItem(1, "Zarzamora", 300, null));
+        assertEquals(List.of("Nachos", "Ñoquis", "Orden de tacos", "Zarzamora"), names(renamed));
+        assertEquals("Zarzamora", renamed.get(1).getName());
+        assertEquals(4, renamed.size());
+
+        // Earlier snapshots are untouched
+        assertEquals(List.of("Agua", "Nachos", "Orden de tacos"), names(catalog));
+        assertNull(catalog.get(10));
+    }
+
+    @Test
+    void withoutRemovesFromBothViews() {
+        MenuCatalog removed = catalog.without(2);
+        assertEquals(List.of("Agua", "Orden de tacos"), names(removed));
+        assertNull(removed.get(2));
+        assertEquals(8, removed.getVersion());
+        assertSame(removed, removed.without(2));
+        assertSame(catalog, catalog.without(99));
+    }
+
+    @Test
+    void availabilityChangesOnlyWhenItDiffers() {
+        assertSame(catalog, catalog.withAvailability(1, true));
+        MenuCatalog soldOut = catalog.withAvailability(1, false);
+        assertFalse(soldOut.get(1).isAvailable());
+        assertEquals(List.of("Agua", "Nachos", "Orden de tacos"), names(soldOut));
+    }
+
+    private static List<String> names(MenuCatalog catalog) {
+        List<String> names = new ArrayList<>();
+        for (MenuItem item : catalog.getItemsByName()) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+}
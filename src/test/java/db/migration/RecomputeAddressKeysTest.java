@@ -0,0 +1,60 @@
+package db.migration;
+
+import com.bara.app.database.DatabaseManager;
+import com.bara.app.database.TestDatabase;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static com.bara.app.db.jooq.Tables.CUSTOMER_ADDRESSES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecomputeAddressKeysTest {
+
+    @BeforeAll
+    static void database() {
+        TestDatabase.assumeAvailable();
+    }
+
+    @Test
+    void rewritesKeysStoredInOtherFormats() throws SQLException {
+        TestDatabase.truncate("customers", "customer_addresses");
+        try (Connection conn = DatabaseManager.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO customers (first_name) VALUES ('Ana')");
+            statement.execute("INSERT INTO customer_addresses (customer_id, raw_input, street, city, normalized_key) VALUES "
+                    + "(1, 'Av. Juárez 10, Centro', 'Av. Juárez 10', 'México', 'av juarez 10 mexico'), "
+                    + "(1, 'av juarez #10', 'AV JUAREZ 10', 'mexico', NULL), "
+                    + "(1, 'Calle Ñu 5', NULL, NULL, NULL), "
+                    + "(1, 'Calle 1', 'Calle 1', NULL, 'CALLE 1|||')");
+            conn.setAutoCommit(false);
+            new V22__Recompute_address_keys().migrate(context(conn));
+            conn.commit();
+
+            List<String> keys = DatabaseManager.dsl(conn).select(CUSTOMER_ADDRESSES.NORMALIZED_KEY)
+                    .from(CUSTOMER_ADDRESSES)
+                    .orderBy(CUSTOMER_ADDRESSES.ID)
+                    .fetch(CUSTOMER_ADDRESSES.NORMALIZED_KEY);
+            assertEquals(List.of("AV JUAREZ 10||MEXICO|", "AV JUAREZ 10||MEXICO|", "CALLE NU 5", "CALLE 1|||"), keys);
+        }
+    }
+
+    private static Context context(Connection conn) {
+        return new Context() {
+            @Override
+            public Configuration getConfiguration() {
+                return null;
+            }
+
+            @Override
+            public Connection getConnection() {
+                return conn;
+            }
+        };
+    }
+}